@@ -0,0 +1,55 @@
+package benchmarks;
+
+import automata.floorField.DijkstraStaticFloorField;
+import automata.floorField.ManhattanStaticFloorField;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.neighbourhood.VonNeumannNeighbourhood;
+import automata.scenario.Scenario;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of computing static floor fields.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FloorFieldBenchmark {
+  @Param({"supermarket", "random"})
+  String scenarioName;
+
+  private DijkstraStaticFloorField dijkstraMoore, dijkstraVonNeumann;
+  private ManhattanStaticFloorField manhattan;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Scenario scenario = Scenarios.of(scenarioName);
+    dijkstraMoore = DijkstraStaticFloorField.of(scenario, MooreNeighbourhood::of);
+    dijkstraVonNeumann = DijkstraStaticFloorField.of(scenario, VonNeumannNeighbourhood::of);
+    manhattan = ManhattanStaticFloorField.of(scenario);
+  }
+
+  @Benchmark
+  public double dijkstraMoore() {
+    dijkstraMoore.initialize();
+    return dijkstraMoore.getField(0, 0);
+  }
+
+  @Benchmark
+  public double dijkstraVonNeumann() {
+    dijkstraVonNeumann.initialize();
+    return dijkstraVonNeumann.getField(0, 0);
+  }
+
+  @Benchmark
+  public double manhattan() {
+    manhattan.initialize();
+    return manhattan.getField(0, 0);
+  }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.neighbourhood.Neighbourhood;
+import automata.neighbourhood.VonNeumannNeighbourhood;
+import geometry._2d.Location;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static statistics.Random.random;
+
+/**
+ * Measures throughput of computing neighbours of cells.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NeighbourhoodBenchmark {
+  private static final int NUMBER_OF_CELLS = 1024;
+
+  @Param({"moore", "vonNeumann"})
+  String neighbourhoodName;
+
+  private Neighbourhood neighbourhood;
+  private int[] rows, columns;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var scenario = Scenarios.of("supermarket");
+    neighbourhood = neighbourhoodName.equals("moore")
+        ? MooreNeighbourhood.of(scenario)
+        : VonNeumannNeighbourhood.of(scenario);
+    random.setSeed(Scenarios.SEED);
+    rows = new int[NUMBER_OF_CELLS];
+    columns = new int[NUMBER_OF_CELLS];
+    for (int i = 0; i < NUMBER_OF_CELLS; i++) {
+      // include cells on borders
+      rows[i] = random.nextInt(scenario.getRows());
+      columns[i] = random.nextInt(scenario.getColumns());
+    }
+    next = 0;
+  }
+
+  @Benchmark
+  public List<Location> neighbours() {
+    var i = next;
+    next = (next + 1) & (NUMBER_OF_CELLS - 1);
+    return neighbourhood.neighbours(rows[i], columns[i]);
+  }
+}
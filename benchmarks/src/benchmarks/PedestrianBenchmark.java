@@ -0,0 +1,63 @@
+package benchmarks;
+
+import automata.CellularAutomaton;
+import automata.pedestrian.Pedestrian;
+import automata.pedestrian.PedestrianParameters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static statistics.Random.random;
+
+/**
+ * Measures throughput of choosing next movement of a pedestrian in a crowd. Probe pedestrians are placed on free
+ * cells of an automaton, without being added to it, so that state of automaton does not change.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PedestrianBenchmark {
+  private static final int NUMBER_OF_PROBES = 1024;
+
+  @Param({"supermarket", "random"})
+  String scenarioName;
+
+  @Param({"0.05", "0.5"})
+  double density;
+
+  private Pedestrian[] probes;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var scenario = Scenarios.of(scenarioName);
+    scenario.getStaticFloorField().initialize();
+    random.setSeed(Scenarios.SEED);
+    CellularAutomaton automaton =
+        Scenarios.automaton(scenario, (int) (density * Scenarios.freeCells(scenario)));
+    var parameters = new PedestrianParameters.Builder().build();
+    probes = new Pedestrian[NUMBER_OF_PROBES];
+    var placed = 0;
+    while (placed < NUMBER_OF_PROBES) {
+      var row = random.nextInt(scenario.getRows());
+      var column = random.nextInt(scenario.getColumns());
+      if (automaton.isCellReachable(row, column)) {
+        probes[placed++] = new Pedestrian(row, column, parameters, automaton);
+      }
+    }
+    next = 0;
+  }
+
+  @Benchmark
+  public Optional<?> chooseMovement() {
+    var pedestrian = probes[next];
+    next = (next + 1) & (NUMBER_OF_PROBES - 1);
+    return pedestrian.chooseMovement();
+  }
+}
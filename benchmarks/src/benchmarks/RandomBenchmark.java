@@ -0,0 +1,57 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static statistics.Random.random;
+
+/**
+ * Measures throughput of random operations used on each time step.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark {
+  /**
+   * Number of elements to choose from, as in a Moore neighbourhood.
+   */
+  private static final int NUMBER_OF_CHOICES = 8;
+
+  @Param({"100", "10000"})
+  int listSize;
+
+  private List<Double> desirabilities;
+  private List<Integer> list;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    random.setSeed(Scenarios.SEED);
+    desirabilities = new ArrayList<>();
+    for (int i = 0; i < NUMBER_OF_CHOICES; i++) {
+      desirabilities.add(Math.exp(random.nextDouble(5)));
+    }
+    list = new ArrayList<>();
+    for (int i = 0; i < listSize; i++) {
+      list.add(i);
+    }
+  }
+
+  @Benchmark
+  public Double discrete() {
+    return random.discrete(desirabilities, desirability -> desirability);
+  }
+
+  @Benchmark
+  public List<Integer> shuffle() {
+    random.shuffle(list);
+    return list;
+  }
+}
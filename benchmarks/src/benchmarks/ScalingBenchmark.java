@@ -0,0 +1,85 @@
+package benchmarks;
+
+import automata.CellularAutomaton;
+import automata.scenario.Scenario;
+import automata.scenario.examples.SyntheticScenario;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static statistics.Random.random;
+
+/**
+ * Measures throughput of one discrete time step of automaton on synthetic scenarios of increasing size and with
+ * increasing numbers of pedestrians. Each invocation runs {@link Scenarios#STEPS_PER_INVOCATION} time steps, so that
+ * rebuilding check and timestamps do not dominate measurement. Scores are still time steps per second. See
+ * {@link ScalingReport} for a throughput versus size report.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ScalingBenchmark {
+  /**
+   * Number of rows and columns of square scenario.
+   */
+  @Param({"100", "300", "1000", "2000"})
+  int size;
+
+  /**
+   * Number of pedestrians per 100 free cells.
+   */
+  @Param({"1", "10", "30"})
+  int pedestriansPer100Cells;
+
+  private Scenario scenario;
+  private int numberOfPedestrians;
+  private CellularAutomaton automaton;
+
+  /**
+   * Builds scenario used for a given size. Large scenarios have larger rooms and more exits.
+   *
+   * @param size number of rows and columns of square scenario.
+   * @return a new scenario. Its floor field is not initialized.
+   */
+  static Scenario scenario(int size) {
+    return new SyntheticScenario.Builder()
+        .rows(size)
+        .columns(size)
+        .roomSize(Math.max(12, size / 20))
+        .corridorWidth(Math.max(3, size / 200))
+        .obstacleDensity(0.15)
+        .maximumObstacleSize(8)
+        .numberOfExits(Math.max(4, size / 50))
+        .build(Scenarios.SEED);
+  }
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    scenario = scenario(size);
+    scenario.getStaticFloorField().initialize();
+    numberOfPedestrians = (int) Math.max(1, (long) pedestriansPer100Cells * Scenarios.freeCells(scenario) / 100);
+    random.setSeed(Scenarios.SEED);
+    automaton = Scenarios.automaton(scenario, numberOfPedestrians);
+  }
+
+  @Setup(Level.Invocation)
+  public void refill() {
+    if (automaton.getNumberOfPedestriansInScenario() < numberOfPedestrians / 2) {
+      automaton = Scenarios.automaton(scenario, numberOfPedestrians);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Scenarios.STEPS_PER_INVOCATION)
+  public int timeStep() {
+    for (int i = 0; i < Scenarios.STEPS_PER_INVOCATION; i++) {
+      automaton.timeStep();
+    }
+    return automaton.getNumberOfPedestriansInScenario();
+  }
+}
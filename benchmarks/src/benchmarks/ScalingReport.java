@@ -0,0 +1,80 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Runs {@link ScalingBenchmark} and reports throughput versus size of scenario, both as time steps per second and as
+ * pedestrian moves considered per second, which should stay roughly constant if cost of a time step is linear in
+ * number of pedestrians. Report is printed and written as a CSV file.
+ * <p>
+ * Usage: {@code ScalingReport [sizes] [pedestrians per 100 cells] [csv file]}, where lists are comma separated.
+ *
+ * @author Pepe Gallardo
+ */
+public class ScalingReport {
+  private record Row(int size, int pedestriansPer100Cells, double stepsPerSecond, double error,
+                     double allocatedBytesPerStep) {
+  }
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    var sizes = args.length > 0 ? args[0] : "100,300,1000,2000";
+    var densities = args.length > 1 ? args[1] : "1,10,30";
+    var csv = Path.of(args.length > 2 ? args[2] : "build/benchmarks/scaling.csv");
+
+    var options = new OptionsBuilder()
+        .include(ScalingBenchmark.class.getName())
+        .param("size", sizes.split(","))
+        .param("pedestriansPer100Cells", densities.split(","))
+        .addProfiler("gc")
+        .warmupIterations(3)
+        .warmupTime(TimeValue.seconds(2))
+        .measurementIterations(5)
+        .measurementTime(TimeValue.seconds(2))
+        .build();
+
+    var rows = new ArrayList<Row>();
+    for (RunResult result : new Runner(options).run()) {
+      var parameters = result.getParams();
+      var primary = result.getPrimaryResult();
+      var allocation = result.getSecondaryResults().get("gc.alloc.rate.norm");
+      rows.add(new Row(
+          Integer.parseInt(parameters.getParam("size"))
+          , Integer.parseInt(parameters.getParam("pedestriansPer100Cells"))
+          , primary.getScore()
+          , primary.getScoreError()
+          , allocation == null ? Double.NaN : allocation.getScore()));
+    }
+    rows.sort(Comparator.comparingInt(Row::pedestriansPer100Cells).thenComparingInt(Row::size));
+
+    Files.createDirectories(csv.toAbsolutePath().getParent());
+    try (var writer = new PrintWriter(Files.newBufferedWriter(csv))) {
+      writer.println("size,cells,pedestriansPer100Cells,pedestrians,stepsPerSecond,error,pedestrianStepsPerSecond"
+          + ",allocatedBytesPerStep");
+      System.out.println();
+      System.out.printf("%8s %12s %6s %12s %14s %14s %16s%n", "size", "cells", "ped%", "pedestrians", "steps/s",
+          "ped-steps/s", "bytes/step");
+      for (var row : rows) {
+        var scenario = ScalingBenchmark.scenario(row.size);
+        var cells = (long) row.size * row.size;
+        var pedestrians = Math.max(1, (long) row.pedestriansPer100Cells * Scenarios.freeCells(scenario) / 100);
+        var pedestrianSteps = row.stepsPerSecond * pedestrians;
+        writer.printf("%d,%d,%d,%d,%f,%f,%f,%f%n", row.size, cells, row.pedestriansPer100Cells, pedestrians,
+            row.stepsPerSecond, row.error, pedestrianSteps, row.allocatedBytesPerStep);
+        System.out.printf("%8d %12d %6d %12d %14.2f %14.0f %16.0f%n", row.size, cells, row.pedestriansPer100Cells,
+            pedestrians, row.stepsPerSecond, pedestrianSteps, row.allocatedBytesPerStep);
+      }
+    }
+    System.out.println("Report written to " + csv);
+  }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import automata.CellularAutomaton;
+import automata.CellularAutomatonParameters;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.Scenario;
+
+import static automata.scenario.examples.RandomScenario.randomScenario;
+import static automata.scenario.examples.Supermarket.supermarket;
+import static statistics.Random.random;
+
+/**
+ * Scenarios and automata shared by benchmarks. Everything is built from fixed seeds so that all benchmark runs
+ * measure the same work.
+ *
+ * @author Pepe Gallardo
+ */
+final class Scenarios {
+  /**
+   * Seed used for building scenarios and placing pedestrians.
+   */
+  static final long SEED = 20240131L;
+
+  /**
+   * Number of time steps run by each invocation of time step benchmarks. Steps are batched so that cost of checking
+   * whether automaton must be refilled and of timestamping an invocation is negligible compared to measured work.
+   */
+  static final int STEPS_PER_INVOCATION = 10;
+
+  private Scenarios() {
+  }
+
+  /**
+   * Builds one of the example scenarios.
+   *
+   * @param name either {@code supermarket} or {@code random}.
+   * @return a new scenario. Its floor field is not initialized.
+   */
+  static Scenario of(String name) {
+    random.setSeed(SEED);
+    return switch (name) {
+      case "supermarket" -> supermarket();
+      case "random" -> randomScenario();
+      default -> throw new IllegalArgumentException("of: unknown scenario " + name);
+    };
+  }
+
+  /**
+   * Number of cells in scenario that are not blocked.
+   *
+   * @param scenario a scenario.
+   * @return number of cells in scenario that are not blocked.
+   */
+  static int freeCells(Scenario scenario) {
+    var free = 0;
+    for (int row = 0; row < scenario.getRows(); row++) {
+      for (int column = 0; column < scenario.getColumns(); column++) {
+        if (!scenario.isBlocked(row, column)) {
+          free++;
+        }
+      }
+    }
+    return free;
+  }
+
+  /**
+   * Builds an automaton with pedestrians placed uniformly. Floor field of scenario should already be initialized.
+   *
+   * @param scenario            scenario where automaton runs.
+   * @param numberOfPedestrians number of pedestrians to place.
+   * @return a new automaton.
+   */
+  static CellularAutomaton automaton(Scenario scenario, int numberOfPedestrians) {
+    var parameters =
+        new CellularAutomatonParameters.Builder()
+            .scenario(scenario)
+            .secondsTimeLimit(60 * 60)
+            .neighbourhood(MooreNeighbourhood::of)
+            .pedestrianVelocity(1.3)
+            .build();
+    var automaton = new CellularAutomaton(parameters);
+    automaton.addPedestriansUniformly(numberOfPedestrians, new PedestrianParameters.Builder().build());
+    return automaton;
+  }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import automata.CellularAutomaton;
+import automata.scenario.Scenario;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static statistics.Random.random;
+
+/**
+ * Measures throughput of one discrete time step of automaton for different scenarios and densities of pedestrians.
+ * As pedestrians evacuate along a run, automaton is rebuilt whenever half of them have left, so that measured
+ * density stays close to requested one. Each invocation runs {@link Scenarios#STEPS_PER_INVOCATION} time steps, so
+ * that rebuilding check and timestamps do not dominate measurement. Scores are still time steps per second.
+ *
+ * @author Pepe Gallardo
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimeStepBenchmark {
+  @Param({"supermarket", "random"})
+  String scenarioName;
+
+  /**
+   * Fraction of free cells initially occupied by pedestrians.
+   */
+  @Param({"0.05", "0.2", "0.5"})
+  double density;
+
+  private Scenario scenario;
+  private int numberOfPedestrians;
+  private CellularAutomaton automaton;
+
+  @Setup(Level.Trial)
+  public void setUpTrial() {
+    scenario = Scenarios.of(scenarioName);
+    scenario.getStaticFloorField().initialize();
+    numberOfPedestrians = Math.max(1, (int) (density * Scenarios.freeCells(scenario)));
+    random.setSeed(Scenarios.SEED);
+    automaton = Scenarios.automaton(scenario, numberOfPedestrians);
+  }
+
+  @Setup(Level.Invocation)
+  public void refill() {
+    if (automaton.getNumberOfPedestriansInScenario() < numberOfPedestrians / 2) {
+      automaton = Scenarios.automaton(scenario, numberOfPedestrians);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(Scenarios.STEPS_PER_INVOCATION)
+  public int timeStep() {
+    for (int i = 0; i < Scenarios.STEPS_PER_INVOCATION; i++) {
+      automaton.timeStep();
+    }
+    return automaton.getNumberOfPedestriansInScenario();
+  }
+}
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class FloorFieldBenchmark_jmhType extends FloorFieldBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class NeighbourhoodBenchmark_jmhType extends NeighbourhoodBenchmark_jmhType_B3 {
+}
+
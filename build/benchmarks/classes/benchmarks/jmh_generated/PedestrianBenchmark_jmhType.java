@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class PedestrianBenchmark_jmhType extends PedestrianBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class RandomBenchmark_jmhType extends RandomBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class ScalingBenchmark_jmhType extends ScalingBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package benchmarks.jmh_generated;
+public class TimeStepBenchmark_jmhType extends TimeStepBenchmark_jmhType_B3 {
+}
+
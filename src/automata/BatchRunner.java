@@ -0,0 +1,219 @@
+package automata;
+
+import automata.instrumentation.BatchMetricsMXBean;
+import automata.instrumentation.MBeans;
+
+import javax.management.ObjectName;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static statistics.Random.random;
+
+/**
+ * Runs a batch of simulations concurrently on a fixed number of threads and merges their evacuation summaries. Each
+ * simulation is run with its own random generator seeded independently, so results of a simulation only depend on
+ * its seed. Submitting blocks while queue of pending simulations is full.
+ * <p>
+ * Runner is registered with platform MBean server as {@code automata:type=BatchRunner,name=<name>} until it is
+ * closed, and simulations it runs are also added to {@code automata:type=Simulations}.
+ *
+ * @author Pepe Gallardo
+ */
+public class BatchRunner implements BatchMetricsMXBean, AutoCloseable {
+  private final ThreadPoolExecutor executor;
+  private final Semaphore pendingRuns;
+  private final EvacuationSummary summary;
+  private final LongAdder submittedRuns, completedRuns, failedRuns;
+  private final ObjectName objectName;
+
+  private BatchRunner(Builder builder) {
+    var threadNumber = new AtomicInteger(0);
+    // a run releases its permit just before its thread is free, so executor queue must also have room for runs
+    // submitted while threads are finishing
+    this.executor = new ThreadPoolExecutor(builder.threads, builder.threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(builder.threads + builder.queueCapacity), runnable -> {
+      var thread = new Thread(runnable, builder.name + "-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    // a run holds a permit from submission to completion, so that executor queue never overflows
+    this.pendingRuns = new Semaphore(builder.threads + builder.queueCapacity);
+    this.summary = new EvacuationSummary();
+    this.submittedRuns = new LongAdder();
+    this.completedRuns = new LongAdder();
+    this.failedRuns = new LongAdder();
+    this.objectName = MBeans.register(this, "type=BatchRunner,name=" + ObjectName.quote(builder.name));
+  }
+
+  /**
+   * Submits a simulation. Blocks while queue of pending simulations is full. Automaton is built and run in a thread
+   * of this runner, after random generator of that thread has been seeded. Scenarios shared by several simulations
+   * should have their static floor fields initialized before submitting them.
+   *
+   * @param seed      seed for random generator used by simulation.
+   * @param automaton builds automaton to run, including its scenario and pedestrians.
+   * @return evacuation summary of simulation, available when it completes.
+   */
+  public Future<EvacuationSummary> submit(long seed, Supplier<CellularAutomaton> automaton) {
+    return submit(seed, automaton, CellularAutomaton::computeEvacuationSummary);
+  }
+
+  /**
+   * Submits a simulation, as {@link #submit(long, Supplier)} does, but returns a result computed from automaton once
+   * it has run. Evacuation summary of simulation is still merged into summary of this runner.
+   *
+   * @param seed      seed for random generator used by simulation.
+   * @param automaton builds automaton to run, including its scenario and pedestrians.
+   * @param result    computes result of simulation from automaton, in thread that ran it.
+   * @param <T>       type of result.
+   * @return result of simulation, available when it completes. If simulation fails, it is counted as a failed run
+   * and getting its result throws an {@code ExecutionException}.
+   */
+  public <T> Future<T> submit(long seed, Supplier<CellularAutomaton> automaton,
+                              Function<CellularAutomaton, T> result) {
+    pendingRuns.acquireUninterruptibly();
+    submittedRuns.increment();
+    try {
+      return executor.submit(() -> {
+        try {
+          random.setSeed(seed);
+          var cellularAutomaton = automaton.get();
+          cellularAutomaton.run();
+          var runSummary = cellularAutomaton.computeEvacuationSummary();
+          synchronized (summary) {
+            summary.merge(runSummary);
+          }
+          var runResult = result.apply(cellularAutomaton);
+          completedRuns.increment();
+          return runResult;
+        } catch (RuntimeException | Error e) {
+          failedRuns.increment();
+          throw e;
+        } finally {
+          pendingRuns.release();
+        }
+      });
+    } catch (RuntimeException e) {
+      // runner was closed
+      pendingRuns.release();
+      submittedRuns.decrement();
+      throw e;
+    }
+  }
+
+  /**
+   * Evacuation summary merging all simulations completed so far.
+   *
+   * @return a new summary merging all simulations completed so far.
+   */
+  public EvacuationSummary getSummary() {
+    synchronized (summary) {
+      return new EvacuationSummary(summary);
+    }
+  }
+
+  /**
+   * Waits for all submitted simulations to complete and releases threads of this runner.
+   */
+  @Override
+  public void close() {
+    executor.shutdown();
+    try {
+      while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // keep waiting for long simulations
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    MBeans.unregister(objectName);
+  }
+
+  @Override
+  public int getThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  @Override
+  public int getActiveRuns() {
+    return executor.getActiveCount();
+  }
+
+  @Override
+  public long getSubmittedRuns() {
+    return submittedRuns.sum();
+  }
+
+  @Override
+  public long getCompletedRuns() {
+    return completedRuns.sum();
+  }
+
+  @Override
+  public long getFailedRuns() {
+    return failedRuns.sum();
+  }
+
+  /**
+   * Class for building a batch runner by providing its parameters.
+   */
+  public static final class Builder {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = -1;
+    private String name = "BatchRunner";
+
+    public Builder() {
+    }
+
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Sets number of submitted simulations that can wait for a thread before submitting blocks.
+     *
+     * @param queueCapacity number of simulations that can wait for a thread. Defaults to twice number of threads.
+     * @return this builder.
+     */
+    public Builder queueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets name of runner, used for naming its threads and its management bean.
+     *
+     * @param name name of runner.
+     * @return this builder.
+     */
+    public Builder name(String name) {
+      this.name = name;
+      return this;
+    }
+
+    public BatchRunner build() {
+      if (threads <= 0) {
+        throw new IllegalArgumentException("build: threads must be larger than 0");
+      }
+      if (queueCapacity == -1) {
+        queueCapacity = 2 * threads;
+      }
+      if (queueCapacity <= 0) {
+        throw new IllegalArgumentException("build: queueCapacity must be larger than 0");
+      }
+      return new BatchRunner(this);
+    }
+  }
+}
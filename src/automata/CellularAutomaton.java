@@ -1,22 +1,43 @@
 package automata;
 
+import automata.grid.BooleanGrid;
+import automata.instrumentation.LatencyHistogram;
+import automata.instrumentation.MBeans;
+import automata.instrumentation.RunEvent;
+import automata.instrumentation.SimulationMetrics;
+import automata.instrumentation.StepMetrics;
+import automata.instrumentation.TimeStepEvent;
 import automata.neighbourhood.Neighbourhood;
+import automata.observer.StepEventBus;
 import automata.pedestrian.Pedestrian;
 import automata.pedestrian.PedestrianFactory;
 import automata.pedestrian.PedestrianParameters;
 import automata.scenario.Scenario;
+import automata.trajectory.TrajectoryRecorder;
 import geometry._2d.Location;
+import geometry._2d.Rectangle;
 import gui.Canvas;
 import gui.Frame;
+import gui.FrameExporter;
+import statistics.WeightedSampler;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
-import static statistics.Descriptive.mean;
-import static statistics.Descriptive.median;
 import static statistics.Random.random;
 
 /**
@@ -40,11 +61,27 @@ public class CellularAutomaton {
   /**
    * {@code true} if cell is occupied by a pedestrian in current discrete state.
    */
-  protected boolean[][] occupied;
+  protected BooleanGrid occupied;
   /**
    * {@code true} if cell will be occupied by a pedestrian in next discrete state.
    */
-  protected boolean[][] occupiedNextState;
+  protected BooleanGrid occupiedNextState;
+  /**
+   * {@code true} if cell is occupied by a parked pedestrian: one that could not move because all cells in its
+   * neighbourhood were blocked or occupied. Parked pedestrians are not asked to choose a movement until some cell in
+   * their neighbourhood becomes free.
+   */
+  protected final BooleanGrid parked;
+  /**
+   * Number of pedestrians currently parked.
+   */
+  protected int numberOfParkedPedestrians;
+  /**
+   * Cells left by pedestrians during current time step, encoded as {@code row * columns + column}. Those that remain
+   * free in next state wake up parked pedestrians around them.
+   */
+  private long[] vacatedCells;
+  private int numberOfVacatedCells;
   /**
    * Factory for generating pedestrians for this automaton.
    */
@@ -54,13 +91,73 @@ public class CellularAutomaton {
    */
   protected final List<Pedestrian> inScenarioPedestrians;
   /**
-   * List of pedestrians that have evacuated the scenario.
+   * Records of pedestrians that have evacuated the scenario, in order of exit. Pedestrians themselves are recycled.
+   */
+  protected final ExitRecords exitRecords;
+  /**
+   * Sources injecting pedestrians while simulation runs, along with pedestrians waiting to enter through each one.
+   */
+  protected final List<Inflow> inflows;
+  /**
+   * Streaming summary of pedestrians that have evacuated the scenario.
    */
-  protected final List<Pedestrian> outOfScenarioPedestrians;
+  protected final EvacuationSummary evacuationSummary;
   /**
    * Number of discrete time steps elapsed since the start of the simulation.
    */
   protected int timeSteps;
+  /**
+   * Number of consecutive discrete time steps, up to the last one run, in which no pedestrian moved or exited.
+   */
+  protected int stepsWithoutMovement, stepsWithoutExit;
+  /**
+   * Reason why last run of simulation terminated or {@code null} if it has not terminated.
+   */
+  protected TerminationReason terminationReason;
+  /**
+   * Recorder for trajectories of pedestrians or {@code null} if trajectories are not being recorded.
+   */
+  protected TrajectoryRecorder trajectoryRecorder;
+  /**
+   * Heatmap accumulating occupancy of cells or {@code null} if occupancy is not being accumulated.
+   */
+  protected DensityHeatmap densityHeatmap;
+  /**
+   * Bus where events of each time step are published for observers or {@code null} if events are not being published.
+   */
+  protected StepEventBus stepEventBus;
+  /**
+   * Counters and phase durations for last discrete time step.
+   */
+  protected final StepMetrics stepMetrics;
+  /**
+   * Histogram where wall clock duration of each time step is recorded or {@code null} if durations are not being
+   * recorded.
+   */
+  protected LatencyHistogram latencyHistogram;
+  /**
+   * Live metrics of this automaton, exposed through JMX while it runs.
+   */
+  protected final SimulationMetrics simulationMetrics;
+  /**
+   * Directory where checkpoints are written while running or {@code null} if checkpoints are not taken.
+   */
+  protected Path checkpointDirectory;
+  /**
+   * Number of discrete time steps between consecutive checkpoints.
+   */
+  protected int checkpointInterval;
+  /**
+   * {@code true} if positions of pedestrians should be published after each time step for being rendered.
+   */
+  protected boolean publishingPositions;
+  /**
+   * Positions of pedestrians are triple buffered: one buffer is filled by simulation thread, another one is read by
+   * rendering thread and last one is exchanged between them. Simulation never waits for rendering and rendering
+   * skips intermediate steps if it falls behind.
+   */
+  private PedestrianPositions simulationPositions, renderingPositions;
+  private final AtomicReference<PedestrianPositions> publishedPositions;
 
   /**
    * Creates a new Cellular Automaton with provided parameters.
@@ -71,20 +168,29 @@ public class CellularAutomaton {
     this.parameters = parameters;
     this.scenario = parameters.scenario();
     this.neighbourhood = parameters.neighbourhood();
-    this.occupied = new boolean[scenario.getRows()][scenario.getColumns()];
-    clearCells(occupied);
-    this.occupiedNextState = new boolean[scenario.getRows()][scenario.getColumns()];
+    var gridStorage = parameters.gridStorage();
+    this.occupied = gridStorage.booleanGrid(scenario.getRows(), scenario.getColumns());
+    this.occupiedNextState = gridStorage.booleanGrid(scenario.getRows(), scenario.getColumns());
+    this.parked = gridStorage.booleanGrid(scenario.getRows(), scenario.getColumns());
+    this.numberOfParkedPedestrians = 0;
+    this.vacatedCells = new long[16];
+    this.numberOfVacatedCells = 0;
     this.pedestrianFactory = new PedestrianFactory(this);
 
-    this.inScenarioPedestrians = Collections.synchronizedList(new ArrayList<>());
-    this.outOfScenarioPedestrians = new ArrayList<>();
+    this.inScenarioPedestrians = new ArrayList<>();
+    this.exitRecords = new ExitRecords();
+    this.inflows = new ArrayList<>();
+    this.evacuationSummary = new EvacuationSummary();
     this.timeSteps = 0;
-  }
+    this.stepsWithoutMovement = 0;
+    this.stepsWithoutExit = 0;
+    this.stepMetrics = new StepMetrics();
+    this.simulationMetrics = new SimulationMetrics();
 
-  private void clearCells(boolean[][] cells) {
-    for (var row : cells) {
-      Arrays.fill(row, false);
-    }
+    this.publishingPositions = false;
+    this.simulationPositions = new PedestrianPositions();
+    this.renderingPositions = new PedestrianPositions();
+    this.publishedPositions = new AtomicReference<>(new PedestrianPositions());
   }
 
   /**
@@ -105,6 +211,15 @@ public class CellularAutomaton {
     return scenario.getColumns();
   }
 
+  /**
+   * Number of pedestrians currently within the scenario.
+   *
+   * @return number of pedestrians currently within the scenario.
+   */
+  public int getNumberOfPedestriansInScenario() {
+    return inScenarioPedestrians.size();
+  }
+
   /**
    * Adds a new pedestrian to this automaton.
    *
@@ -115,11 +230,14 @@ public class CellularAutomaton {
    */
   public boolean addPedestrian(int row, int column, PedestrianParameters parameters) {
     assert row >= 0 && row < getRows() : "addPedestrian: invalid row";
-    assert column >= 0 && row < getColumns() : "addPedestrian: invalid column";
+    assert column >= 0 && column < getColumns() : "addPedestrian: invalid column";
     if (isCellReachable(row, column)) {
       var pedestrian = pedestrianFactory.getInstance(row, column, parameters);
-      occupied[row][column] = true;
+      occupied.set(row, column, true);
       inScenarioPedestrians.add(pedestrian);
+      if (trajectoryRecorder != null) {
+        trajectoryRecorder.entered(pedestrian);
+      }
       return true;
     } else {
       return false;
@@ -138,20 +256,331 @@ public class CellularAutomaton {
   }
 
   /**
-   * Adds a given number of new pedestrians located uniform randomly among free cells in automaton's scenario.
+   * Adds a pedestrian coming from another automaton, such as another level of a building. Pedestrian keeps its
+   * identifier and number of steps.
+   *
+   * @param identifier    identifier of pedestrian.
+   * @param row           row of scenario where pedestrian should be placed.
+   * @param column        column of scenario where pedestrian should be placed.
+   * @param numberOfSteps number of steps already taken by pedestrian.
+   * @param parameters    parameters describing pedestrian.
+   * @return {@code true} if pedestrian could be added (location was neither blocked nor taken by another pedestrian).
+   */
+  boolean enterPedestrian(int identifier, int row, int column, int numberOfSteps, PedestrianParameters parameters) {
+    if (isCellReachable(row, column)) {
+      var pedestrian = pedestrianFactory.getInstance(identifier, row, column, numberOfSteps, parameters);
+      occupied.set(row, column, true);
+      inScenarioPedestrians.add(pedestrian);
+      if (trajectoryRecorder != null) {
+        trajectoryRecorder.entered(pedestrian);
+      }
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Removes pedestrians that leave scenario other than through an exit, such as those taking stairs to another
+   * level. Cells they occupied are freed and parked pedestrians around them are woken up. Should be called between
+   * time steps.
+   *
+   * @param leaving predicate selecting pedestrians that leave.
+   * @param action  action performed on each pedestrian that leaves before it is recycled.
+   */
+  void leavePedestrians(Predicate<Pedestrian> leaving, Consumer<Pedestrian> action) {
+    inScenarioPedestrians.removeIf(pedestrian -> {
+      if (!leaving.test(pedestrian)) {
+        return false;
+      }
+      action.accept(pedestrian);
+      var row = pedestrian.getRow();
+      var column = pedestrian.getColumn();
+      occupied.set(row, column, false);
+      if (parked.get(row, column)) {
+        parked.set(row, column, false);
+        numberOfParkedPedestrians--;
+      }
+      vacated(row, column);
+      if (trajectoryRecorder != null) {
+        trajectoryRecorder.exited(pedestrian.getIdentifier());
+      }
+      pedestrianFactory.release(pedestrian);
+      return true;
+    });
+    wakeUpParkedPedestrians();
+  }
+
+  /**
+   * State of an inflow source in this automaton.
+   */
+  protected static final class Inflow {
+    final InflowSource source;
+    // pedestrians waiting to enter, including a fraction of next one
+    double pending;
+    long injected;
+
+    Inflow(InflowSource source) {
+      this.source = source;
+      this.pending = 0;
+      this.injected = 0;
+    }
+  }
+
+  /**
+   * Adds a source that injects new pedestrians while simulation runs. Simulation does not terminate while sources
+   * are still injecting pedestrians, even if scenario is empty.
+   *
+   * @param inflowSource source to add.
+   */
+  public void addInflowSource(InflowSource inflowSource) {
+    inflows.add(new Inflow(inflowSource));
+  }
+
+  /**
+   * Inflow sources added to this automaton, in order of addition.
+   *
+   * @return an unmodifiable list of inflow sources added to this automaton.
+   */
+  public List<InflowSource> getInflowSources() {
+    var sources = new ArrayList<InflowSource>(inflows.size());
+    for (var inflow : inflows) {
+      sources.add(inflow.source);
+    }
+    return Collections.unmodifiableList(sources);
+  }
+
+  private Inflow inflow(InflowSource inflowSource) {
+    for (var inflow : inflows) {
+      if (inflow.source == inflowSource) {
+        return inflow;
+      }
+    }
+    throw new IllegalArgumentException("inflow: source was not added to this automaton");
+  }
+
+  /**
+   * Number of whole pedestrians that have arrived at an inflow source but are still waiting to enter because its
+   * region was full.
+   *
+   * @param inflowSource source added to this automaton.
+   * @return number of pedestrians waiting to enter through source.
+   */
+  public long getInflowWaiting(InflowSource inflowSource) {
+    return (long) inflow(inflowSource).pending;
+  }
+
+  /**
+   * Number of pedestrians that have entered scenario through an inflow source.
+   *
+   * @param inflowSource source added to this automaton.
+   * @return number of pedestrians that have entered scenario through source.
+   */
+  public long getInflowInjected(InflowSource inflowSource) {
+    return inflow(inflowSource).injected;
+  }
+
+  /**
+   * Checks whether some inflow source may still inject pedestrians.
+   *
+   * @return {@code true} if some inflow source may still inject pedestrians.
+   */
+  public boolean hasPendingInflow() {
+    var seconds = timeSteps * parameters.secondsPerTimeStep();
+    for (var inflow : inflows) {
+      if (inflow.pending >= 1 || !inflow.source.hasEnded(seconds)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Injects pedestrians arriving at inflow sources during current time step, as long as their regions have room.
+   */
+  private void injectInflow() {
+    var seconds = timeSteps * parameters.secondsPerTimeStep();
+    for (var inflow : inflows) {
+      inflow.pending += inflow.source.arrivals(seconds, parameters.secondsPerTimeStep());
+      var arrived = (int) Math.min(Integer.MAX_VALUE, inflow.pending);
+      if (arrived > 0) {
+        var entered = enter(inflow.source.getRegion(), arrived, inflow.source.getParameters());
+        inflow.pending -= entered;
+        inflow.injected += entered;
+        stepMetrics.entered(entered);
+      }
+    }
+  }
+
+  // number of random cells tried for each arriving pedestrian before free cells of region are indexed
+  private static final int INFLOW_ATTEMPTS_PER_PEDESTRIAN = 4;
+
+  /**
+   * Places new pedestrians on free cells of a region chosen uniformly at random. Cells are first sampled by rejection,
+   * which only takes a few draws per pedestrian while region has room. Free cells of region are only indexed, at a
+   * cost proportional to its size, if region is so crowded that sampling keeps failing.
+   *
+   * @param region     region where pedestrians enter.
+   * @param arrived    number of pedestrians arriving.
+   * @param parameters parameters describing new pedestrians.
+   * @return number of pedestrians that could enter.
+   */
+  private int enter(Rectangle region, int arrived, PedestrianParameters parameters) {
+    var bottom = Math.max(0, region.bottom());
+    var top = Math.min(getRows() - 1, region.top());
+    var left = Math.max(0, region.left());
+    var right = Math.min(getColumns() - 1, region.right());
+    if (bottom > top || left > right) {
+      return 0;
+    }
+    var entered = 0;
+    var attempts = INFLOW_ATTEMPTS_PER_PEDESTRIAN * arrived;
+    while (entered < arrived && attempts-- > 0) {
+      var row = bottom + random.nextInt(top - bottom + 1);
+      var column = left + random.nextInt(right - left + 1);
+      if (addPedestrian(row, column, parameters)) {
+        entered++;
+      }
+    }
+    if (entered < arrived) {
+      // region is crowded, so remaining pedestrians are placed on whichever cells are still free
+      var freeCells = new FreeCells(this, region);
+      var remaining = Math.min(arrived - entered, freeCells.size());
+      for (int i = 0; i < remaining; i++) {
+        var cell = freeCells.removeRandom(random);
+        addPedestrian(freeCells.row(cell), freeCells.column(cell), parameters);
+      }
+      entered += remaining;
+    }
+    return entered;
+  }
+
+  /**
+   * Records of pedestrians that have evacuated the scenario.
+   *
+   * @return records of pedestrians that have evacuated the scenario, in order of exit.
+   */
+  public ExitRecords getExitRecords() {
+    return exitRecords;
+  }
+
+  /**
+   * Number of pedestrians that have evacuated the scenario through each exit.
+   *
+   * @return an array whose {@code i}-th element is number of pedestrians that left through {@code i}-th exit of
+   * scenario.
+   */
+  public int[] getEvacueesPerExit() {
+    return exitRecords.countPerExit(scenario.getNumberOfExits());
+  }
+
+  /**
+   * Adds a given number of new pedestrians located uniform randomly among free cells in automaton's scenario. Takes
+   * time proportional to size of scenario plus number of pedestrians, however crowded scenario is.
    *
    * @param numberOfPedestrians number of new pedestrian to add.
    * @param parameters          parameters describing new pedestrians.
    */
   public void addPedestriansUniformly(int numberOfPedestrians, PedestrianParameters parameters) {
+    addPedestriansUniformly(new Rectangle(0, 0, getRows(), getColumns()), numberOfPedestrians, parameters);
+  }
+
+  /**
+   * Adds a given number of new pedestrians located uniform randomly among free cells within a region of automaton's
+   * scenario.
+   *
+   * @param region              region of scenario where pedestrians should be placed.
+   * @param numberOfPedestrians number of new pedestrian to add.
+   * @param parameters          parameters describing new pedestrians.
+   */
+  public void addPedestriansUniformly(Rectangle region, int numberOfPedestrians, PedestrianParameters parameters) {
     assert numberOfPedestrians >= 0 : "addPedestriansUniformly: number of pedestrian cannot be negative";
-    var numberOfPedestriansPlaced = 0;
-    while (numberOfPedestriansPlaced < numberOfPedestrians) {
-      var row = random.nextInt(getRows());
-      var column = random.nextInt(getColumns());
+    var freeCells = new FreeCells(this, region);
+    if (freeCells.size() < numberOfPedestrians) {
+      throw new IllegalArgumentException("addPedestriansUniformly: only " + freeCells.size()
+          + " free cells for " + numberOfPedestrians + " pedestrians");
+    }
+    for (int i = 0; i < numberOfPedestrians; i++) {
+      var cell = freeCells.removeRandom(random);
+      addPedestrian(freeCells.row(cell), freeCells.column(cell), parameters);
+    }
+  }
 
-      if (addPedestrian(row, column, parameters)) {
-        numberOfPedestriansPlaced++;
+  /**
+   * Adds a given number of new pedestrians located randomly among free cells with probability proportional to a
+   * density map, so that each cell is chosen at most once.
+   *
+   * @param density             non-negative density for each cell, indexed by row and column. Cells with zero
+   *                            density are never chosen.
+   * @param numberOfPedestrians number of new pedestrian to add.
+   * @param parameters          parameters describing new pedestrians.
+   */
+  public void addPedestriansWithDensity(double[][] density, int numberOfPedestrians,
+                                        PedestrianParameters parameters) {
+    assert numberOfPedestrians >= 0 : "addPedestriansWithDensity: number of pedestrian cannot be negative";
+    if (density.length != getRows()) {
+      throw new IllegalArgumentException("addPedestriansWithDensity: wrong number of rows");
+    }
+    var freeCells = new FreeCells(this);
+    var cells = new int[freeCells.size()];
+    var weights = new double[freeCells.size()];
+    for (int i = 0; i < cells.length; i++) {
+      cells[i] = freeCells.get(i);
+      var row = density[freeCells.row(cells[i])];
+      if (row.length != getColumns()) {
+        throw new IllegalArgumentException("addPedestriansWithDensity: wrong number of columns");
+      }
+      weights[i] = row[freeCells.column(cells[i])];
+    }
+    var sampler = new WeightedSampler(weights);
+    if (sampler.size() < numberOfPedestrians) {
+      throw new IllegalArgumentException("addPedestriansWithDensity: only " + sampler.size()
+          + " free cells with positive density for " + numberOfPedestrians + " pedestrians");
+    }
+    for (int i = 0; i < numberOfPedestrians; i++) {
+      var cell = cells[sampler.removeRandom(random)];
+      addPedestrian(freeCells.row(cell), freeCells.column(cell), parameters);
+    }
+  }
+
+  /**
+   * Adds groups of new pedestrians. Members of each group are placed close together, filling free cells around a
+   * random free cell in breadth first order. If free cells connected to that one are not enough for whole group,
+   * remaining members are placed around another random free cell.
+   *
+   * @param numberOfGroups number of groups to add.
+   * @param groupSize      number of pedestrians in each group.
+   * @param parameters     parameters describing new pedestrians.
+   */
+  public void addPedestrianGroups(int numberOfGroups, int groupSize, PedestrianParameters parameters) {
+    assert numberOfGroups >= 0 : "addPedestrianGroups: number of groups cannot be negative";
+    assert groupSize >= 0 : "addPedestrianGroups: size of groups cannot be negative";
+    var numberOfPedestrians = (long) numberOfGroups * groupSize;
+    var freeCells = new FreeCells(this);
+    if (freeCells.size() < numberOfPedestrians) {
+      throw new IllegalArgumentException("addPedestrianGroups: only " + freeCells.size()
+          + " free cells for " + numberOfPedestrians + " pedestrians");
+    }
+    var frontier = new ArrayDeque<Location>();
+    for (int group = 0; group < numberOfGroups; group++) {
+      var placed = 0;
+      while (placed < groupSize) {
+        // cells taken by previous groups are still in index, so skip them
+        var cell = freeCells.removeRandom(random);
+        if (!addPedestrian(freeCells.row(cell), freeCells.column(cell), parameters)) {
+          continue;
+        }
+        placed++;
+        frontier.clear();
+        frontier.add(new Location(freeCells.row(cell), freeCells.column(cell)));
+        while (placed < groupSize && !frontier.isEmpty()) {
+          for (var neighbour : neighbours(frontier.poll())) {
+            if (placed < groupSize && addPedestrian(neighbour, parameters)) {
+              placed++;
+              frontier.add(neighbour);
+            }
+          }
+        }
       }
     }
   }
@@ -165,7 +594,7 @@ public class CellularAutomaton {
    */
   public List<Location> neighbours(int row, int column) {
     assert row >= 0 && row < getRows() : "neighbours: invalid row";
-    assert column >= 0 && row < getColumns() : "neighbours: invalid column";
+    assert column >= 0 && column < getColumns() : "neighbours: invalid column";
     return neighbourhood.neighbours(row, column);
   }
 
@@ -188,8 +617,8 @@ public class CellularAutomaton {
    */
   public boolean isCellOccupied(int row, int column) {
     assert row >= 0 && row < getRows() : "isCellOccupied: invalid row";
-    assert column >= 0 && row < getColumns() : "isCellOccupied: invalid column";
-    return occupied[row][column];
+    assert column >= 0 && column < getColumns() : "isCellOccupied: invalid column";
+    return occupied.get(row, column);
   }
 
   /**
@@ -212,8 +641,8 @@ public class CellularAutomaton {
    */
   public boolean isCellReachable(int row, int column) {
     assert row >= 0 && row < getRows() : "isCellReachable: invalid row";
-    assert column >= 0 && row < getColumns() : "isCellReachable: invalid column";
-    return !occupied[row][column] && !scenario.isBlocked(row, column);
+    assert column >= 0 && column < getColumns() : "isCellReachable: invalid column";
+    return !occupied.get(row, column) && !scenario.isBlocked(row, column);
   }
 
   /**
@@ -237,8 +666,8 @@ public class CellularAutomaton {
    */
   public boolean willBeOccupied(int row, int column) {
     assert row >= 0 && row < getRows() : "willBeOccupied: invalid row";
-    assert column >= 0 && row < getColumns() : "willBeOccupied: invalid column";
-    return occupiedNextState[row][column];
+    assert column >= 0 && column < getColumns() : "willBeOccupied: invalid column";
+    return occupiedNextState.get(row, column);
   }
 
   /**
@@ -252,6 +681,24 @@ public class CellularAutomaton {
     return willBeOccupied(location.row(), location.column());
   }
 
+  /**
+   * Number of discrete time steps elapsed since the start of the simulation.
+   *
+   * @return number of discrete time steps elapsed since the start of the simulation.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Reason why last run of simulation terminated.
+   *
+   * @return reason why last run of simulation terminated or {@code null} if it has not run to termination.
+   */
+  public TerminationReason getTerminationReason() {
+    return terminationReason;
+  }
+
   /**
    * Scenario where automaton is running.
    *
@@ -261,139 +708,511 @@ public class CellularAutomaton {
     return scenario;
   }
 
+  /**
+   * Records trajectories of pedestrians in this automaton from next time step on. Recorder should be closed by
+   * caller once simulation has finished.
+   *
+   * @param trajectoryRecorder recorder for trajectories or {@code null} to stop recording.
+   */
+  public void setTrajectoryRecorder(TrajectoryRecorder trajectoryRecorder) {
+    this.trajectoryRecorder = trajectoryRecorder;
+  }
+
+  /**
+   * Publishes events of each time step (moves, conflicts, exits and a summary of time step) in a bus from next time
+   * step on, so that observers process them in their own threads. Bus should be closed by caller once simulation has
+   * finished.
+   *
+   * @param stepEventBus bus where events are published or {@code null} to stop publishing.
+   */
+  public void setStepEventBus(StepEventBus stepEventBus) {
+    this.stepEventBus = stepEventBus;
+  }
+
+  /**
+   * Accumulates occupancy of cells in a heatmap after each time step from next time step on.
+   *
+   * @param densityHeatmap heatmap where occupancy is accumulated or {@code null} to stop accumulating.
+   */
+  public void setDensityHeatmap(DensityHeatmap densityHeatmap) {
+    this.densityHeatmap = densityHeatmap;
+  }
+
+  /**
+   * Records wall clock duration of each time step in a histogram from next time step on.
+   *
+   * @param latencyHistogram histogram where durations are recorded or {@code null} to stop recording.
+   */
+  public void setLatencyHistogram(LatencyHistogram latencyHistogram) {
+    this.latencyHistogram = latencyHistogram;
+  }
+
+  /**
+   * Counters and, if they were measured, phase durations for last discrete time step.
+   *
+   * @return metrics for last discrete time step. Updated by each time step.
+   */
+  public StepMetrics getStepMetrics() {
+    return stepMetrics;
+  }
+
+  /**
+   * Live metrics of this automaton. They are registered with platform MBean server as {@code
+   * automata:type=CellularAutomaton,id=<n>} while automaton runs and are also added to metrics of all simulations,
+   * registered as {@code automata:type=Simulations}.
+   *
+   * @return live metrics of this automaton.
+   */
+  public SimulationMetrics getSimulationMetrics() {
+    return simulationMetrics;
+  }
+
+  /**
+   * Takes checkpoints periodically while running. Each one is written asynchronously to a file named {@code
+   * checkpoint-<time steps>.bin} in given directory. They can be restored using {@link Checkpoint#restore(Path,
+   * CellularAutomatonParameters)}.
+   *
+   * @param directory directory where checkpoints are written.
+   * @param interval  number of discrete time steps between consecutive checkpoints.
+   */
+  public void setCheckpoints(Path directory, int interval) {
+    if (interval <= 0) {
+      throw new IllegalArgumentException("setCheckpoints: interval must be larger than 0");
+    }
+    this.checkpointDirectory = directory;
+    this.checkpointInterval = interval;
+  }
+
   /**
    * Runs one discrete time step for this automaton.
    */
   public void timeStep() {
+    // phases are only timed if someone is listening, so that no clock is read otherwise
+    var event = new TimeStepEvent();
+    var pedestrians = inScenarioPedestrians.size();
+    stepMetrics.begin(event.isEnabled() || latencyHistogram != null);
+    event.begin();
+
+    // new pedestrians enter between time steps
+    if (!inflows.isEmpty()) {
+      injectInflow();
+    }
+    stepMetrics.endPhase(StepMetrics.Phase.INFLOW);
+
     // clear new state
-    clearCells(occupiedNextState);
+    occupiedNextState.clear();
+    stepMetrics.endPhase(StepMetrics.Phase.CLEAR);
 
     // move each pedestrian
-    synchronized (inScenarioPedestrians) {
-      // in order to process pedestrians in random order
-      random.shuffle(inScenarioPedestrians);
-
-      var pedestriansIterator = inScenarioPedestrians.iterator();
-      while (pedestriansIterator.hasNext()) {
-        var pedestrian = pedestriansIterator.next();
-        int row = pedestrian.getRow();
-        int column = pedestrian.getColumn();
-
-        if (scenario.isExit(row, column)) {
-          // pedestrian exits scenario
-          pedestrian.setExitTimeSteps(timeSteps);
-          outOfScenarioPedestrians.add(pedestrian);
-          pedestriansIterator.remove();
-        } else {
-          pedestrian.chooseMovement().ifPresentOrElse(
-              location -> {
-                if (willBeOccupied(location)) {
-                  // new location already taken by another pedestrian. Don't move
-                  occupiedNextState[row][column] = true;
-                } else {
-                  // move to new location
-                  occupiedNextState[location.row()][location.column()] = true;
-                  pedestrian.moveTo(location);
-                }
-              },
-              // no new location to consider. Don't move
-              () -> occupiedNextState[row][column] = true
-          );
+    if (trajectoryRecorder != null) {
+      trajectoryRecorder.beginStep(timeSteps, inScenarioPedestrians);
+    }
+
+    // in order to process pedestrians in random order
+    random.shuffle(inScenarioPedestrians);
+    // only a sample of pedestrians is timed, so that clock is not read for each one
+    stepMetrics.beginPedestrians(StepMetrics.Phase.SHUFFLE, inScenarioPedestrians.size());
+
+    var pedestriansIterator = inScenarioPedestrians.iterator();
+    while (pedestriansIterator.hasNext()) {
+      var pedestrian = pedestriansIterator.next();
+      stepMetrics.nextPedestrian();
+      int row = pedestrian.getRow();
+      int column = pedestrian.getColumn();
+
+      if (scenario.isExit(row, column)) {
+        // pedestrian exits scenario
+        pedestrian.setExitTimeSteps(timeSteps);
+        var exit = scenario.getExitIndex(row, column);
+        exitRecords.add(pedestrian.getIdentifier(), row, column, exit, pedestrian.getNumberOfSteps(), timeSteps);
+        evacuationSummary.addEvacuee(pedestrian.getNumberOfSteps(), timeSteps * parameters.secondsPerTimeStep());
+        pedestriansIterator.remove();
+        vacated(row, column);
+        if (trajectoryRecorder != null) {
+          trajectoryRecorder.exited(pedestrian.getIdentifier());
+        }
+        if (stepEventBus != null) {
+          stepEventBus.exited(timeSteps, pedestrian.getIdentifier(), row, column, exit);
         }
+        pedestrianFactory.release(pedestrian);
+        stepMetrics.exited();
+        stepMetrics.endPedestrianPhase(StepMetrics.Phase.EXIT);
+      } else if (parked.get(row, column)) {
+        // still no free cell around, so it would not find any movement. Don't move
+        occupiedNextState.set(row, column, true);
+        stepMetrics.stuck();
+        stepMetrics.endPedestrianPhase(StepMetrics.Phase.RESOLVE);
+      } else {
+        var movement = pedestrian.chooseMovement();
+        stepMetrics.endPedestrianPhase(StepMetrics.Phase.DECIDE);
+        movement.ifPresentOrElse(
+            location -> {
+              if (willBeOccupied(location)) {
+                // new location already taken by another pedestrian. Don't move
+                occupiedNextState.set(row, column, true);
+                if (stepEventBus != null) {
+                  stepEventBus.conflicted(timeSteps, pedestrian.getIdentifier(), row, column, location.row(),
+                      location.column());
+                }
+                stepMetrics.conflicted();
+              } else {
+                // move to new location
+                occupiedNextState.set(location.row(), location.column(), true);
+                pedestrian.moveTo(location);
+                vacated(row, column);
+                if (trajectoryRecorder != null) {
+                  trajectoryRecorder.moved(pedestrian.getIdentifier(), location.row() - row,
+                      location.column() - column);
+                }
+                if (stepEventBus != null) {
+                  stepEventBus.moved(timeSteps, pedestrian.getIdentifier(), row, column, location.row(),
+                      location.column());
+                }
+                stepMetrics.moved();
+              }
+            },
+            () -> {
+              // no new location to consider. Don't move until some cell around becomes free
+              occupiedNextState.set(row, column, true);
+              parked.set(row, column, true);
+              numberOfParkedPedestrians++;
+              stepMetrics.stuck();
+            }
+        );
+        stepMetrics.endPedestrianPhase(StepMetrics.Phase.RESOLVE);
       }
     }
+    stepMetrics.endPedestrians();
+
     // make next state current one
     var temp = occupied;
     occupied = occupiedNextState;
     occupiedNextState = temp;
+    wakeUpParkedPedestrians();
 
     timeSteps++;
+    if (trajectoryRecorder != null) {
+      trajectoryRecorder.endStep(timeSteps);
+    }
+    if (densityHeatmap != null) {
+      densityHeatmap.accumulate(inScenarioPedestrians);
+    }
+    if (publishingPositions) {
+      publishPositions();
+    }
+    stepMetrics.endPhase(StepMetrics.Phase.SWAP);
+    stepMetrics.end();
+    if (stepEventBus != null) {
+      stepEventBus.stepEnded(timeSteps - 1, inScenarioPedestrians.size(), stepMetrics);
+    }
+
+    if (event.shouldCommit()) {
+      event.set(timeSteps - 1, pedestrians, stepMetrics);
+      event.commit();
+    }
+    if (latencyHistogram != null) {
+      latencyHistogram.record(stepMetrics.getTotalNanos());
+    }
+  }
+
+  private void vacated(int row, int column) {
+    if (numberOfVacatedCells == vacatedCells.length) {
+      vacatedCells = Arrays.copyOf(vacatedCells, 2 * vacatedCells.length);
+    }
+    vacatedCells[numberOfVacatedCells++] = (long) row * scenario.getColumns() + column;
+  }
+
+  /**
+   * Wakes up parked pedestrians next to cells that were vacated in last time step and are free in current state, as
+   * they may be able to move now. Neighbourhood relationships are symmetric, so these are the only pedestrians that
+   * can have a free cell in their neighbourhood.
+   */
+  private void wakeUpParkedPedestrians() {
+    var columns = scenario.getColumns();
+    for (int i = 0; i < numberOfVacatedCells && numberOfParkedPedestrians > 0; i++) {
+      var row = (int) (vacatedCells[i] / columns);
+      var column = (int) (vacatedCells[i] % columns);
+      if (!occupied.get(row, column)) {
+        for (var neighbour : neighbours(row, column)) {
+          if (parked.get(neighbour.row(), neighbour.column())) {
+            parked.set(neighbour.row(), neighbour.column(), false);
+            numberOfParkedPedestrians--;
+          }
+        }
+      }
+    }
+    numberOfVacatedCells = 0;
+  }
+
+  /**
+   * Publishes current positions of pedestrians for being rendered.
+   */
+  protected void publishPositions() {
+    simulationPositions.fill(timeSteps, inScenarioPedestrians);
+    simulationPositions = publishedPositions.getAndSet(simulationPositions);
+  }
+
+  /**
+   * Latest positions of pedestrians published by simulation. Should always be called from the same rendering thread.
+   * Returned positions can be read until next call to this method.
+   *
+   * @return latest positions of pedestrians published by simulation.
+   */
+  public PedestrianPositions latestPositions() {
+    if (publishedPositions.get().getTimeSteps() > renderingPositions.getTimeSteps()) {
+      renderingPositions = publishedPositions.getAndSet(renderingPositions);
+    }
+    return renderingPositions;
   }
 
+  /**
+   * Milliseconds between consecutive refreshes of GUI.
+   */
+  private static final long MILLIS_PER_FRAME = 1000 / 60;
+
   /**
    * Thread for running the simulation.
    */
   private class RunThread extends Thread {
     final Canvas canvas;
+    final FrameExporter frameExporter;
+    IOException exportException;
+    // exception that made simulation fail, if any
+    Throwable failure;
 
-    public RunThread(Canvas canvas) {
+    public RunThread(Canvas canvas, FrameExporter frameExporter) {
       this.canvas = canvas;
+      this.frameExporter = frameExporter;
     }
 
     public void run() {
-      scenario.getStaticFloorField().initialize();
-      timeSteps = 0;
-      var maximalTimeSteps = parameters.secondsTimeLimit() / parameters.secondsPerTimeStep();
+      try {
+        simulate();
+      } catch (RuntimeException | Error e) {
+        // rethrown by thread that started simulation
+        failure = e;
+      }
+    }
 
-      if (canvas != null) {
-        // show initial configuration for 1.5 seconds
-        canvas.update();
-        try {
-          Thread.sleep(1500);
-        } catch (Exception ignored) {
-        }
+    private void simulate() {
+      var staticFloorField = scenario.getStaticFloorField();
+      var floorFieldNanos = 0L;
+      if (!staticFloorField.isInitialized()) {
+        var start = System.nanoTime();
+        staticFloorField.initialize();
+        floorFieldNanos = System.nanoTime() - start;
       }
+      var metricsName = simulationMetrics.register();
+      simulationMetrics.started(inScenarioPedestrians.size(), floorFieldNanos);
+      ExecutorService checkpointWriter = null;
+      ScheduledExecutorService frameClock = null;
+      var completed = false;
+      try {
+        if (checkpointDirectory != null) {
+          checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "CheckpointWriter");
+            thread.setDaemon(true);
+            return thread;
+          });
+        }
+        var maximalTimeSteps = parameters.secondsTimeLimit() / parameters.secondsPerTimeStep();
+        var runEvent = new RunEvent();
+        runEvent.rows = scenario.getRows();
+        runEvent.columns = scenario.getColumns();
+        runEvent.initialPedestrians = inScenarioPedestrians.size();
+        runEvent.begin();
 
-      var millisBefore = System.currentTimeMillis();
-      while (!inScenarioPedestrians.isEmpty() && timeSteps < maximalTimeSteps) {
-        timeStep();
-        if (canvas != null) {
-          canvas.update();
-          var elapsedMillis = (System.currentTimeMillis() - millisBefore);
+        Semaphore stepPermits = null;
+        if (frameExporter != null) {
+          // frames are rendered offscreen by this same thread
+          publishingPositions = true;
+          publishPositions();
+          exportFrame();
+        } else if (canvas != null) {
+          publishingPositions = true;
+          publishPositions();
+          frameClock = Executors.newScheduledThreadPool(2, runnable -> {
+            var thread = new Thread(runnable, "FrameClock");
+            thread.setDaemon(true);
+            return thread;
+          });
+          // canvas is refreshed at a fixed rate, showing latest positions published by simulation
+          frameClock.scheduleAtFixedRate(canvas::update, 0, MILLIS_PER_FRAME, TimeUnit.MILLISECONDS);
+          if (parameters.GUITimeFactor() > 0) {
+            // simulation is paced by a clock to synchronize animation with real time
+            var millisPerTimeStep = (long) (parameters.secondsPerTimeStep() * 1000 / parameters.GUITimeFactor());
+            var permits = new Semaphore(0);
+            frameClock.scheduleAtFixedRate(() -> {
+              // do not accumulate permits so that simulation does not burst after a pause
+              if (permits.availablePermits() == 0) {
+                permits.release();
+              }
+            }, 1500, Math.max(1, millisPerTimeStep), TimeUnit.MILLISECONDS);
+            stepPermits = permits;
+          }
+          // show initial configuration for 1.5 seconds
           try {
-            // wait some milliseconds to synchronize animation
-            Thread.sleep(((int) (parameters.secondsPerTimeStep() * 1000) - elapsedMillis) / parameters.GUITimeFactor());
-            millisBefore = System.currentTimeMillis();
+            Thread.sleep(1500);
           } catch (Exception ignored) {
           }
         }
+
+        // stop as soon as simulation makes no further progress, instead of spinning until time limit
+        var terminationDetector = new TerminationDetector(CellularAutomaton.this, maximalTimeSteps);
+        terminationReason = null;
+        TerminationReason reason;
+        while ((reason = terminationDetector.check(inScenarioPedestrians, timeSteps)) == null) {
+          if (stepPermits != null) {
+            stepPermits.acquireUninterruptibly();
+          }
+          timeStep();
+          simulationMetrics.timeStep(stepMetrics);
+          terminationDetector.timeStep(stepMetrics);
+          if (frameExporter != null && timeSteps % frameExporter.getStride() == 0) {
+            exportFrame();
+          }
+          if (checkpointWriter != null && timeSteps % checkpointInterval == 0) {
+            // state is captured in this thread but written to file in background
+            var checkpoint = Checkpoint.of(CellularAutomaton.this, false);
+            var path = checkpointDirectory.resolve(String.format("checkpoint-%010d.bin", timeSteps));
+            checkpointWriter.execute(() -> {
+              try {
+                checkpoint.write(path);
+              } catch (IOException e) {
+                System.err.println("Could not write checkpoint " + path + ": " + e.getMessage());
+              }
+            });
+          }
+        }
+        terminationReason = reason;
+        runEvent.end();
+        if (runEvent.shouldCommit()) {
+          runEvent.timeSteps = timeSteps;
+          runEvent.evacuees = evacuationSummary.getNumberOfEvacuees();
+          runEvent.nonEvacuees = inScenarioPedestrians.size();
+          runEvent.terminationReason = reason.name();
+          if (latencyHistogram != null && latencyHistogram.getCount() > 0) {
+            runEvent.meanStepNanos = latencyHistogram.getMean();
+            runEvent.p99StepNanos = latencyHistogram.percentile(99);
+          }
+          runEvent.commit();
+        }
+        completed = true;
+      } finally {
+        // resources of simulation are released even if it failed
+        simulationMetrics.finished(inScenarioPedestrians.size());
+        MBeans.unregister(metricsName);
+        if (frameClock != null) {
+          frameClock.shutdownNow();
+          publishingPositions = false;
+          if (completed) {
+            // show final configuration
+            canvas.update();
+          }
+        }
+        if (frameExporter != null) {
+          if (completed && timeSteps % frameExporter.getStride() != 0) {
+            // export final configuration
+            exportFrame();
+          }
+          publishingPositions = false;
+          try {
+            frameExporter.close();
+          } catch (IOException e) {
+            if (exportException == null) {
+              exportException = e;
+            }
+          }
+        }
+        if (checkpointWriter != null) {
+          // wait for pending checkpoints
+          checkpointWriter.shutdown();
+          try {
+            checkpointWriter.awaitTermination(1, TimeUnit.MINUTES);
+          } catch (InterruptedException ignored) {
+          }
+        }
       }
-      if (canvas != null) {
-        // show final configuration
-        canvas.update();
+    }
+
+    private void exportFrame() {
+      if (exportException == null) {
+        try {
+          frameExporter.export(canvas.render());
+        } catch (IOException e) {
+          // stop exporting but complete the simulation
+          exportException = e;
+        }
       }
     }
   }
 
+  /**
+   * Builds a layered canvas for rendering this automaton.
+   */
+  private Canvas canvas(int pixelsPerCell) {
+    return new Canvas.Builder()
+        .rows(scenario.getRows())
+        .columns(scenario.getColumns())
+        .pixelsPerCell(pixelsPerCell)
+        .layers(scenario::paint, CellularAutomaton::paintPedestrianSprite)
+        .paint(CellularAutomaton.this::paint)
+        .build();
+  }
+
   /**
    * Runs this automaton until end conditions are met.
    *
-   * @param gui if this parameter is {@code true} the simulation is displayed in a GUI.
+   * @param canvas        canvas where simulation is displayed or {@code null} if it is not displayed.
+   * @param frameExporter exporter for frames rendered offscreen or {@code null} if no frames are exported.
+   * @return thread that run simulation.
+   * @throws IllegalStateException if simulation failed. Exception that made it fail is its cause.
    */
-  private void run(boolean gui) {
-    Canvas canvas = null;
-    if (gui) {
-      canvas =
-          new Canvas.Builder()
-              .rows(scenario.getRows())
-              .columns(scenario.getColumns())
-              .pixelsPerCell(10)
-              .paint(CellularAutomaton.this::paint)
-              .build();
-
-      var frame = new Frame(canvas);
-    }
-    var thread = new RunThread(canvas);
+  private RunThread run(Canvas canvas, FrameExporter frameExporter) {
+    var thread = new RunThread(canvas, frameExporter);
     thread.start();
     try {
       thread.join(); // wait for thread to complete
     } catch (InterruptedException e) {
       System.out.println("Interrupted!");
     }
+    if (thread.failure != null) {
+      throw new IllegalStateException("run: simulation failed: " + thread.failure, thread.failure);
+    }
+    return thread;
   }
 
   /**
    * Runs this automaton until end conditions are met.
+   *
+   * @throws IllegalStateException if simulation failed. Exception that made it fail is its cause.
    */
   public void run() {
-    run(false);
+    run(null, null);
   }
 
   /**
    * Runs this automaton until end conditions are met and displays simulation in a GUI.
    */
   public void runGUI() {
-    run(true);
+    var canvas = canvas(10);
+    var frame = new Frame(canvas);
+    run(canvas, null);
+  }
+
+  /**
+   * Runs this automaton until end conditions are met and exports frames of simulation without displaying them, so
+   * that no display is required. Frames are exported every {@link FrameExporter#getStride()} discrete time steps,
+   * including initial and final configurations. Exporter is closed when simulation ends.
+   *
+   * @param frameExporter exporter for frames.
+   * @throws IOException if frames could not be exported.
+   */
+  public void runExport(FrameExporter frameExporter) throws IOException {
+    var thread = run(canvas(frameExporter.getPixelsPerCell()), frameExporter);
+    if (thread.exportException != null) {
+      throw thread.exportException;
+    }
   }
 
   /**
@@ -402,25 +1221,21 @@ public class CellularAutomaton {
    * @return statistics collected after running simulation.
    */
   public Statistics computeStatistics() {
-    int numberOfPedestrians = outOfScenarioPedestrians.size();
-    int[] steps = new int[numberOfPedestrians];
-    double[] evacuationTimes = new double[numberOfPedestrians];
-
-    int i = 0;
-    for (var pedestrian : outOfScenarioPedestrians) {
-      steps[i] = pedestrian.getNumberOfSteps();
-      evacuationTimes[i] = pedestrian.getExitTimeSteps() * parameters.secondsPerTimeStep();
-      i += 1;
-    }
-    double meanSteps = mean(steps);
-    double meanEvacuationTime = mean(evacuationTimes);
-    double medianSteps = median(steps);
-    double medianEvacuationTime = median(evacuationTimes);
-    int numberOfEvacuees = outOfScenarioPedestrians.size();
-    int numberOfNonEvacuees = inScenarioPedestrians.size();
-    return new Statistics(meanSteps, meanEvacuationTime
-        , medianSteps, medianEvacuationTime
-        , numberOfEvacuees, numberOfNonEvacuees);
+    return computeEvacuationSummary().statistics();
+  }
+
+  /**
+   * Computes a summary of the execution of the simulation that can be merged with summaries for other replicas.
+   *
+   * @return a new summary of evacuation after running simulation.
+   */
+  public EvacuationSummary computeEvacuationSummary() {
+    var summary = new EvacuationSummary(evacuationSummary);
+    summary.addNonEvacuees(inScenarioPedestrians.size());
+    if (terminationReason != null) {
+      summary.addTermination(terminationReason);
+    }
+    return summary;
   }
 
   private static final Color
@@ -428,18 +1243,26 @@ public class CellularAutomaton {
       lightBlue = new Color(0, 120, 227);
 
   /**
-   * Paints this automaton in GUI representing the simulation.
+   * Paints pedestrians in this automaton in GUI representing the simulation, using latest positions published by
+   * simulation. Scenario is painted only once in static layer of canvas.
    *
-   * @param canvas Graphical canvas where pedestrian should be drawn.
+   * @param canvas Graphical layered canvas where pedestrians should be drawn.
    */
   void paint(Canvas canvas) {
-    scenario.paint(canvas);
-    synchronized (inScenarioPedestrians) {
-      for (var pedestrian : inScenarioPedestrians) {
-        pedestrian.paint(canvas, lightBlue, darkBlue);
-      }
+    var positions = latestPositions();
+    for (int i = 0; i < positions.size(); i++) {
+      canvas.drawCell(positions.getRow(i), positions.getColumn(i));
     }
   }
+
+  /**
+   * Paints sprite used for drawing pedestrians on a layered canvas.
+   *
+   * @param canvas Graphical canvas where sprite should be drawn.
+   */
+  public static void paintPedestrianSprite(Canvas canvas) {
+    Pedestrian.paint(canvas, 0, 0, lightBlue, darkBlue);
+  }
 }
 
 
@@ -1,5 +1,6 @@
 package automata;
 
+import automata.grid.GridStorage;
 import automata.neighbourhood.Neighbourhood;
 import automata.neighbourhood.VonNeumannNeighbourhood;
 import automata.scenario.Scenario;
@@ -9,11 +10,14 @@ import java.util.function.Function;
 /**
  * Class representing parameters for a cellular automaton.
  *
- * @param scenario           Static scenario where simulation takes place.
- * @param neighbourhood      Neighbourhood relationship used by automaton.
- * @param secondsTimeLimit   Time limit of simulation.
- * @param secondsPerTimeStep Seconds of time elapsed for each tick of simulation.
- * @param GUITimeFactor      Acceleration for rendering animation wrt real time.
+ * @param scenario            Static scenario where simulation takes place.
+ * @param neighbourhood       Neighbourhood relationship used by automaton.
+ * @param secondsTimeLimit    Time limit of simulation.
+ * @param secondsPerTimeStep  Seconds of time elapsed for each tick of simulation.
+ * @param GUITimeFactor       Acceleration for rendering animation wrt real time. If not positive, simulation runs as
+ *                            fast as possible while GUI shows latest state.
+ * @param terminationCriteria Criteria for terminating simulation before its time limit.
+ * @param gridStorage         Where grids of automaton are stored.
  * @author Pepe Gallardo
  */
 public record CellularAutomatonParameters(
@@ -22,6 +26,8 @@ public record CellularAutomatonParameters(
     , double secondsTimeLimit
     , double secondsPerTimeStep
     , int GUITimeFactor
+    , TerminationCriteria terminationCriteria
+    , GridStorage gridStorage
 ) {
 
   /**
@@ -54,12 +60,16 @@ public record CellularAutomatonParameters(
     private Neighbourhood neighbourhood;
     private double secondsPerTick;
     private int GUITimeFactor;
+    private TerminationCriteria terminationCriteria;
+    private GridStorage gridStorage;
 
     private BuilderWithScenarioWithTimeLimit(BuilderWithScenario builder) {
       this.scenario = builder.scenario;
       this.neighbourhood = VonNeumannNeighbourhood.of(scenario); // default neighbourhood
       this.secondsPerTick = 0.4; // default is 0.4 secs per tick
       this.GUITimeFactor = 20; // default GUI time is x20 faster
+      this.terminationCriteria = TerminationCriteria.DEFAULT;
+      this.gridStorage = GridStorage.HEAP;
     }
 
     public BuilderWithScenarioWithTimeLimit neighbourhood(Function<Scenario, Neighbourhood> buildNeighbourhood) {
@@ -82,8 +92,19 @@ public record CellularAutomatonParameters(
       return this;
     }
 
+    public BuilderWithScenarioWithTimeLimit terminationCriteria(TerminationCriteria terminationCriteria) {
+      this.terminationCriteria = terminationCriteria;
+      return this;
+    }
+
+    public BuilderWithScenarioWithTimeLimit gridStorage(GridStorage gridStorage) {
+      this.gridStorage = gridStorage;
+      return this;
+    }
+
     public CellularAutomatonParameters build() {
-      return new CellularAutomatonParameters(scenario, neighbourhood, secondsTimeLimit, secondsPerTick, GUITimeFactor);
+      return new CellularAutomatonParameters(scenario, neighbourhood, secondsTimeLimit, secondsPerTick, GUITimeFactor,
+          terminationCriteria, gridStorage);
     }
   }
 }
@@ -0,0 +1,373 @@
+package automata;
+
+import automata.floorField.StaticFloorField;
+import automata.grid.BooleanGrid;
+import automata.grid.HeapDoubleGrid;
+import automata.pedestrian.Pedestrian;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.Scenario;
+import geometry._2d.Rectangle;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import static statistics.Random.random;
+
+/**
+ * A snapshot of the full state of a cellular automaton (occupancy, pedestrians, inflow sources, elapsed time steps,
+ * progress counted for early termination and state of random generator). Restoring a checkpoint produces an automaton
+ * that continues the simulation exactly as the original one would have. The same checkpoint can be restored many
+ * times in order to fork different what-if variants from a common state.
+ * <p>
+ * Binary format:
+ * <pre>
+ *   int     magic number
+ *   int     version
+ *   int     rows
+ *   int     columns
+ *   long    fingerprint of scenario geometry
+ *   int     elapsed time steps
+ *   int     time steps without movement and time steps without exits, counted for early termination
+ *   long[4] state of random generator
+ *   int     next pedestrian identifier
+ *   int     number of distinct pedestrian parameters, followed by field attraction bias and crowd repulsion of each
+ *   int     number of pedestrians in scenario, followed by identifier, row, column, steps and parameters index of each
+ *   int     number of evacuated pedestrians, followed by identifier, row, column, steps and exit time step of each
+ *   int     number of inflow sources, followed by region, pedestrian parameters, schedule, pending pedestrians and
+ *           injected pedestrians of each
+ *   long[]  occupancy bitmap in row major order
+ *   byte    0 if floor field is recomputed on restore or 1 if it is stored inline, followed by its fields
+ *   int     CRC32 of all previous bytes
+ * </pre>
+ *
+ * @author Pepe Gallardo
+ */
+public final class Checkpoint {
+  private static final int MAGIC = 0x4341434B; // "CACK"
+  private static final int VERSION = 4;
+
+  private final byte[] bytes;
+  private final int timeSteps;
+
+  private Checkpoint(byte[] bytes, int timeSteps) {
+    this.bytes = bytes;
+    this.timeSteps = timeSteps;
+  }
+
+  /**
+   * Number of discrete time steps elapsed in automaton when this checkpoint was taken.
+   *
+   * @return number of discrete time steps elapsed in automaton when this checkpoint was taken.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Takes a checkpoint of current state of an automaton.
+   *
+   * @param automaton         automaton whose state is saved.
+   * @param includeFloorField {@code true} if static floor field should be stored inline in checkpoint. Otherwise,
+   *                          it is recomputed when checkpoint is restored.
+   * @return a checkpoint of current state of automaton.
+   */
+  public static Checkpoint of(CellularAutomaton automaton, boolean includeFloorField) {
+    var scenario = automaton.scenario;
+    var byteArrayOutputStream = new ByteArrayOutputStream(
+        1024 + 24 * (automaton.inScenarioPedestrians.size() + automaton.exitRecords.size()));
+    try (var output = new DataOutputStream(byteArrayOutputStream)) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(scenario.getRows());
+      output.writeInt(scenario.getColumns());
+      output.writeLong(fingerprint(scenario));
+      output.writeInt(automaton.timeSteps);
+      output.writeInt(automaton.stepsWithoutMovement);
+      output.writeInt(automaton.stepsWithoutExit);
+      for (var word : random.getState()) {
+        output.writeLong(word);
+      }
+      output.writeInt(Pedestrian.getNextIdentifier());
+
+      var parametersIndexes = new HashMap<PedestrianParameters, Integer>();
+      for (var pedestrian : automaton.inScenarioPedestrians) {
+        parametersIndexes.putIfAbsent(pedestrian.getParameters(), parametersIndexes.size());
+      }
+      var parameters = new PedestrianParameters[parametersIndexes.size()];
+      parametersIndexes.forEach((pedestrianParameters, index) -> parameters[index] = pedestrianParameters);
+      output.writeInt(parameters.length);
+      for (var pedestrianParameters : parameters) {
+        output.writeDouble(pedestrianParameters.fieldAttractionBias());
+        output.writeDouble(pedestrianParameters.crowdRepulsion());
+      }
+
+      output.writeInt(automaton.inScenarioPedestrians.size());
+      for (var pedestrian : automaton.inScenarioPedestrians) {
+        writePedestrian(output, pedestrian);
+        output.writeInt(parametersIndexes.get(pedestrian.getParameters()));
+      }
+      var exitRecords = automaton.exitRecords;
+      output.writeInt(exitRecords.size());
+      for (int i = 0; i < exitRecords.size(); i++) {
+        output.writeInt(exitRecords.getIdentifier(i));
+        output.writeInt(exitRecords.getRow(i));
+        output.writeInt(exitRecords.getColumn(i));
+        output.writeInt(exitRecords.getNumberOfSteps(i));
+        output.writeInt(exitRecords.getExitTimeSteps(i));
+      }
+      output.writeInt(automaton.inflows.size());
+      for (var inflow : automaton.inflows) {
+        inflow.source.write(output);
+        output.writeDouble(inflow.pending);
+        output.writeLong(inflow.injected);
+      }
+
+      writeBits(output, automaton.occupied);
+
+      var floorField = scenario.getStaticFloorField();
+      if (includeFloorField && floorField.isInitialized()) {
+        output.writeByte(1);
+        for (int i = 0; i < floorField.getRows(); i++) {
+          for (int j = 0; j < floorField.getColumns(); j++) {
+            output.writeDouble(floorField.getField(i, j));
+          }
+        }
+      } else {
+        output.writeByte(0);
+      }
+
+      var crc = new CRC32();
+      crc.update(byteArrayOutputStream.toByteArray());
+      output.writeInt((int) crc.getValue());
+    } catch (IOException e) {
+      // not thrown by a ByteArrayOutputStream
+      throw new UncheckedIOException(e);
+    }
+    return new Checkpoint(byteArrayOutputStream.toByteArray(), automaton.timeSteps);
+  }
+
+  private static void writePedestrian(DataOutputStream output, Pedestrian pedestrian) throws IOException {
+    output.writeInt(pedestrian.getIdentifier());
+    output.writeInt(pedestrian.getRow());
+    output.writeInt(pedestrian.getColumn());
+    output.writeInt(pedestrian.getNumberOfSteps());
+  }
+
+  private static void writeBits(DataOutputStream output, BooleanGrid cells) throws IOException {
+    long word = 0;
+    int bit = 0;
+    for (int i = 0; i < cells.getRows(); i++) {
+      for (int j = 0; j < cells.getColumns(); j++) {
+        if (cells.get(i, j)) {
+          word |= 1L << bit;
+        }
+        if (++bit == Long.SIZE) {
+          output.writeLong(word);
+          word = 0;
+          bit = 0;
+        }
+      }
+    }
+    if (bit > 0) {
+      output.writeLong(word);
+    }
+  }
+
+  private static void readBits(DataInputStream input, BooleanGrid cells) throws IOException {
+    long word = 0;
+    int bit = Long.SIZE;
+    for (int i = 0; i < cells.getRows(); i++) {
+      for (int j = 0; j < cells.getColumns(); j++) {
+        if (bit == Long.SIZE) {
+          word = input.readLong();
+          bit = 0;
+        }
+        cells.set(i, j, (word & (1L << bit)) != 0);
+        bit++;
+      }
+    }
+  }
+
+  /**
+   * A fingerprint of geometry of a scenario, used to check that a checkpoint is restored on the same scenario.
+   */
+  private static long fingerprint(Scenario scenario) {
+    long fingerprint = scenario.getRows() * 31L + scenario.getColumns();
+    fingerprint = fingerprint * 31 + Double.hashCode(scenario.getCellDimension());
+    // order of rectangles in scenario is not relevant
+    for (var exit : scenario.exits()) {
+      fingerprint += fingerprint(exit);
+    }
+    for (var block : scenario.blocks()) {
+      fingerprint += 7 * fingerprint(block);
+    }
+    return fingerprint;
+  }
+
+  private static long fingerprint(Rectangle rectangle) {
+    long z = ((long) rectangle.bottom() << 48) ^ ((long) rectangle.left() << 32)
+        ^ ((long) rectangle.height() << 16) ^ rectangle.width();
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Creates a new automaton with the state saved in this checkpoint. State of global random generator is also
+   * restored, so that running the new automaton continues the original simulation exactly. In order to explore a
+   * different variant, random generator can be reseeded after restoring.
+   * <p>
+   * Inflow sources of saved automaton are added to new one, along with pedestrians waiting to enter through them, so
+   * they should not be added again. They can be obtained with {@link CellularAutomaton#getInflowSources}.
+   * <p>
+   * A floor field stored in checkpoint is only used if static floor field of scenario has not been initialized yet.
+   * It is then adopted in a new grid, so an initialized floor field, which may be mapped read-only or shared with
+   * other automata, is never written.
+   *
+   * @param parameters parameters for new automaton. Its scenario must have the same geometry as the one used by
+   *                   automaton that was saved.
+   * @return a new automaton with the state saved in this checkpoint.
+   */
+  public CellularAutomaton restore(CellularAutomatonParameters parameters) {
+    var automaton = new CellularAutomaton(parameters);
+    var scenario = automaton.scenario;
+    try (var input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      input.readInt(); // magic and version were checked when checkpoint was read
+      input.readInt();
+      if (input.readInt() != scenario.getRows() || input.readInt() != scenario.getColumns()
+          || input.readLong() != fingerprint(scenario)) {
+        throw new IllegalArgumentException("restore: checkpoint was taken on a different scenario");
+      }
+      automaton.timeSteps = input.readInt();
+      automaton.stepsWithoutMovement = input.readInt();
+      automaton.stepsWithoutExit = input.readInt();
+      var state = new long[4];
+      for (int i = 0; i < state.length; i++) {
+        state[i] = input.readLong();
+      }
+      random.setState(state);
+      Pedestrian.ensureNextIdentifier(input.readInt());
+
+      var savedParameters = new PedestrianParameters[input.readInt()];
+      for (int i = 0; i < savedParameters.length; i++) {
+        savedParameters[i] = new PedestrianParameters(input.readDouble(), input.readDouble());
+      }
+
+      var factory = automaton.pedestrianFactory;
+      var inScenario = input.readInt();
+      for (int i = 0; i < inScenario; i++) {
+        var identifier = input.readInt();
+        var row = input.readInt();
+        var column = input.readInt();
+        var numberOfSteps = input.readInt();
+        automaton.inScenarioPedestrians.add(
+            factory.getInstance(identifier, row, column, numberOfSteps, savedParameters[input.readInt()]));
+      }
+      var outOfScenario = input.readInt();
+      for (int i = 0; i < outOfScenario; i++) {
+        var identifier = input.readInt();
+        var row = input.readInt();
+        var column = input.readInt();
+        var numberOfSteps = input.readInt();
+        var exitTimeSteps = input.readInt();
+        automaton.exitRecords.add(identifier, row, column, scenario.getExitIndex(row, column), numberOfSteps,
+            exitTimeSteps);
+        // evacuees are summarized in same order as they exited, so summary is the same as original one
+        automaton.evacuationSummary.addEvacuee(numberOfSteps, exitTimeSteps * parameters.secondsPerTimeStep());
+      }
+      var numberOfInflows = input.readInt();
+      for (int i = 0; i < numberOfInflows; i++) {
+        var inflow = new CellularAutomaton.Inflow(InflowSource.read(input));
+        inflow.pending = input.readDouble();
+        inflow.injected = input.readLong();
+        automaton.inflows.add(inflow);
+      }
+
+      readBits(input, automaton.occupied);
+
+      if (input.readByte() == 1) {
+        var floorField = scenario.getStaticFloorField();
+        if (floorField.isInitialized() || !(floorField instanceof StaticFloorField staticFloorField)) {
+          // an initialized floor field may be mapped read-only or shared with other automata, so it is kept as is
+          input.skipBytes(Double.BYTES * scenario.getRows() * scenario.getColumns());
+        } else {
+          var fields = new HeapDoubleGrid(scenario.getRows(), scenario.getColumns());
+          for (int i = 0; i < fields.getRows(); i++) {
+            for (int j = 0; j < fields.getColumns(); j++) {
+              fields.set(i, j, input.readDouble());
+            }
+          }
+          staticFloorField.initialize(fields);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return automaton;
+  }
+
+  /**
+   * Writes this checkpoint to a file. File is first written with a temporary name and then renamed, so that an
+   * existing checkpoint is never left half written.
+   *
+   * @param path path of file.
+   * @throws IOException if file cannot be written.
+   */
+  public void write(Path path) throws IOException {
+    var temporary = path.resolveSibling(path.getFileName() + ".tmp");
+    Files.write(temporary, bytes);
+    Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Reads a checkpoint from a file.
+   *
+   * @param path path of file.
+   * @return checkpoint read.
+   * @throws IOException if file cannot be read or is not a valid checkpoint.
+   */
+  public static Checkpoint read(Path path) throws IOException {
+    var bytes = Files.readAllBytes(path);
+    if (bytes.length < 4 * 4) {
+      throw new IOException("read: " + path + " is not a checkpoint");
+    }
+    try (var input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (input.readInt() != MAGIC) {
+        throw new IOException("read: " + path + " is not a checkpoint");
+      }
+      var version = input.readInt();
+      if (version != VERSION) {
+        throw new IOException("read: unsupported checkpoint version " + version);
+      }
+      input.readInt();
+      input.readInt();
+      input.readLong();
+      var timeSteps = input.readInt();
+
+      var crc = new CRC32();
+      crc.update(bytes, 0, bytes.length - 4);
+      var expectedCrc = ((bytes[bytes.length - 4] & 0xFF) << 24) | ((bytes[bytes.length - 3] & 0xFF) << 16)
+          | ((bytes[bytes.length - 2] & 0xFF) << 8) | (bytes[bytes.length - 1] & 0xFF);
+      if ((int) crc.getValue() != expectedCrc) {
+        throw new IOException("read: checkpoint " + path + " is corrupted");
+      }
+      return new Checkpoint(bytes, timeSteps);
+    }
+  }
+
+  /**
+   * Restores an automaton from a checkpoint file.
+   *
+   * @param path       path of checkpoint file.
+   * @param parameters parameters for new automaton.
+   * @return a new automaton with the state saved in checkpoint file.
+   * @throws IOException if file cannot be read or is not a valid checkpoint.
+   */
+  public static CellularAutomaton restore(Path path, CellularAutomatonParameters parameters) throws IOException {
+    return read(path).restore(parameters);
+  }
+}
@@ -0,0 +1,291 @@
+package automata;
+
+import automata.pedestrian.Pedestrian;
+import automata.scenario.Scenario;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Accumulates how often each cell in scenario is occupied by a pedestrian along a simulation. Mean occupancy of a
+ * cell is the fraction of time steps it was occupied, and density is mean number of pedestrians per square meter.
+ * <p>
+ * Optionally, time is split into consecutive windows of a fixed number of time steps and mean occupancy for most
+ * recently completed windows is also kept. Only a bounded number of windows is kept, in a ring whose arrays are
+ * reused, so that memory used does not grow with length of simulation.
+ *
+ * @author Pepe Gallardo
+ */
+public class DensityHeatmap {
+  /**
+   * Identifies files written by {@link #write}.
+   */
+  public static final int MAGIC = 0x4341484D; // "CAHM"
+  public static final int VERSION = 2;
+  /**
+   * Number of completed windows kept by default.
+   */
+  public static final int DEFAULT_MAX_WINDOWS = 64;
+
+  private final Scenario scenario;
+  private final int rows, columns;
+  private final int windowLength;
+  // counters are stored in row-major order
+  private final int[] counts, windowCounts;
+  // ring with most recently completed windows. Window number i is stored at index i % windows.length
+  private final float[][] windows;
+  private int numberOfWindows;
+  private int timeSteps, windowTimeSteps;
+
+  /**
+   * Creates a heatmap for a scenario.
+   *
+   * @param scenario     scenario where simulation takes place.
+   * @param windowLength number of time steps in each time window or 0 if no time windows are kept.
+   * @param maxWindows   maximum number of completed windows kept. When exceeded, oldest window is discarded.
+   */
+  public DensityHeatmap(Scenario scenario, int windowLength, int maxWindows) {
+    if (windowLength < 0) {
+      throw new IllegalArgumentException("DensityHeatmap: window length cannot be negative");
+    }
+    if (maxWindows <= 0) {
+      throw new IllegalArgumentException("DensityHeatmap: maximum number of windows must be larger than 0");
+    }
+    this.scenario = scenario;
+    this.rows = scenario.getRows();
+    this.columns = scenario.getColumns();
+    this.windowLength = windowLength;
+    this.counts = new int[rows * columns];
+    this.windowCounts = windowLength > 0 ? new int[rows * columns] : null;
+    this.windows = new float[windowLength > 0 ? maxWindows : 0][];
+    this.numberOfWindows = 0;
+    this.timeSteps = 0;
+    this.windowTimeSteps = 0;
+  }
+
+  /**
+   * Creates a heatmap for a scenario keeping at most {@link #DEFAULT_MAX_WINDOWS} completed windows.
+   *
+   * @param scenario     scenario where simulation takes place.
+   * @param windowLength number of time steps in each time window or 0 if no time windows are kept.
+   */
+  public DensityHeatmap(Scenario scenario, int windowLength) {
+    this(scenario, windowLength, DEFAULT_MAX_WINDOWS);
+  }
+
+  /**
+   * Creates a heatmap for a scenario with no time windows.
+   *
+   * @param scenario scenario where simulation takes place.
+   */
+  public DensityHeatmap(Scenario scenario) {
+    this(scenario, 0);
+  }
+
+  /**
+   * Accumulates occupancy for one time step. Only cells where pedestrians are located are visited, so cost is
+   * proportional to number of pedestrians rather than to size of scenario.
+   *
+   * @param pedestrians pedestrians in scenario.
+   */
+  public void accumulate(List<Pedestrian> pedestrians) {
+    if (windowCounts == null) {
+      for (var pedestrian : pedestrians) {
+        counts[pedestrian.getRow() * columns + pedestrian.getColumn()]++;
+      }
+    } else {
+      for (var pedestrian : pedestrians) {
+        var cell = pedestrian.getRow() * columns + pedestrian.getColumn();
+        counts[cell]++;
+        windowCounts[cell]++;
+      }
+      if (++windowTimeSteps == windowLength) {
+        // array of oldest window is reused once ring is full
+        var slot = numberOfWindows % windows.length;
+        var window = windows[slot];
+        if (window == null) {
+          window = windows[slot] = new float[counts.length];
+        }
+        for (int i = 0; i < window.length; i++) {
+          window[i] = (float) windowCounts[i] / windowLength;
+        }
+        numberOfWindows++;
+        Arrays.fill(windowCounts, 0);
+        windowTimeSteps = 0;
+      }
+    }
+    timeSteps++;
+  }
+
+  /**
+   * Number of time steps accumulated.
+   *
+   * @return number of time steps accumulated.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Number of time steps a cell has been occupied.
+   *
+   * @param row    row of cell.
+   * @param column column of cell.
+   * @return number of time steps cell has been occupied.
+   */
+  public int getCount(int row, int column) {
+    assert row >= 0 && row < rows : "getCount: invalid row";
+    assert column >= 0 && column < columns : "getCount: invalid column";
+    return counts[row * columns + column];
+  }
+
+  /**
+   * Fraction of accumulated time steps a cell has been occupied.
+   *
+   * @param row    row of cell.
+   * @param column column of cell.
+   * @return fraction of accumulated time steps cell has been occupied.
+   */
+  public double getMeanOccupancy(int row, int column) {
+    return timeSteps == 0 ? 0 : (double) getCount(row, column) / timeSteps;
+  }
+
+  /**
+   * Mean number of pedestrians per square meter in a cell.
+   *
+   * @param row    row of cell.
+   * @param column column of cell.
+   * @return mean number of pedestrians per square meter in cell.
+   */
+  public double getDensity(int row, int column) {
+    var cellDimension = scenario.getCellDimension();
+    return getMeanOccupancy(row, column) / (cellDimension * cellDimension);
+  }
+
+  /**
+   * Number of completed time windows, including those no longer kept.
+   *
+   * @return number of completed time windows.
+   */
+  public int getNumberOfWindows() {
+    return numberOfWindows;
+  }
+
+  /**
+   * Index of oldest completed time window still kept. Windows from this index up to
+   * {@link #getNumberOfWindows()} (excluded) are kept.
+   *
+   * @return index of oldest completed time window still kept.
+   */
+  public int getFirstKeptWindow() {
+    return Math.max(0, numberOfWindows - windows.length);
+  }
+
+  /**
+   * Fraction of time steps in a completed time window a cell has been occupied.
+   *
+   * @param window index of time window. Must be a window still kept.
+   * @param row    row of cell.
+   * @param column column of cell.
+   * @return fraction of time steps in time window cell has been occupied.
+   */
+  public double getWindowMeanOccupancy(int window, int row, int column) {
+    assert row >= 0 && row < rows : "getWindowMeanOccupancy: invalid row";
+    assert column >= 0 && column < columns : "getWindowMeanOccupancy: invalid column";
+    if (window < getFirstKeptWindow() || window >= numberOfWindows) {
+      throw new IllegalArgumentException("getWindowMeanOccupancy: window " + window + " is not kept");
+    }
+    return windows[window % windows.length][row * columns + column];
+  }
+
+  /**
+   * Writes heatmap to a binary file. After a header with magic number, version, number of rows, number of columns,
+   * cell dimension, accumulated time steps, window length, index of first kept window and number of kept windows,
+   * mean occupancies for whole simulation and then for each kept window, from oldest to newest, are written as
+   * row-major matrices of floats. All values are big endian.
+   *
+   * @param path file where heatmap is written.
+   * @throws IOException if file cannot be written.
+   */
+  public void write(Path path) throws IOException {
+    try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeInt(rows);
+      output.writeInt(columns);
+      output.writeDouble(scenario.getCellDimension());
+      output.writeInt(timeSteps);
+      output.writeInt(windowLength);
+      var firstKeptWindow = getFirstKeptWindow();
+      output.writeInt(firstKeptWindow);
+      output.writeInt(numberOfWindows - firstKeptWindow);
+      for (var count : counts) {
+        output.writeFloat(timeSteps == 0 ? 0 : (float) count / timeSteps);
+      }
+      for (int window = firstKeptWindow; window < numberOfWindows; window++) {
+        for (var occupancy : windows[window % windows.length]) {
+          output.writeFloat(occupancy);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes mean occupancy for whole simulation as a PNG image. Colors are scaled so that most occupied cell is
+   * drawn darkest. Blocked cells are drawn in gray.
+   *
+   * @param path          file where image is written.
+   * @param pixelsPerCell size in pixels of side of each cell.
+   * @throws IOException if file cannot be written.
+   */
+  public void writeImage(Path path, int pixelsPerCell) throws IOException {
+    var maximum = 0;
+    for (var count : counts) {
+      maximum = Math.max(maximum, count);
+    }
+    var image = new BufferedImage(columns * pixelsPerCell, rows * pixelsPerCell, BufferedImage.TYPE_INT_RGB);
+    var graphics = image.createGraphics();
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        Color color;
+        if (scenario.isBlocked(row, column)) {
+          color = Color.gray;
+        } else {
+          color = heat(maximum == 0 ? 0 : (double) counts[row * columns + column] / maximum);
+        }
+        graphics.setColor(color);
+        // Y axis is flipped as in GUI
+        graphics.fillRect(column * pixelsPerCell, (rows - 1 - row) * pixelsPerCell, pixelsPerCell, pixelsPerCell);
+      }
+    }
+    graphics.dispose();
+    ImageIO.write(image, "png", path.toFile());
+  }
+
+  private static final Color[] HEAT_COLORS = {
+      Color.white, new Color(255, 237, 160), new Color(254, 178, 76), new Color(240, 59, 32), new Color(128, 0, 38)
+  };
+
+  /**
+   * Color for a value in [0, 1], interpolated between consecutive heat colors.
+   */
+  private static Color heat(double value) {
+    var position = value * (HEAT_COLORS.length - 1);
+    var index = Math.min((int) position, HEAT_COLORS.length - 2);
+    var fraction = position - index;
+    var from = HEAT_COLORS[index];
+    var to = HEAT_COLORS[index + 1];
+    return new Color(
+        (int) Math.round(from.getRed() + fraction * (to.getRed() - from.getRed())),
+        (int) Math.round(from.getGreen() + fraction * (to.getGreen() - from.getGreen())),
+        (int) Math.round(from.getBlue() + fraction * (to.getBlue() - from.getBlue())));
+  }
+}
@@ -0,0 +1,173 @@
+package automata;
+
+import statistics.RunningStatistics;
+import statistics.TDigest;
+
+/**
+ * Streaming summary of evacuation of pedestrians. Evacuees are summarized as they exit scenario, in constant memory,
+ * so that summaries for many replicas of a simulation can be merged.
+ *
+ * @author Pepe Gallardo
+ */
+public class EvacuationSummary {
+  private final RunningStatistics steps, evacuationTimes;
+  private final TDigest stepsDigest, evacuationTimesDigest;
+  private long numberOfNonEvacuees;
+  private int numberOfReplicas;
+  // number of replicas that terminated for each reason
+  private final int[] terminations;
+
+  /**
+   * Creates an empty summary for one replica.
+   */
+  public EvacuationSummary() {
+    this.steps = new RunningStatistics();
+    this.evacuationTimes = new RunningStatistics();
+    this.stepsDigest = new TDigest();
+    this.evacuationTimesDigest = new TDigest();
+    this.numberOfNonEvacuees = 0;
+    this.numberOfReplicas = 1;
+    this.terminations = new int[TerminationReason.values().length];
+  }
+
+  /**
+   * Creates a copy of a summary.
+   *
+   * @param that summary to copy.
+   */
+  public EvacuationSummary(EvacuationSummary that) {
+    this.steps = new RunningStatistics(that.steps);
+    this.evacuationTimes = new RunningStatistics(that.evacuationTimes);
+    this.stepsDigest = new TDigest(that.stepsDigest);
+    this.evacuationTimesDigest = new TDigest(that.evacuationTimesDigest);
+    this.numberOfNonEvacuees = that.numberOfNonEvacuees;
+    this.numberOfReplicas = that.numberOfReplicas;
+    this.terminations = that.terminations.clone();
+  }
+
+  /**
+   * Records a pedestrian that evacuated scenario.
+   *
+   * @param numberOfSteps  number of steps taken by pedestrian.
+   * @param evacuationTime time in seconds pedestrian took to evacuate.
+   */
+  public void addEvacuee(int numberOfSteps, double evacuationTime) {
+    steps.add(numberOfSteps);
+    evacuationTimes.add(evacuationTime);
+    stepsDigest.add(numberOfSteps);
+    evacuationTimesDigest.add(evacuationTime);
+  }
+
+  /**
+   * Records pedestrians that could not evacuate scenario.
+   *
+   * @param numberOfNonEvacuees number of pedestrians that could not evacuate scenario.
+   */
+  public void addNonEvacuees(long numberOfNonEvacuees) {
+    this.numberOfNonEvacuees += numberOfNonEvacuees;
+  }
+
+  /**
+   * Records why replica terminated.
+   *
+   * @param terminationReason reason why replica terminated.
+   */
+  public void addTermination(TerminationReason terminationReason) {
+    terminations[terminationReason.ordinal()]++;
+  }
+
+  /**
+   * Merges summary for another replica into this one.
+   *
+   * @param that summary to merge.
+   */
+  public void merge(EvacuationSummary that) {
+    steps.merge(that.steps);
+    evacuationTimes.merge(that.evacuationTimes);
+    stepsDigest.merge(that.stepsDigest);
+    evacuationTimesDigest.merge(that.evacuationTimesDigest);
+    numberOfNonEvacuees += that.numberOfNonEvacuees;
+    numberOfReplicas += that.numberOfReplicas;
+    for (int i = 0; i < terminations.length; i++) {
+      terminations[i] += that.terminations[i];
+    }
+  }
+
+  public RunningStatistics getSteps() {
+    return steps;
+  }
+
+  public RunningStatistics getEvacuationTimes() {
+    return evacuationTimes;
+  }
+
+  public TDigest getStepsDigest() {
+    return stepsDigest;
+  }
+
+  public TDigest getEvacuationTimesDigest() {
+    return evacuationTimesDigest;
+  }
+
+  public long getNumberOfEvacuees() {
+    return steps.getCount();
+  }
+
+  public long getNumberOfNonEvacuees() {
+    return numberOfNonEvacuees;
+  }
+
+  /**
+   * Number of replicas merged into this summary.
+   *
+   * @return number of replicas merged into this summary.
+   */
+  public int getNumberOfReplicas() {
+    return numberOfReplicas;
+  }
+
+  /**
+   * Number of replicas merged into this summary that terminated for a given reason.
+   *
+   * @param terminationReason a reason for terminating.
+   * @return number of replicas that terminated for {@code terminationReason}.
+   */
+  public int getNumberOfTerminations(TerminationReason terminationReason) {
+    return terminations[terminationReason.ordinal()];
+  }
+
+  /**
+   * Reason why all replicas merged into this summary terminated.
+   *
+   * @return reason why all replicas terminated or {@code null} if some did not terminate or they terminated for
+   * different reasons.
+   */
+  public TerminationReason getTerminationReason() {
+    for (var terminationReason : TerminationReason.values()) {
+      if (terminations[terminationReason.ordinal()] == numberOfReplicas) {
+        return terminationReason;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Statistics described by this summary. Means are exact whereas percentiles are estimated.
+   *
+   * @return statistics described by this summary.
+   */
+  public Statistics statistics() {
+    var evacuated = getNumberOfEvacuees() > 0;
+    return new Statistics(
+        evacuated ? steps.getMean() : Double.NaN
+        , evacuated ? evacuationTimes.getMean() : Double.NaN
+        , evacuated ? stepsDigest.median() : Double.NaN
+        , evacuated ? evacuationTimesDigest.median() : Double.NaN
+        , evacuated ? evacuationTimesDigest.percentile(90) : Double.NaN
+        , evacuated ? evacuationTimesDigest.percentile(95) : Double.NaN
+        , evacuated ? evacuationTimesDigest.percentile(99) : Double.NaN
+        , (int) getNumberOfEvacuees()
+        , (int) numberOfNonEvacuees
+        , getTerminationReason());
+  }
+}
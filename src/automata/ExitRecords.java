@@ -0,0 +1,226 @@
+package automata;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append-only records of pedestrians that exited scenario, stored as primitive columns so that exited pedestrians
+ * are not kept alive and take a few bytes each.
+ * <p>
+ * Records are kept on heap until {@link #spill} is called. From then on they are stored in a memory-mapped file, in
+ * fixed size chunks, so that very long runs do not use heap for them at all.
+ *
+ * @author Pepe Gallardo
+ */
+public class ExitRecords implements AutoCloseable {
+  private static final int IDENTIFIER = 0, ROW = 1, COLUMN = 2, EXIT = 3, STEPS = 4, EXIT_TIME_STEPS = 5;
+  private static final int NUMBER_OF_COLUMNS = 6;
+
+  // number of records in each chunk of spill file is a power of two
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  private static final long CHUNK_BYTES = (long) NUMBER_OF_COLUMNS * CHUNK_SIZE * Integer.BYTES;
+
+  // columns on heap, or null if records have been spilled
+  private int[][] columns;
+  private int size;
+
+  // spill file and its mapped chunks. Within a chunk, records are also stored by columns
+  private FileChannel channel;
+  private final List<IntBuffer> chunks;
+
+  /**
+   * Creates empty records.
+   */
+  public ExitRecords() {
+    this.columns = new int[NUMBER_OF_COLUMNS][64];
+    this.size = 0;
+    this.channel = null;
+    this.chunks = new ArrayList<>();
+  }
+
+  /**
+   * Records a pedestrian that exited scenario.
+   *
+   * @param identifier    identifier of pedestrian.
+   * @param row           row of exit cell.
+   * @param column        column of exit cell.
+   * @param exit          index of exit used by pedestrian, as returned by {@link automata.scenario.Scenario#getExitIndex}.
+   * @param numberOfSteps number of steps taken by pedestrian.
+   * @param exitTimeSteps number of discrete time steps elapsed when pedestrian exited.
+   */
+  public void add(int identifier, int row, int column, int exit, int numberOfSteps, int exitTimeSteps) {
+    if (channel == null) {
+      if (size == columns[0].length) {
+        for (int i = 0; i < NUMBER_OF_COLUMNS; i++) {
+          columns[i] = Arrays.copyOf(columns[i], 2 * size);
+        }
+      }
+      columns[IDENTIFIER][size] = identifier;
+      columns[ROW][size] = row;
+      columns[COLUMN][size] = column;
+      columns[EXIT][size] = exit;
+      columns[STEPS][size] = numberOfSteps;
+      columns[EXIT_TIME_STEPS][size] = exitTimeSteps;
+    } else {
+      if ((size >>> CHUNK_BITS) == chunks.size()) {
+        mapChunk();
+      }
+      var chunk = chunks.get(size >>> CHUNK_BITS);
+      var offset = size & CHUNK_MASK;
+      chunk.put(IDENTIFIER * CHUNK_SIZE + offset, identifier);
+      chunk.put(ROW * CHUNK_SIZE + offset, row);
+      chunk.put(COLUMN * CHUNK_SIZE + offset, column);
+      chunk.put(EXIT * CHUNK_SIZE + offset, exit);
+      chunk.put(STEPS * CHUNK_SIZE + offset, numberOfSteps);
+      chunk.put(EXIT_TIME_STEPS * CHUNK_SIZE + offset, exitTimeSteps);
+    }
+    size++;
+  }
+
+  private void mapChunk() {
+    try {
+      chunks.add(map(channel, chunks.size()));
+    } catch (IOException e) {
+      throw new UncheckedIOException("add: cannot grow spill file", e);
+    }
+  }
+
+  private static IntBuffer map(FileChannel channel, int chunk) throws IOException {
+    var buffer = channel.map(FileChannel.MapMode.READ_WRITE, chunk * CHUNK_BYTES, CHUNK_BYTES);
+    return buffer.order(ByteOrder.nativeOrder()).asIntBuffer();
+  }
+
+  /**
+   * Moves records to a memory-mapped file. Records added afterwards are also stored in that file, which grows as
+   * needed. File is created or truncated and is only used while these records are alive, so a temporary file should
+   * be provided.
+   *
+   * @param path path of file where records are stored.
+   * @throws IOException if file cannot be created or written. Records are then kept on heap as before.
+   */
+  public void spill(Path path) throws IOException {
+    if (channel != null) {
+      throw new IllegalStateException("spill: records have already been spilled");
+    }
+    var spillChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE);
+    // records are written to file before heap columns are dropped, so that they are kept on heap if writing fails
+    var spillChunks = new ArrayList<IntBuffer>();
+    try {
+      for (int i = 0; i < size; i++) {
+        if ((i >>> CHUNK_BITS) == spillChunks.size()) {
+          spillChunks.add(map(spillChannel, spillChunks.size()));
+        }
+        var chunk = spillChunks.get(i >>> CHUNK_BITS);
+        var offset = i & CHUNK_MASK;
+        for (int column = 0; column < NUMBER_OF_COLUMNS; column++) {
+          chunk.put(column * CHUNK_SIZE + offset, columns[column][i]);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      try {
+        spillChannel.close();
+      } catch (IOException closing) {
+        e.addSuppressed(closing);
+      }
+      throw e;
+    }
+    channel = spillChannel;
+    chunks.addAll(spillChunks);
+    columns = null;
+  }
+
+  /**
+   * Checks whether records are stored in a memory-mapped file.
+   *
+   * @return {@code true} if records have been spilled to a file.
+   */
+  public boolean isSpilled() {
+    return channel != null;
+  }
+
+  /**
+   * Closes spill file, if any. Records can still be read afterwards, but no more records can be added.
+   *
+   * @throws IOException if file cannot be closed.
+   */
+  @Override
+  public void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
+  /**
+   * Number of pedestrians that exited scenario, in order of exit.
+   *
+   * @return number of pedestrians that exited scenario.
+   */
+  public int size() {
+    return size;
+  }
+
+  private int get(int column, int i) {
+    if (channel == null) {
+      return columns[column][i];
+    }
+    return chunks.get(i >>> CHUNK_BITS).get(column * CHUNK_SIZE + (i & CHUNK_MASK));
+  }
+
+  public int getIdentifier(int i) {
+    assert i >= 0 && i < size : "getIdentifier: invalid index";
+    return get(IDENTIFIER, i);
+  }
+
+  public int getRow(int i) {
+    assert i >= 0 && i < size : "getRow: invalid index";
+    return get(ROW, i);
+  }
+
+  public int getColumn(int i) {
+    assert i >= 0 && i < size : "getColumn: invalid index";
+    return get(COLUMN, i);
+  }
+
+  public int getExit(int i) {
+    assert i >= 0 && i < size : "getExit: invalid index";
+    return get(EXIT, i);
+  }
+
+  public int getNumberOfSteps(int i) {
+    assert i >= 0 && i < size : "getNumberOfSteps: invalid index";
+    return get(STEPS, i);
+  }
+
+  public int getExitTimeSteps(int i) {
+    assert i >= 0 && i < size : "getExitTimeSteps: invalid index";
+    return get(EXIT_TIME_STEPS, i);
+  }
+
+  /**
+   * Counts pedestrians that left through each exit.
+   *
+   * @param numberOfExits number of exits in scenario.
+   * @return an array whose {@code i}-th element is number of pedestrians that left through exit {@code i}.
+   */
+  public int[] countPerExit(int numberOfExits) {
+    var counts = new int[numberOfExits];
+    for (int i = 0; i < size; i++) {
+      var exit = get(EXIT, i);
+      if (exit >= 0 && exit < numberOfExits) {
+        counts[exit]++;
+      }
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,108 @@
+package automata;
+
+import geometry._2d.Rectangle;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * An index of cells that are neither blocked nor occupied, for sampling them uniformly without replacement. Cells are
+ * kept in a compact array, so that a sampled cell is removed in constant time by swapping it with last one.
+ * <p>
+ * Index is not updated when cells are occupied by other means, so callers should check that sampled cells are still
+ * free.
+ *
+ * @author Pepe Gallardo
+ */
+final class FreeCells {
+  private final int columns;
+  // cells encoded as row * columns + column. First size ones have not been sampled yet
+  private final int[] cells;
+  private int size;
+
+  /**
+   * Creates an index of cells within a region that are currently neither blocked nor occupied in an automaton.
+   *
+   * @param automaton automaton whose cells are indexed.
+   * @param region    region of scenario whose cells are indexed.
+   */
+  FreeCells(CellularAutomaton automaton, Rectangle region) {
+    this.columns = automaton.getColumns();
+    var bottom = Math.max(0, region.bottom());
+    var top = Math.min(automaton.getRows() - 1, region.top());
+    var left = Math.max(0, region.left());
+    var right = Math.min(automaton.getColumns() - 1, region.right());
+
+    var count = 0;
+    for (int row = bottom; row <= top; row++) {
+      for (int column = left; column <= right; column++) {
+        if (automaton.isCellReachable(row, column)) {
+          count++;
+        }
+      }
+    }
+    this.cells = new int[count];
+    for (int row = bottom; row <= top; row++) {
+      for (int column = left; column <= right; column++) {
+        if (automaton.isCellReachable(row, column)) {
+          cells[size++] = row * columns + column;
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates an index of all cells in an automaton that are currently neither blocked nor occupied.
+   *
+   * @param automaton automaton whose cells are indexed.
+   */
+  FreeCells(CellularAutomaton automaton) {
+    this(automaton, new Rectangle(0, 0, automaton.getRows(), automaton.getColumns()));
+  }
+
+  /**
+   * Number of cells that have not been sampled yet.
+   *
+   * @return number of cells that have not been sampled yet.
+   */
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Cell at a given position in index.
+   *
+   * @param i position of cell in index, in [0, size).
+   * @return cell at position {@code i}, encoded as {@code row * columns + column}.
+   */
+  int get(int i) {
+    assert i >= 0 && i < size : "get: invalid position";
+    return cells[i];
+  }
+
+  /**
+   * Samples uniformly a cell that has not been sampled yet and removes it from index.
+   *
+   * @param random random generator used for sampling.
+   * @return sampled cell, encoded as {@code row * columns + column}.
+   */
+  int removeRandom(RandomGenerator random) {
+    assert size > 0 : "removeRandom: no cells left";
+    var i = random.nextInt(size);
+    var cell = cells[i];
+    cells[i] = cells[--size];
+    cells[size] = cell;
+    return cell;
+  }
+
+  int row(int cell) {
+    return cell / columns;
+  }
+
+  int column(int cell) {
+    return cell % columns;
+  }
+}
@@ -0,0 +1,191 @@
+package automata;
+
+import automata.pedestrian.PedestrianParameters;
+import geometry._2d.Rectangle;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A source injecting new pedestrians into a region of scenario while simulation runs, according to a piecewise
+ * constant schedule of rates. Pedestrians are placed on random free cells of region. Those that do not fit because
+ * region is full wait and enter as soon as there is room.
+ * <p>
+ * A source is immutable. Pedestrians waiting to enter and those that have entered are kept track of by each
+ * automaton the source is added to, so the same source can be shared by many automata.
+ *
+ * @author Pepe Gallardo
+ */
+public final class InflowSource {
+  private final Rectangle region;
+  private final PedestrianParameters parameters;
+  // rates[i] pedestrians per second from startSeconds[i] on
+  private final double[] startSeconds, rates;
+  private final double endSeconds;
+
+  private InflowSource(Builder builder) {
+    this.region = builder.region;
+    this.parameters = builder.parameters;
+    this.startSeconds = Arrays.copyOf(builder.startSeconds, builder.numberOfRates);
+    this.rates = Arrays.copyOf(builder.rates, builder.numberOfRates);
+    this.endSeconds = builder.endSeconds;
+  }
+
+  public Rectangle getRegion() {
+    return region;
+  }
+
+  public PedestrianParameters getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Rate of this source at a given time.
+   *
+   * @param seconds time elapsed since the start of the simulation.
+   * @return pedestrians per second entering through this source at {@code seconds}.
+   */
+  public double rate(double seconds) {
+    if (seconds >= endSeconds) {
+      return 0;
+    }
+    var i = Arrays.binarySearch(startSeconds, seconds);
+    if (i < 0) {
+      // index of last rate starting before seconds
+      i = -i - 2;
+    }
+    return i < 0 ? 0 : rates[i];
+  }
+
+  /**
+   * Number of pedestrians arriving at this source during a discrete time step, including fractions of pedestrians.
+   *
+   * @param seconds            time elapsed since the start of the simulation when time step started.
+   * @param secondsPerTimeStep duration of time step.
+   * @return number of pedestrians arriving during time step.
+   */
+  double arrivals(double seconds, double secondsPerTimeStep) {
+    return rate(seconds) * secondsPerTimeStep;
+  }
+
+  /**
+   * Checks whether schedule of this source has ended, so that no more pedestrians will arrive.
+   *
+   * @param seconds time elapsed since the start of the simulation.
+   * @return {@code true} if no more pedestrians arrive at this source from {@code seconds} on.
+   */
+  public boolean hasEnded(double seconds) {
+    return seconds >= endSeconds || seconds >= startSeconds[startSeconds.length - 1]
+        && rates[rates.length - 1] == 0;
+  }
+
+  /**
+   * Writes this source, so that {@link #read} builds an equal one.
+   *
+   * @param output stream where source is written.
+   * @throws IOException if source cannot be written.
+   */
+  void write(DataOutputStream output) throws IOException {
+    output.writeInt(region.bottom());
+    output.writeInt(region.left());
+    output.writeInt(region.height());
+    output.writeInt(region.width());
+    output.writeDouble(parameters.fieldAttractionBias());
+    output.writeDouble(parameters.crowdRepulsion());
+    output.writeInt(rates.length);
+    for (int i = 0; i < rates.length; i++) {
+      output.writeDouble(startSeconds[i]);
+      output.writeDouble(rates[i]);
+    }
+    output.writeDouble(endSeconds);
+  }
+
+  /**
+   * Reads a source written by {@link #write}.
+   *
+   * @param input stream where source is read from.
+   * @return source read.
+   * @throws IOException if source cannot be read.
+   */
+  static InflowSource read(DataInputStream input) throws IOException {
+    var builder = new Builder()
+        .region(new Rectangle(input.readInt(), input.readInt(), input.readInt(), input.readInt()))
+        .parameters(new PedestrianParameters(input.readDouble(), input.readDouble()));
+    var numberOfRates = input.readInt();
+    for (int i = 0; i < numberOfRates; i++) {
+      builder.rate(input.readDouble(), input.readDouble());
+    }
+    return builder.until(input.readDouble()).build();
+  }
+
+  /**
+   * Class for building an inflow source by providing its region, parameters of its pedestrians and its schedule.
+   */
+  public static final class Builder {
+    private Rectangle region;
+    private PedestrianParameters parameters = new PedestrianParameters.Builder().build();
+    private double[] startSeconds = new double[4], rates = new double[4];
+    private int numberOfRates = 0;
+    private double endSeconds = Double.POSITIVE_INFINITY;
+
+    public Builder() {
+    }
+
+    public Builder region(Rectangle region) {
+      this.region = region;
+      return this;
+    }
+
+    public Builder parameters(PedestrianParameters parameters) {
+      this.parameters = parameters;
+      return this;
+    }
+
+    /**
+     * Adds a segment to schedule of this source. Segments should be added in increasing order of time.
+     *
+     * @param fromSeconds          time since the start of the simulation when segment starts.
+     * @param pedestriansPerSecond rate of source until next segment starts.
+     * @return this builder.
+     */
+    public Builder rate(double fromSeconds, double pedestriansPerSecond) {
+      if (numberOfRates > 0 && fromSeconds <= startSeconds[numberOfRates - 1]) {
+        throw new IllegalArgumentException("rate: segments must be added in increasing order of time");
+      }
+      if (!(pedestriansPerSecond >= 0)) {
+        throw new IllegalArgumentException("rate: rate cannot be negative");
+      }
+      if (numberOfRates == startSeconds.length) {
+        startSeconds = Arrays.copyOf(startSeconds, 2 * numberOfRates);
+        rates = Arrays.copyOf(rates, 2 * numberOfRates);
+      }
+      startSeconds[numberOfRates] = fromSeconds;
+      rates[numberOfRates] = pedestriansPerSecond;
+      numberOfRates++;
+      return this;
+    }
+
+    /**
+     * Sets time when source stops injecting pedestrians. By default, last segment of schedule never ends.
+     *
+     * @param endSeconds time since the start of the simulation when schedule ends.
+     * @return this builder.
+     */
+    public Builder until(double endSeconds) {
+      this.endSeconds = endSeconds;
+      return this;
+    }
+
+    public InflowSource build() {
+      if (region == null) {
+        throw new IllegalArgumentException("build: region must be provided");
+      }
+      if (numberOfRates == 0) {
+        throw new IllegalArgumentException("build: schedule must have at least one rate");
+      }
+      return new InflowSource(this);
+    }
+  }
+}
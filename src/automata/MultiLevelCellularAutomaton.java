@@ -0,0 +1,364 @@
+package automata;
+
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.MultiLevelScenario;
+import automata.scenario.Portal;
+import automata.scenario.Scenario;
+import statistics.Xoshiro256PlusPlus;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import static statistics.Random.random;
+
+/**
+ * Cellular Automaton for simulating pedestrian evacuation of a multi-level scenario. Each level is run by a cellular
+ * automaton of its own and all of them take a discrete time step at each tick. Levels are independent during a time
+ * step, so they can be stepped in parallel. Between time steps, pedestrians standing on a portal whose other end is
+ * closer to an exit leave their level and, once they have gone through portal, enter level at the other end.
+ * <p>
+ * Each level uses its own random generator, seeded from global random generator when this automaton is created, so
+ * results do not depend on parallelism.
+ *
+ * @author Pepe Gallardo
+ */
+public class MultiLevelCellularAutomaton implements AutoCloseable {
+  private final MultiLevelScenario scenario;
+  private final List<CellularAutomaton> levels;
+  private final long[][] randomStates;
+  private final double secondsPerTimeStep;
+  private final double secondsTimeLimit;
+  private final int parallelism;
+  private ExecutorService executor;
+
+  /**
+   * A pedestrian going through a portal.
+   */
+  private record Transit(
+      long sequence
+      , int identifier
+      , int numberOfSteps
+      , PedestrianParameters parameters
+      , int level
+      , Portal portal
+      , int row
+      , int column
+      , int arrivalTimeSteps
+  ) {
+  }
+
+  private final PriorityQueue<Transit> inTransit;
+  private long transitSequence;
+  private int timeSteps;
+  private TerminationReason terminationReason;
+
+  /**
+   * Creates a new multi-level automaton.
+   *
+   * @param scenario        multi-level scenario where simulation takes place.
+   * @param buildParameters a function taking scenario of a level and returning parameters for its automaton. All
+   *                        levels should use same time limit and seconds per time step.
+   * @param parallelism     number of threads used to step levels. If 1, levels are stepped by calling thread.
+   */
+  public MultiLevelCellularAutomaton(MultiLevelScenario scenario,
+                                     Function<Scenario, CellularAutomatonParameters> buildParameters,
+                                     int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("MultiLevelCellularAutomaton: parallelism must be larger than 0");
+    }
+    this.scenario = scenario;
+    this.levels = new ArrayList<>(scenario.getNumberOfLevels());
+    this.randomStates = new long[scenario.getNumberOfLevels()][];
+    for (int i = 0; i < scenario.getNumberOfLevels(); i++) {
+      var parameters = buildParameters.apply(scenario.getLevel(i));
+      if (parameters.scenario() != scenario.getLevel(i)) {
+        throw new IllegalArgumentException("MultiLevelCellularAutomaton: parameters should be for scenario of level");
+      }
+      levels.add(new CellularAutomaton(parameters));
+      randomStates[i] = new Xoshiro256PlusPlus(random.nextLong()).getState();
+    }
+    var parameters = levels.get(0).parameters;
+    for (var level : levels) {
+      if (level.parameters.secondsPerTimeStep() != parameters.secondsPerTimeStep()
+          || level.parameters.secondsTimeLimit() != parameters.secondsTimeLimit()) {
+        throw new IllegalArgumentException(
+            "MultiLevelCellularAutomaton: all levels should use same time limit and seconds per time step");
+      }
+    }
+    this.secondsPerTimeStep = parameters.secondsPerTimeStep();
+    this.secondsTimeLimit = parameters.secondsTimeLimit();
+    this.parallelism = Math.min(parallelism, levels.size());
+    this.inTransit = new PriorityQueue<>(
+        Comparator.comparingInt(Transit::arrivalTimeSteps).thenComparingLong(Transit::sequence));
+    this.transitSequence = 0;
+    this.timeSteps = 0;
+  }
+
+  /**
+   * Automaton running a level. Can be used to add pedestrians to that level.
+   *
+   * @param level index of level.
+   * @return automaton running level.
+   */
+  public CellularAutomaton getLevel(int level) {
+    return levels.get(level);
+  }
+
+  public int getNumberOfLevels() {
+    return levels.size();
+  }
+
+  /**
+   * Number of pedestrians currently going through a portal.
+   *
+   * @return number of pedestrians currently going through a portal.
+   */
+  public int getNumberOfPedestriansInTransit() {
+    return inTransit.size();
+  }
+
+  /**
+   * Number of pedestrians currently within scenario, including those going through a portal.
+   *
+   * @return number of pedestrians currently within scenario.
+   */
+  public int getNumberOfPedestriansInScenario() {
+    var pedestrians = inTransit.size();
+    for (var level : levels) {
+      pedestrians += level.getNumberOfPedestriansInScenario();
+    }
+    return pedestrians;
+  }
+
+  /**
+   * Number of discrete time steps elapsed since the start of the simulation.
+   *
+   * @return number of discrete time steps elapsed since the start of the simulation.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Reason why last run of simulation terminated.
+   *
+   * @return reason why last run of simulation terminated or {@code null} if it has not terminated.
+   */
+  public TerminationReason getTerminationReason() {
+    return terminationReason;
+  }
+
+  /**
+   * Steps a level with its own random generator, so that sequence of random numbers of each level does not depend on
+   * thread stepping it.
+   */
+  private void stepLevel(int level) {
+    var callerState = random.getState();
+    random.setState(randomStates[level]);
+    levels.get(level).timeStep();
+    randomStates[level] = random.getState();
+    random.setState(callerState);
+  }
+
+  /**
+   * Runs a discrete time step for all levels, followed by pedestrians leaving and entering levels through portals.
+   * Static floor field should already be initialized.
+   */
+  public void timeStep() {
+    if (parallelism == 1) {
+      for (int i = 0; i < levels.size(); i++) {
+        stepLevel(i);
+      }
+    } else {
+      if (executor == null) {
+        executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+          var thread = new Thread(runnable, "LevelStepper");
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      var tasks = new ArrayList<Callable<Void>>(levels.size());
+      for (int i = 0; i < levels.size(); i++) {
+        var level = i;
+        tasks.add(() -> {
+          stepLevel(level);
+          return null;
+        });
+      }
+      try {
+        for (var future : executor.invokeAll(tasks)) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("timeStep: interrupted while stepping levels", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("timeStep: stepping a level failed", e.getCause());
+      }
+    }
+    timeSteps++;
+    leaveThroughPortals();
+    enterFromPortals();
+  }
+
+  /**
+   * Pedestrians standing on a portal leave their level if other end of portal is closer to an exit.
+   */
+  private void leaveThroughPortals() {
+    for (int i = 0; i < levels.size(); i++) {
+      var portals = scenario.portals(i);
+      if (portals.isEmpty()) {
+        continue;
+      }
+      var level = i;
+      levels.get(i).leavePedestrians(
+          pedestrian -> portalToTake(level, pedestrian.getRow(), pedestrian.getColumn()) != null,
+          pedestrian -> {
+            var row = pedestrian.getRow();
+            var column = pedestrian.getColumn();
+            var portal = portalToTake(level, row, column);
+            var otherLevel = portal.counterpartLevel(level);
+            var other = portal.counterpart(level, row, column);
+            inTransit.add(new Transit(transitSequence++, pedestrian.getIdentifier(), pedestrian.getNumberOfSteps(),
+                pedestrian.getParameters(), otherLevel, portal, other.row(), other.column(),
+                timeSteps + portal.getTransitTimeSteps()));
+          });
+    }
+  }
+
+  /**
+   * Portal a pedestrian standing on a cell should take.
+   *
+   * @return a portal whose other end is closer to an exit than cell or {@code null} if there is none.
+   */
+  private Portal portalToTake(int level, int row, int column) {
+    var floorField = scenario.getStaticFloorField();
+    var field = floorField.getLevel(level).getField(row, column);
+    for (var portal : scenario.portals(level)) {
+      if (portal.connects(level, row, column)) {
+        var otherLevel = portal.counterpartLevel(level);
+        var other = portal.counterpart(level, row, column);
+        if (floorField.getLevel(otherLevel).getField(other) > field) {
+          return portal;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Pedestrians that have gone through a portal enter level at its other end, at cell connected to the one they left
+   * or, if it is taken, at any free cell of portal. If all of them are taken, they wait to enter.
+   */
+  private void enterFromPortals() {
+    List<Transit> waiting = null;
+    while (!inTransit.isEmpty() && inTransit.peek().arrivalTimeSteps() <= timeSteps) {
+      var transit = inTransit.poll();
+      if (!enter(transit)) {
+        if (waiting == null) {
+          waiting = new ArrayList<>();
+        }
+        waiting.add(transit);
+      }
+    }
+    if (waiting != null) {
+      inTransit.addAll(waiting);
+    }
+  }
+
+  private boolean enter(Transit transit) {
+    var level = levels.get(transit.level());
+    if (level.enterPedestrian(transit.identifier(), transit.row(), transit.column(), transit.numberOfSteps(),
+        transit.parameters())) {
+      return true;
+    }
+    var portal = transit.portal();
+    var region = transit.level() == portal.level() ? portal.region() : portal.otherRegion();
+    for (int row = region.bottom(); row <= region.top(); row++) {
+      for (int column = region.left(); column <= region.right(); column++) {
+        if (level.enterPedestrian(transit.identifier(), row, column, transit.numberOfSteps(), transit.parameters())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs this automaton in calling thread until all pedestrians have evacuated or time limit is reached. Initializes
+   * static floor field if needed.
+   */
+  public void run() {
+    scenario.getStaticFloorField().initialize();
+    var maximalTimeSteps = secondsTimeLimit / secondsPerTimeStep;
+    terminationReason = null;
+    while (true) {
+      if (getNumberOfPedestriansInScenario() == 0 && !hasPendingInflow()) {
+        terminationReason = TerminationReason.EVACUATED;
+        break;
+      }
+      if (timeSteps >= maximalTimeSteps) {
+        terminationReason = TerminationReason.TIME_LIMIT;
+        break;
+      }
+      timeStep();
+    }
+  }
+
+  private boolean hasPendingInflow() {
+    for (var level : levels) {
+      if (level.hasPendingInflow()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Computes some statistics regarding the execution of the simulation, for pedestrians in all levels.
+   *
+   * @return statistics collected after running simulation.
+   */
+  public Statistics computeStatistics() {
+    return computeEvacuationSummary().statistics();
+  }
+
+  /**
+   * Computes a summary of the execution of the simulation, for pedestrians in all levels, that can be merged with
+   * summaries for other replicas.
+   *
+   * @return a new summary of evacuation after running simulation.
+   */
+  public EvacuationSummary computeEvacuationSummary() {
+    var summary = new EvacuationSummary();
+    for (var level : levels) {
+      var exitRecords = level.getExitRecords();
+      for (int i = 0; i < exitRecords.size(); i++) {
+        summary.addEvacuee(exitRecords.getNumberOfSteps(i), exitRecords.getExitTimeSteps(i) * secondsPerTimeStep);
+      }
+    }
+    summary.addNonEvacuees(getNumberOfPedestriansInScenario());
+    if (terminationReason != null) {
+      summary.addTermination(terminationReason);
+    }
+    return summary;
+  }
+
+  /**
+   * Stops threads used for stepping levels in parallel, if any.
+   */
+  @Override
+  public void close() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package automata;
+
+import automata.pedestrian.Pedestrian;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Positions of all pedestrians in scenario at some discrete time step, as published by a cellular automaton for
+ * being rendered. Buffers are reused, so an instance should only be read by thread that acquired it.
+ *
+ * @author Pepe Gallardo
+ */
+public final class PedestrianPositions {
+  private int timeSteps;
+  private int size;
+  private int[] rows, columns;
+
+  PedestrianPositions() {
+    this.timeSteps = -1;
+    this.size = 0;
+    this.rows = new int[0];
+    this.columns = new int[0];
+  }
+
+  void fill(int timeSteps, List<Pedestrian> pedestrians) {
+    this.timeSteps = timeSteps;
+    this.size = pedestrians.size();
+    if (size > rows.length) {
+      rows = Arrays.copyOf(rows, Math.max(size, 2 * rows.length));
+      columns = Arrays.copyOf(columns, rows.length);
+    }
+    for (int i = 0; i < size; i++) {
+      var pedestrian = pedestrians.get(i);
+      rows[i] = pedestrian.getRow();
+      columns[i] = pedestrian.getColumn();
+    }
+  }
+
+  /**
+   * Number of discrete time steps elapsed when these positions were published.
+   *
+   * @return number of discrete time steps elapsed when these positions were published.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Number of pedestrians in scenario.
+   *
+   * @return number of pedestrians in scenario.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Row of a pedestrian.
+   *
+   * @param index index of pedestrian, between 0 and {@link #size()} - 1.
+   * @return row of pedestrian.
+   */
+  public int getRow(int index) {
+    return rows[index];
+  }
+
+  /**
+   * Column of a pedestrian.
+   *
+   * @param index index of pedestrian, between 0 and {@link #size()} - 1.
+   * @return column of pedestrian.
+   */
+  public int getColumn(int index) {
+    return columns[index];
+  }
+}
@@ -7,8 +7,13 @@ package automata;
  * @param meanEvacuationTime   mean evacuation time for evacuated pedestrians.
  * @param medianSteps          median number of steps taken by evacuated pedestrians.
  * @param medianEvacuationTime median evacuation time for evacuated pedestrians.
+ * @param p90EvacuationTime    90th percentile of evacuation time for evacuated pedestrians.
+ * @param p95EvacuationTime    95th percentile of evacuation time for evacuated pedestrians.
+ * @param p99EvacuationTime    99th percentile of evacuation time for evacuated pedestrians.
  * @param numberOfEvacuees     number of pedestrians that could evacuate the scenario.
  * @param numberOfNonEvacuees  number of pedestrians that could not evacuate the scenario.
+ * @param terminationReason    reason why simulation terminated or {@code null} if it has not terminated or if
+ *                             replicas summarized terminated for different reasons.
  * @author Pepe Gallardo
  */
 public record Statistics(
@@ -16,6 +21,10 @@ public record Statistics(
     , double meanEvacuationTime
     , double medianSteps
     , double medianEvacuationTime
+    , double p90EvacuationTime
+    , double p95EvacuationTime
+    , double p99EvacuationTime
     , int numberOfEvacuees
-    , int numberOfNonEvacuees) {
+    , int numberOfNonEvacuees
+    , TerminationReason terminationReason) {
 }
@@ -0,0 +1,56 @@
+package automata;
+
+/**
+ * Class representing criteria for terminating a simulation before its time limit, as soon as it is detected that
+ * remaining pedestrians are unlikely or unable to evacuate.
+ *
+ * @param stallTimeSteps        simulation terminates if no pedestrian moves for this number of consecutive time
+ *                              steps. Not checked if not positive.
+ * @param exitProgressTimeSteps simulation terminates if no pedestrian evacuates for this number of consecutive time
+ *                              steps. Not checked if not positive. Should be larger than time steps taken by first
+ *                              pedestrians to reach an exit.
+ * @param unreachable           simulation terminates if no remaining pedestrian can reach an exit, according to
+ *                              static floor field of scenario.
+ * @author Pepe Gallardo
+ */
+public record TerminationCriteria(
+    int stallTimeSteps
+    , int exitProgressTimeSteps
+    , boolean unreachable) {
+  /**
+   * Default criteria: a simulation only terminates early if no remaining pedestrian can reach an exit, as it would
+   * certainly make no further progress.
+   */
+  public static final TerminationCriteria DEFAULT = new Builder().build();
+
+  /**
+   * Class for building termination criteria by providing each one.
+   */
+  public static final class Builder {
+    private int stallTimeSteps = 0;
+    private int exitProgressTimeSteps = 0;
+    private boolean unreachable = true;
+
+    public Builder() {
+    }
+
+    public Builder stallTimeSteps(int stallTimeSteps) {
+      this.stallTimeSteps = stallTimeSteps;
+      return this;
+    }
+
+    public Builder exitProgressTimeSteps(int exitProgressTimeSteps) {
+      this.exitProgressTimeSteps = exitProgressTimeSteps;
+      return this;
+    }
+
+    public Builder unreachable(boolean unreachable) {
+      this.unreachable = unreachable;
+      return this;
+    }
+
+    public TerminationCriteria build() {
+      return new TerminationCriteria(stallTimeSteps, exitProgressTimeSteps, unreachable);
+    }
+  }
+}
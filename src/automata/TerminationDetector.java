@@ -0,0 +1,89 @@
+package automata;
+
+import automata.instrumentation.StepMetrics;
+import automata.pedestrian.Pedestrian;
+
+import java.util.List;
+
+/**
+ * Detects when a running simulation should terminate, according to its time limit and termination criteria. All
+ * checks take constant time per time step.
+ *
+ * @author Pepe Gallardo
+ */
+final class TerminationDetector {
+  private final TerminationCriteria criteria;
+  private final double maximalTimeSteps;
+  private final CellularAutomaton automaton;
+  // counted once no more pedestrians can enter scenario, or -1 if not counted yet
+  private int unreachablePedestrians;
+
+  /**
+   * Creates a detector for a simulation about to run. Static floor field of scenario should already be initialized.
+   * Time steps without movement or exits are counted by automaton, so that they are saved in checkpoints and a restored
+   * simulation terminates at the same time step as the original one.
+   *
+   * @param automaton        automaton about to run.
+   * @param maximalTimeSteps time limit of simulation in discrete time steps.
+   */
+  TerminationDetector(CellularAutomaton automaton, double maximalTimeSteps) {
+    this.automaton = automaton;
+    this.criteria = automaton.parameters.terminationCriteria();
+    this.maximalTimeSteps = maximalTimeSteps;
+    this.unreachablePedestrians = -1;
+  }
+
+  private int countUnreachablePedestrians() {
+    var count = 0;
+    var floorField = automaton.scenario.getStaticFloorField();
+    for (var pedestrian : automaton.inScenarioPedestrians) {
+      if (!floorField.isReachable(pedestrian.getRow(), pedestrian.getColumn())) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Updates detector after a discrete time step.
+   *
+   * @param stepMetrics metrics collected for time step.
+   */
+  void timeStep(StepMetrics stepMetrics) {
+    automaton.stepsWithoutMovement = stepMetrics.getMoves() > 0 ? 0 : automaton.stepsWithoutMovement + 1;
+    automaton.stepsWithoutExit = stepMetrics.getExits() > 0 ? 0 : automaton.stepsWithoutExit + 1;
+  }
+
+  /**
+   * Checks whether simulation should terminate.
+   *
+   * @param inScenarioPedestrians pedestrians currently within scenario.
+   * @param timeSteps             discrete time steps elapsed since the start of the simulation.
+   * @return reason why simulation should terminate or {@code null} if it should go on.
+   */
+  TerminationReason check(List<Pedestrian> inScenarioPedestrians, int timeSteps) {
+    var inflowPending = automaton.hasPendingInflow();
+    if (inScenarioPedestrians.isEmpty() && !inflowPending) {
+      return TerminationReason.EVACUATED;
+    }
+    if (criteria.unreachable() && !inflowPending) {
+      if (unreachablePedestrians < 0) {
+        // pedestrians can never leave a region of scenario with no exits, so they only need to be counted once
+        unreachablePedestrians = countUnreachablePedestrians();
+      }
+      if (inScenarioPedestrians.size() <= unreachablePedestrians) {
+        return TerminationReason.UNREACHABLE;
+      }
+    }
+    if (criteria.stallTimeSteps() > 0 && automaton.stepsWithoutMovement >= criteria.stallTimeSteps()) {
+      return TerminationReason.STALLED;
+    }
+    if (criteria.exitProgressTimeSteps() > 0 && automaton.stepsWithoutExit >= criteria.exitProgressTimeSteps()) {
+      return TerminationReason.NO_EXIT_PROGRESS;
+    }
+    if (timeSteps >= maximalTimeSteps) {
+      return TerminationReason.TIME_LIMIT;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,29 @@
+package automata;
+
+/**
+ * Reasons why a simulation can terminate.
+ *
+ * @author Pepe Gallardo
+ */
+public enum TerminationReason {
+  /**
+   * All pedestrians evacuated scenario.
+   */
+  EVACUATED,
+  /**
+   * Time limit of simulation was reached.
+   */
+  TIME_LIMIT,
+  /**
+   * No pedestrian moved for a number of consecutive time steps.
+   */
+  STALLED,
+  /**
+   * No pedestrian evacuated scenario for a number of consecutive time steps.
+   */
+  NO_EXIT_PROGRESS,
+  /**
+   * No remaining pedestrian can reach an exit.
+   */
+  UNREACHABLE
+}
@@ -1,5 +1,7 @@
 package automata.floorField;
 
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
 import automata.neighbourhood.Neighbourhood;
 import automata.scenario.Scenario;
 
@@ -15,15 +17,35 @@ import java.util.function.Function;
 public class DijkstraStaticFloorField extends StaticFloorField {
   protected final Neighbourhood neighbourhood;
 
-  public DijkstraStaticFloorField(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood) {
-    super(new double[scenario.getRows()][scenario.getColumns()], scenario);
+  public DijkstraStaticFloorField(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood,
+                                  DoubleGrid fields) {
+    super(fields, scenario);
     this.neighbourhood = buildNeighbourhood.apply(scenario);
   }
 
+  public DijkstraStaticFloorField(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood,
+                                  GridStorage storage) {
+    this(scenario, buildNeighbourhood, storage.doubleGrid(scenario.getRows(), scenario.getColumns()));
+  }
+
+  public DijkstraStaticFloorField(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood) {
+    this(scenario, buildNeighbourhood, GridStorage.HEAP);
+  }
+
   public static DijkstraStaticFloorField of(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood) {
     return new DijkstraStaticFloorField(scenario, buildNeighbourhood);
   }
 
+  public static DijkstraStaticFloorField of(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood,
+                                            GridStorage storage) {
+    return new DijkstraStaticFloorField(scenario, buildNeighbourhood, storage);
+  }
+
+  public static DijkstraStaticFloorField of(Scenario scenario, Function<Scenario, Neighbourhood> buildNeighbourhood,
+                                            DoubleGrid fields) {
+    return new DijkstraStaticFloorField(scenario, buildNeighbourhood, fields);
+  }
+
   public void initialize() {
     record Node(int row, int column, double priority) implements Comparable<Node> {
       @Override
@@ -39,13 +61,13 @@ public class DijkstraStaticFloorField extends StaticFloorField {
     for (int i = 0; i < getRows(); i++) {
       for (int j = 0; j < getColumns(); j++) {
         if (scenario.isExit(i, j)) {
-          staticFloorField[i][j] = 0;
-          priorityQueue.add(new Node(i, j, staticFloorField[i][j]));
+          staticFloorField.set(i, j, 0);
+          priorityQueue.add(new Node(i, j, staticFloorField.get(i, j)));
         } else if (scenario.isBlocked(i, j)) {
-          staticFloorField[i][j] = Double.MAX_VALUE;
+          staticFloorField.set(i, j, Double.MAX_VALUE);
         } else {
-          staticFloorField[i][j] = Double.MAX_VALUE;
-          // priorityQueue.add(new Node(i, j, staticFloorField[i][j]));
+          staticFloorField.set(i, j, Double.MAX_VALUE);
+          // priorityQueue.add(new Node(i, j, staticFloorField.get(i, j)));
         }
       }
     }
@@ -54,7 +76,7 @@ public class DijkstraStaticFloorField extends StaticFloorField {
 
     while (!priorityQueue.isEmpty()) {
       var node = priorityQueue.poll();
-      double nodeDistance = staticFloorField[node.row][node.column];
+      double nodeDistance = staticFloorField.get(node.row, node.column);
       if (node.priority == nodeDistance) {
         // This is first extraction of node from PQ, hence it corresponds to its optimal cost, which is already
         // recorded in staticFloorField.
@@ -64,9 +86,9 @@ public class DijkstraStaticFloorField extends StaticFloorField {
           if (!scenario.isBlocked(neighbour)) {
             var delta = Math.sqrt(Math.abs(neighbour.row() - node.row) + Math.abs(neighbour.column() - node.column));
             double newNeighbourDistance = nodeDistance + delta;
-            if (newNeighbourDistance < staticFloorField[neighbour.row()][neighbour.column()]) {
+            if (newNeighbourDistance < staticFloorField.get(neighbour.row(), neighbour.column())) {
               // Shorter distance to neighbour was found: update
-              staticFloorField[neighbour.row()][neighbour.column()] = newNeighbourDistance;
+              staticFloorField.set(neighbour.row(), neighbour.column(), newNeighbourDistance);
               priorityQueue.add(new Node(neighbour.row(), neighbour.column(), newNeighbourDistance));
             }
           }
@@ -82,9 +104,10 @@ public class DijkstraStaticFloorField extends StaticFloorField {
     for (int i = 0; i < getRows(); i++) {
       for (int j = 0; j < getColumns(); j++) {
         if (!scenario.isBlocked(i, j)) {
-          staticFloorField[i][j] = maxDistance - staticFloorField[i][j];
+          staticFloorField.set(i, j, maxDistance - staticFloorField.get(i, j));
         }
       }
     }
+    initialized = true;
   }
 }
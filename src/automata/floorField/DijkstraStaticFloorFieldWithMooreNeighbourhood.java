@@ -1,5 +1,7 @@
 package automata.floorField;
 
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
 import automata.neighbourhood.MooreNeighbourhood;
 import automata.scenario.Scenario;
 
@@ -10,11 +12,27 @@ import automata.scenario.Scenario;
  * @author Pepe Gallardo
  */
 public class DijkstraStaticFloorFieldWithMooreNeighbourhood extends DijkstraStaticFloorField {
+  public DijkstraStaticFloorFieldWithMooreNeighbourhood(Scenario scenario, DoubleGrid fields) {
+    super(scenario, MooreNeighbourhood::of, fields);
+  }
+
+  public DijkstraStaticFloorFieldWithMooreNeighbourhood(Scenario scenario, GridStorage storage) {
+    super(scenario, MooreNeighbourhood::of, storage);
+  }
+
   public DijkstraStaticFloorFieldWithMooreNeighbourhood(Scenario scenario) {
-    super(scenario, MooreNeighbourhood::of);
+    this(scenario, GridStorage.HEAP);
   }
 
   public static DijkstraStaticFloorFieldWithMooreNeighbourhood of(Scenario scenario) {
     return new DijkstraStaticFloorFieldWithMooreNeighbourhood(scenario);
   }
+
+  public static DijkstraStaticFloorFieldWithMooreNeighbourhood of(Scenario scenario, GridStorage storage) {
+    return new DijkstraStaticFloorFieldWithMooreNeighbourhood(scenario, storage);
+  }
+
+  public static DijkstraStaticFloorFieldWithMooreNeighbourhood of(Scenario scenario, DoubleGrid fields) {
+    return new DijkstraStaticFloorFieldWithMooreNeighbourhood(scenario, fields);
+  }
 }
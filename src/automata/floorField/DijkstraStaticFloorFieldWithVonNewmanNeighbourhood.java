@@ -1,5 +1,7 @@
 package automata.floorField;
 
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
 import automata.neighbourhood.VonNeumannNeighbourhood;
 import automata.scenario.Scenario;
 
@@ -10,11 +12,27 @@ import automata.scenario.Scenario;
  * @author Pepe Gallardo
  */
 public class DijkstraStaticFloorFieldWithVonNewmanNeighbourhood extends DijkstraStaticFloorField {
+  public DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(Scenario scenario, DoubleGrid fields) {
+    super(scenario, VonNeumannNeighbourhood::of, fields);
+  }
+
+  public DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(Scenario scenario, GridStorage storage) {
+    super(scenario, VonNeumannNeighbourhood::of, storage);
+  }
+
   public DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(Scenario scenario) {
-    super(scenario, VonNeumannNeighbourhood::of);
+    this(scenario, GridStorage.HEAP);
   }
 
   public static DijkstraStaticFloorFieldWithVonNewmanNeighbourhood of(Scenario scenario) {
     return new DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(scenario);
   }
+
+  public static DijkstraStaticFloorFieldWithVonNewmanNeighbourhood of(Scenario scenario, GridStorage storage) {
+    return new DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(scenario, storage);
+  }
+
+  public static DijkstraStaticFloorFieldWithVonNewmanNeighbourhood of(Scenario scenario, DoubleGrid fields) {
+    return new DijkstraStaticFloorFieldWithVonNewmanNeighbourhood(scenario, fields);
+  }
 }
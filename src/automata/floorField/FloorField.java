@@ -27,6 +27,13 @@ public interface FloorField {
    */
   void initialize();
 
+  /**
+   * Checks whether this floor field has already been initialized.
+   *
+   * @return {@code true} if this floor field has already been initialized.
+   */
+  boolean isInitialized();
+
   /**
    * Gets field of cell located at given row and column.
    *
@@ -43,4 +50,16 @@ public interface FloorField {
    * @return field of cell located at {@code location}.
    */
   double getField(Location location);
+
+  /**
+   * Checks whether an exit can be reached from a cell that is not blocked. Fields are larger the closer to an exit,
+   * so cells from which no exit can be reached have negative fields.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return {@code true} if an exit can be reached from cell located at {@code row} and {@code column}.
+   */
+  default boolean isReachable(int row, int column) {
+    return getField(row, column) >= 0;
+  }
 }
@@ -1,5 +1,7 @@
 package automata.floorField;
 
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
 import automata.scenario.Scenario;
 
 /**
@@ -8,27 +10,44 @@ import automata.scenario.Scenario;
  * @author Pepe Gallardo
  */
 public class ManhattanStaticFloorField extends StaticFloorField {
+  public ManhattanStaticFloorField(Scenario scenario, DoubleGrid fields) {
+    super(fields, scenario);
+  }
+
+  public ManhattanStaticFloorField(Scenario scenario, GridStorage storage) {
+    this(scenario, storage.doubleGrid(scenario.getRows(), scenario.getColumns()));
+  }
+
   public ManhattanStaticFloorField(Scenario scenario) {
-    super(new double[scenario.getRows()][scenario.getColumns()], scenario);
+    this(scenario, GridStorage.HEAP);
   }
 
   public static ManhattanStaticFloorField of(Scenario scenario) {
     return new ManhattanStaticFloorField(scenario);
   }
 
+  public static ManhattanStaticFloorField of(Scenario scenario, GridStorage storage) {
+    return new ManhattanStaticFloorField(scenario, storage);
+  }
+
+  public static ManhattanStaticFloorField of(Scenario scenario, DoubleGrid fields) {
+    return new ManhattanStaticFloorField(scenario, fields);
+  }
+
   public void initialize() {
     // For each cell compute Manhattan distance to closest exit
     var maxDistance = Double.MIN_VALUE;
     for (int i = 0; i < getRows(); i++) {
       for (int j = 0; j < getColumns(); j++) {
-        staticFloorField[i][j] = Double.MAX_VALUE;
-        for (var exit : scenario.exits()) {
+        // only exits near cell are checked
+        var exit = scenario.nearestExit(i, j);
+        if (exit == null) {
+          staticFloorField.set(i, j, Double.MAX_VALUE);
+        } else {
           int distance = exit.manhattanDistance(i, j);
-          if (distance < staticFloorField[i][j]) {
-            staticFloorField[i][j] = distance;
-            if (distance > maxDistance) {
-              maxDistance = distance;
-            }
+          staticFloorField.set(i, j, distance);
+          if (distance > maxDistance) {
+            maxDistance = distance;
           }
         }
       }
@@ -37,8 +56,9 @@ public class ManhattanStaticFloorField extends StaticFloorField {
     // Normalize so that the closer to an exit the larger the static field
     for (int i = 0; i < getRows(); i++) {
       for (int j = 0; j < getColumns(); j++) {
-        staticFloorField[i][j] = maxDistance - staticFloorField[i][j];
+        staticFloorField.set(i, j, maxDistance - staticFloorField.get(i, j));
       }
     }
+    initialized = true;
   }
 }
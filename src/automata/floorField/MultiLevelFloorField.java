@@ -0,0 +1,237 @@
+package automata.floorField;
+
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
+import automata.neighbourhood.Neighbourhood;
+import automata.scenario.Portal;
+import automata.scenario.Scenario;
+import geometry._2d.Location;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * A static floor field spanning all levels of a multi-level scenario. It is proportional to the shortest distance of
+ * each cell to its closest exit, where paths can go through portals connecting levels, each one adding its cost to
+ * distance. Exits may be in any level.
+ * <p>
+ * Each level sees its part of this field as a floor field of its own, so pedestrians in a level are attracted to
+ * portals leading to exits in other levels. Fields for each level are stored in a grid with dimensions of that level.
+ *
+ * @author Pepe Gallardo
+ */
+public class MultiLevelFloorField {
+  private final Function<Scenario, Neighbourhood> buildNeighbourhood;
+  private final GridStorage storage;
+  private final List<Level> levels;
+  private volatile boolean initialized;
+
+  /**
+   * Part of a multi-level floor field corresponding to one level.
+   */
+  public final class Level implements FloorField {
+    private final int index;
+    private final Scenario scenario;
+    private final DoubleGrid field;
+    // portals with an end in this level
+    private final List<Portal> portals;
+
+    private Level(int index, Scenario scenario) {
+      this.index = index;
+      this.scenario = scenario;
+      this.field = storage.doubleGrid(scenario.getRows(), scenario.getColumns());
+      this.portals = new ArrayList<>();
+    }
+
+    /**
+     * Index of this level.
+     *
+     * @return index of this level.
+     */
+    public int getIndex() {
+      return index;
+    }
+
+    @Override
+    public int getRows() {
+      return scenario.getRows();
+    }
+
+    @Override
+    public int getColumns() {
+      return scenario.getColumns();
+    }
+
+    /**
+     * Initializes whole multi-level floor field this level belongs to.
+     */
+    @Override
+    public void initialize() {
+      MultiLevelFloorField.this.initialize();
+    }
+
+    @Override
+    public boolean isInitialized() {
+      return initialized;
+    }
+
+    @Override
+    public double getField(int row, int column) {
+      assert (row >= 0 && row < getRows()) : "getField: invalid row";
+      assert (column >= 0 && column < getColumns()) : "getField: invalid column";
+      return field.get(row, column);
+    }
+
+    @Override
+    public double getField(Location location) {
+      return getField(location.row(), location.column());
+    }
+  }
+
+  /**
+   * Creates a multi-level floor field with no levels.
+   *
+   * @param buildNeighbourhood neighbourhood relationship among cells in each level used to find shortest paths.
+   * @param storage            where fields of each level are stored.
+   */
+  public MultiLevelFloorField(Function<Scenario, Neighbourhood> buildNeighbourhood, GridStorage storage) {
+    this.buildNeighbourhood = buildNeighbourhood;
+    this.storage = storage;
+    this.levels = new ArrayList<>();
+    this.initialized = false;
+  }
+
+  /**
+   * Adds next level to this floor field. Can be used as function building floor field of a level scenario.
+   *
+   * @param scenario scenario of level.
+   * @return floor field for level.
+   */
+  public Level addLevel(Scenario scenario) {
+    var level = new Level(levels.size(), scenario);
+    levels.add(level);
+    return level;
+  }
+
+  /**
+   * Adds a portal connecting two levels already added.
+   *
+   * @param portal portal to add.
+   */
+  public void addPortal(Portal portal) {
+    if (portal.level() < 0 || portal.level() >= levels.size()
+        || portal.otherLevel() < 0 || portal.otherLevel() >= levels.size()) {
+      throw new IllegalArgumentException("addPortal: portal connects a level that does not exist");
+    }
+    levels.get(portal.level()).portals.add(portal);
+    levels.get(portal.otherLevel()).portals.add(portal);
+  }
+
+  /**
+   * Portals with an end in a level.
+   *
+   * @param level index of level.
+   * @return portals with an end in level.
+   */
+  public List<Portal> portals(int level) {
+    return levels.get(level).portals;
+  }
+
+  /**
+   * Floor field for a level.
+   *
+   * @param level index of level.
+   * @return floor field for level.
+   */
+  public Level getLevel(int level) {
+    return levels.get(level);
+  }
+
+  public boolean isInitialized() {
+    return initialized;
+  }
+
+  /**
+   * Computes fields for all levels. Does nothing if they were already computed.
+   */
+  public synchronized void initialize() {
+    if (initialized) {
+      return;
+    }
+    record Node(int level, int row, int column, double priority) implements Comparable<Node> {
+      @Override
+      public int compareTo(Node that) {
+        return Double.compare(this.priority, that.priority);
+      }
+    }
+
+    // Compute shortest distances to any exit in any level from each node
+    var priorityQueue = new PriorityQueue<Node>();
+    var neighbourhoods = new ArrayList<Neighbourhood>(levels.size());
+    for (var level : levels) {
+      neighbourhoods.add(buildNeighbourhood.apply(level.scenario));
+      for (int i = 0; i < level.getRows(); i++) {
+        for (int j = 0; j < level.getColumns(); j++) {
+          if (level.scenario.isExit(i, j)) {
+            level.field.set(i, j, 0);
+            priorityQueue.add(new Node(level.index, i, j, 0));
+          } else {
+            level.field.set(i, j, Double.MAX_VALUE);
+          }
+        }
+      }
+    }
+
+    double maxDistance = 0; // will store distance for non-blocked cell that is furthest away from an exit
+
+    while (!priorityQueue.isEmpty()) {
+      var node = priorityQueue.poll();
+      var level = levels.get(node.level);
+      double nodeDistance = level.field.get(node.row, node.column);
+      if (node.priority == nodeDistance) {
+        // First extraction of node, so its distance is optimal. Relax its neighbours in same level
+        for (var neighbour : neighbourhoods.get(node.level).neighbours(node.row, node.column)) {
+          if (!level.scenario.isBlocked(neighbour)) {
+            var delta = Math.sqrt(Math.abs(neighbour.row() - node.row) + Math.abs(neighbour.column() - node.column));
+            double newNeighbourDistance = nodeDistance + delta;
+            if (newNeighbourDistance < level.field.get(neighbour.row(), neighbour.column())) {
+              level.field.set(neighbour.row(), neighbour.column(), newNeighbourDistance);
+              priorityQueue.add(new Node(node.level, neighbour.row(), neighbour.column(), newNeighbourDistance));
+            }
+          }
+        }
+        // and cells connected to it through portals
+        for (var portal : level.portals) {
+          if (portal.connects(node.level, node.row, node.column)) {
+            var otherLevel = levels.get(portal.counterpartLevel(node.level));
+            var other = portal.counterpart(node.level, node.row, node.column);
+            if (!otherLevel.scenario.isBlocked(other)) {
+              double newOtherDistance = nodeDistance + portal.cost();
+              if (newOtherDistance < otherLevel.field.get(other.row(), other.column())) {
+                otherLevel.field.set(other.row(), other.column(), newOtherDistance);
+                priorityQueue.add(new Node(otherLevel.index, other.row(), other.column(), newOtherDistance));
+              }
+            }
+          }
+        }
+        if (nodeDistance > maxDistance) {
+          maxDistance = nodeDistance;
+        }
+      }
+    }
+
+    // Normalize so that the closer to an exit the larger the static field. Same normalization for all levels
+    for (var level : levels) {
+      for (int i = 0; i < level.getRows(); i++) {
+        for (int j = 0; j < level.getColumns(); j++) {
+          if (!level.scenario.isBlocked(i, j)) {
+            level.field.set(i, j, maxDistance - level.field.get(i, j));
+          }
+        }
+      }
+    }
+    initialized = true;
+  }
+}
@@ -1,24 +1,103 @@
 package automata.floorField;
 
+import automata.grid.DoubleGrid;
+import automata.grid.HeapDoubleGrid;
+import automata.grid.OffHeapDoubleGrid;
 import automata.scenario.Scenario;
 import geometry._2d.Location;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
- * Class for representing a static floor field stored in a matrix of fields.
+ * Class for representing a static floor field stored in a grid of fields. Grid can be stored on heap or off heap, or
+ * it can be mapped read-only from a file so that it is shared by several processes.
  *
  * @author Pepe Gallardo
  */
 public abstract class StaticFloorField implements FloorField {
-  protected final double[][] staticFloorField;
+  protected DoubleGrid staticFloorField;
   protected final Scenario scenario;
+  protected boolean initialized;
 
-  protected StaticFloorField(double[][] staticFloorField, Scenario scenario) {
+  protected StaticFloorField(DoubleGrid staticFloorField, Scenario scenario) {
     this.staticFloorField = staticFloorField;
     this.scenario = scenario;
   }
 
   public abstract void initialize();
 
+  /**
+   * Initializes this floor field by copying provided fields instead of computing them. Fields are copied into a new
+   * grid on heap, so current grid, which may be read-only or shared, is never written.
+   *
+   * @param fields fields for each cell, indexed by row and column.
+   */
+  public void initialize(double[][] fields) {
+    if (fields.length != getRows()) {
+      throw new IllegalArgumentException("initialize: wrong number of rows");
+    }
+    var grid = new HeapDoubleGrid(getRows(), getColumns());
+    for (int i = 0; i < getRows(); i++) {
+      if (fields[i].length != getColumns()) {
+        throw new IllegalArgumentException("initialize: wrong number of columns");
+      }
+      for (int j = 0; j < getColumns(); j++) {
+        grid.set(i, j, fields[i][j]);
+      }
+    }
+    initialize(grid);
+  }
+
+  /**
+   * Initializes this floor field by mapping read-only a file previously written by {@link #write}, instead of
+   * computing it. Fields are not copied, so several processes mapping the same file share a single copy. Floor field
+   * is read-only afterwards, so it should not be initialized again.
+   *
+   * @param path path of file.
+   * @throws IOException if file cannot be read or is not a valid floor field.
+   */
+  public void initialize(Path path) throws IOException {
+    var fields = OffHeapDoubleGrid.map(path);
+    if (fields.getRows() != getRows() || fields.getColumns() != getColumns()) {
+      throw new IllegalArgumentException("initialize: floor field in " + path + " has wrong dimensions");
+    }
+    staticFloorField = fields;
+    initialized = true;
+  }
+
+  /**
+   * Initializes this floor field by adopting a grid of fields, such as one mapped from a file, instead of computing
+   * it. Grid is not copied.
+   *
+   * @param fields grid of fields for each cell.
+   */
+  public void initialize(DoubleGrid fields) {
+    if (fields.getRows() != getRows() || fields.getColumns() != getColumns()) {
+      throw new IllegalArgumentException("initialize: grid of fields has wrong dimensions");
+    }
+    staticFloorField = fields;
+    initialized = true;
+  }
+
+  /**
+   * Writes this floor field to a file, so that it can later be mapped by {@link #initialize(Path)}.
+   *
+   * @param path path of file.
+   * @throws IOException if file cannot be written.
+   */
+  public void write(Path path) throws IOException {
+    if (!initialized) {
+      throw new IllegalStateException("write: floor field has not been initialized");
+    }
+    OffHeapDoubleGrid.write(staticFloorField, path);
+  }
+
+  @Override
+  public boolean isInitialized() {
+    return initialized;
+  }
+
   @Override
   public int getRows() {
     return scenario.getRows();
@@ -33,7 +112,7 @@ public abstract class StaticFloorField implements FloorField {
   public double getField(int row, int column) {
     assert (row >= 0 && row < getRows()) : "getField: invalid row";
     assert (column >= 0 && column < getColumns()) : "getField: invalid column";
-    return staticFloorField[row][column];
+    return staticFloorField.get(row, column);
   }
 
   @Override
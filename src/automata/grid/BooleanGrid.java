@@ -0,0 +1,45 @@
+package automata.grid;
+
+/**
+ * Interface representing a grid of boolean values, one for each cell in a scenario.
+ *
+ * @author Pepe Gallardo
+ */
+public interface BooleanGrid {
+  /**
+   * Gets number of rows in this grid.
+   *
+   * @return number of rows in this grid.
+   */
+  int getRows();
+
+  /**
+   * Gets number of columns in this grid.
+   *
+   * @return number of columns in this grid.
+   */
+  int getColumns();
+
+  /**
+   * Gets value of a cell.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return value of cell located at {@code row} and {@code column}.
+   */
+  boolean get(int row, int column);
+
+  /**
+   * Sets value of a cell.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @param value  new value for cell.
+   */
+  void set(int row, int column, boolean value);
+
+  /**
+   * Sets all cells in this grid to {@code false}.
+   */
+  void clear();
+}
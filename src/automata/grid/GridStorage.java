@@ -0,0 +1,56 @@
+package automata.grid;
+
+/**
+ * Where grids of an automaton or a floor field are stored.
+ *
+ * @author Pepe Gallardo
+ */
+public enum GridStorage {
+  /**
+   * Grids are stored on heap, boolean ones packed one bit per cell. Fastest choice for grids that fit comfortably in
+   * heap.
+   */
+  HEAP {
+    @Override
+    public BooleanGrid booleanGrid(int rows, int columns) {
+      return new HeapBooleanGrid(rows, columns);
+    }
+
+    @Override
+    public DoubleGrid doubleGrid(int rows, int columns) {
+      return new HeapDoubleGrid(rows, columns);
+    }
+  },
+  /**
+   * Grids are stored off heap, so that very large grids neither need a large heap nor slow down garbage collection.
+   */
+  OFF_HEAP {
+    @Override
+    public BooleanGrid booleanGrid(int rows, int columns) {
+      return new OffHeapBooleanGrid(rows, columns);
+    }
+
+    @Override
+    public DoubleGrid doubleGrid(int rows, int columns) {
+      return new OffHeapDoubleGrid(rows, columns);
+    }
+  };
+
+  /**
+   * Creates a grid of booleans, all of them initially {@code false}.
+   *
+   * @param rows    number of rows in grid.
+   * @param columns number of columns in grid.
+   * @return a new grid.
+   */
+  public abstract BooleanGrid booleanGrid(int rows, int columns);
+
+  /**
+   * Creates a grid of doubles, all of them initially 0.
+   *
+   * @param rows    number of rows in grid.
+   * @param columns number of columns in grid.
+   * @return a new grid.
+   */
+  public abstract DoubleGrid doubleGrid(int rows, int columns);
+}
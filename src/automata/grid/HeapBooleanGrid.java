@@ -0,0 +1,61 @@
+package automata.grid;
+
+import java.util.Arrays;
+
+/**
+ * A grid of boolean values stored on heap, one bit per cell in row major order, so that it takes an eighth of memory
+ * of a {@code boolean} matrix. Bits are laid out as in {@link OffHeapBooleanGrid}.
+ *
+ * @author Pepe Gallardo
+ */
+public final class HeapBooleanGrid implements BooleanGrid {
+  private final int rows, columns;
+  private final long[] words;
+
+  public HeapBooleanGrid(int rows, int columns) {
+    var numberOfWords = ((long) rows * columns + Long.SIZE - 1) / Long.SIZE;
+    if (numberOfWords > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("HeapBooleanGrid: grid is too large to be stored on heap");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.words = new long[(int) numberOfWords];
+  }
+
+  @Override
+  public int getRows() {
+    return rows;
+  }
+
+  @Override
+  public int getColumns() {
+    return columns;
+  }
+
+  @Override
+  public boolean get(int row, int column) {
+    assert (row >= 0 && row < rows) : "get: invalid row";
+    assert (column >= 0 && column < columns) : "get: invalid column";
+    var index = (long) row * columns + column;
+    // shifts of a long only use 6 lowest bits of distance
+    return (words[(int) (index >>> 6)] & (1L << index)) != 0;
+  }
+
+  @Override
+  public void set(int row, int column, boolean value) {
+    assert (row >= 0 && row < rows) : "set: invalid row";
+    assert (column >= 0 && column < columns) : "set: invalid column";
+    var index = (long) row * columns + column;
+    var word = (int) (index >>> 6);
+    if (value) {
+      words[word] |= 1L << index;
+    } else {
+      words[word] &= ~(1L << index);
+    }
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(words, 0);
+  }
+}
@@ -0,0 +1,37 @@
+package automata.grid;
+
+/**
+ * A grid of double values stored in a matrix on heap.
+ *
+ * @author Pepe Gallardo
+ */
+public final class HeapDoubleGrid implements DoubleGrid {
+  private final int rows, columns;
+  private final double[][] cells;
+
+  public HeapDoubleGrid(int rows, int columns) {
+    this.rows = rows;
+    this.columns = columns;
+    this.cells = new double[rows][columns];
+  }
+
+  @Override
+  public int getRows() {
+    return rows;
+  }
+
+  @Override
+  public int getColumns() {
+    return columns;
+  }
+
+  @Override
+  public double get(int row, int column) {
+    return cells[row][column];
+  }
+
+  @Override
+  public void set(int row, int column, double value) {
+    cells[row][column] = value;
+  }
+}
@@ -0,0 +1,168 @@
+package automata.grid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A grid of boolean values stored off heap, one bit per cell, so that large grids take an eighth of memory of a
+ * {@code boolean} matrix and are not scanned by garbage collector. Cells are indexed with a {@code long}, so grids can
+ * have more than 2<sup>31</sup> cells. As a single buffer cannot be that large, bits are split into fixed size chunks.
+ * <p>
+ * A grid can also be mapped read-only from a region of a file written by {@link #write}, so that it is loaded without
+ * copying or parsing.
+ * <p>
+ * Memory is released when grid is no longer reachable.
+ *
+ * @author Pepe Gallardo
+ */
+public final class OffHeapBooleanGrid implements BooleanGrid {
+  // number of cells in each chunk is a power of two
+  private static final int CHUNK_BITS = 30;
+  private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+  private final int rows, columns;
+  private final LongBuffer[] chunks;
+
+  private OffHeapBooleanGrid(int rows, int columns, LongBuffer[] chunks) {
+    this.rows = rows;
+    this.columns = columns;
+    this.chunks = chunks;
+  }
+
+  public OffHeapBooleanGrid(int rows, int columns) {
+    this(rows, columns, new LongBuffer[numberOfChunks(rows, columns)]);
+    for (int i = 0; i < chunks.length; i++) {
+      // direct buffers are zeroed on allocation
+      chunks[i] = ByteBuffer.allocateDirect(chunkWords(i) * Long.BYTES).order(ByteOrder.nativeOrder())
+          .asLongBuffer();
+    }
+  }
+
+  private static int numberOfChunks(int rows, int columns) {
+    return (int) (((long) rows * columns + CHUNK_MASK) >>> CHUNK_BITS);
+  }
+
+  private int chunkWords(int chunk) {
+    var chunkCells = Math.min(1L << CHUNK_BITS, (long) rows * columns - ((long) chunk << CHUNK_BITS));
+    return (int) ((chunkCells + Long.SIZE - 1) / Long.SIZE);
+  }
+
+  /**
+   * Number of bytes taken by a grid in a file written by {@link #write}.
+   *
+   * @param rows    number of rows in grid.
+   * @param columns number of columns in grid.
+   * @return number of bytes taken by grid in file.
+   */
+  public static long fileBytes(int rows, int columns) {
+    return ((long) rows * columns + Long.SIZE - 1) / Long.SIZE * Long.BYTES;
+  }
+
+  /**
+   * Maps read-only a grid stored in a region of a file by {@link #write}. File should not be modified while grid is
+   * used. Mappings remain valid after channel is closed.
+   *
+   * @param channel  channel of file.
+   * @param position position in file where grid starts.
+   * @param rows     number of rows in grid.
+   * @param columns  number of columns in grid.
+   * @return a read-only grid whose values are those stored in file.
+   * @throws IOException if file cannot be mapped.
+   */
+  public static OffHeapBooleanGrid map(FileChannel channel, long position, int rows, int columns)
+      throws IOException {
+    var grid = new OffHeapBooleanGrid(rows, columns, new LongBuffer[numberOfChunks(rows, columns)]);
+    for (int i = 0; i < grid.chunks.length; i++) {
+      // chunks hold a whole number of words
+      var chunkPosition = position + ((long) i << CHUNK_BITS) / Byte.SIZE;
+      var chunkBytes = (long) grid.chunkWords(i) * Long.BYTES;
+      grid.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkPosition, chunkBytes)
+          .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+    return grid;
+  }
+
+  /**
+   * Writes a grid at current position of a file, one bit per cell in row major order, so that it can be mapped by
+   * {@link #map}. Takes {@link #fileBytes} bytes.
+   *
+   * @param grid    grid to write.
+   * @param channel channel of file.
+   * @throws IOException if file cannot be written.
+   */
+  public static void write(BooleanGrid grid, FileChannel channel) throws IOException {
+    var buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    long word = 0;
+    var bit = 0;
+    for (int i = 0; i < grid.getRows(); i++) {
+      for (int j = 0; j < grid.getColumns(); j++) {
+        if (grid.get(i, j)) {
+          word |= 1L << bit;
+        }
+        if (++bit == Long.SIZE) {
+          putWord(channel, buffer, word);
+          word = 0;
+          bit = 0;
+        }
+      }
+    }
+    if (bit > 0) {
+      putWord(channel, buffer, word);
+    }
+    OffHeapDoubleGrid.flush(channel, buffer);
+  }
+
+  private static void putWord(FileChannel channel, ByteBuffer buffer, long word) throws IOException {
+    if (buffer.remaining() < Long.BYTES) {
+      OffHeapDoubleGrid.flush(channel, buffer);
+    }
+    buffer.putLong(word);
+  }
+
+  @Override
+  public int getRows() {
+    return rows;
+  }
+
+  @Override
+  public int getColumns() {
+    return columns;
+  }
+
+  @Override
+  public boolean get(int row, int column) {
+    var index = (long) row * columns + column;
+    var offset = (int) (index & CHUNK_MASK);
+    var word = chunks[(int) (index >>> CHUNK_BITS)].get(offset >>> 6);
+    return (word & (1L << offset)) != 0;
+  }
+
+  /**
+   * Sets value of a cell.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @param value  new value for cell.
+   * @throws java.nio.ReadOnlyBufferException if grid was mapped from a file.
+   */
+  @Override
+  public void set(int row, int column, boolean value) {
+    var index = (long) row * columns + column;
+    var offset = (int) (index & CHUNK_MASK);
+    var chunk = chunks[(int) (index >>> CHUNK_BITS)];
+    var word = chunk.get(offset >>> 6);
+    chunk.put(offset >>> 6, value ? word | (1L << offset) : word & ~(1L << offset));
+  }
+
+  @Override
+  public void clear() {
+    for (var chunk : chunks) {
+      for (int i = 0; i < chunk.capacity(); i++) {
+        chunk.put(i, 0L);
+      }
+    }
+  }
+}
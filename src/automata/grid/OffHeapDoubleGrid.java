@@ -0,0 +1,189 @@
+package automata.grid;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A grid of double values stored off heap, so that large grids are not scanned by garbage collector and do not count
+ * towards heap size. Cells are indexed with a {@code long}, so grids can have more than 2<sup>31</sup> cells. As a
+ * single buffer cannot be that large, values are split into fixed size chunks.
+ * <p>
+ * A grid can also be mapped read-only from a file written by {@link #write}. Pages of a mapped file are shared by
+ * all processes mapping it, so several simulations on the same host can use a single copy of a large floor field.
+ * <p>
+ * Memory is released when grid is no longer reachable.
+ *
+ * @author Pepe Gallardo
+ */
+public final class OffHeapDoubleGrid implements DoubleGrid {
+  // number of cells in each chunk is a power of two
+  private static final int CHUNK_BITS = 27;
+  private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+  private static final int MAGIC = 0x47524944; // "GRID"
+  private static final int HEADER_BYTES = 16;
+
+  private final int rows, columns;
+  private final DoubleBuffer[] chunks;
+
+  private OffHeapDoubleGrid(int rows, int columns, DoubleBuffer[] chunks) {
+    this.rows = rows;
+    this.columns = columns;
+    this.chunks = chunks;
+  }
+
+  public OffHeapDoubleGrid(int rows, int columns) {
+    this(rows, columns, new DoubleBuffer[numberOfChunks(rows, columns)]);
+    for (int i = 0; i < chunks.length; i++) {
+      chunks[i] = ByteBuffer.allocateDirect(chunkCells(i) * Double.BYTES).order(ByteOrder.nativeOrder())
+          .asDoubleBuffer();
+    }
+  }
+
+  private static int numberOfChunks(int rows, int columns) {
+    return (int) (((long) rows * columns + CHUNK_MASK) >>> CHUNK_BITS);
+  }
+
+  private int chunkCells(int chunk) {
+    return (int) Math.min(1L << CHUNK_BITS, (long) rows * columns - ((long) chunk << CHUNK_BITS));
+  }
+
+  /**
+   * Maps read-only a grid stored in a file by {@link #write}. File should not be modified while grid is used.
+   *
+   * @param path path of file.
+   * @return a read-only grid whose values are those stored in file.
+   * @throws IOException if file cannot be read or is not a valid grid.
+   */
+  public static OffHeapDoubleGrid map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+      }
+      header.flip();
+      if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+        throw new IOException("map: " + path + " is not a grid");
+      }
+      var rows = header.getInt();
+      var columns = header.getInt();
+      if (rows <= 0 || columns <= 0 || channel.size() != HEADER_BYTES + (long) rows * columns * Double.BYTES) {
+        throw new IOException("map: " + path + " is not a valid grid");
+      }
+      return map(channel, HEADER_BYTES, rows, columns);
+    }
+  }
+
+  /**
+   * Number of bytes taken by a grid without header in a file written by {@link #write(DoubleGrid, FileChannel)}.
+   *
+   * @param rows    number of rows in grid.
+   * @param columns number of columns in grid.
+   * @return number of bytes taken by grid in file.
+   */
+  public static long fileBytes(int rows, int columns) {
+    return (long) rows * columns * Double.BYTES;
+  }
+
+  /**
+   * Maps read-only a grid without header stored in a region of a file by {@link #write(DoubleGrid, FileChannel)}.
+   * File should not be modified while grid is used. Mappings remain valid after channel is closed.
+   *
+   * @param channel  channel of file.
+   * @param position position in file where grid starts.
+   * @param rows     number of rows in grid.
+   * @param columns  number of columns in grid.
+   * @return a read-only grid whose values are those stored in file.
+   * @throws IOException if file cannot be mapped.
+   */
+  public static OffHeapDoubleGrid map(FileChannel channel, long position, int rows, int columns) throws IOException {
+    var grid = new OffHeapDoubleGrid(rows, columns, new DoubleBuffer[numberOfChunks(rows, columns)]);
+    for (int i = 0; i < grid.chunks.length; i++) {
+      var chunkPosition = position + ((long) i << CHUNK_BITS) * Double.BYTES;
+      var chunkBytes = (long) grid.chunkCells(i) * Double.BYTES;
+      grid.chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, chunkPosition, chunkBytes)
+          .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+    return grid;
+  }
+
+  /**
+   * Writes a grid to a file, so that it can be mapped by {@link #map}.
+   *
+   * @param grid grid to write.
+   * @param path path of file.
+   * @throws IOException if file cannot be written.
+   */
+  public static void write(DoubleGrid grid, Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(grid.getRows()).putInt(grid.getColumns()).putInt(0);
+      flush(channel, header);
+      write(grid, channel);
+    }
+  }
+
+  /**
+   * Writes a grid without header at current position of a file, in row major order, so that it can be mapped by
+   * {@link #map(FileChannel, long, int, int)}. Takes {@link #fileBytes} bytes.
+   *
+   * @param grid    grid to write.
+   * @param channel channel of file.
+   * @throws IOException if file cannot be written.
+   */
+  public static void write(DoubleGrid grid, FileChannel channel) throws IOException {
+    var buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = 0; i < grid.getRows(); i++) {
+      for (int j = 0; j < grid.getColumns(); j++) {
+        if (buffer.remaining() < Double.BYTES) {
+          flush(channel, buffer);
+        }
+        buffer.putDouble(grid.get(i, j));
+      }
+    }
+    flush(channel, buffer);
+  }
+
+  static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public int getRows() {
+    return rows;
+  }
+
+  @Override
+  public int getColumns() {
+    return columns;
+  }
+
+  @Override
+  public double get(int row, int column) {
+    var index = (long) row * columns + column;
+    return chunks[(int) (index >>> CHUNK_BITS)].get((int) (index & CHUNK_MASK));
+  }
+
+  /**
+   * Sets value of a cell.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @param value  new value for cell.
+   * @throws java.nio.ReadOnlyBufferException if grid was mapped from a file.
+   */
+  @Override
+  public void set(int row, int column, double value) {
+    var index = (long) row * columns + column;
+    chunks[(int) (index >>> CHUNK_BITS)].put((int) (index & CHUNK_MASK), value);
+  }
+}
@@ -0,0 +1,50 @@
+package automata.instrumentation;
+
+/**
+ * Management interface exposing live metrics of a batch of simulations through JMX.
+ *
+ * @author Pepe Gallardo
+ */
+public interface BatchMetricsMXBean {
+  /**
+   * Number of threads running simulations.
+   *
+   * @return number of threads running simulations.
+   */
+  int getThreads();
+
+  /**
+   * Number of submitted simulations waiting for a thread.
+   *
+   * @return number of submitted simulations waiting for a thread.
+   */
+  int getQueueDepth();
+
+  /**
+   * Number of simulations currently running.
+   *
+   * @return number of simulations currently running.
+   */
+  int getActiveRuns();
+
+  /**
+   * Number of simulations submitted so far.
+   *
+   * @return number of simulations submitted so far.
+   */
+  long getSubmittedRuns();
+
+  /**
+   * Number of simulations that completed.
+   *
+   * @return number of simulations that completed.
+   */
+  long getCompletedRuns();
+
+  /**
+   * Number of simulations that failed with an exception.
+   *
+   * @return number of simulations that failed with an exception.
+   */
+  long getFailedRuns();
+}
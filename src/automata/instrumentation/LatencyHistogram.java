@@ -0,0 +1,160 @@
+package automata.instrumentation;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of latencies in nanoseconds with bounded relative error. Values are recorded in buckets whose width
+ * doubles every {@code 2^precision} buckets, so recording a value only increments a counter and memory does not
+ * depend on number of values. With default precision relative error of reported percentiles is below 1/64.
+ * <p>
+ * Recording is not synchronized: a histogram should be written by a single thread. Histograms written by different
+ * threads can be merged.
+ *
+ * @author Pepe Gallardo
+ */
+public class LatencyHistogram {
+  private static final int DEFAULT_PRECISION = 6;
+
+  private final int precision;
+  private final int subBuckets;
+  private final long[] counts;
+  private long count;
+  private long sum;
+  private long minimum, maximum;
+
+  /**
+   * Creates an empty histogram.
+   *
+   * @param precision number of bits of precision of each recorded value, between 1 and 10.
+   */
+  public LatencyHistogram(int precision) {
+    if (precision < 1 || precision > 10) {
+      throw new IllegalArgumentException("LatencyHistogram: precision must be in [1, 10]");
+    }
+    this.precision = precision;
+    this.subBuckets = 1 << precision;
+    // values below 2^precision are recorded exactly. Each further power of two has subBuckets / 2 buckets
+    this.counts = new long[subBuckets + (Long.SIZE - precision) * subBuckets / 2];
+    this.minimum = Long.MAX_VALUE;
+    this.maximum = 0;
+  }
+
+  /**
+   * Creates an empty histogram with default precision.
+   */
+  public LatencyHistogram() {
+    this(DEFAULT_PRECISION);
+  }
+
+  private int bucket(long value) {
+    if (value < subBuckets) {
+      return (int) value;
+    }
+    var magnitude = 63 - Long.numberOfLeadingZeros(value); // >= precision
+    var shift = magnitude - precision + 1;
+    var subBucket = (int) (value >>> shift); // in [subBuckets / 2, subBuckets)
+    return subBuckets + (shift - 1) * (subBuckets / 2) + subBucket - subBuckets / 2;
+  }
+
+  private long lowestValue(int bucket) {
+    if (bucket < subBuckets) {
+      return bucket;
+    }
+    var shift = (bucket - subBuckets) / (subBuckets / 2) + 1;
+    var subBucket = (bucket - subBuckets) % (subBuckets / 2) + subBuckets / 2;
+    return (long) subBucket << shift;
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos latency in nanoseconds. Negative values are recorded as 0.
+   */
+  public void record(long nanos) {
+    var value = Math.max(0, nanos);
+    counts[bucket(value)]++;
+    count++;
+    sum += value;
+    if (value < minimum) {
+      minimum = value;
+    }
+    if (value > maximum) {
+      maximum = value;
+    }
+  }
+
+  /**
+   * Adds all latencies recorded by another histogram with same precision to this one.
+   *
+   * @param that histogram to merge.
+   */
+  public void merge(LatencyHistogram that) {
+    if (that.precision != precision) {
+      throw new IllegalArgumentException("merge: histograms must have same precision");
+    }
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += that.counts[i];
+    }
+    count += that.count;
+    sum += that.sum;
+    minimum = Math.min(minimum, that.minimum);
+    maximum = Math.max(maximum, that.maximum);
+  }
+
+  /**
+   * Removes all recorded latencies.
+   */
+  public void reset() {
+    Arrays.fill(counts, 0);
+    count = 0;
+    sum = 0;
+    minimum = Long.MAX_VALUE;
+    maximum = 0;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    return count == 0 ? Double.NaN : (double) sum / count;
+  }
+
+  public long getMinimum() {
+    return count == 0 ? 0 : minimum;
+  }
+
+  public long getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * Estimates a percentile of recorded latencies.
+   *
+   * @param percentRank rank of percentile, in [0,100].
+   * @return lowest value of bucket containing percentile, or 0 if no latencies have been recorded.
+   */
+  public long percentile(double percentRank) {
+    if (percentRank < 0.0 || percentRank > 100.0) {
+      throw new IllegalArgumentException("percentile: percentRank must be in [0,100]");
+    }
+    if (count == 0) {
+      return 0;
+    }
+    var rank = Math.max(1, (long) Math.ceil(percentRank / 100 * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(minimum, Math.min(maximum, lowestValue(i)));
+      }
+    }
+    return maximum;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("LatencyHistogram[count=%d, mean=%.0f, p50=%d, p90=%d, p99=%d, p999=%d, maximum=%d]",
+        count, getMean(), percentile(50), percentile(90), percentile(99), percentile(99.9), maximum);
+  }
+}
@@ -0,0 +1,51 @@
+package automata.instrumentation;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registration of management beans with platform MBean server under {@code automata} domain. Metrics are a
+ * convenience for monitoring, so failing to register them never stops a simulation.
+ *
+ * @author Pepe Gallardo
+ */
+public final class MBeans {
+  private static final String DOMAIN = "automata";
+
+  private MBeans() {
+  }
+
+  /**
+   * Registers a management bean.
+   *
+   * @param bean          bean to register.
+   * @param keyProperties key properties of its name, such as {@code type=Simulations}.
+   * @return name under which bean was registered or {@code null} if it could not be registered.
+   */
+  public static ObjectName register(Object bean, String keyProperties) {
+    try {
+      var name = new ObjectName(DOMAIN + ":" + keyProperties);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(bean, name);
+      return name;
+    } catch (JMException e) {
+      System.err.println("Could not register metrics " + keyProperties + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Unregisters a management bean.
+   *
+   * @param name name under which bean was registered or {@code null} if it was not registered.
+   */
+  public static void unregister(ObjectName name) {
+    if (name == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    } catch (JMException ignored) {
+    }
+  }
+}
@@ -0,0 +1,47 @@
+package automata.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event spanning a whole run of a cellular automaton.
+ *
+ * @author Pepe Gallardo
+ */
+@Name("automata.Run")
+@Label("Run")
+@Category({"Cellular Automaton"})
+@Description("A run of a cellular automaton until end conditions are met")
+public class RunEvent extends Event {
+  @Label("Rows")
+  public int rows;
+
+  @Label("Columns")
+  public int columns;
+
+  @Label("Initial Pedestrians")
+  public int initialPedestrians;
+
+  @Label("Time Steps")
+  public int timeSteps;
+
+  @Label("Evacuees")
+  public long evacuees;
+
+  @Label("Non Evacuees")
+  public int nonEvacuees;
+
+  @Label("Termination Reason")
+  public String terminationReason;
+
+  @Label("Mean Step Latency")
+  @Description("Mean wall clock duration of a time step in nanoseconds, if latencies were recorded")
+  public double meanStepNanos;
+
+  @Label("99th Percentile Step Latency")
+  @Description("99th percentile of wall clock duration of a time step in nanoseconds, if latencies were recorded")
+  public long p99StepNanos;
+}
@@ -0,0 +1,174 @@
+package automata.instrumentation;
+
+import javax.management.ObjectName;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live metrics of running simulations. Each automaton keeps its own metrics, which are also added to metrics of all
+ * simulations in this JVM, so that they can be read with any JMX client. Counters are striped, so that simulations
+ * running concurrently never contend when updating them, and are only summed up when read.
+ *
+ * @author Pepe Gallardo
+ */
+public class SimulationMetrics implements SimulationMetricsMXBean {
+  private static final AtomicLong nextIdentifier = new AtomicLong(0);
+
+  private final SimulationMetrics parent;
+  private final LongAdder runningSimulations = new LongAdder();
+  private final LongAdder timeSteps = new LongAdder();
+  private final LongAdder pedestriansInScenario = new LongAdder();
+  private final LongAdder pedestriansOutOfScenario = new LongAdder();
+  private final LongAdder moves = new LongAdder();
+  private final LongAdder conflicts = new LongAdder();
+  private final LongAdder floorFieldInitializationNanos = new LongAdder();
+
+  // last sample taken for computing steps per second. Only used when metrics are read
+  private long sampleNanos, sampleTimeSteps;
+  private double stepsPerSecond;
+
+  private SimulationMetrics(SimulationMetrics parent) {
+    this.parent = parent;
+    this.sampleNanos = System.nanoTime();
+    this.sampleTimeSteps = 0;
+    this.stepsPerSecond = 0;
+  }
+
+  /**
+   * Creates metrics for a single simulation. They are also added to metrics of all simulations.
+   */
+  public SimulationMetrics() {
+    this(Global.metrics);
+  }
+
+  private static final class Global {
+    // registered on first use
+    static final SimulationMetrics metrics = new SimulationMetrics(null);
+
+    static {
+      MBeans.register(metrics, "type=Simulations");
+    }
+  }
+
+  /**
+   * Metrics of all simulations in this JVM, registered as {@code automata:type=Simulations}.
+   *
+   * @return metrics of all simulations in this JVM.
+   */
+  public static SimulationMetrics global() {
+    return Global.metrics;
+  }
+
+  /**
+   * Registers these metrics with platform MBean server as {@code automata:type=CellularAutomaton,id=<n>}.
+   *
+   * @return name under which metrics were registered or {@code null} if they could not be registered.
+   */
+  public ObjectName register() {
+    return MBeans.register(this, "type=CellularAutomaton,id=" + nextIdentifier.incrementAndGet());
+  }
+
+  /**
+   * Records that a simulation started running.
+   *
+   * @param pedestriansInScenario number of pedestrians within scenario when simulation started.
+   * @param floorFieldNanos       nanoseconds spent initializing static floor field of scenario.
+   */
+  public void started(int pedestriansInScenario, long floorFieldNanos) {
+    runningSimulations.increment();
+    this.pedestriansInScenario.add(pedestriansInScenario);
+    floorFieldInitializationNanos.add(floorFieldNanos);
+    if (parent != null) {
+      parent.started(pedestriansInScenario, floorFieldNanos);
+    }
+  }
+
+  /**
+   * Records a discrete time step.
+   *
+   * @param stepMetrics metrics collected for time step.
+   */
+  public void timeStep(StepMetrics stepMetrics) {
+    timeSteps.increment();
+    moves.add(stepMetrics.getMoves());
+    conflicts.add(stepMetrics.getConflicts());
+    pedestriansInScenario.add(stepMetrics.getEntries());
+    var exits = stepMetrics.getExits();
+    if (exits > 0) {
+      pedestriansInScenario.add(-exits);
+      pedestriansOutOfScenario.add(exits);
+    }
+    if (parent != null) {
+      parent.timeStep(stepMetrics);
+    }
+  }
+
+  /**
+   * Records that a simulation finished running.
+   *
+   * @param pedestriansInScenario number of pedestrians that remained within scenario.
+   */
+  public void finished(int pedestriansInScenario) {
+    runningSimulations.decrement();
+    this.pedestriansInScenario.add(-pedestriansInScenario);
+    if (parent != null) {
+      parent.finished(pedestriansInScenario);
+    }
+  }
+
+  @Override
+  public long getRunningSimulations() {
+    return runningSimulations.sum();
+  }
+
+  @Override
+  public long getTimeSteps() {
+    return timeSteps.sum();
+  }
+
+  @Override
+  public synchronized double getStepsPerSecond() {
+    var now = System.nanoTime();
+    var elapsed = now - sampleNanos;
+    // keep previous rate if sampled too recently to be meaningful
+    if (elapsed >= 100_000_000L) {
+      var steps = timeSteps.sum();
+      stepsPerSecond = (steps - sampleTimeSteps) * 1e9 / elapsed;
+      sampleNanos = now;
+      sampleTimeSteps = steps;
+    }
+    return stepsPerSecond;
+  }
+
+  @Override
+  public long getPedestriansInScenario() {
+    return pedestriansInScenario.sum();
+  }
+
+  @Override
+  public long getPedestriansOutOfScenario() {
+    return pedestriansOutOfScenario.sum();
+  }
+
+  @Override
+  public long getMoves() {
+    return moves.sum();
+  }
+
+  @Override
+  public long getConflicts() {
+    return conflicts.sum();
+  }
+
+  @Override
+  public double getConflictRate() {
+    var conflicts = this.conflicts.sum();
+    var attempts = moves.sum() + conflicts;
+    return attempts == 0 ? 0 : (double) conflicts / attempts;
+  }
+
+  @Override
+  public double getFloorFieldInitializationMillis() {
+    return floorFieldInitializationNanos.sum() / 1e6;
+  }
+}
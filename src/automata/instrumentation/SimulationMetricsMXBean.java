@@ -0,0 +1,71 @@
+package automata.instrumentation;
+
+/**
+ * Management interface exposing live metrics of simulations through JMX.
+ *
+ * @author Pepe Gallardo
+ */
+public interface SimulationMetricsMXBean {
+  /**
+   * Number of simulations currently running.
+   *
+   * @return number of simulations currently running.
+   */
+  long getRunningSimulations();
+
+  /**
+   * Number of discrete time steps run.
+   *
+   * @return number of discrete time steps run.
+   */
+  long getTimeSteps();
+
+  /**
+   * Discrete time steps run per second since this attribute was previously read.
+   *
+   * @return discrete time steps run per second.
+   */
+  double getStepsPerSecond();
+
+  /**
+   * Number of pedestrians within scenarios of running simulations.
+   *
+   * @return number of pedestrians within scenarios of running simulations.
+   */
+  long getPedestriansInScenario();
+
+  /**
+   * Number of pedestrians that have evacuated.
+   *
+   * @return number of pedestrians that have evacuated.
+   */
+  long getPedestriansOutOfScenario();
+
+  /**
+   * Number of movements of pedestrians to a new cell.
+   *
+   * @return number of movements of pedestrians to a new cell.
+   */
+  long getMoves();
+
+  /**
+   * Number of movements that were not performed because chosen cell had already been taken.
+   *
+   * @return number of movements that were not performed because chosen cell had already been taken.
+   */
+  long getConflicts();
+
+  /**
+   * Fraction of attempted movements that were not performed because chosen cell had already been taken.
+   *
+   * @return fraction of attempted movements that conflicted, or 0 if no movement has been attempted.
+   */
+  double getConflictRate();
+
+  /**
+   * Milliseconds spent initializing static floor fields of scenarios when simulations started.
+   *
+   * @return milliseconds spent initializing static floor fields.
+   */
+  double getFloorFieldInitializationMillis();
+}
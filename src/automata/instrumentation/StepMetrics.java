@@ -0,0 +1,276 @@
+package automata.instrumentation;
+
+import java.util.Arrays;
+
+/**
+ * Counters and phase durations for one discrete time step of a cellular automaton. Counters are always collected, as
+ * they only cost an increment. Durations are only measured for steps in which timing was requested, so that no clock
+ * is read otherwise. Even then, clock is only read a bounded number of times per step, regardless of number of
+ * pedestrians, so that measuring does not distort durations measured.
+ * <p>
+ * Only accessed by thread running simulation.
+ *
+ * @author Pepe Gallardo
+ */
+public final class StepMetrics {
+  /**
+   * Phases of a time step. Exiting, deciding and resolving movements alternate for each pedestrian, so loop over
+   * pedestrians is timed as a whole and its duration is split among these phases in proportion to durations measured
+   * for a sample of pedestrians.
+   */
+  public enum Phase {
+    /**
+     * Injecting pedestrians from inflow sources.
+     */
+    INFLOW,
+    /**
+     * Clearing next state of automaton.
+     */
+    CLEAR,
+    /**
+     * Shuffling pedestrians.
+     */
+    SHUFFLE,
+    /**
+     * Pedestrians choosing their movements.
+     */
+    DECIDE,
+    /**
+     * Checking for conflicts and moving pedestrians.
+     */
+    RESOLVE,
+    /**
+     * Removing pedestrians that reached an exit.
+     */
+    EXIT,
+    /**
+     * Making next state current one and notifying listeners.
+     */
+    SWAP
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+  // phases alternating for each pedestrian
+  private static final Phase[] PEDESTRIAN_PHASES = {Phase.EXIT, Phase.DECIDE, Phase.RESOLVE};
+  // maximum number of pedestrians timed in each step
+  private static final int SAMPLES_PER_STEP = 32;
+
+  private int entries, moves, conflicts, stuck, exits;
+  private final long[] phaseNanos = new long[PHASES.length];
+  private final long[] sampleNanos = new long[PHASES.length];
+  private boolean timing;
+  private long startNanos, markNanos, totalNanos;
+  private boolean sampling;
+  private int sampleStride, sampleCountdown;
+  private long sampleMarkNanos;
+
+  /**
+   * Starts collecting metrics for a new time step.
+   *
+   * @param timing whether durations of phases should be measured.
+   */
+  public void begin(boolean timing) {
+    entries = 0;
+    moves = 0;
+    conflicts = 0;
+    stuck = 0;
+    exits = 0;
+    this.timing = timing;
+    if (timing) {
+      Arrays.fill(phaseNanos, 0);
+      startNanos = System.nanoTime();
+      markNanos = startNanos;
+    }
+    totalNanos = 0;
+  }
+
+  /**
+   * Attributes time elapsed since previous phase ended to a phase. Does nothing if durations are not being measured.
+   *
+   * @param phase phase that just ended.
+   */
+  public void endPhase(Phase phase) {
+    if (timing) {
+      var now = System.nanoTime();
+      phaseNanos[phase.ordinal()] += now - markNanos;
+      markNanos = now;
+    }
+  }
+
+  /**
+   * Starts loop over pedestrians, attributing time elapsed since previous phase ended to that phase. Only some
+   * pedestrians of loop will be timed.
+   *
+   * @param phase               phase that just ended.
+   * @param numberOfPedestrians number of pedestrians in loop.
+   */
+  public void beginPedestrians(Phase phase, int numberOfPedestrians) {
+    endPhase(phase);
+    if (timing) {
+      Arrays.fill(sampleNanos, 0);
+      sampleStride = Math.max(1, numberOfPedestrians / SAMPLES_PER_STEP);
+      sampleCountdown = 1;
+    }
+    sampling = false;
+  }
+
+  /**
+   * Starts processing next pedestrian in loop. It is timed only if it belongs to sample.
+   */
+  public void nextPedestrian() {
+    if (timing && --sampleCountdown == 0) {
+      sampleCountdown = sampleStride;
+      sampling = true;
+      sampleMarkNanos = System.nanoTime();
+    } else {
+      sampling = false;
+    }
+  }
+
+  /**
+   * Attributes time elapsed since current pedestrian was started, or since its previous phase ended, to a phase. Does
+   * nothing unless current pedestrian is being timed.
+   *
+   * @param phase phase of current pedestrian that just ended.
+   */
+  public void endPedestrianPhase(Phase phase) {
+    if (sampling) {
+      var now = System.nanoTime();
+      sampleNanos[phase.ordinal()] += now - sampleMarkNanos;
+      sampleMarkNanos = now;
+    }
+  }
+
+  /**
+   * Finishes loop over pedestrians. Its duration is split among phases of pedestrians in proportion to time measured
+   * for each of them on sampled pedestrians.
+   */
+  public void endPedestrians() {
+    sampling = false;
+    if (timing) {
+      var now = System.nanoTime();
+      var loopNanos = now - markNanos;
+      markNanos = now;
+      var sampledNanos = 0L;
+      for (var phase : PEDESTRIAN_PHASES) {
+        sampledNanos += sampleNanos[phase.ordinal()];
+      }
+      if (sampledNanos == 0) {
+        // no pedestrian was timed
+        phaseNanos[Phase.RESOLVE.ordinal()] += loopNanos;
+        return;
+      }
+      var assignedNanos = 0L;
+      for (int i = 0; i < PEDESTRIAN_PHASES.length - 1; i++) {
+        var phase = PEDESTRIAN_PHASES[i].ordinal();
+        var nanos = Math.round((double) loopNanos * sampleNanos[phase] / sampledNanos);
+        phaseNanos[phase] += nanos;
+        assignedNanos += nanos;
+      }
+      // so that phases add up to whole loop
+      phaseNanos[PEDESTRIAN_PHASES[PEDESTRIAN_PHASES.length - 1].ordinal()] += loopNanos - assignedNanos;
+    }
+  }
+
+  /**
+   * Finishes collecting metrics for current time step.
+   */
+  public void end() {
+    if (timing) {
+      totalNanos = markNanos - startNanos;
+    }
+  }
+
+  public void entered(int numberOfPedestrians) {
+    entries += numberOfPedestrians;
+  }
+
+  public void moved() {
+    moves++;
+  }
+
+  public void conflicted() {
+    conflicts++;
+  }
+
+  public void stuck() {
+    stuck++;
+  }
+
+  public void exited() {
+    exits++;
+  }
+
+  /**
+   * Number of pedestrians that entered scenario through inflow sources.
+   *
+   * @return number of pedestrians that entered scenario through inflow sources.
+   */
+  public int getEntries() {
+    return entries;
+  }
+
+  /**
+   * Number of pedestrians that moved to a new cell.
+   *
+   * @return number of pedestrians that moved to a new cell.
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * Number of pedestrians that could not move because their chosen cell had already been taken.
+   *
+   * @return number of pedestrians that could not move because their chosen cell had already been taken.
+   */
+  public int getConflicts() {
+    return conflicts;
+  }
+
+  /**
+   * Number of pedestrians that had no cell to move to.
+   *
+   * @return number of pedestrians that had no cell to move to.
+   */
+  public int getStuck() {
+    return stuck;
+  }
+
+  /**
+   * Number of pedestrians that evacuated.
+   *
+   * @return number of pedestrians that evacuated.
+   */
+  public int getExits() {
+    return exits;
+  }
+
+  /**
+   * Whether durations were measured for this time step.
+   *
+   * @return {@code true} if durations were measured for this time step.
+   */
+  public boolean isTimed() {
+    return timing;
+  }
+
+  /**
+   * Nanoseconds spent in a phase, if durations were measured.
+   *
+   * @param phase a phase of time step.
+   * @return nanoseconds spent in phase or 0 if durations were not measured.
+   */
+  public long getNanos(Phase phase) {
+    return timing ? phaseNanos[phase.ordinal()] : 0;
+  }
+
+  /**
+   * Nanoseconds spent in whole time step, if durations were measured.
+   *
+   * @return nanoseconds spent in whole time step or 0 if durations were not measured.
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+}
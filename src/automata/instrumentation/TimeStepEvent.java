@@ -0,0 +1,101 @@
+package automata.instrumentation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event emitted for each discrete time step of a cellular automaton. Disabled by default, as a
+ * simulation runs many short time steps. Enable it in a recording with {@code automata.TimeStep#enabled=true}.
+ *
+ * @author Pepe Gallardo
+ */
+@Name("automata.TimeStep")
+@Label("Time Step")
+@Category({"Cellular Automaton"})
+@Description("One discrete time step of a cellular automaton")
+@Enabled(false)
+@StackTrace(false)
+public class TimeStepEvent extends Event {
+  @Label("Time Step")
+  public int timeStep;
+
+  @Label("Pedestrians")
+  @Description("Pedestrians in scenario when time step started")
+  public int pedestrians;
+
+  @Label("Entries")
+  @Description("Pedestrians that entered through inflow sources")
+  public int entries;
+
+  @Label("Moves")
+  public int moves;
+
+  @Label("Conflicts")
+  @Description("Pedestrians that could not move because their chosen cell had already been taken")
+  public int conflicts;
+
+  @Label("Stuck")
+  @Description("Pedestrians that had no cell to move to")
+  public int stuck;
+
+  @Label("Exits")
+  public int exits;
+
+  @Label("Inflow")
+  @Timespan
+  public long inflow;
+
+  @Label("Clear")
+  @Timespan
+  public long clear;
+
+  @Label("Shuffle")
+  @Timespan
+  public long shuffle;
+
+  @Label("Decide")
+  @Timespan
+  public long decide;
+
+  @Label("Resolve")
+  @Timespan
+  public long resolve;
+
+  @Label("Exit Handling")
+  @Timespan
+  public long exit;
+
+  @Label("Swap")
+  @Timespan
+  public long swap;
+
+  /**
+   * Copies metrics collected for a time step into this event.
+   *
+   * @param timeStep    number of time step.
+   * @param pedestrians pedestrians in scenario when time step started.
+   * @param metrics     metrics collected for time step.
+   */
+  public void set(int timeStep, int pedestrians, StepMetrics metrics) {
+    this.timeStep = timeStep;
+    this.pedestrians = pedestrians;
+    this.entries = metrics.getEntries();
+    this.moves = metrics.getMoves();
+    this.conflicts = metrics.getConflicts();
+    this.stuck = metrics.getStuck();
+    this.exits = metrics.getExits();
+    this.inflow = metrics.getNanos(StepMetrics.Phase.INFLOW);
+    this.clear = metrics.getNanos(StepMetrics.Phase.CLEAR);
+    this.shuffle = metrics.getNanos(StepMetrics.Phase.SHUFFLE);
+    this.decide = metrics.getNanos(StepMetrics.Phase.DECIDE);
+    this.resolve = metrics.getNanos(StepMetrics.Phase.RESOLVE);
+    this.exit = metrics.getNanos(StepMetrics.Phase.EXIT);
+    this.swap = metrics.getNanos(StepMetrics.Phase.SWAP);
+  }
+}
@@ -0,0 +1,195 @@
+package automata.observer;
+
+/**
+ * An event happening during a time step of a simulation, as delivered to a {@link StepObserver}. Events are
+ * preallocated slots of a ring buffer that are reused, so an observer should copy any value it needs to keep rather
+ * than keeping the event itself.
+ * <p>
+ * Meaning of each value depends on kind of event. Values not meaningful for a kind are 0.
+ *
+ * @author Pepe Gallardo
+ */
+public final class StepEvent {
+  /**
+   * Kinds of events.
+   */
+  public enum Kind {
+    /**
+     * A pedestrian moved from its cell to target cell.
+     */
+    MOVE,
+    /**
+     * A pedestrian could not move to target cell as another pedestrian had already taken it.
+     */
+    CONFLICT,
+    /**
+     * A pedestrian on an exit cell left scenario through exit with index {@link #getExit}.
+     */
+    EXIT,
+    /**
+     * A time step ended. Carries a summary of that time step.
+     */
+    STEP
+  }
+
+  Kind kind;
+  int timeSteps;
+  int identifier;
+  int row, column;
+  int targetRow, targetColumn;
+  int exit;
+  int pedestrians, entries, moves, conflicts, stuck, exits;
+
+  StepEvent() {
+  }
+
+  void copyFrom(StepEvent that) {
+    this.kind = that.kind;
+    this.timeSteps = that.timeSteps;
+    this.identifier = that.identifier;
+    this.row = that.row;
+    this.column = that.column;
+    this.targetRow = that.targetRow;
+    this.targetColumn = that.targetColumn;
+    this.exit = that.exit;
+    this.pedestrians = that.pedestrians;
+    this.entries = that.entries;
+    this.moves = that.moves;
+    this.conflicts = that.conflicts;
+    this.stuck = that.stuck;
+    this.exits = that.exits;
+  }
+
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Time step when event happened, counted from 0.
+   *
+   * @return time step when event happened.
+   */
+  public int getTimeSteps() {
+    return timeSteps;
+  }
+
+  /**
+   * Identifier of pedestrian involved in a {@code MOVE}, {@code CONFLICT} or {@code EXIT} event.
+   *
+   * @return identifier of pedestrian involved in event.
+   */
+  public int getIdentifier() {
+    return identifier;
+  }
+
+  /**
+   * Row of pedestrian before a {@code MOVE}, {@code CONFLICT} or {@code EXIT} event.
+   *
+   * @return row of pedestrian before event.
+   */
+  public int getRow() {
+    return row;
+  }
+
+  /**
+   * Column of pedestrian before a {@code MOVE}, {@code CONFLICT} or {@code EXIT} event.
+   *
+   * @return column of pedestrian before event.
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  /**
+   * Row of cell pedestrian moved or tried to move to in a {@code MOVE} or {@code CONFLICT} event.
+   *
+   * @return row of target cell.
+   */
+  public int getTargetRow() {
+    return targetRow;
+  }
+
+  /**
+   * Column of cell pedestrian moved or tried to move to in a {@code MOVE} or {@code CONFLICT} event.
+   *
+   * @return column of target cell.
+   */
+  public int getTargetColumn() {
+    return targetColumn;
+  }
+
+  /**
+   * Index of exit used in an {@code EXIT} event.
+   *
+   * @return index of exit used.
+   */
+  public int getExit() {
+    return exit;
+  }
+
+  /**
+   * Number of pedestrians in scenario at end of time step, for a {@code STEP} event.
+   *
+   * @return number of pedestrians in scenario at end of time step.
+   */
+  public int getPedestrians() {
+    return pedestrians;
+  }
+
+  /**
+   * Number of pedestrians entering scenario during time step, for a {@code STEP} event.
+   *
+   * @return number of pedestrians entering scenario during time step.
+   */
+  public int getEntries() {
+    return entries;
+  }
+
+  /**
+   * Number of pedestrians moving during time step, for a {@code STEP} event.
+   *
+   * @return number of pedestrians moving during time step.
+   */
+  public int getMoves() {
+    return moves;
+  }
+
+  /**
+   * Number of pedestrians that could not move because of a conflict during time step, for a {@code STEP} event.
+   *
+   * @return number of conflicts during time step.
+   */
+  public int getConflicts() {
+    return conflicts;
+  }
+
+  /**
+   * Number of pedestrians with no cell to move to during time step, for a {@code STEP} event.
+   *
+   * @return number of stuck pedestrians during time step.
+   */
+  public int getStuck() {
+    return stuck;
+  }
+
+  /**
+   * Number of pedestrians leaving scenario during time step, for a {@code STEP} event.
+   *
+   * @return number of pedestrians leaving scenario during time step.
+   */
+  public int getExits() {
+    return exits;
+  }
+
+  @Override
+  public String toString() {
+    return switch (kind) {
+      case MOVE, CONFLICT -> kind + "[timeSteps=" + timeSteps + ", identifier=" + identifier + ", row=" + row
+          + ", column=" + column + ", targetRow=" + targetRow + ", targetColumn=" + targetColumn + "]";
+      case EXIT -> kind + "[timeSteps=" + timeSteps + ", identifier=" + identifier + ", row=" + row
+          + ", column=" + column + ", exit=" + exit + "]";
+      case STEP -> kind + "[timeSteps=" + timeSteps + ", pedestrians=" + pedestrians + ", entries=" + entries
+          + ", moves=" + moves + ", conflicts=" + conflicts + ", stuck=" + stuck + ", exits=" + exits + "]";
+    };
+  }
+}
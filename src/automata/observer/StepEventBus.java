@@ -0,0 +1,383 @@
+package automata.observer;
+
+import automata.instrumentation.StepMetrics;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Dispatches events happening during time steps of a simulation to observers without calling them from simulation
+ * thread. Simulation thread is the single producer: it fills preallocated slots of a ring buffer and makes events of
+ * a time step visible to observers at once when step ends, so that only one volatile write is needed per time step.
+ * Each observer runs on a thread of its own and keeps its own sequence number of next event to read.
+ * <p>
+ * What happens when an observer falls behind and ring buffer is full depends on its {@link Overflow} policy: either
+ * simulation waits for it, or observer skips events that have been overwritten and resumes from latest ones.
+ *
+ * @author Pepe Gallardo
+ */
+public class StepEventBus implements AutoCloseable {
+  /**
+   * What happens when an observer falls a whole ring buffer behind simulation.
+   */
+  public enum Overflow {
+    /**
+     * Simulation waits until observer frees some slot (backpressure). Observer never misses an event.
+     */
+    BLOCK,
+    /**
+     * Simulation overwrites events not yet read by observer, which skips them and resumes from latest events.
+     * Observer never slows down simulation.
+     */
+    SKIP
+  }
+
+  private final StepEvent[] slots;
+  private final int mask;
+  // sequence number of event held by each slot, or -1 while it is being written. Only used if some observer skips
+  private final AtomicLongArray stamps;
+  private final boolean stamping;
+  private final List<Consumer> consumers;
+
+  // written by producer, read by consumers
+  private volatile long published;
+  private volatile boolean closed;
+
+  // only accessed by producer
+  private long tail;
+  private long cachedGate;
+
+  /**
+   * An observer along with its thread and its position in ring buffer.
+   */
+  private final class Consumer implements Runnable {
+    private final StepObserver observer;
+    private final Overflow overflow;
+    // sequence number of next event to read. Producer waits on it only if overflow policy is BLOCK
+    private volatile long sequence;
+    private volatile long skipped;
+    private final StepEvent copy;
+    private Thread thread;
+
+    private Consumer(StepObserver observer, Overflow overflow) {
+      this.observer = observer;
+      this.overflow = overflow;
+      this.copy = new StepEvent();
+    }
+
+    @Override
+    public void run() {
+      var next = 0L;
+      var skippedEvents = 0L;
+      var idle = 0;
+      try {
+        while (true) {
+          var available = published;
+          if (next == available) {
+            if (closed && next == published) {
+              break;
+            }
+            if (++idle < 100) {
+              Thread.onSpinWait();
+            } else {
+              LockSupport.parkNanos(50_000);
+            }
+            continue;
+          }
+          idle = 0;
+          if (overflow == Overflow.BLOCK) {
+            for (; next < available; next++) {
+              observer.onEvent(slots[(int) next & mask]);
+            }
+            sequence = next;
+          } else {
+            while (next < available) {
+              if (read(next)) {
+                observer.onEvent(copy);
+                next++;
+              } else {
+                // slot was overwritten, so resume from latest events
+                var latest = published;
+                skippedEvents += latest - next;
+                skipped = skippedEvents;
+                next = latest;
+                break;
+              }
+            }
+          }
+        }
+      } catch (RuntimeException e) {
+        System.err.println("StepEventBus: observer " + observer + " failed and was removed: " + e);
+      } finally {
+        // producer should never wait for an observer no longer running
+        sequence = Long.MAX_VALUE;
+      }
+      observer.onClose(skippedEvents);
+    }
+
+    // copies event with given sequence number, if it has not been overwritten
+    private boolean read(long sequence) {
+      var index = (int) sequence & mask;
+      if (stamps.getAcquire(index) != sequence) {
+        return false;
+      }
+      copy.copyFrom(slots[index]);
+      // fields must be read before checking stamp again
+      VarHandle.acquireFence();
+      return stamps.get(index) == sequence;
+    }
+  }
+
+  private StepEventBus(Builder builder) {
+    var size = Integer.highestOneBit(builder.capacity);
+    if (size < builder.capacity) {
+      size <<= 1;
+    }
+    this.slots = new StepEvent[size];
+    for (int i = 0; i < size; i++) {
+      slots[i] = new StepEvent();
+    }
+    this.mask = size - 1;
+    this.stamps = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      stamps.set(i, -1);
+    }
+    this.consumers = new ArrayList<>(builder.observers.size());
+    var stamping = false;
+    for (int i = 0; i < builder.observers.size(); i++) {
+      consumers.add(new Consumer(builder.observers.get(i), builder.overflows.get(i)));
+      stamping |= builder.overflows.get(i) == Overflow.SKIP;
+    }
+    this.stamping = stamping;
+    for (int i = 0; i < consumers.size(); i++) {
+      var consumer = consumers.get(i);
+      consumer.thread = new Thread(consumer, builder.name + "-" + (i + 1));
+      consumer.thread.setDaemon(true);
+      consumer.thread.start();
+    }
+  }
+
+  private StepEvent claim() {
+    if (tail - cachedGate >= slots.length) {
+      awaitSpace();
+    }
+    var slot = slots[(int) tail & mask];
+    if (stamping) {
+      // invalidate slot before overwriting it, so that skipping observers do not read a partially written event
+      stamps.setPlain((int) tail & mask, -1);
+      VarHandle.storeStoreFence();
+    }
+    return slot;
+  }
+
+  private void commit() {
+    if (stamping) {
+      stamps.setRelease((int) tail & mask, tail);
+    }
+    tail++;
+  }
+
+  private void awaitSpace() {
+    // make everything written so far visible, so that observers can make progress
+    publish();
+    var spins = 0;
+    while (tail - (cachedGate = gate()) >= slots.length) {
+      if (++spins < 100) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(50_000);
+      }
+    }
+  }
+
+  // smallest sequence number not yet read by an observer that blocks simulation
+  private long gate() {
+    var gate = Long.MAX_VALUE;
+    for (var consumer : consumers) {
+      if (consumer.overflow == Overflow.BLOCK) {
+        gate = Math.min(gate, consumer.sequence);
+      }
+    }
+    return gate;
+  }
+
+  private void publish() {
+    published = tail;
+  }
+
+  private void fill(StepEvent event, StepEvent.Kind kind, int timeSteps, int identifier, int row, int column,
+                    int targetRow, int targetColumn, int exit) {
+    event.kind = kind;
+    event.timeSteps = timeSteps;
+    event.identifier = identifier;
+    event.row = row;
+    event.column = column;
+    event.targetRow = targetRow;
+    event.targetColumn = targetColumn;
+    event.exit = exit;
+    event.pedestrians = event.entries = event.moves = event.conflicts = event.stuck = event.exits = 0;
+  }
+
+  /**
+   * Publishes that a pedestrian moved. Should only be called from simulation thread.
+   *
+   * @param timeSteps    current time step.
+   * @param identifier   identifier of pedestrian.
+   * @param row          row of pedestrian before moving.
+   * @param column       column of pedestrian before moving.
+   * @param targetRow    row of pedestrian after moving.
+   * @param targetColumn column of pedestrian after moving.
+   */
+  public void moved(int timeSteps, int identifier, int row, int column, int targetRow, int targetColumn) {
+    fill(claim(), StepEvent.Kind.MOVE, timeSteps, identifier, row, column, targetRow, targetColumn, 0);
+    commit();
+  }
+
+  /**
+   * Publishes that a pedestrian could not move as another pedestrian had taken its target cell. Should only be
+   * called from simulation thread.
+   *
+   * @param timeSteps    current time step.
+   * @param identifier   identifier of pedestrian.
+   * @param row          row of pedestrian.
+   * @param column       column of pedestrian.
+   * @param targetRow    row of cell pedestrian tried to move to.
+   * @param targetColumn column of cell pedestrian tried to move to.
+   */
+  public void conflicted(int timeSteps, int identifier, int row, int column, int targetRow, int targetColumn) {
+    fill(claim(), StepEvent.Kind.CONFLICT, timeSteps, identifier, row, column, targetRow, targetColumn, 0);
+    commit();
+  }
+
+  /**
+   * Publishes that a pedestrian left scenario. Should only be called from simulation thread.
+   *
+   * @param timeSteps  current time step.
+   * @param identifier identifier of pedestrian.
+   * @param row        row of exit cell.
+   * @param column     column of exit cell.
+   * @param exit       index of exit used.
+   */
+  public void exited(int timeSteps, int identifier, int row, int column, int exit) {
+    fill(claim(), StepEvent.Kind.EXIT, timeSteps, identifier, row, column, 0, 0, exit);
+    commit();
+  }
+
+  /**
+   * Publishes summary of a time step and makes all events of that time step visible to observers. Should only be
+   * called from simulation thread.
+   *
+   * @param timeSteps   time step that ended.
+   * @param pedestrians number of pedestrians in scenario at end of time step.
+   * @param metrics     metrics of time step.
+   */
+  public void stepEnded(int timeSteps, int pedestrians, StepMetrics metrics) {
+    var event = claim();
+    fill(event, StepEvent.Kind.STEP, timeSteps, 0, 0, 0, 0, 0, 0);
+    event.pedestrians = pedestrians;
+    event.entries = metrics.getEntries();
+    event.moves = metrics.getMoves();
+    event.conflicts = metrics.getConflicts();
+    event.stuck = metrics.getStuck();
+    event.exits = metrics.getExits();
+    commit();
+    publish();
+  }
+
+  /**
+   * Number of events an observer has skipped so far because it fell behind.
+   *
+   * @param observer observer registered in this bus.
+   * @return number of events skipped by observer.
+   */
+  public long getSkippedEvents(StepObserver observer) {
+    for (var consumer : consumers) {
+      if (consumer.observer == observer) {
+        return consumer.skipped;
+      }
+    }
+    throw new IllegalArgumentException("getSkippedEvents: observer is not registered in this bus");
+  }
+
+  /**
+   * Makes all events published so far visible, waits for observers to process them and stops their threads. Should
+   * be called from simulation thread once simulation has finished.
+   */
+  @Override
+  public void close() {
+    publish();
+    closed = true;
+    var interrupted = false;
+    for (var consumer : consumers) {
+      while (consumer.thread.isAlive()) {
+        try {
+          consumer.thread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Class for building a step event bus by providing its parameters. Threads of observers are started when bus is
+   * built.
+   */
+  public static final class Builder {
+    private int capacity = 1 << 16;
+    private String name = "StepEventBus";
+    private final List<StepObserver> observers = new ArrayList<>();
+    private final List<Overflow> overflows = new ArrayList<>();
+
+    public Builder() {
+    }
+
+    /**
+     * Sets number of events ring buffer can hold.
+     *
+     * @param capacity minimum number of events ring buffer can hold. Actual capacity is next power of two.
+     * @return this builder.
+     */
+    public Builder capacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    /**
+     * Sets name of bus, used for naming threads of its observers.
+     *
+     * @param name name of bus.
+     * @return this builder.
+     */
+    public Builder name(String name) {
+      this.name = name;
+      return this;
+    }
+
+    /**
+     * Registers an observer.
+     *
+     * @param observer observer to register.
+     * @param overflow what happens when observer falls a whole ring buffer behind simulation.
+     * @return this builder.
+     */
+    public Builder observer(StepObserver observer, Overflow overflow) {
+      observers.add(observer);
+      overflows.add(overflow);
+      return this;
+    }
+
+    public StepEventBus build() {
+      if (capacity <= 0 || capacity > 1 << 30) {
+        throw new IllegalArgumentException("build: capacity must be larger than 0 and at most 2^30");
+      }
+      return new StepEventBus(this);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package automata.observer;
+
+/**
+ * Interface for observers of events happening during time steps of a simulation. Each observer registered in a
+ * {@link StepEventBus} is called from a thread of its own, never from simulation thread, so it can take as long as it
+ * needs without slowing down simulation, depending on its {@link StepEventBus.Overflow} policy.
+ *
+ * @author Pepe Gallardo
+ */
+public interface StepObserver {
+  /**
+   * Called for each event, in the order events were published. Event is only valid during this call.
+   *
+   * @param event event observed.
+   */
+  void onEvent(StepEvent event);
+
+  /**
+   * Called once after last event, when bus is closed.
+   *
+   * @param skippedEvents number of events this observer skipped because it fell behind.
+   */
+  default void onClose(long skippedEvents) {
+  }
+}
@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static statistics.Random.random;
 
@@ -19,13 +20,14 @@ import static statistics.Random.random;
  */
 public class Pedestrian {
   /**
-   * Class counter to generate unique identifiers for pedestrians.
+   * Class counter to generate unique identifiers for pedestrians. It is atomic as pedestrians of automata running
+   * concurrently draw their identifiers from it.
    */
-  protected static int nextIdentifier = 0;
+  protected static final AtomicInteger nextIdentifier = new AtomicInteger(0);
   /**
    * Each pedestrian has a unique identifier.
    */
-  protected final int identifier;
+  protected int identifier;
   /**
    * Row in scenario where pedestrian is currently located.
    */
@@ -45,7 +47,7 @@ public class Pedestrian {
   /**
    * Parameters describing this pedestrian.
    */
-  protected final PedestrianParameters parameters;
+  protected PedestrianParameters parameters;
   /**
    * Automaton where this pedestrian is running.
    */
@@ -83,7 +85,7 @@ public class Pedestrian {
    * @param automaton  automaton where this pedestrian evolves.
    */
   public Pedestrian(int row, int column, PedestrianParameters parameters, CellularAutomaton automaton) {
-    this.identifier = nextIdentifier++;
+    this.identifier = nextIdentifier.getAndIncrement();
     this.row = row;
     this.column = column;
     this.parameters = parameters;
@@ -91,6 +93,63 @@ public class Pedestrian {
     this.numberOfSteps = 0;
   }
 
+  /**
+   * Constructs a pedestrian with a previously saved state.
+   *
+   * @param identifier    unique identifier of pedestrian.
+   * @param row           row in scenario where pedestrian will be located.
+   * @param column        column in scenario where pedestrian will be located.
+   * @param numberOfSteps number of steps already taken by pedestrian.
+   * @param parameters    parameters describing new pedestrian.
+   * @param automaton     automaton where this pedestrian evolves.
+   */
+  public Pedestrian(int identifier, int row, int column, int numberOfSteps, PedestrianParameters parameters,
+                    CellularAutomaton automaton) {
+    this.identifier = identifier;
+    this.row = row;
+    this.column = column;
+    this.parameters = parameters;
+    this.automaton = automaton;
+    this.numberOfSteps = numberOfSteps;
+    // so that new pedestrians do not reuse this identifier
+    nextIdentifier.accumulateAndGet(identifier + 1, Math::max);
+  }
+
+  /**
+   * Reinitializes this pedestrian, which has exited the scenario, as a new one so that it can be recycled. A new
+   * identifier is assigned.
+   *
+   * @param row        row in scenario where pedestrian will be located.
+   * @param column     column in scenario where pedestrian will be located.
+   * @param parameters parameters describing pedestrian.
+   */
+  void recycle(int row, int column, PedestrianParameters parameters) {
+    this.identifier = nextIdentifier.getAndIncrement();
+    this.row = row;
+    this.column = column;
+    this.parameters = parameters;
+    this.numberOfSteps = 0;
+    this.exitTimeSteps = 0;
+  }
+
+  /**
+   * Identifier that will be assigned to next created pedestrian.
+   *
+   * @return identifier that will be assigned to next created pedestrian.
+   */
+  public static int getNextIdentifier() {
+    return nextIdentifier.get();
+  }
+
+  /**
+   * Makes sure that identifiers assigned to new pedestrians are not smaller than provided one.
+   *
+   * @param identifier minimum identifier for new pedestrians.
+   */
+  public static void ensureNextIdentifier(int identifier) {
+    nextIdentifier.accumulateAndGet(identifier, Math::max);
+  }
+
   /**
    * Unique identifier corresponding to this pedestrian.
    *
@@ -100,6 +159,15 @@ public class Pedestrian {
     return identifier;
   }
 
+  /**
+   * Parameters describing this pedestrian.
+   *
+   * @return parameters describing this pedestrian.
+   */
+  public PedestrianParameters getParameters() {
+    return parameters;
+  }
+
   /**
    * Row in scenario where this pedestrian is currently located.
    *
@@ -216,6 +284,10 @@ public class Pedestrian {
    * @return {@code Optional.empty} if no move is available or {@code Optional(m)} if move {@code m} was chosen.
    */
   public Optional<Location> chooseMovement() {
+    if (!automaton.getScenario().getStaticFloorField().isReachable(row, column)) {
+      // no exit can be reached from here, so all movements are equally undesirable
+      return Optional.empty();
+    }
     var movements = computeTransitionDesirabilities();
     if (movements.isEmpty()) {
       // cannot make a movement
@@ -235,6 +307,19 @@ public class Pedestrian {
    * @param outlineColor outline color for drawing of pedestrian.
    */
   public void paint(Canvas canvas, Color fillColor, Color outlineColor) {
+    paint(canvas, row, column, fillColor, outlineColor);
+  }
+
+  /**
+   * Paints a pedestrian located at given cell in GUI representing the simulation.
+   *
+   * @param canvas       Graphical canvas where pedestrian should be drawn.
+   * @param row          row of cell where pedestrian is located.
+   * @param column       column of cell where pedestrian is located.
+   * @param fillColor    fill color for drawing pedestrian.
+   * @param outlineColor outline color for drawing of pedestrian.
+   */
+  public static void paint(Canvas canvas, int row, int column, Color fillColor, Color outlineColor) {
     var graphics2D = canvas.graphics2D();
     graphics2D.setColor(fillColor);
     graphics2D.fillOval(column, row, 1, 1);
@@ -3,25 +3,61 @@ package automata.pedestrian;
 import automata.CellularAutomaton;
 import geometry._2d.Location;
 
+import java.util.ArrayDeque;
+
 /**
- * A class for creating different pedestrians for an automaton.
+ * A class for creating different pedestrians for an automaton. Pedestrians that exit the scenario can be released
+ * back to factory, so that they are recycled as new ones instead of allocating new objects.
  *
  * @author Pepe Gallardo
  */
 public class PedestrianFactory {
   private final CellularAutomaton automaton;
+  private final ArrayDeque<Pedestrian> pool;
 
   public PedestrianFactory(CellularAutomaton automaton) {
     this.automaton = automaton;
+    this.pool = new ArrayDeque<>();
   }
 
   public Pedestrian getInstance(int row, int column, PedestrianParameters parameters) {
     assert row >= 0 && row < automaton.getRows() : "getInstance: invalid row";
-    assert column >= 0 && row < automaton.getColumns() : "getInstance: invalid column";
-    return new Pedestrian(row, column, parameters, automaton);
+    assert column >= 0 && column < automaton.getColumns() : "getInstance: invalid column";
+    var pedestrian = pool.pollLast();
+    if (pedestrian == null) {
+      return new Pedestrian(row, column, parameters, automaton);
+    }
+    pedestrian.recycle(row, column, parameters);
+    return pedestrian;
   }
 
   public Pedestrian getInstance(Location location, PedestrianParameters parameters) {
     return getInstance(location.row(), location.column(), parameters);
   }
+
+  public Pedestrian getInstance(int identifier, int row, int column, int numberOfSteps,
+                                PedestrianParameters parameters) {
+    assert row >= 0 && row < automaton.getRows() : "getInstance: invalid row";
+    assert column >= 0 && column < automaton.getColumns() : "getInstance: invalid column";
+    return new Pedestrian(identifier, row, column, numberOfSteps, parameters, automaton);
+  }
+
+  /**
+   * Releases a pedestrian that has exited the scenario, so that it can be recycled. Pedestrian should no longer be
+   * referenced by caller.
+   *
+   * @param pedestrian pedestrian to release.
+   */
+  public void release(Pedestrian pedestrian) {
+    pool.addLast(pedestrian);
+  }
+
+  /**
+   * Number of released pedestrians waiting to be recycled.
+   *
+   * @return number of released pedestrians waiting to be recycled.
+   */
+  public int getPoolSize() {
+    return pool.size();
+  }
 }
@@ -0,0 +1,183 @@
+package automata.scenario;
+
+import automata.floorField.MultiLevelFloorField;
+import automata.grid.GridStorage;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.neighbourhood.Neighbourhood;
+import geometry._2d.Rectangle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Class for representing a static scenario with several levels, such as a multi-storey building. Each level is a
+ * scenario of its own, with its own dimensions, and levels are connected by portals (stairs or lifts). A single static
+ * floor field spans all levels, so that pedestrians in a level without exits head for portals leading to exits.
+ *
+ * @author Pepe Gallardo
+ */
+public class MultiLevelScenario {
+  private final List<Scenario> levels;
+  private final List<Portal> portals;
+  private final MultiLevelFloorField floorField;
+
+  private MultiLevelScenario(List<Scenario> levels, List<Portal> portals, MultiLevelFloorField floorField) {
+    this.levels = Collections.unmodifiableList(levels);
+    this.portals = Collections.unmodifiableList(portals);
+    this.floorField = floorField;
+  }
+
+  /**
+   * Number of levels in this scenario.
+   *
+   * @return number of levels in this scenario.
+   */
+  public int getNumberOfLevels() {
+    return levels.size();
+  }
+
+  /**
+   * Scenario corresponding to a level. Its static floor field is part of floor field of this scenario.
+   *
+   * @param level index of level.
+   * @return scenario corresponding to level.
+   */
+  public Scenario getLevel(int level) {
+    return levels.get(level);
+  }
+
+  /**
+   * All portals connecting levels in this scenario.
+   *
+   * @return all portals connecting levels in this scenario.
+   */
+  public List<Portal> portals() {
+    return portals;
+  }
+
+  /**
+   * Portals with an end in a level.
+   *
+   * @param level index of level.
+   * @return portals with an end in level.
+   */
+  public List<Portal> portals(int level) {
+    return floorField.portals(level);
+  }
+
+  /**
+   * Static floor field spanning all levels in this scenario.
+   *
+   * @return static floor field spanning all levels in this scenario.
+   */
+  public MultiLevelFloorField getStaticFloorField() {
+    return floorField;
+  }
+
+  /**
+   * Class for building a multi-level scenario by providing its levels and portals.
+   */
+  public static final class Builder {
+    private double cellDimension = 0.5;
+    private Function<Scenario, Neighbourhood> buildNeighbourhood = MooreNeighbourhood::of;
+    private GridStorage storage = GridStorage.HEAP;
+    private final List<Integer> rows = new ArrayList<>();
+    private final List<Integer> columns = new ArrayList<>();
+    private final List<Consumer<Scenario>> setUps = new ArrayList<>();
+    private final List<Portal> portals = new ArrayList<>();
+
+    public Builder() {
+    }
+
+    public Builder cellDimension(double cellDimension) {
+      this.cellDimension = cellDimension;
+      return this;
+    }
+
+    /**
+     * Sets neighbourhood relationship among cells used to find shortest paths for static floor field.
+     *
+     * @param buildNeighbourhood a function taking a level and returning its neighbourhood relationship.
+     * @return this builder.
+     */
+    public Builder neighbourhood(Function<Scenario, Neighbourhood> buildNeighbourhood) {
+      this.buildNeighbourhood = buildNeighbourhood;
+      return this;
+    }
+
+    /**
+     * Sets where static floor field of each level is stored.
+     *
+     * @param storage where static floor field of each level is stored.
+     * @return this builder.
+     */
+    public Builder storage(GridStorage storage) {
+      this.storage = storage;
+      return this;
+    }
+
+    /**
+     * Adds next level. Levels are numbered from 0 in the order they are added.
+     *
+     * @param rows    number of rows of level.
+     * @param columns number of columns of level.
+     * @param setUp   action setting blocks and exits of level once it is created.
+     * @return this builder.
+     */
+    public Builder level(int rows, int columns, Consumer<Scenario> setUp) {
+      this.rows.add(rows);
+      this.columns.add(columns);
+      this.setUps.add(setUp);
+      return this;
+    }
+
+    /**
+     * Adds a portal connecting two levels.
+     *
+     * @param portal portal to add.
+     * @return this builder.
+     */
+    public Builder portal(Portal portal) {
+      portals.add(portal);
+      return this;
+    }
+
+    public MultiLevelScenario build() {
+      if (setUps.isEmpty()) {
+        throw new IllegalArgumentException("build: scenario should have at least one level");
+      }
+      var floorField = new MultiLevelFloorField(buildNeighbourhood, storage);
+      var levels = new ArrayList<Scenario>(setUps.size());
+      for (int i = 0; i < setUps.size(); i++) {
+        var level =
+            new Scenario.Builder()
+                .rows(rows.get(i))
+                .columns(columns.get(i))
+                .cellDimension(cellDimension)
+                .floorField(floorField::addLevel)
+                .build();
+        setUps.get(i).accept(level);
+        levels.add(level);
+      }
+      for (var portal : portals) {
+        if (portal.level() < 0 || portal.level() >= levels.size()
+            || portal.otherLevel() < 0 || portal.otherLevel() >= levels.size()) {
+          throw new IllegalArgumentException("build: portal connects a level that does not exist");
+        }
+        if (!bounds(levels.get(portal.level())).contains(portal.region())
+            || !bounds(levels.get(portal.otherLevel())).contains(portal.otherRegion())) {
+          throw new IllegalArgumentException("build: portal is out of bounds of its level");
+        }
+        floorField.addPortal(portal);
+      }
+      return new MultiLevelScenario(levels, new ArrayList<>(portals), floorField);
+    }
+
+    private static Rectangle bounds(Scenario scenario) {
+      return new Rectangle(0, 0, scenario.getRows(), scenario.getColumns());
+    }
+  }
+}
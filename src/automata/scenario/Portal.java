@@ -0,0 +1,83 @@
+package automata.scenario;
+
+import geometry._2d.Location;
+import geometry._2d.Rectangle;
+
+/**
+ * A stair or lift connecting two levels of a multi-level scenario. Each cell in a region of one level is connected,
+ * in both directions, to the cell at the same offset in a region of same size in another level.
+ *
+ * @param level       index of first level connected.
+ * @param region      region of first level connected.
+ * @param otherLevel  index of second level connected.
+ * @param otherRegion region of second level connected. Should have same dimensions as {@code region}.
+ * @param cost        cost of going through portal, expressed as an equivalent walking distance in cells. Going through
+ *                    portal takes as many discrete time steps as cells.
+ * @author Pepe Gallardo
+ */
+public record Portal(
+    int level
+    , Rectangle region
+    , int otherLevel
+    , Rectangle otherRegion
+    , double cost
+) {
+  public Portal {
+    if (level == otherLevel) {
+      throw new IllegalArgumentException("Portal: levels connected must be different");
+    }
+    if (region.height() != otherRegion.height() || region.width() != otherRegion.width()) {
+      throw new IllegalArgumentException("Portal: regions connected must have same dimensions");
+    }
+    if (cost <= 0) {
+      throw new IllegalArgumentException("Portal: cost must be larger than 0");
+    }
+  }
+
+  /**
+   * Checks whether a cell is connected by this portal.
+   *
+   * @param level  index of level of cell.
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return {@code true} if cell is in one of regions connected by this portal.
+   */
+  public boolean connects(int level, int row, int column) {
+    return (level == this.level && region.intersects(row, column))
+        || (level == otherLevel && otherRegion.intersects(row, column));
+  }
+
+  /**
+   * Level at the other end of this portal.
+   *
+   * @param level index of level at one end of portal.
+   * @return index of level at the other end of portal.
+   */
+  public int counterpartLevel(int level) {
+    return level == this.level ? otherLevel : this.level;
+  }
+
+  /**
+   * Cell at the other end of this portal. Cell should be connected by this portal.
+   *
+   * @param level  index of level of cell.
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return location of cell connected to given one in level at the other end of portal.
+   */
+  public Location counterpart(int level, int row, int column) {
+    assert connects(level, row, column) : "counterpart: cell is not connected by portal";
+    var from = level == this.level && region.intersects(row, column) ? region : otherRegion;
+    var to = from == region ? otherRegion : region;
+    return new Location(to.bottom() + row - from.bottom(), to.left() + column - from.left());
+  }
+
+  /**
+   * Number of discrete time steps taken to go through this portal.
+   *
+   * @return number of discrete time steps taken to go through this portal.
+   */
+  public int getTransitTimeSteps() {
+    return (int) Math.ceil(cost);
+  }
+}
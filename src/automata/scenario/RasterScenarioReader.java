@@ -0,0 +1,313 @@
+package automata.scenario;
+
+import automata.floorField.FloorField;
+import automata.floorField.ManhattanStaticFloorField;
+import automata.grid.GridStorage;
+import geometry._2d.Rectangle;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Class for building a scenario from a colour-coded floor plan stored in a raster image (PNG, BMP, GIF, ...). Pixels
+ * close to block colour are walls, pixels close to exit colour are exits and any other pixel is free space. Fully
+ * transparent pixels are always free space, while alpha of any other pixel is ignored. Top of image corresponds to
+ * last row of scenario.
+ * <p>
+ * Image is decoded in bands of rows, so that memory used besides scenario is bounded regardless of size of image.
+ * Pixels are written directly into cells of scenario. Runs of blocked or exit cells are only merged into rectangles so
+ * that they are reported by {@link Scenario#blocks} and {@link Scenario#exits}.
+ *
+ * @author Pepe Gallardo
+ */
+public class RasterScenarioReader {
+  private final double cellDimension;
+  private final Function<Scenario, FloorField> buildFloorField;
+  private final GridStorage storage;
+  private final int pixelsPerCell;
+  private final int blockRGB, exitRGB;
+  private final int tolerance;
+  private final int maxBandCells;
+
+  private static final byte CLEAR = 0, BLOCKED = 1, EXIT = 2;
+
+  private RasterScenarioReader(double cellDimension, Function<Scenario, FloorField> buildFloorField,
+                               GridStorage storage, int pixelsPerCell, Color blockColor, Color exitColor, int tolerance,
+                               int maxBandCells) {
+    this.cellDimension = cellDimension;
+    this.buildFloorField = buildFloorField;
+    this.storage = storage;
+    this.pixelsPerCell = pixelsPerCell;
+    this.blockRGB = blockColor.getRGB();
+    this.exitRGB = exitColor.getRGB();
+    this.tolerance = tolerance;
+    this.maxBandCells = maxBandCells;
+  }
+
+  private static boolean isClose(int rgb1, int rgb2, int tolerance) {
+    for (int shift = 0; shift < 24; shift += 8) {
+      if (Math.abs(((rgb1 >> shift) & 0xFF) - ((rgb2 >> shift) & 0xFF)) > tolerance) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte classify(int rgb) {
+    if ((rgb >>> 24) == 0) {
+      // fully transparent pixels are background, whatever colour they store (usually black)
+      return CLEAR;
+    } else if (isClose(rgb, blockRGB, tolerance)) {
+      return BLOCKED;
+    } else if (isClose(rgb, exitRGB, tolerance)) {
+      return EXIT;
+    } else {
+      return CLEAR;
+    }
+  }
+
+  /**
+   * Reads a floor plan and builds corresponding scenario. Each square of {@code pixelsPerCell} by
+   * {@code pixelsPerCell} pixels is a cell, whose status is that of its central pixel. Trailing pixels not filling a
+   * whole cell are ignored.
+   *
+   * @param path path of image file with floor plan.
+   * @return a new scenario corresponding to floor plan.
+   * @throws IOException if image cannot be read.
+   */
+  public Scenario read(Path path) throws IOException {
+    try (var input = ImageIO.createImageInputStream(path.toFile())) {
+      if (input == null) {
+        throw new IOException("read: cannot open " + path);
+      }
+      var readers = ImageIO.getImageReaders(input);
+      if (!readers.hasNext()) {
+        throw new IOException("read: no image reader for " + path);
+      }
+      var reader = readers.next();
+      try {
+        reader.setInput(input, true, true);
+        var rows = reader.getHeight(0) / pixelsPerCell;
+        var columns = reader.getWidth(0) / pixelsPerCell;
+        if (rows == 0 || columns == 0) {
+          throw new IOException("read: image is smaller than a cell");
+        }
+        var scenario = new Scenario(rows, columns, cellDimension, storage, buildFloorField);
+        var merger = new RunMerger(scenario);
+
+        // readers for some formats (like PNG) decode image from its beginning for each band, so bands are as
+        // large as allowed
+        var bandRows = Math.max(1, Math.min(rows, maxBandCells / columns));
+        var pixels = new int[bandRows * columns];
+        var statuses = new byte[columns];
+        var param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(pixelsPerCell, pixelsPerCell, pixelsPerCell / 2, pixelsPerCell / 2);
+        for (int y = 0; y < rows; y += bandRows) {
+          var height = Math.min(bandRows, rows - y);
+          param.setSourceRegion(new java.awt.Rectangle(0, y * pixelsPerCell, columns * pixelsPerCell,
+              height * pixelsPerCell));
+          var band = reader.read(0, param);
+          band.getRGB(0, 0, columns, height, pixels, 0, columns);
+          for (int i = 0; i < height; i++) {
+            var row = rows - 1 - (y + i);
+            var offset = i * columns;
+            for (int j = 0; j < columns; j++) {
+              var status = classify(pixels[offset + j]);
+              statuses[j] = status;
+              if (status == BLOCKED) {
+                scenario.blockedCells.set(row, j, true);
+              } else if (status == EXIT) {
+                scenario.exitCells.set(row, j, true);
+              }
+            }
+            merger.merge(row, statuses);
+          }
+        }
+        merger.finish();
+        return scenario;
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Merges horizontal runs of blocked or exit cells in consecutive rows into rectangles and records them in scenario.
+   * Rows are merged from top to bottom.
+   */
+  private static final class RunMerger {
+    private final Scenario scenario;
+    // runs still growing downwards, keyed by left, right and status, mapped to their top row
+    private Map<Long, Integer> open, next;
+    private int lastRow;
+
+    private RunMerger(Scenario scenario) {
+      this.scenario = scenario;
+      this.open = new HashMap<>();
+      this.next = new HashMap<>();
+      this.lastRow = scenario.getRows();
+    }
+
+    private static long key(int left, int right, byte status) {
+      return ((long) left << 33) | ((long) right << 2) | status;
+    }
+
+    private void merge(int row, byte[] statuses) {
+      int j = 0;
+      while (j < statuses.length) {
+        var status = statuses[j];
+        var left = j;
+        while (j < statuses.length && statuses[j] == status) {
+          j++;
+        }
+        if (status != CLEAR) {
+          var key = key(left, j - 1, status);
+          var top = open.remove(key);
+          next.put(key, top == null ? row : top);
+        }
+      }
+      // runs not continued in this row end at previous one
+      close(row + 1);
+      var swap = open;
+      open = next;
+      next = swap;
+      lastRow = row;
+    }
+
+    private void finish() {
+      close(lastRow);
+      open.clear();
+    }
+
+    private void close(int bottom) {
+      for (var entry : open.entrySet()) {
+        var key = entry.getKey();
+        var left = (int) (key >>> 33);
+        var right = (int) ((key >>> 2) & 0x7FFFFFFF);
+        var status = (byte) (key & 3);
+        var rectangle = new Rectangle(bottom, left, entry.getValue() - bottom + 1, right - left + 1);
+        if (status == BLOCKED) {
+          scenario.recordBlock(rectangle);
+        } else {
+          scenario.recordExit(rectangle);
+        }
+      }
+      open.clear();
+    }
+  }
+
+  /**
+   * Class for building a raster scenario reader by providing its parameters.
+   */
+  public static final class Builder {
+    private double cellDimension = 0.5;
+    private Function<Scenario, FloorField> buildFloorField = ManhattanStaticFloorField::of;
+    private GridStorage storage = GridStorage.HEAP;
+    private int pixelsPerCell = 1;
+    private Color blockColor = Color.BLACK;
+    private Color exitColor = Color.GREEN;
+    private int tolerance = 64;
+    private int maxBandCells = 1 << 24;
+
+    public Builder() {
+    }
+
+    public Builder cellDimension(double cellDimension) {
+      this.cellDimension = cellDimension;
+      return this;
+    }
+
+    public Builder floorField(Function<Scenario, FloorField> buildFloorField) {
+      this.buildFloorField = buildFloorField;
+      return this;
+    }
+
+    /**
+     * Sets where grids of cells comprising scenario are stored.
+     *
+     * @param storage where grids of cells comprising scenario are stored.
+     * @return this builder.
+     */
+    public Builder storage(GridStorage storage) {
+      this.storage = storage;
+      return this;
+    }
+
+    /**
+     * Sets side of square of pixels in image corresponding to a cell.
+     *
+     * @param pixelsPerCell side of square of pixels corresponding to a cell.
+     * @return this builder.
+     */
+    public Builder pixelsPerCell(int pixelsPerCell) {
+      this.pixelsPerCell = pixelsPerCell;
+      return this;
+    }
+
+    /**
+     * Sets colour of walls in image.
+     *
+     * @param blockColor colour of walls in image.
+     * @return this builder.
+     */
+    public Builder blockColor(Color blockColor) {
+      this.blockColor = blockColor;
+      return this;
+    }
+
+    /**
+     * Sets colour of exits in image.
+     *
+     * @param exitColor colour of exits in image.
+     * @return this builder.
+     */
+    public Builder exitColor(Color exitColor) {
+      this.exitColor = exitColor;
+      return this;
+    }
+
+    /**
+     * Sets maximum difference in each of red, green and blue components for a pixel to match block or exit colour.
+     *
+     * @param tolerance maximum difference in each colour component.
+     * @return this builder.
+     */
+    public Builder tolerance(int tolerance) {
+      this.tolerance = tolerance;
+      return this;
+    }
+
+    /**
+     * Sets maximum number of cells decoded at once. Bounds memory used for decoding image.
+     *
+     * @param maxBandCells maximum number of cells decoded at once.
+     * @return this builder.
+     */
+    public Builder maxBandCells(int maxBandCells) {
+      this.maxBandCells = maxBandCells;
+      return this;
+    }
+
+    public RasterScenarioReader build() {
+      if (cellDimension <= 0) {
+        throw new IllegalArgumentException("build: cellDimension must be greater that 0");
+      }
+      if (pixelsPerCell <= 0) {
+        throw new IllegalArgumentException("build: pixelsPerCell must be larger than 0");
+      }
+      if (tolerance < 0) {
+        throw new IllegalArgumentException("build: tolerance cannot be negative");
+      }
+      if (maxBandCells <= 0) {
+        throw new IllegalArgumentException("build: maxBandCells must be larger than 0");
+      }
+      return new RasterScenarioReader(cellDimension, buildFloorField, storage, pixelsPerCell, blockColor, exitColor,
+          tolerance, maxBandCells);
+    }
+  }
+}
@@ -2,13 +2,18 @@ package automata.scenario;
 
 import automata.floorField.FloorField;
 import automata.floorField.ManhattanStaticFloorField;
+import automata.grid.BooleanGrid;
+import automata.grid.GridStorage;
 import geometry._2d.Location;
 import geometry._2d.Rectangle;
+import geometry._2d.RectangleGridIndex;
 import gui.Canvas;
 
 import java.awt.*;
-import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -36,22 +41,27 @@ public class Scenario {
   protected final Rectangle boundingBox;
 
   /**
-   * A cell in scenario can either be blocked, clear or it can be an exit.
+   * A cell in scenario can either be blocked, clear or it can be an exit. Grids marking blocked cells and exit cells
+   * comprising this scenario. A cell is never marked in both.
    */
-  protected enum CellStatus {Blocked, Clear, Exit}
-
-  /**
-   * Grid of cells comprising this scenario.
-   */
-  protected final CellStatus[][] cell;
+  protected final BooleanGrid blockedCells, exitCells;
   /**
-   * Exits are rectangular. Set comprising rectangles corresponding to all exits.
+   * Exits are rectangular. Each rectangle corresponding to an exit is mapped to its index, that is, number of exits
+   * set before it. Iteration follows order in which exits were set.
    */
-  protected final Set<Rectangle> exits;
+  protected final Map<Rectangle, Integer> exits;
   /**
    * Blocked regions are rectangular. Set comprising rectangles corresponding to all blocked regions.
    */
   protected final Set<Rectangle> blocks;
+  /**
+   * Side of buckets of spatial indexes for exits and blocks.
+   */
+  private static final int INDEX_BUCKET_SIZE = 32;
+  /**
+   * Spatial indexes for exits and blocks, so that queries only visit rectangles near region being queried.
+   */
+  private final RectangleGridIndex exitIndex, blockIndex;
   /**
    * Static floor field corresponding to this scenario.
    */
@@ -66,6 +76,46 @@ public class Scenario {
    * @param buildStaticFloorField a function taking this scenario and returning its corresponding static floor field.
    */
   public Scenario(int rows, int columns, double cellDimension, Function<Scenario, FloorField> buildStaticFloorField) {
+    this(rows, columns, cellDimension, GridStorage.HEAP, buildStaticFloorField);
+  }
+
+  /**
+   * Constructs a new scenario.
+   *
+   * @param rows                  number of rows of scenario.
+   * @param columns               number of columns of scenario.
+   * @param cellDimension         dimension (in meters) of side of a grid cell in scenario.
+   * @param storage               where grids of cells comprising scenario are stored.
+   * @param buildStaticFloorField a function taking this scenario and returning its corresponding static floor field.
+   */
+  public Scenario(int rows, int columns, double cellDimension, GridStorage storage,
+                  Function<Scenario, FloorField> buildStaticFloorField) {
+    // all cells are initially clear
+    this(cellDimension, newGrid(rows, columns, storage), newGrid(rows, columns, storage), buildStaticFloorField);
+  }
+
+  private static BooleanGrid newGrid(int rows, int columns, GridStorage storage) {
+    if (rows <= 0) {
+      throw new IllegalArgumentException("Scenario: rows should be larger than 0");
+    }
+    if (columns <= 0) {
+      throw new IllegalArgumentException("Scenario: columns should be larger than 0");
+    }
+    return storage.booleanGrid(rows, columns);
+  }
+
+  /**
+   * Constructs a new scenario over existing grids of cells, such as grids mapped from a file. Grids are not copied.
+   *
+   * @param cellDimension         dimension (in meters) of side of a grid cell in scenario.
+   * @param blockedCells          grid marking blocked cells.
+   * @param exitCells             grid marking exit cells.
+   * @param buildStaticFloorField a function taking this scenario and returning its corresponding static floor field.
+   */
+  Scenario(double cellDimension, BooleanGrid blockedCells, BooleanGrid exitCells,
+           Function<Scenario, FloorField> buildStaticFloorField) {
+    var rows = blockedCells.getRows();
+    var columns = blockedCells.getColumns();
     if (rows <= 0) {
       throw new IllegalArgumentException("Scenario: rows should be larger than 0");
     }
@@ -75,19 +125,22 @@ public class Scenario {
     if (cellDimension <= 0) {
       throw new IllegalArgumentException("Scenario: cellDimension must be greater that 0");
     }
+    if (exitCells.getRows() != rows || exitCells.getColumns() != columns) {
+      throw new IllegalArgumentException("Scenario: grids of cells should have same dimensions");
+    }
     this.rows = rows;
     this.columns = columns;
     this.cellDimension = cellDimension;
 
     this.boundingBox = new Rectangle(0, 0, rows, columns);
 
-    this.cell = new CellStatus[rows][columns];
-    for (CellStatus[] row : cell) {
-      Arrays.fill(row, CellStatus.Clear);
-    }
+    this.blockedCells = blockedCells;
+    this.exitCells = exitCells;
 
-    exits = new HashSet<>();
+    exits = new LinkedHashMap<>();
     blocks = new HashSet<>();
+    exitIndex = new RectangleGridIndex(boundingBox, INDEX_BUCKET_SIZE);
+    blockIndex = new RectangleGridIndex(boundingBox, INDEX_BUCKET_SIZE);
 
     this.staticFloorField = buildStaticFloorField.apply(this);
   }
@@ -137,15 +190,28 @@ public class Scenario {
     if (!boundingBox.contains(rectangle)) {
       throw new IllegalArgumentException("setBlock: block is out of bounds of scenario");
     }
-    blocks.add(rectangle);
+    recordBlock(rectangle);
 
     for (int i = rectangle.bottom(); i <= rectangle.top(); i++) {
       for (int j = rectangle.left(); j <= rectangle.right(); j++) {
-        cell[i][j] = CellStatus.Blocked;
+        blockedCells.set(i, j, true);
+        exitCells.set(i, j, false);
       }
     }
   }
 
+  /**
+   * Records a rectangle as a blocked region, so that it is reported by {@link #blocks} and indexed, but does not
+   * modify cells of scenario.
+   *
+   * @param rectangle rectangle corresponding to blocked region.
+   */
+  void recordBlock(Rectangle rectangle) {
+    if (blocks.add(rectangle)) {
+      blockIndex.add(rectangle);
+    }
+  }
+
   /**
    * An iterable over all rectangles corresponding to blocked regions in scenario.
    *
@@ -163,7 +229,7 @@ public class Scenario {
    * @return {@code true} if grid cell is blocked in this scenario.
    */
   public boolean isBlocked(int row, int column) {
-    return cell[row][column] == CellStatus.Blocked;
+    return blockedCells.get(row, column);
   }
 
   /**
@@ -185,22 +251,112 @@ public class Scenario {
     if (!boundingBox.contains(rectangle)) {
       throw new IllegalArgumentException("setExit: exit is out of bounds of scenario");
     }
-    exits.add(rectangle);
+    recordExit(rectangle);
 
     for (int i = rectangle.bottom(); i <= rectangle.top(); i++) {
       for (int j = rectangle.left(); j <= rectangle.right(); j++) {
-        cell[i][j] = CellStatus.Exit;
+        exitCells.set(i, j, true);
+        blockedCells.set(i, j, false);
       }
     }
   }
 
+  /**
+   * Records a rectangle as an exit, so that it is reported by {@link #exits} and indexed, but does not modify cells of
+   * scenario.
+   *
+   * @param rectangle rectangle corresponding to exit.
+   */
+  void recordExit(Rectangle rectangle) {
+    if (exits.putIfAbsent(rectangle, exits.size()) == null) {
+      exitIndex.add(rectangle);
+    }
+  }
+
   /**
    * An iterable over all rectangles corresponding to exits in scenario.
    *
    * @return iterable over all rectangles corresponding to exits in scenario.
    */
   public Iterable<Rectangle> exits() {
-    return exits;
+    return exits.keySet();
+  }
+
+  /**
+   * Number of exits in this scenario.
+   *
+   * @return number of exits in this scenario.
+   */
+  public int getNumberOfExits() {
+    return exits.size();
+  }
+
+  /**
+   * Index of exit containing a grid cell. Exits are numbered from 0 in the order they were set.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return index of first exit containing cell or -1 if cell is not an exit.
+   */
+  public int getExitIndex(int row, int column) {
+    if (!exitCells.get(row, column)) {
+      return -1;
+    }
+    var index = new int[]{Integer.MAX_VALUE};
+    exitIndex.forEachIntersecting(new Rectangle(row, column, 1, 1),
+        exit -> index[0] = Math.min(index[0], exits.get(exit)));
+    return index[0] == Integer.MAX_VALUE ? -1 : index[0];
+  }
+
+  /**
+   * Checks whether a rectangle intersects any exit in this scenario. Only exits near rectangle are checked.
+   *
+   * @param rectangle rectangle to check.
+   * @return {@code true} if rectangle intersects some exit.
+   */
+  public boolean intersectsAnyExit(Rectangle rectangle) {
+    return exitIndex.intersectsAny(rectangle);
+  }
+
+  /**
+   * Checks whether a rectangle intersects any blocked region in this scenario. Only blocks near rectangle are checked.
+   *
+   * @param rectangle rectangle to check.
+   * @return {@code true} if rectangle intersects some blocked region.
+   */
+  public boolean intersectsAnyBlock(Rectangle rectangle) {
+    return blockIndex.intersectsAny(rectangle);
+  }
+
+  /**
+   * Checks whether a rectangle intersects any exit or blocked region in this scenario.
+   *
+   * @param rectangle rectangle to check.
+   * @return {@code true} if rectangle intersects some exit or blocked region.
+   */
+  public boolean intersectsAny(Rectangle rectangle) {
+    return exitIndex.intersectsAny(rectangle) || blockIndex.intersectsAny(rectangle);
+  }
+
+  /**
+   * Finds exit closest to a cell according to Manhattan distance. Only exits near cell are checked.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return an exit closest to cell or {@code null} if scenario has no exits.
+   */
+  public Rectangle nearestExit(int row, int column) {
+    return exitIndex.nearest(row, column);
+  }
+
+  /**
+   * Finds exit closest to a cell according to Manhattan distance. Only exits near cell are checked.
+   *
+   * @param location location of cell.
+   * @return an exit closest to cell or {@code null} if scenario has no exits.
+   */
+  public Rectangle nearestExit(Location location) {
+    return nearestExit(location.row(), location.column());
   }
 
   /**
@@ -211,7 +367,7 @@ public class Scenario {
    * @return {@code true} if grid cell is an exit in this scenario.
    */
   public boolean isExit(int row, int column) {
-    return cell[row][column] == CellStatus.Exit;
+    return exitCells.get(row, column);
   }
 
   /**
@@ -236,7 +392,7 @@ public class Scenario {
    * @param canvas Graphical canvas where scenario should be drawn.
    */
   public void paint(Canvas canvas) {
-    for (var exit : exits) {
+    for (var exit : exits.keySet()) {
       exit.paint(canvas, lightGreen, darkGreen);
     }
     for (var block : blocks) {
@@ -251,6 +407,7 @@ public class Scenario {
     private int rows = 10;
     private int columns = 10;
     private double cellDimension = 0.5;
+    private GridStorage storage = GridStorage.HEAP;
     private Function<Scenario, FloorField> buildFloorField = ManhattanStaticFloorField::of;
 
     public Builder() {
@@ -276,8 +433,19 @@ public class Scenario {
       return this;
     }
 
+    /**
+     * Sets where grids of cells comprising scenario are stored. Off heap grids use a bit per cell.
+     *
+     * @param storage where grids of cells comprising scenario are stored.
+     * @return this builder.
+     */
+    public Builder storage(GridStorage storage) {
+      this.storage = storage;
+      return this;
+    }
+
     public Scenario build() {
-      return new Scenario(rows, columns, cellDimension, buildFloorField);
+      return new Scenario(rows, columns, cellDimension, storage, buildFloorField);
     }
   }
 }
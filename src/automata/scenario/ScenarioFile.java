@@ -0,0 +1,207 @@
+package automata.scenario;
+
+import automata.floorField.FloorField;
+import automata.floorField.StaticFloorField;
+import automata.grid.DoubleGrid;
+import automata.grid.GridStorage;
+import automata.grid.OffHeapBooleanGrid;
+import automata.grid.OffHeapDoubleGrid;
+import geometry._2d.Rectangle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+
+/**
+ * Compact binary format for scenarios, so that large scenarios built from code or images can be stored once and
+ * loaded quickly by every process simulating them. Grids of cells and floor field are mapped read-only from file
+ * rather than parsed, so loading takes the same time regardless of size of scenario and pages of file are shared by
+ * all processes mapping it.
+ * <p>
+ * Binary format (little endian, every section starts at a multiple of 8 bytes):
+ * <pre>
+ *   int       magic number
+ *   int       version
+ *   int       rows
+ *   int       columns
+ *   double    cell dimension
+ *   int       number of blocked regions
+ *   int       number of exits
+ *   int       1 if floor field is stored or 0 otherwise
+ *   int       unused
+ *   int[4]    bottom, left, height and width of each blocked region
+ *   int[4]    bottom, left, height and width of each exit, in order of their indexes
+ *   long[]    bitmap of blocked cells in row major order
+ *   long[]    bitmap of exit cells in row major order
+ *   double[]  fields of floor field in row major order, if stored
+ * </pre>
+ *
+ * @author Pepe Gallardo
+ */
+public final class ScenarioFile {
+  private static final int MAGIC = 0x5343454E; // "SCEN"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 40;
+  private static final int RECTANGLE_BYTES = 4 * Integer.BYTES;
+
+  private ScenarioFile() {
+  }
+
+  /**
+   * Writes a scenario to a file, so that it can be mapped by {@link #map}. Floor field of scenario is stored too if
+   * it has been initialized.
+   *
+   * @param scenario scenario to write.
+   * @param path     path of file.
+   * @throws IOException if file cannot be written.
+   */
+  public static void write(Scenario scenario, Path path) throws IOException {
+    var floorField = scenario.getStaticFloorField();
+    var includeFloorField = floorField != null && floorField.isInitialized();
+    var blocks = toList(scenario.blocks());
+    var exits = toList(scenario.exits());
+    try (var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.WRITE)) {
+      var buffer = ByteBuffer.allocate(HEADER_BYTES + RECTANGLE_BYTES * (blocks.size() + exits.size()))
+          .order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(scenario.getRows()).putInt(scenario.getColumns())
+          .putDouble(scenario.getCellDimension()).putInt(blocks.size()).putInt(exits.size())
+          .putInt(includeFloorField ? 1 : 0).putInt(0);
+      for (var rectangle : blocks) {
+        putRectangle(buffer, rectangle);
+      }
+      for (var rectangle : exits) {
+        putRectangle(buffer, rectangle);
+      }
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      OffHeapBooleanGrid.write(scenario.blockedCells, channel);
+      OffHeapBooleanGrid.write(scenario.exitCells, channel);
+      if (includeFloorField) {
+        // fields are streamed from floor field rather than copied into a grid first
+        OffHeapDoubleGrid.write(new DoubleGrid() {
+          @Override
+          public int getRows() {
+            return floorField.getRows();
+          }
+
+          @Override
+          public int getColumns() {
+            return floorField.getColumns();
+          }
+
+          @Override
+          public double get(int row, int column) {
+            return floorField.getField(row, column);
+          }
+
+          @Override
+          public void set(int row, int column, double value) {
+            throw new UnsupportedOperationException("set: floor field is read-only");
+          }
+        }, channel);
+      }
+    }
+  }
+
+  private static List<Rectangle> toList(Iterable<Rectangle> rectangles) {
+    var list = new ArrayList<Rectangle>();
+    for (var rectangle : rectangles) {
+      list.add(rectangle);
+    }
+    return list;
+  }
+
+  private static void putRectangle(ByteBuffer buffer, Rectangle rectangle) {
+    buffer.putInt(rectangle.bottom()).putInt(rectangle.left()).putInt(rectangle.height()).putInt(rectangle.width());
+  }
+
+  private static Rectangle getRectangle(ByteBuffer buffer) {
+    return new Rectangle(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+  }
+
+  /**
+   * Maps read-only a scenario stored in a file by {@link #write}. Grids of cells are not copied, so blocks and exits
+   * of scenario cannot be modified afterwards. Floor field is built over a grid of fields provided to
+   * {@code buildStaticFloorField}, such as {@code ManhattanStaticFloorField::of}. If file stores a floor field, that
+   * grid is mapped from file and a {@link StaticFloorField} built over it is already initialized, so no fields are
+   * computed nor copied. Otherwise, grid is a new off-heap grid and floor field should be initialized as usual. File
+   * should not be modified while scenario is used.
+   *
+   * @param path                  path of file.
+   * @param buildStaticFloorField a function taking scenario and a grid of fields and returning corresponding static
+   *                              floor field of scenario.
+   * @return a read-only scenario corresponding to one stored in file.
+   * @throws IOException if file cannot be read or is not a valid scenario.
+   */
+  public static Scenario map(Path path, BiFunction<Scenario, DoubleGrid, FloorField> buildStaticFloorField)
+      throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var header = read(channel, 0, HEADER_BYTES, path);
+      if (header.getInt() != MAGIC) {
+        throw new IOException("map: " + path + " is not a scenario");
+      }
+      var version = header.getInt();
+      if (version != VERSION) {
+        throw new IOException("map: unsupported version " + version + " in " + path);
+      }
+      var rows = header.getInt();
+      var columns = header.getInt();
+      var cellDimension = header.getDouble();
+      var numberOfBlocks = header.getInt();
+      var numberOfExits = header.getInt();
+      var includeFloorField = header.getInt() != 0;
+      if (rows <= 0 || columns <= 0 || numberOfBlocks < 0 || numberOfExits < 0) {
+        throw new IOException("map: " + path + " is not a valid scenario");
+      }
+
+      var rectanglesBytes = (long) RECTANGLE_BYTES * ((long) numberOfBlocks + numberOfExits);
+      var bitmapBytes = OffHeapBooleanGrid.fileBytes(rows, columns);
+      var blockedPosition = HEADER_BYTES + rectanglesBytes;
+      var exitPosition = blockedPosition + bitmapBytes;
+      var floorFieldPosition = exitPosition + bitmapBytes;
+      var size = floorFieldPosition + (includeFloorField ? OffHeapDoubleGrid.fileBytes(rows, columns) : 0);
+      if (channel.size() != size || rectanglesBytes > Integer.MAX_VALUE) {
+        throw new IOException("map: " + path + " is not a valid scenario");
+      }
+
+      var fields = includeFloorField
+          ? OffHeapDoubleGrid.map(channel, floorFieldPosition, rows, columns)
+          : GridStorage.OFF_HEAP.doubleGrid(rows, columns);
+      var scenario = new Scenario(cellDimension,
+          OffHeapBooleanGrid.map(channel, blockedPosition, rows, columns),
+          OffHeapBooleanGrid.map(channel, exitPosition, rows, columns),
+          newScenario -> buildStaticFloorField.apply(newScenario, fields));
+      var rectangles = read(channel, HEADER_BYTES, (int) rectanglesBytes, path);
+      for (int i = 0; i < numberOfBlocks; i++) {
+        scenario.recordBlock(getRectangle(rectangles));
+      }
+      for (int i = 0; i < numberOfExits; i++) {
+        scenario.recordExit(getRectangle(rectangles));
+      }
+      if (includeFloorField && scenario.getStaticFloorField() instanceof StaticFloorField staticFloorField) {
+        // adopts mapped grid, which floor field was normally built over, without copying it
+        staticFloorField.initialize(fields);
+      }
+      return scenario;
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int bytes, Path path) throws IOException {
+    var buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("map: " + path + " is truncated");
+      }
+    }
+    return buffer.flip();
+  }
+}
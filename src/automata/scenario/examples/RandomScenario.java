@@ -56,8 +56,8 @@ public class RandomScenario {
       // so that blocks are apart
       var border = new Rectangle(row - 2, column - 2, height + 4, width + 4);
 
-      var shouldBePlaced = !border.intersectsAny(scenario.exits())
-          && !border.intersectsAny(scenario.blocks());
+      // exits and blocks are indexed by scenario, so this only checks those near new block
+      var shouldBePlaced = !scenario.intersectsAny(border);
 
       if (shouldBePlaced) {
         scenario.setBlock(newBlock);
@@ -0,0 +1,314 @@
+package automata.scenario.examples;
+
+import automata.floorField.DijkstraStaticFloorFieldWithMooreNeighbourhood;
+import automata.floorField.FloorField;
+import automata.scenario.Scenario;
+import geometry._2d.Rectangle;
+import geometry._2d.RectangleGridIndex;
+import statistics.Xoshiro256PlusPlus;
+
+import java.util.function.Function;
+
+/**
+ * A class for generating synthetic scenarios of any size, mainly for scaling experiments. A scenario optionally
+ * consists of a grid of square rooms, each one with a door on every wall, separated by corridors. Exits are placed
+ * on borders and rectangular obstacles are then scattered until a given fraction of scenario is blocked.
+ * <p>
+ * Obstacles are kept apart from each other, from walls and from exits, so that every clear cell can reach an exit.
+ * Placement is checked against a spatial grid index, so generation time grows linearly with number of obstacles.
+ * Scenarios are generated with their own random generator, so the same seed always produces the same scenario and
+ * global random generator is not used.
+ *
+ * @author Pepe Gallardo
+ */
+public class SyntheticScenario {
+  /**
+   * Largest supported number of rows or columns.
+   */
+  public static final int MAXIMUM_SIZE = 20_000;
+
+  private final int rows, columns;
+  private final double cellDimension;
+  private final double obstacleDensity;
+  private final int maximumObstacleSize;
+  private final int roomSize, corridorWidth, doorWidth;
+  private final int numberOfExits, exitWidth;
+  private final Function<Scenario, FloorField> buildFloorField;
+
+  private Xoshiro256PlusPlus random;
+  private Scenario scenario;
+  private RectangleGridIndex index;
+  private long blockedCells;
+
+  private SyntheticScenario(Builder builder) {
+    this.rows = builder.rows;
+    this.columns = builder.columns;
+    this.cellDimension = builder.cellDimension;
+    this.obstacleDensity = builder.obstacleDensity;
+    this.maximumObstacleSize = builder.maximumObstacleSize;
+    this.roomSize = builder.roomSize;
+    this.corridorWidth = builder.corridorWidth;
+    this.doorWidth = builder.doorWidth;
+    this.numberOfExits = builder.numberOfExits;
+    this.exitWidth = builder.exitWidth;
+    this.buildFloorField = builder.buildFloorField;
+  }
+
+  private Scenario generate(long seed) {
+    random = new Xoshiro256PlusPlus(seed);
+    scenario =
+        new Scenario.Builder()
+            .rows(rows)
+            .columns(columns)
+            .cellDimension(cellDimension)
+            .floorField(buildFloorField)
+            .build();
+    var bucketSize = Math.max(16, 2 * maximumObstacleSize);
+    index = new RectangleGridIndex(new Rectangle(0, 0, rows, columns), bucketSize);
+    blockedCells = 0;
+
+    placeExits();
+    if (roomSize > 0) {
+      placeRooms();
+    }
+    placeObstacles();
+    return scenario;
+  }
+
+  private void placeExits() {
+    for (int exit = 0; exit < numberOfExits; exit++) {
+      // cycle over left, right, bottom and top borders
+      var side = exit % 4;
+      var vertical = side < 2;
+      var length = Math.min(exitWidth, vertical ? rows : columns);
+      for (int tries = 0; tries < 100; tries++) {
+        var offset = random.nextInt(1 + (vertical ? rows : columns) - length);
+        var rectangle = switch (side) {
+          case 0 -> new Rectangle(offset, 0, length, 1);
+          case 1 -> new Rectangle(offset, columns - 1, length, 1);
+          case 2 -> new Rectangle(0, offset, 1, length);
+          default -> new Rectangle(rows - 1, offset, 1, length);
+        };
+        // keep some clear space in front of each exit
+        var clearance = expand(rectangle, Math.max(2, corridorWidth));
+        if (!index.intersectsAny(clearance)) {
+          scenario.setExit(rectangle);
+          index.add(clearance);
+          break;
+        }
+      }
+    }
+  }
+
+  private void placeRooms() {
+    var pitch = roomSize + corridorWidth;
+    for (int bottom = corridorWidth; bottom + roomSize <= rows - corridorWidth; bottom += pitch) {
+      for (int left = corridorWidth; left + roomSize <= columns - corridorWidth; left += pitch) {
+        var top = bottom + roomSize - 1;
+        var right = left + roomSize - 1;
+        var room = new Rectangle(bottom, left, roomSize, roomSize);
+        if (index.intersectsAny(room)) {
+          // too close to an exit
+          continue;
+        }
+        // walls without corners, so that doors can be placed anywhere along them
+        placeWall(bottom, left + 1, true);
+        placeWall(top, left + 1, true);
+        placeWall(bottom + 1, left, false);
+        placeWall(bottom + 1, right, false);
+        // corners
+        placeBlock(new Rectangle(bottom, left, 1, 1));
+        placeBlock(new Rectangle(bottom, right, 1, 1));
+        placeBlock(new Rectangle(top, left, 1, 1));
+        placeBlock(new Rectangle(top, right, 1, 1));
+      }
+    }
+  }
+
+  /**
+   * Places a wall of a room with a door at a random position.
+   */
+  private void placeWall(int row, int column, boolean horizontal) {
+    var length = roomSize - 2;
+    var door = random.nextInt(1 + length - doorWidth);
+    if (horizontal) {
+      placeBlock(new Rectangle(row, column, 1, door));
+      placeBlock(new Rectangle(row, column + door + doorWidth, 1, length - door - doorWidth));
+      // keep obstacles away from both sides of door
+      index.add(new Rectangle(row - 2, column + door, 5, doorWidth));
+    } else {
+      placeBlock(new Rectangle(row, column, door, 1));
+      placeBlock(new Rectangle(row + door + doorWidth, column, length - door - doorWidth, 1));
+      index.add(new Rectangle(row + door, column - 2, doorWidth, 5));
+    }
+  }
+
+  private void placeObstacles() {
+    var targetBlockedCells = (long) (obstacleDensity * rows * columns);
+    var meanArea = Math.max(1.0, (maximumObstacleSize + 1) * (maximumObstacleSize + 1) / 4.0);
+    var maximumTries = 10 * (long) Math.ceil(Math.max(0, targetBlockedCells - blockedCells) / meanArea) + 100;
+    for (long tries = 0; tries < maximumTries && blockedCells < targetBlockedCells; tries++) {
+      // mostly shelves: long and narrow
+      var thin = 1 + random.nextInt(2);
+      var elongated = 1 + random.nextInt(maximumObstacleSize);
+      var horizontal = random.nextBoolean();
+      var height = Math.min(horizontal ? thin : elongated, rows - 2);
+      var width = Math.min(horizontal ? elongated : thin, columns - 2);
+      if (height <= 0 || width <= 0) {
+        return;
+      }
+      // obstacles do not touch borders of scenario
+      var row = 1 + random.nextInt(Math.max(1, rows - height - 1));
+      var column = 1 + random.nextInt(Math.max(1, columns - width - 1));
+      var obstacle = new Rectangle(row, column, height, width);
+      // so that obstacles are apart
+      if (!index.intersectsAny(expand(obstacle, 1))) {
+        placeBlock(obstacle);
+      }
+    }
+  }
+
+  private void placeBlock(Rectangle rectangle) {
+    if (rectangle.height() > 0 && rectangle.width() > 0) {
+      scenario.setBlock(rectangle);
+      index.add(rectangle);
+      blockedCells += (long) rectangle.height() * rectangle.width();
+    }
+  }
+
+  private static Rectangle expand(Rectangle rectangle, int margin) {
+    return new Rectangle(rectangle.bottom() - margin, rectangle.left() - margin, rectangle.height() + 2 * margin,
+        rectangle.width() + 2 * margin);
+  }
+
+  /**
+   * Class for building a synthetic scenario by providing its parameters.
+   */
+  public static final class Builder {
+    private int rows = 200;
+    private int columns = 200;
+    private double cellDimension = 0.4;
+    private double obstacleDensity = 0.1;
+    private int maximumObstacleSize = 10;
+    private int roomSize = 0;
+    private int corridorWidth = 4;
+    private int doorWidth = 2;
+    private int numberOfExits = 4;
+    private int exitWidth = 5;
+    private Function<Scenario, FloorField> buildFloorField = DijkstraStaticFloorFieldWithMooreNeighbourhood::of;
+
+    public Builder() {
+    }
+
+    public Builder rows(int rows) {
+      this.rows = rows;
+      return this;
+    }
+
+    public Builder columns(int columns) {
+      this.columns = columns;
+      return this;
+    }
+
+    public Builder cellDimension(double cellDimension) {
+      this.cellDimension = cellDimension;
+      return this;
+    }
+
+    /**
+     * Sets fraction of scenario that should be blocked, including walls of rooms. Fewer cells may be blocked if
+     * obstacles do not fit.
+     *
+     * @param obstacleDensity fraction of scenario that should be blocked, in [0, 1).
+     * @return this builder.
+     */
+    public Builder obstacleDensity(double obstacleDensity) {
+      this.obstacleDensity = obstacleDensity;
+      return this;
+    }
+
+    public Builder maximumObstacleSize(int maximumObstacleSize) {
+      this.maximumObstacleSize = maximumObstacleSize;
+      return this;
+    }
+
+    /**
+     * Sets side of square rooms, including their walls.
+     *
+     * @param roomSize side of rooms or 0 if scenario has no rooms.
+     * @return this builder.
+     */
+    public Builder roomSize(int roomSize) {
+      this.roomSize = roomSize;
+      return this;
+    }
+
+    /**
+     * Sets width of corridors between rooms and between rooms and borders of scenario.
+     *
+     * @param corridorWidth width of corridors.
+     * @return this builder.
+     */
+    public Builder corridorWidth(int corridorWidth) {
+      this.corridorWidth = corridorWidth;
+      return this;
+    }
+
+    public Builder doorWidth(int doorWidth) {
+      this.doorWidth = doorWidth;
+      return this;
+    }
+
+    public Builder numberOfExits(int numberOfExits) {
+      this.numberOfExits = numberOfExits;
+      return this;
+    }
+
+    public Builder exitWidth(int exitWidth) {
+      this.exitWidth = exitWidth;
+      return this;
+    }
+
+    public Builder floorField(Function<Scenario, FloorField> buildFloorField) {
+      this.buildFloorField = buildFloorField;
+      return this;
+    }
+
+    /**
+     * Generates a scenario.
+     *
+     * @param seed seed for random generator. Same seed always generates the same scenario.
+     * @return a new scenario. Its floor field is not initialized.
+     */
+    public Scenario build(long seed) {
+      if (rows <= 0 || rows > MAXIMUM_SIZE) {
+        throw new IllegalArgumentException("build: rows must be in [1, " + MAXIMUM_SIZE + "]");
+      }
+      if (columns <= 0 || columns > MAXIMUM_SIZE) {
+        throw new IllegalArgumentException("build: columns must be in [1, " + MAXIMUM_SIZE + "]");
+      }
+      if (obstacleDensity < 0 || obstacleDensity >= 1) {
+        throw new IllegalArgumentException("build: obstacleDensity must be in [0, 1)");
+      }
+      if (maximumObstacleSize <= 0) {
+        throw new IllegalArgumentException("build: maximumObstacleSize must be larger than 0");
+      }
+      if (roomSize != 0 && roomSize < doorWidth + 4) {
+        throw new IllegalArgumentException("build: roomSize must be 0 or at least doorWidth + 4");
+      }
+      if (corridorWidth <= 0) {
+        throw new IllegalArgumentException("build: corridorWidth must be larger than 0");
+      }
+      if (doorWidth <= 0) {
+        throw new IllegalArgumentException("build: doorWidth must be larger than 0");
+      }
+      if (numberOfExits <= 0) {
+        throw new IllegalArgumentException("build: numberOfExits must be larger than 0");
+      }
+      if (exitWidth <= 0) {
+        throw new IllegalArgumentException("build: exitWidth must be larger than 0");
+      }
+      return new SyntheticScenario(this).generate(seed);
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package automata.server;
+
+import automata.floorField.DijkstraStaticFloorFieldWithMooreNeighbourhood;
+import automata.scenario.RasterScenarioReader;
+import automata.scenario.Scenario;
+import automata.scenario.ScenarioFile;
+import automata.scenario.examples.RandomScenario;
+import automata.scenario.examples.Supermarket;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static statistics.Random.random;
+
+/**
+ * A cache of scenarios with their static floor fields already initialized, so that simulations of same scenario do
+ * not rebuild it nor recompute its floor field. Least recently used scenarios are evicted when cache is full. A
+ * scenario requested by several threads at once is only built once, while other threads wait for it.
+ * <p>
+ * Scenarios are referenced by strings:
+ * <ul>
+ *   <li>{@code supermarket}: scenario in {@link Supermarket}.</li>
+ *   <li>{@code random:<seed>}: scenario built by {@link RandomScenario} with random generator seeded with
+ *   {@code seed}.</li>
+ *   <li>{@code file:<path>}: scenario mapped from a file written by {@link ScenarioFile}.</li>
+ *   <li>{@code image:<path>}: scenario read from a floor plan by a default {@link RasterScenarioReader}.</li>
+ * </ul>
+ *
+ * @author Pepe Gallardo
+ */
+public class ScenarioCache {
+  private final int capacity;
+  // in access order, so that eldest entry is least recently used
+  private final LinkedHashMap<String, Future<Scenario>> scenarios;
+  private final LongAdder hits, misses;
+
+  /**
+   * Creates an empty cache.
+   *
+   * @param capacity maximum number of scenarios kept in cache.
+   */
+  public ScenarioCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("ScenarioCache: capacity must be larger than 0");
+    }
+    this.capacity = capacity;
+    this.scenarios = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Future<Scenario>> eldest) {
+        return size() > ScenarioCache.this.capacity;
+      }
+    };
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+  }
+
+  /**
+   * Gets a scenario, building it and initializing its static floor field if it is not in cache.
+   *
+   * @param reference reference to scenario.
+   * @return scenario with its static floor field initialized.
+   * @throws IllegalArgumentException if reference is not valid.
+   * @throws UncheckedIOException     if scenario cannot be read.
+   */
+  public Scenario get(String reference) {
+    FutureTask<Scenario> task = null;
+    Future<Scenario> future;
+    synchronized (scenarios) {
+      future = scenarios.get(reference);
+      if (future == null) {
+        task = new FutureTask<>(() -> load(reference));
+        future = task;
+        scenarios.put(reference, future);
+      }
+    }
+    if (task != null) {
+      misses.increment();
+      // scenario is built by requesting thread, outside lock
+      task.run();
+    } else {
+      hits.increment();
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CancellationException("get: interrupted while waiting for scenario " + reference);
+    } catch (ExecutionException e) {
+      // failed scenarios are not cached, so that they can be retried
+      synchronized (scenarios) {
+        scenarios.remove(reference, future);
+      }
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("get: building scenario " + reference + " failed", e.getCause());
+    }
+  }
+
+  /**
+   * Adds a scenario built by caller, so that jobs can use scenarios that cannot be built from a reference. Its static
+   * floor field is initialized if it was not. Scenario may be evicted as any other one.
+   *
+   * @param reference reference jobs use for scenario.
+   * @param scenario  scenario to add.
+   */
+  public void put(String reference, Scenario scenario) {
+    if (!scenario.getStaticFloorField().isInitialized()) {
+      scenario.getStaticFloorField().initialize();
+    }
+    var task = new FutureTask<>(() -> scenario);
+    task.run();
+    synchronized (scenarios) {
+      scenarios.put(reference, task);
+    }
+  }
+
+  private static Scenario load(String reference) {
+    var colon = reference.indexOf(':');
+    var kind = colon < 0 ? reference : reference.substring(0, colon);
+    var argument = colon < 0 ? "" : reference.substring(colon + 1);
+    try {
+      var scenario = switch (kind) {
+        case "supermarket" -> Supermarket.supermarket();
+        case "random" -> randomScenario(argument);
+        case "file" -> ScenarioFile.map(Path.of(argument), DijkstraStaticFloorFieldWithMooreNeighbourhood::of);
+        case "image" -> new RasterScenarioReader.Builder()
+            .floorField(DijkstraStaticFloorFieldWithMooreNeighbourhood::of)
+            .build()
+            .read(Path.of(argument));
+        default -> throw new IllegalArgumentException("load: unknown scenario " + reference);
+      };
+      if (!scenario.getStaticFloorField().isInitialized()) {
+        scenario.getStaticFloorField().initialize();
+      }
+      return scenario;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e.getMessage(), e);
+    }
+  }
+
+  private static Scenario randomScenario(String seed) {
+    // state of random generator of calling thread is preserved
+    var state = random.getState();
+    try {
+      random.setSeed(Long.parseLong(seed));
+      return RandomScenario.randomScenario();
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("load: invalid seed for random scenario: " + seed);
+    } finally {
+      random.setState(state);
+    }
+  }
+
+  /**
+   * Number of scenarios currently in cache.
+   *
+   * @return number of scenarios currently in cache.
+   */
+  public int size() {
+    synchronized (scenarios) {
+      return scenarios.size();
+    }
+  }
+
+  /**
+   * Number of requests served by a scenario already in cache.
+   *
+   * @return number of requests served by a scenario already in cache.
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * Number of requests that had to build their scenario.
+   *
+   * @return number of requests that had to build their scenario.
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+}
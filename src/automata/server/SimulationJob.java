@@ -0,0 +1,200 @@
+package automata.server;
+
+import automata.CellularAutomaton;
+import automata.CellularAutomatonParameters;
+import automata.TerminationCriteria;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.neighbourhood.Neighbourhood;
+import automata.neighbourhood.VonNeumannNeighbourhood;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.Scenario;
+
+import java.util.function.Function;
+
+/**
+ * Class representing a simulation requested to a {@link SimulationServer}.
+ * <p>
+ * A job is sent as a single line of whitespace separated {@code key=value} pairs, such as
+ * <pre>
+ *   id=7 scenario=supermarket seed=42 timeLimit=600 velocity=1.3 neighbourhood=moore pedestrians=300
+ *   fieldAttractionBias=1.2 crowdRepulsion=1.1 stallTimeSteps=0 exitProgressTimeSteps=0
+ * </pre>
+ * Only {@code scenario} is required. Any other key takes its default value if missing.
+ *
+ * @param identifier           identifier of job, echoed in its result.
+ * @param scenario             reference to scenario, as understood by {@link ScenarioCache}.
+ * @param seed                 seed for random generator used by simulation.
+ * @param secondsTimeLimit     time limit (in seconds) for simulation.
+ * @param pedestrianVelocity   velocity of pedestrians (in meters per second).
+ * @param neighbourhood        neighbourhood relationship used by automaton: {@code moore} or {@code vonneumann}.
+ * @param numberOfPedestrians  number of pedestrians placed uniformly in scenario.
+ * @param pedestrianParameters parameters describing pedestrians.
+ * @param terminationCriteria  criteria for terminating simulation before its time limit.
+ * @author Pepe Gallardo
+ */
+public record SimulationJob(
+    String identifier
+    , String scenario
+    , long seed
+    , double secondsTimeLimit
+    , double pedestrianVelocity
+    , String neighbourhood
+    , int numberOfPedestrians
+    , PedestrianParameters pedestrianParameters
+    , TerminationCriteria terminationCriteria) {
+
+  /**
+   * Parses a job from a line of {@code key=value} pairs.
+   *
+   * @param line line to parse.
+   * @return job described by line.
+   * @throws IllegalArgumentException if line is not a valid job.
+   */
+  public static SimulationJob parse(String line) {
+    var builder = new Builder();
+    var pedestrianParameters = new PedestrianParameters.Builder();
+    var terminationCriteria = new TerminationCriteria.Builder();
+    for (var pair : line.trim().split("\\s+")) {
+      var equals = pair.indexOf('=');
+      if (equals <= 0) {
+        throw new IllegalArgumentException("parse: expected key=value but found " + pair);
+      }
+      var key = pair.substring(0, equals);
+      var value = pair.substring(equals + 1);
+      try {
+        switch (key) {
+          case "id" -> builder.identifier(value);
+          case "scenario" -> builder.scenario(value);
+          case "seed" -> builder.seed(Long.parseLong(value));
+          case "timeLimit" -> builder.secondsTimeLimit(Double.parseDouble(value));
+          case "velocity" -> builder.pedestrianVelocity(Double.parseDouble(value));
+          case "neighbourhood" -> builder.neighbourhood(value);
+          case "pedestrians" -> builder.numberOfPedestrians(Integer.parseInt(value));
+          case "fieldAttractionBias" -> pedestrianParameters.fieldAttractionBias(Double.parseDouble(value));
+          case "crowdRepulsion" -> pedestrianParameters.crowdRepulsion(Double.parseDouble(value));
+          case "stallTimeSteps" -> terminationCriteria.stallTimeSteps(Integer.parseInt(value));
+          case "exitProgressTimeSteps" -> terminationCriteria.exitProgressTimeSteps(Integer.parseInt(value));
+          default -> throw new IllegalArgumentException("parse: unknown key " + key);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("parse: invalid value for " + key + ": " + value);
+      }
+    }
+    return builder
+        .pedestrianParameters(pedestrianParameters.build())
+        .terminationCriteria(terminationCriteria.build())
+        .build();
+  }
+
+  private Function<Scenario, Neighbourhood> buildNeighbourhood() {
+    return switch (neighbourhood) {
+      case "moore" -> MooreNeighbourhood::of;
+      case "vonneumann" -> VonNeumannNeighbourhood::of;
+      default -> throw new IllegalArgumentException("automaton: unknown neighbourhood " + neighbourhood);
+    };
+  }
+
+  /**
+   * Builds automaton for this job, with its pedestrians already placed. Should be called in thread running
+   * simulation, after seeding its random generator.
+   *
+   * @param scenario scenario referenced by this job, with its static floor field initialized.
+   * @return a new automaton ready to run.
+   */
+  public CellularAutomaton automaton(Scenario scenario) {
+    var parameters =
+        new CellularAutomatonParameters.Builder()
+            .scenario(scenario)
+            .secondsTimeLimit(secondsTimeLimit)
+            .neighbourhood(buildNeighbourhood())
+            .pedestrianVelocity(pedestrianVelocity)
+            .terminationCriteria(terminationCriteria)
+            .build();
+    var automaton = new CellularAutomaton(parameters);
+    automaton.addPedestriansUniformly(numberOfPedestrians, pedestrianParameters);
+    return automaton;
+  }
+
+  /**
+   * Class for building a simulation job by providing its parameters.
+   */
+  public static final class Builder {
+    private String identifier = "";
+    private String scenario;
+    private long seed = 0;
+    private double secondsTimeLimit = 60 * 10;
+    private double pedestrianVelocity = 1.3;
+    private String neighbourhood = "moore";
+    private int numberOfPedestrians = 300;
+    private PedestrianParameters pedestrianParameters = new PedestrianParameters.Builder().build();
+    private TerminationCriteria terminationCriteria = TerminationCriteria.DEFAULT;
+
+    public Builder() {
+    }
+
+    public Builder identifier(String identifier) {
+      this.identifier = identifier;
+      return this;
+    }
+
+    public Builder scenario(String scenario) {
+      this.scenario = scenario;
+      return this;
+    }
+
+    public Builder seed(long seed) {
+      this.seed = seed;
+      return this;
+    }
+
+    public Builder secondsTimeLimit(double secondsTimeLimit) {
+      this.secondsTimeLimit = secondsTimeLimit;
+      return this;
+    }
+
+    public Builder pedestrianVelocity(double pedestrianVelocity) {
+      this.pedestrianVelocity = pedestrianVelocity;
+      return this;
+    }
+
+    public Builder neighbourhood(String neighbourhood) {
+      this.neighbourhood = neighbourhood;
+      return this;
+    }
+
+    public Builder numberOfPedestrians(int numberOfPedestrians) {
+      this.numberOfPedestrians = numberOfPedestrians;
+      return this;
+    }
+
+    public Builder pedestrianParameters(PedestrianParameters pedestrianParameters) {
+      this.pedestrianParameters = pedestrianParameters;
+      return this;
+    }
+
+    public Builder terminationCriteria(TerminationCriteria terminationCriteria) {
+      this.terminationCriteria = terminationCriteria;
+      return this;
+    }
+
+    public SimulationJob build() {
+      if (scenario == null) {
+        throw new IllegalArgumentException("build: scenario must be provided");
+      }
+      if (secondsTimeLimit <= 0) {
+        throw new IllegalArgumentException("build: secondsTimeLimit must be larger than 0");
+      }
+      if (pedestrianVelocity <= 0) {
+        throw new IllegalArgumentException("build: pedestrianVelocity must be larger than 0");
+      }
+      if (numberOfPedestrians < 0) {
+        throw new IllegalArgumentException("build: numberOfPedestrians cannot be negative");
+      }
+      if (!neighbourhood.equals("moore") && !neighbourhood.equals("vonneumann")) {
+        throw new IllegalArgumentException("build: unknown neighbourhood " + neighbourhood);
+      }
+      return new SimulationJob(identifier, scenario, seed, secondsTimeLimit, pedestrianVelocity, neighbourhood,
+          numberOfPedestrians, pedestrianParameters, terminationCriteria);
+    }
+  }
+}
@@ -0,0 +1,348 @@
+package automata.server;
+
+import automata.BatchRunner;
+import automata.CellularAutomaton;
+import automata.Statistics;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived server running simulation jobs, so that JVM startup, JIT warmup and floor field computations are paid
+ * once rather than once per simulation. Jobs are read from a local socket or from standard input, one
+ * {@link SimulationJob} per line, and run concurrently by a pool of workers. Scenarios and their floor fields are
+ * kept warm in a {@link ScenarioCache}.
+ * <p>
+ * For each job, a line with its statistics is written back, in the same order jobs were received:
+ * <pre>
+ *   id=7 status=ok meanSteps=... meanEvacuationTime=... ... numberOfNonEvacuees=... terminationReason=EVACUATED
+ *   id=8 status=error message=parse: unknown key foo
+ * </pre>
+ * A job whose scenario cannot be built or whose simulation fails is reported with {@code status=error} too.
+ * Queue of pending jobs is bounded. When it is full, server stops reading jobs until a worker is free, so that clients
+ * sending jobs faster than they are run are slowed down rather than exhausting memory.
+ *
+ * @author Pepe Gallardo
+ */
+public class SimulationServer implements AutoCloseable {
+  private final BatchRunner runner;
+  private final ScenarioCache scenarios;
+  private volatile ServerSocket serverSocket;
+
+  /**
+   * Result of a job, written back once it is available.
+   */
+  private record Response(String identifier, Future<Statistics> statistics, String error) {
+  }
+
+  // marks end of jobs in a session
+  private static final Response END = new Response(null, null, null);
+
+  private SimulationServer(Builder builder) {
+    this.runner = new BatchRunner.Builder()
+        .threads(builder.threads)
+        .queueCapacity(builder.queueCapacity)
+        .name("SimulationServer")
+        .build();
+    this.scenarios = new ScenarioCache(builder.cacheCapacity);
+  }
+
+  /**
+   * Cache of scenarios used by this server.
+   *
+   * @return cache of scenarios used by this server.
+   */
+  public ScenarioCache getScenarioCache() {
+    return scenarios;
+  }
+
+  /**
+   * Submits a job. Blocks while queue of pending jobs is full.
+   *
+   * @param job job to run.
+   * @return statistics of simulation, available when it completes.
+   */
+  public Future<Statistics> submit(SimulationJob job) {
+    return runner.submit(job.seed(), () -> job.automaton(scenarios.get(job.scenario())),
+        CellularAutomaton::computeStatistics);
+  }
+
+  /**
+   * Serves a session: reads jobs until end of input and writes their results as they complete. Returns once all
+   * results have been written.
+   *
+   * @param input  stream jobs are read from.
+   * @param output stream results are written to.
+   * @throws IOException if jobs cannot be read.
+   */
+  public void serve(InputStream input, OutputStream output) throws IOException {
+    var reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    var writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+    var responses = new LinkedBlockingQueue<Response>();
+    var writerThread = new Thread(() -> writeResponses(responses, writer), "SimulationServer-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.strip();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        responses.add(submit(line));
+      }
+    } finally {
+      responses.add(END);
+      var interrupted = false;
+      while (writerThread.isAlive()) {
+        try {
+          writerThread.join();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private Response submit(String line) {
+    SimulationJob job;
+    try {
+      job = SimulationJob.parse(line);
+    } catch (IllegalArgumentException e) {
+      return new Response(identifier(line), null, e.getMessage());
+    }
+    return new Response(job.identifier(), submit(job), null);
+  }
+
+  // identifier of a job that could not be parsed, if it can be found
+  private static String identifier(String line) {
+    for (var pair : line.split("\\s+")) {
+      if (pair.startsWith("id=")) {
+        return pair.substring(3);
+      }
+    }
+    return "";
+  }
+
+  private static void writeResponses(BlockingQueue<Response> responses, Writer writer) {
+    // if client goes away, remaining results are still awaited but discarded
+    var failed = false;
+    while (true) {
+      Response response;
+      try {
+        response = responses.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (response == END) {
+        break;
+      }
+      var line = format(response);
+      if (!failed) {
+        try {
+          writer.write(line);
+          writer.write('\n');
+          if (responses.isEmpty()) {
+            writer.flush();
+          }
+        } catch (IOException e) {
+          failed = true;
+        }
+      }
+    }
+    if (!failed) {
+      try {
+        writer.flush();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private static String format(Response response) {
+    var prefix = "id=" + response.identifier();
+    if (response.error() != null) {
+      return prefix + " status=error message=" + singleLine(response.error());
+    }
+    Statistics statistics;
+    try {
+      statistics = response.statistics().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return prefix + " status=error message=interrupted";
+    } catch (ExecutionException e) {
+      // building scenario or automaton failed, or simulation itself failed
+      var cause = e.getCause();
+      return prefix + " status=error message="
+          + singleLine(cause.getMessage() == null ? cause.toString() : cause.getMessage());
+    }
+    return prefix + " status=ok"
+        + " meanSteps=" + statistics.meanSteps()
+        + " meanEvacuationTime=" + statistics.meanEvacuationTime()
+        + " medianSteps=" + statistics.medianSteps()
+        + " medianEvacuationTime=" + statistics.medianEvacuationTime()
+        + " p90EvacuationTime=" + statistics.p90EvacuationTime()
+        + " p95EvacuationTime=" + statistics.p95EvacuationTime()
+        + " p99EvacuationTime=" + statistics.p99EvacuationTime()
+        + " numberOfEvacuees=" + statistics.numberOfEvacuees()
+        + " numberOfNonEvacuees=" + statistics.numberOfNonEvacuees()
+        + " terminationReason=" + statistics.terminationReason();
+  }
+
+  // so that a message never breaks one result per line
+  private static String singleLine(String message) {
+    return message.replaceAll("\\s+", " ").strip();
+  }
+
+  /**
+   * Listens on a port of loopback interface and serves each connection as a session of its own, concurrently. Returns
+   * when server is closed.
+   *
+   * @param port port to listen on, or 0 for any free port.
+   * @throws IOException if port cannot be listened on.
+   */
+  public void listen(int port) throws IOException {
+    var connectionNumber = new AtomicInteger(0);
+    try (var socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+      serverSocket = socket;
+      while (true) {
+        Socket connection;
+        try {
+          connection = socket.accept();
+        } catch (SocketException e) {
+          // server was closed
+          return;
+        }
+        var thread = new Thread(() -> {
+          try (connection) {
+            serve(connection.getInputStream(), connection.getOutputStream());
+          } catch (IOException e) {
+            System.err.println("SimulationServer: connection failed: " + e.getMessage());
+          }
+        }, "SimulationServer-connection-" + connectionNumber.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+      }
+    }
+  }
+
+  /**
+   * Port this server is listening on.
+   *
+   * @return port this server is listening on or -1 if it is not listening.
+   */
+  public int getPort() {
+    var socket = serverSocket;
+    return socket == null ? -1 : socket.getLocalPort();
+  }
+
+  /**
+   * Stops listening for connections, waits for all submitted jobs to complete and releases workers.
+   */
+  @Override
+  public void close() {
+    var socket = serverSocket;
+    if (socket != null) {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+    runner.close();
+  }
+
+  /**
+   * Runs a server. Serves standard input unless a port is given.
+   * <pre>
+   *   java automata.server.SimulationServer [--port n] [--threads n] [--queue n] [--cache n]
+   * </pre>
+   *
+   * @param args command line arguments.
+   * @throws IOException if jobs cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    var builder = new Builder();
+    var port = -1;
+    for (int i = 0; i < args.length; i += 2) {
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("main: missing value for " + args[i]);
+      }
+      var value = Integer.parseInt(args[i + 1]);
+      switch (args[i]) {
+        case "--port" -> port = value;
+        case "--threads" -> builder.threads(value);
+        case "--queue" -> builder.queueCapacity(value);
+        case "--cache" -> builder.cacheCapacity(value);
+        default -> throw new IllegalArgumentException("main: unknown option " + args[i]);
+      }
+    }
+    try (var server = builder.build()) {
+      if (port < 0) {
+        server.serve(System.in, System.out);
+      } else {
+        server.listen(port);
+      }
+    }
+  }
+
+  /**
+   * Class for building a simulation server by providing its parameters.
+   */
+  public static final class Builder {
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int queueCapacity = -1;
+    private int cacheCapacity = 16;
+
+    public Builder() {
+    }
+
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Sets number of jobs that can wait for a worker before server stops reading jobs.
+     *
+     * @param queueCapacity number of jobs that can wait for a worker. Defaults to twice number of workers.
+     * @return this builder.
+     */
+    public Builder queueCapacity(int queueCapacity) {
+      this.queueCapacity = queueCapacity;
+      return this;
+    }
+
+    /**
+     * Sets maximum number of scenarios kept warm.
+     *
+     * @param cacheCapacity maximum number of scenarios kept warm.
+     * @return this builder.
+     */
+    public Builder cacheCapacity(int cacheCapacity) {
+      this.cacheCapacity = cacheCapacity;
+      return this;
+    }
+
+    public SimulationServer build() {
+      return new SimulationServer(this);
+    }
+  }
+}
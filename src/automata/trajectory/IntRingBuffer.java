@@ -0,0 +1,129 @@
+package automata.trajectory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded single-producer single-consumer ring buffer of {@code int}s. The producer appends values and makes them
+ * visible to the consumer in batches by calling {@link #publish}, so that only one volatile write is needed per batch.
+ * If buffer is full, producer waits until consumer frees some space.
+ *
+ * @author Pepe Gallardo
+ */
+class IntRingBuffer {
+  private final int[] buffer;
+  private final int mask;
+
+  // written by producer, read by consumer
+  private volatile long published;
+  // written by consumer, read by producer
+  private volatile long consumed;
+
+  // only accessed by producer
+  private long tail;
+  private long cachedConsumed;
+
+  // set when consumer has terminated, so that producer never waits forever
+  private volatile boolean closed;
+
+  /**
+   * Creates a new ring buffer.
+   *
+   * @param capacity minimum number of {@code int}s buffer can hold. Actual capacity is next power of two.
+   */
+  IntRingBuffer(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("IntRingBuffer: capacity must be larger than 0");
+    }
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.buffer = new int[size];
+    this.mask = size - 1;
+  }
+
+  /**
+   * Appends a value to this buffer. Value will only be visible to consumer after calling {@link #publish}.
+   *
+   * @param value value to append.
+   */
+  void put(int value) {
+    if (tail - cachedConsumed == buffer.length) {
+      awaitSpace();
+    }
+    buffer[(int) tail & mask] = value;
+    tail++;
+  }
+
+  void put(int value1, int value2, int value3) {
+    if (tail + 3 - cachedConsumed > buffer.length) {
+      put(value1);
+      put(value2);
+      put(value3);
+    } else {
+      buffer[(int) tail & mask] = value1;
+      buffer[(int) (tail + 1) & mask] = value2;
+      buffer[(int) (tail + 2) & mask] = value3;
+      tail += 3;
+    }
+  }
+
+  private void awaitSpace() {
+    // make everything appended so far visible, so that consumer can make progress
+    publish();
+    int spins = 0;
+    while (tail - (cachedConsumed = consumed) == buffer.length) {
+      if (closed) {
+        throw new IllegalStateException("IntRingBuffer: consumer is no longer running");
+      }
+      if (++spins < 100) {
+        Thread.onSpinWait();
+      } else {
+        LockSupport.parkNanos(50_000);
+      }
+    }
+  }
+
+  /**
+   * Makes all values appended so far visible to consumer.
+   */
+  void publish() {
+    published = tail;
+  }
+
+  /**
+   * Number of values that can be read by consumer without waiting.
+   *
+   * @param from sequence number of next value to be read by consumer.
+   * @return number of values that can be read by consumer without waiting.
+   */
+  long available(long from) {
+    return published - from;
+  }
+
+  /**
+   * Reads value with given sequence number. Should only be called for available values.
+   *
+   * @param sequence sequence number of value.
+   * @return value with given sequence number.
+   */
+  int get(long sequence) {
+    return buffer[(int) sequence & mask];
+  }
+
+  /**
+   * Releases all values before given sequence number so that producer can reuse their slots.
+   *
+   * @param sequence sequence number of next value to be read by consumer.
+   */
+  void release(long sequence) {
+    consumed = sequence;
+  }
+
+  /**
+   * Signals that consumer will not read anymore.
+   */
+  void close() {
+    closed = true;
+  }
+}
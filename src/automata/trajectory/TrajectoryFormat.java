@@ -0,0 +1,214 @@
+package automata.trajectory;
+
+import automata.floorField.ManhattanStaticFloorField;
+import automata.scenario.Scenario;
+import geometry._2d.Rectangle;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Constants and encoding helpers describing binary format of trajectory files.
+ * <p>
+ * A trajectory file starts with a header describing the scenario:
+ * <pre>
+ *   int    magic number
+ *   int    version
+ *   int    rows
+ *   int    columns
+ *   double cell dimension
+ *   int    keyframe interval
+ *   int    number of exits, followed by bottom, left, height and width of each one
+ *   int    number of blocks, followed by bottom, left, height and width of each one
+ * </pre>
+ * Header is followed by a sequence of chunks. Each chunk has a fixed size header (a byte with chunk kind, an int with
+ * the frame it describes and an int with the length of its payload) followed by its payload. Frame {@code f} is the
+ * state of the automaton after {@code f} time steps.
+ * <ul>
+ *   <li>A keyframe chunk describes the full state at its frame: number of pedestrians followed by identifier, row
+ *   and column of each one. Pedestrians are sorted by identifier and identifiers are delta encoded.</li>
+ *   <li>A delta chunk describes changes going from previous frame to its frame: entered pedestrians (identifier, row
+ *   and column), moved pedestrians (identifier and displacement) and exited pedestrians (identifier). Each group is
+ *   sorted by identifier and identifiers are delta encoded.</li>
+ * </ul>
+ * All integers in payloads are stored as variable length integers (7 bits per byte). A displacement in the unit
+ * square is stored in one byte. Larger ones are stored as an escape byte followed by two zigzag encoded integers.
+ *
+ * @author Pepe Gallardo
+ */
+public final class TrajectoryFormat {
+  public static final int MAGIC = 0x43415452; // "CATR"
+  public static final int VERSION = 1;
+
+  public static final byte KEYFRAME = 1;
+  public static final byte DELTA = 2;
+
+  /**
+   * Size in bytes of header of each chunk.
+   */
+  public static final int CHUNK_HEADER_BYTES = 1 + 4 + 4;
+
+  /**
+   * Code used for displacements not in the unit square.
+   */
+  static final int LARGE_DISPLACEMENT = 9;
+
+  private TrajectoryFormat() {
+  }
+
+  /**
+   * Header of a trajectory file.
+   *
+   * @param rows             number of rows in scenario.
+   * @param columns          number of columns in scenario.
+   * @param cellDimension    dimension (in meters) of side of a grid cell in scenario.
+   * @param keyframeInterval number of frames between consecutive keyframes.
+   * @param exits            rectangles corresponding to exits in scenario.
+   * @param blocks           rectangles corresponding to blocked regions in scenario.
+   */
+  public record Header(int rows, int columns, double cellDimension, int keyframeInterval,
+                       List<Rectangle> exits, List<Rectangle> blocks) {
+    public static Header of(Scenario scenario, int keyframeInterval) {
+      var exits = new ArrayList<Rectangle>();
+      scenario.exits().forEach(exits::add);
+      var blocks = new ArrayList<Rectangle>();
+      scenario.blocks().forEach(blocks::add);
+      return new Header(scenario.getRows(), scenario.getColumns(), scenario.getCellDimension(), keyframeInterval,
+          exits, blocks);
+    }
+
+    /**
+     * Builds a scenario with the geometry described by this header. Its floor field is not initialized as it is
+     * only intended for being displayed.
+     *
+     * @return a scenario with the geometry described by this header.
+     */
+    public Scenario scenario() {
+      var scenario = new Scenario.Builder()
+          .rows(rows)
+          .columns(columns)
+          .cellDimension(cellDimension)
+          .floorField(ManhattanStaticFloorField::of)
+          .build();
+      exits.forEach(scenario::setExit);
+      blocks.forEach(scenario::setBlock);
+      return scenario;
+    }
+
+    /**
+     * Number of bytes needed to store this header.
+     *
+     * @return number of bytes needed to store this header.
+     */
+    public int bytes() {
+      return 4 * 4 + 8 + 4 + 4 + 4 + 4 * 4 * (exits.size() + blocks.size());
+    }
+
+    public void write(ByteBuffer buffer) {
+      buffer.putInt(MAGIC);
+      buffer.putInt(VERSION);
+      buffer.putInt(rows);
+      buffer.putInt(columns);
+      buffer.putDouble(cellDimension);
+      buffer.putInt(keyframeInterval);
+      writeRectangles(buffer, exits);
+      writeRectangles(buffer, blocks);
+    }
+
+    public static Header read(ByteBuffer buffer) {
+      if (buffer.getInt() != MAGIC) {
+        throw new IllegalArgumentException("Header: not a trajectory file");
+      }
+      var version = buffer.getInt();
+      if (version != VERSION) {
+        throw new IllegalArgumentException("Header: unsupported trajectory file version " + version);
+      }
+      var rows = buffer.getInt();
+      var columns = buffer.getInt();
+      var cellDimension = buffer.getDouble();
+      var keyframeInterval = buffer.getInt();
+      var exits = readRectangles(buffer);
+      var blocks = readRectangles(buffer);
+      return new Header(rows, columns, cellDimension, keyframeInterval, exits, blocks);
+    }
+
+    private static void writeRectangles(ByteBuffer buffer, List<Rectangle> rectangles) {
+      buffer.putInt(rectangles.size());
+      for (var rectangle : rectangles) {
+        buffer.putInt(rectangle.bottom());
+        buffer.putInt(rectangle.left());
+        buffer.putInt(rectangle.height());
+        buffer.putInt(rectangle.width());
+      }
+    }
+
+    private static List<Rectangle> readRectangles(ByteBuffer buffer) {
+      var size = buffer.getInt();
+      var rectangles = new ArrayList<Rectangle>(size);
+      for (int i = 0; i < size; i++) {
+        rectangles.add(new Rectangle(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+      }
+      return rectangles;
+    }
+  }
+
+  /**
+   * Stores a non-negative integer using 7 bits per byte.
+   *
+   * @param buffer buffer where integer is stored.
+   * @param value  integer to store.
+   */
+  public static void writeVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  /**
+   * Reads an integer stored by {@link #writeVarint}.
+   *
+   * @param buffer buffer where integer is stored.
+   * @return integer read.
+   */
+  public static int readVarint(ByteBuffer buffer) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return value;
+  }
+
+  public static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  public static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Code stored for a displacement in the unit square.
+   *
+   * @param rowDelta    vertical displacement in [-1, 1].
+   * @param columnDelta horizontal displacement in [-1, 1].
+   * @return code in [0, 8] for displacement.
+   */
+  static int unitDisplacementCode(int rowDelta, int columnDelta) {
+    return (rowDelta + 1) * 3 + (columnDelta + 1);
+  }
+
+  static int rowDelta(int code) {
+    return code / 3 - 1;
+  }
+
+  static int columnDelta(int code) {
+    return code % 3 - 1;
+  }
+}
@@ -0,0 +1,63 @@
+package automata.trajectory;
+
+import java.util.Arrays;
+
+/**
+ * Positions of all pedestrians in scenario at some frame of a recorded trajectory. Pedestrians are sorted by
+ * identifier.
+ *
+ * @author Pepe Gallardo
+ */
+public final class TrajectoryFrame {
+  private final int frame;
+  private final int size;
+  private final int[] identifiers, rows, columns;
+
+  TrajectoryFrame(int frame, int size, int[] identifiers, int[] rows, int[] columns) {
+    this.frame = frame;
+    this.size = size;
+    this.identifiers = identifiers;
+    this.rows = rows;
+    this.columns = columns;
+  }
+
+  /**
+   * Number of time steps elapsed at this frame.
+   *
+   * @return number of time steps elapsed at this frame.
+   */
+  public int getFrame() {
+    return frame;
+  }
+
+  /**
+   * Number of pedestrians in scenario at this frame.
+   *
+   * @return number of pedestrians in scenario at this frame.
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getIdentifier(int index) {
+    return identifiers[index];
+  }
+
+  public int getRow(int index) {
+    return rows[index];
+  }
+
+  public int getColumn(int index) {
+    return columns[index];
+  }
+
+  /**
+   * Index of pedestrian with given identifier in this frame.
+   *
+   * @param identifier identifier of pedestrian.
+   * @return index of pedestrian or a negative number if pedestrian is not in scenario at this frame.
+   */
+  public int indexOf(int identifier) {
+    return Arrays.binarySearch(identifiers, 0, size, identifier);
+  }
+}
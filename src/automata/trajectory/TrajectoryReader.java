@@ -0,0 +1,316 @@
+package automata.trajectory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static automata.trajectory.TrajectoryFormat.*;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads trajectories recorded by a {@link TrajectoryRecorder}. File is memory mapped in windows and only an index
+ * with offsets of chunks is kept in memory. Any frame is reconstructed on demand from closest previous keyframe and
+ * subsequent deltas, so that frames can be visited in any order without holding whole run in memory.
+ *
+ * @author Pepe Gallardo
+ */
+public class TrajectoryReader implements AutoCloseable {
+  private static final long WINDOW_BYTES = 256L << 20;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final Header header;
+
+  private final int firstFrame, lastFrame;
+  // offsets of delta chunks indexed by frame - firstFrame (-1 if there is no delta for such frame)
+  private final long[] deltaOffsets;
+  private final int[] keyframeFrames;
+  private final long[] keyframeOffsets;
+
+  private MappedByteBuffer window;
+  private long windowStart, windowEnd;
+
+  // frame currently reconstructed
+  private int frame;
+  private int size;
+  private int[] identifiers = new int[0], rows = new int[0], columns = new int[0];
+  private int[] nextIdentifiers = new int[0], nextRows = new int[0], nextColumns = new int[0];
+
+  /**
+   * Opens a trajectory file and builds an index of its chunks.
+   *
+   * @param path path of trajectory file.
+   * @throws IOException if file cannot be read.
+   */
+  public TrajectoryReader(Path path) throws IOException {
+    this.channel = FileChannel.open(path, READ);
+    this.fileSize = channel.size();
+
+    var headerBuffer = map(0, Math.min(fileSize, WINDOW_BYTES));
+    this.header = Header.read(headerBuffer);
+
+    // scan chunks. A truncated last chunk (recording was not closed properly) is ignored
+    var chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_BYTES);
+    var deltas = new long[1024];
+    Arrays.fill(deltas, -1);
+    var keyFrames = new int[64];
+    var keyOffsets = new long[64];
+    int numberOfKeyframes = 0;
+    int first = -1, last = -1;
+    long offset = headerBuffer.position();
+    while (offset + CHUNK_HEADER_BYTES <= fileSize) {
+      chunkHeader.clear();
+      while (chunkHeader.hasRemaining()) {
+        channel.read(chunkHeader, offset + chunkHeader.position());
+      }
+      chunkHeader.flip();
+      var kind = chunkHeader.get();
+      var chunkFrame = chunkHeader.getInt();
+      var length = chunkHeader.getInt();
+      if (offset + CHUNK_HEADER_BYTES + length > fileSize) {
+        break;
+      }
+      if (kind == KEYFRAME) {
+        if (first < 0) {
+          first = chunkFrame;
+        }
+        if (numberOfKeyframes == keyFrames.length) {
+          keyFrames = Arrays.copyOf(keyFrames, 2 * numberOfKeyframes);
+          keyOffsets = Arrays.copyOf(keyOffsets, 2 * numberOfKeyframes);
+        }
+        keyFrames[numberOfKeyframes] = chunkFrame;
+        keyOffsets[numberOfKeyframes] = offset;
+        numberOfKeyframes++;
+      } else if (kind == DELTA && first >= 0) {
+        var index = chunkFrame - first;
+        if (index >= deltas.length) {
+          var oldLength = deltas.length;
+          deltas = Arrays.copyOf(deltas, Math.max(index + 1, 2 * oldLength));
+          Arrays.fill(deltas, oldLength, deltas.length, -1);
+        }
+        deltas[index] = offset;
+      } else if (kind != DELTA) {
+        throw new IOException("TrajectoryReader: corrupted chunk at offset " + offset);
+      }
+      last = Math.max(last, chunkFrame);
+      offset += CHUNK_HEADER_BYTES + length;
+    }
+    if (first < 0) {
+      throw new IOException("TrajectoryReader: trajectory file has no frames");
+    }
+    this.firstFrame = first;
+    this.lastFrame = last;
+    var numberOfFrames = last - first + 1;
+    this.deltaOffsets = Arrays.copyOf(deltas, numberOfFrames);
+    if (numberOfFrames > deltas.length) {
+      // frames after last delta have no delta either
+      Arrays.fill(deltaOffsets, deltas.length, numberOfFrames, -1);
+    }
+    this.keyframeFrames = Arrays.copyOf(keyFrames, numberOfKeyframes);
+    this.keyframeOffsets = Arrays.copyOf(keyOffsets, numberOfKeyframes);
+    this.frame = -1;
+  }
+
+  /**
+   * Header of trajectory file, describing geometry of scenario.
+   *
+   * @return header of trajectory file.
+   */
+  public Header getHeader() {
+    return header;
+  }
+
+  public int getFirstFrame() {
+    return firstFrame;
+  }
+
+  public int getLastFrame() {
+    return lastFrame;
+  }
+
+  /**
+   * Reconstructs a frame.
+   *
+   * @param frame number of time steps elapsed at frame. Must be in [{@link #getFirstFrame}, {@link #getLastFrame}].
+   * @return positions of pedestrians at requested frame.
+   * @throws IOException if trajectory file cannot be read.
+   */
+  public TrajectoryFrame frame(int frame) throws IOException {
+    if (frame < firstFrame || frame > lastFrame) {
+      throw new IllegalArgumentException("frame: frame " + frame + " is not in [" + firstFrame + ", " + lastFrame + "]");
+    }
+    var keyframeIndex = Arrays.binarySearch(keyframeFrames, frame);
+    if (keyframeIndex < 0) {
+      // index of closest previous keyframe
+      keyframeIndex = -keyframeIndex - 2;
+    }
+    if (this.frame < keyframeFrames[keyframeIndex] || this.frame > frame) {
+      // cannot reach requested frame from current one by applying deltas
+      readKeyframe(keyframeOffsets[keyframeIndex]);
+      this.frame = keyframeFrames[keyframeIndex];
+    }
+    while (this.frame < frame) {
+      var offset = deltaOffsets[this.frame + 1 - firstFrame];
+      if (offset < 0) {
+        throw new IOException("TrajectoryReader: missing delta for frame " + (this.frame + 1));
+      }
+      applyDelta(offset);
+      this.frame++;
+    }
+    return new TrajectoryFrame(frame, size,
+        Arrays.copyOf(identifiers, size), Arrays.copyOf(rows, size), Arrays.copyOf(columns, size));
+  }
+
+  private void readKeyframe(long offset) throws IOException {
+    var payload = chunk(offset);
+    size = readVarint(payload);
+    ensureCapacity(size);
+    var identifier = 0;
+    for (int i = 0; i < size; i++) {
+      identifier += readVarint(payload);
+      identifiers[i] = identifier;
+      rows[i] = readVarint(payload);
+      columns[i] = readVarint(payload);
+    }
+  }
+
+  private void applyDelta(long offset) throws IOException {
+    var payload = chunk(offset);
+
+    // entered pedestrians are merged into current ones
+    var numberOfEntered = readVarint(payload);
+    if (numberOfEntered > 0) {
+      ensureCapacity(size + numberOfEntered);
+      int i = 0, newSize = 0, identifier = 0;
+      for (int e = 0; e < numberOfEntered; e++) {
+        identifier += readVarint(payload);
+        var row = readVarint(payload);
+        var column = readVarint(payload);
+        while (i < size && identifiers[i] < identifier) {
+          copyToNext(i++, newSize++);
+        }
+        if (i < size && identifiers[i] == identifier) {
+          // pedestrian was already in keyframe
+          i++;
+        }
+        nextIdentifiers[newSize] = identifier;
+        nextRows[newSize] = row;
+        nextColumns[newSize] = column;
+        newSize++;
+      }
+      while (i < size) {
+        copyToNext(i++, newSize++);
+      }
+      swap(newSize);
+    }
+
+    // moved pedestrians are updated in place
+    var numberOfMoved = readVarint(payload);
+    int i = 0, identifier = 0;
+    for (int m = 0; m < numberOfMoved; m++) {
+      identifier += readVarint(payload);
+      int code = payload.get();
+      int rowDelta, columnDelta;
+      if (code == LARGE_DISPLACEMENT) {
+        rowDelta = unzigzag(readVarint(payload));
+        columnDelta = unzigzag(readVarint(payload));
+      } else {
+        rowDelta = TrajectoryFormat.rowDelta(code);
+        columnDelta = TrajectoryFormat.columnDelta(code);
+      }
+      while (i < size && identifiers[i] < identifier) {
+        i++;
+      }
+      if (i < size && identifiers[i] == identifier) {
+        rows[i] += rowDelta;
+        columns[i] += columnDelta;
+      }
+    }
+
+    // exited pedestrians are removed
+    var numberOfExited = readVarint(payload);
+    if (numberOfExited > 0) {
+      int newSize = 0;
+      i = 0;
+      identifier = 0;
+      for (int e = 0; e < numberOfExited; e++) {
+        identifier += readVarint(payload);
+        while (i < size && identifiers[i] < identifier) {
+          copyToNext(i++, newSize++);
+        }
+        if (i < size && identifiers[i] == identifier) {
+          i++;
+        }
+      }
+      while (i < size) {
+        copyToNext(i++, newSize++);
+      }
+      swap(newSize);
+    }
+  }
+
+  private void copyToNext(int from, int to) {
+    nextIdentifiers[to] = identifiers[from];
+    nextRows[to] = rows[from];
+    nextColumns[to] = columns[from];
+  }
+
+  private void swap(int newSize) {
+    var temp = identifiers;
+    identifiers = nextIdentifiers;
+    nextIdentifiers = temp;
+    temp = rows;
+    rows = nextRows;
+    nextRows = temp;
+    temp = columns;
+    columns = nextColumns;
+    nextColumns = temp;
+    size = newSize;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > identifiers.length) {
+      var newCapacity = Math.max(capacity, 2 * identifiers.length);
+      identifiers = Arrays.copyOf(identifiers, newCapacity);
+      rows = Arrays.copyOf(rows, newCapacity);
+      columns = Arrays.copyOf(columns, newCapacity);
+      nextIdentifiers = new int[newCapacity];
+      nextRows = new int[newCapacity];
+      nextColumns = new int[newCapacity];
+    }
+  }
+
+  /**
+   * Returns a buffer positioned at payload of chunk starting at given offset.
+   */
+  private ByteBuffer chunk(long offset) throws IOException {
+    var buffer = view(offset, CHUNK_HEADER_BYTES);
+    buffer.get(); // kind
+    buffer.getInt(); // frame
+    var length = buffer.getInt();
+    return view(offset + CHUNK_HEADER_BYTES, length);
+  }
+
+  private ByteBuffer view(long offset, int length) throws IOException {
+    if (offset < windowStart || offset + length > windowEnd) {
+      var bytes = Math.min(Math.max(WINDOW_BYTES, length), fileSize - offset);
+      window = map(offset, bytes);
+      windowStart = offset;
+      windowEnd = offset + bytes;
+    }
+    var position = (int) (offset - windowStart);
+    return window.duplicate().position(position).limit(position + length);
+  }
+
+  private MappedByteBuffer map(long offset, long bytes) throws IOException {
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,186 @@
+package automata.trajectory;
+
+import automata.pedestrian.Pedestrian;
+import automata.scenario.Scenario;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Records trajectories of pedestrians in a simulation to a binary file (see {@link TrajectoryFormat}).
+ * <p>
+ * Simulation thread only appends a few integers per moved pedestrian to a ring buffer. Encoding of events and writing
+ * them to file is done by a background thread. If background thread falls behind and ring buffer gets full,
+ * simulation thread waits for it.
+ *
+ * @author Pepe Gallardo
+ */
+public class TrajectoryRecorder implements AutoCloseable {
+  static final int TAG_KEYFRAME = 1;
+  static final int TAG_ENTER = 2;
+  static final int TAG_MOVE = 3;
+  static final int TAG_EXIT = 4;
+  static final int TAG_END_STEP = 5;
+  static final int TAG_CLOSE = 6;
+
+  /**
+   * Default number of frames between consecutive keyframes.
+   */
+  public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+  /**
+   * Default number of integers that ring buffer can hold.
+   */
+  public static final int DEFAULT_RING_CAPACITY = 1 << 22;
+
+  private final int keyframeInterval;
+  private final IntRingBuffer ring;
+  private final TrajectoryWriter writer;
+  private final Thread writerThread;
+  private final FileChannel channel;
+  private boolean started;
+  private boolean closed;
+
+  /**
+   * Creates a new recorder using default keyframe interval and ring buffer capacity.
+   *
+   * @param path     path of file where trajectories will be stored.
+   * @param scenario scenario where simulation takes place.
+   * @throws IOException if file cannot be created.
+   */
+  public TrajectoryRecorder(Path path, Scenario scenario) throws IOException {
+    this(path, scenario, DEFAULT_KEYFRAME_INTERVAL, DEFAULT_RING_CAPACITY);
+  }
+
+  /**
+   * Creates a new recorder.
+   *
+   * @param path             path of file where trajectories will be stored.
+   * @param scenario         scenario where simulation takes place.
+   * @param keyframeInterval number of frames between consecutive keyframes.
+   * @param ringCapacity     number of integers that ring buffer between simulation and writer can hold.
+   * @throws IOException if file cannot be created.
+   */
+  public TrajectoryRecorder(Path path, Scenario scenario, int keyframeInterval, int ringCapacity) throws IOException {
+    if (keyframeInterval <= 0) {
+      throw new IllegalArgumentException("TrajectoryRecorder: keyframeInterval must be larger than 0");
+    }
+    this.keyframeInterval = keyframeInterval;
+    this.channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING);
+
+    var header = TrajectoryFormat.Header.of(scenario, keyframeInterval);
+    var buffer = ByteBuffer.allocate(header.bytes());
+    header.write(buffer);
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+
+    this.ring = new IntRingBuffer(ringCapacity);
+    this.writer = new TrajectoryWriter(ring, channel);
+    this.writerThread = new Thread(writer, "TrajectoryWriter");
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  /**
+   * Must be called at the beginning of each time step. Records a keyframe if this is first recorded frame or if it is
+   * due.
+   *
+   * @param frame       number of time steps elapsed so far.
+   * @param pedestrians pedestrians currently in scenario.
+   */
+  public void beginStep(int frame, Collection<Pedestrian> pedestrians) {
+    if (!started || frame % keyframeInterval == 0) {
+      started = true;
+      ring.put(TAG_KEYFRAME, frame, pedestrians.size());
+      for (var pedestrian : pedestrians) {
+        ring.put(pedestrian.getIdentifier(), pedestrian.getRow(), pedestrian.getColumn());
+      }
+      ring.publish();
+    }
+  }
+
+  /**
+   * Records that a pedestrian has been added to scenario. Pedestrians added between two time steps are recorded as
+   * part of next frame.
+   *
+   * @param pedestrian pedestrian added.
+   */
+  public void entered(Pedestrian pedestrian) {
+    if (started) {
+      ring.put(TAG_ENTER, pedestrian.getIdentifier(), pedestrian.getRow());
+      ring.put(pedestrian.getColumn());
+    }
+  }
+
+  /**
+   * Records that a pedestrian has moved.
+   *
+   * @param identifier  identifier of pedestrian.
+   * @param rowDelta    vertical displacement.
+   * @param columnDelta horizontal displacement.
+   */
+  public void moved(int identifier, int rowDelta, int columnDelta) {
+    ring.put(TAG_MOVE, identifier, (rowDelta << 16) | (columnDelta & 0xFFFF));
+  }
+
+  /**
+   * Records that a pedestrian has left scenario.
+   *
+   * @param identifier identifier of pedestrian.
+   */
+  public void exited(int identifier) {
+    ring.put(TAG_EXIT);
+    ring.put(identifier);
+  }
+
+  /**
+   * Must be called at the end of each time step.
+   *
+   * @param frame number of time steps elapsed so far (including just finished one).
+   */
+  public void endStep(int frame) {
+    ring.put(TAG_END_STEP);
+    ring.put(frame);
+    ring.publish();
+  }
+
+  /**
+   * Waits for all recorded events to be written and closes file.
+   *
+   * @throws IOException if some event could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      ring.put(TAG_CLOSE);
+      ring.publish();
+    } catch (IllegalStateException ignored) {
+      // writer already terminated. Its failure is reported below
+    }
+    try {
+      writerThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+    var failure = writer.getFailure();
+    if (failure instanceof IOException ioException) {
+      throw ioException;
+    } else if (failure instanceof UncheckedIOException uncheckedIOException) {
+      throw uncheckedIOException.getCause();
+    } else if (failure != null) {
+      throw new IOException("TrajectoryRecorder: failed to write trajectories", failure);
+    }
+  }
+}
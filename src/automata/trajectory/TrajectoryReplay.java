@@ -0,0 +1,145 @@
+package automata.trajectory;
+
+import automata.CellularAutomaton;
+import automata.scenario.Scenario;
+import gui.Canvas;
+import gui.Frame;
+
+import javax.swing.*;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * Displays a recorded trajectory file without running the simulation again.
+ * <p>
+ * Keys: space pauses or resumes, left and right arrows move one frame while paused, up and down arrows double or
+ * halve speed, R reverses direction, Home and End seek to first and last frames and digits 0 to 9 seek to
+ * corresponding tenth of the run.
+ *
+ * @author Pepe Gallardo
+ */
+public class TrajectoryReplay {
+  private static final int MAXIMUM_SPEED = 1024;
+
+  private final TrajectoryReader reader;
+  private final Scenario scenario;
+  private final int pixelsPerCell;
+  private final int framesPerSecond;
+
+  // only accessed from Swing's event dispatch thread
+  private TrajectoryFrame current;
+  private int speed = 1;
+  private boolean forward = true;
+  private boolean paused = false;
+
+  /**
+   * Creates a replay for a trajectory file.
+   *
+   * @param reader          reader for trajectory file.
+   * @param pixelsPerCell   size in pixels of side of each cell.
+   * @param framesPerSecond frames displayed per second at normal speed.
+   */
+  public TrajectoryReplay(TrajectoryReader reader, int pixelsPerCell, int framesPerSecond) {
+    this.reader = reader;
+    this.scenario = reader.getHeader().scenario();
+    this.pixelsPerCell = pixelsPerCell;
+    this.framesPerSecond = framesPerSecond;
+  }
+
+  /**
+   * Opens a window and starts playing trajectory from its first frame.
+   */
+  public void run() {
+    SwingUtilities.invokeLater(() -> {
+      current = readFrame(reader.getFirstFrame());
+      var canvas =
+          new Canvas.Builder()
+              .rows(scenario.getRows())
+              .columns(scenario.getColumns())
+              .pixelsPerCell(pixelsPerCell)
+              .layers(scenario::paint, CellularAutomaton::paintPedestrianSprite)
+              .paint(this::paint)
+              .build();
+      var frame = new Frame(canvas);
+      frame.addKeyListener(new KeyAdapter() {
+        @Override
+        public void keyPressed(KeyEvent event) {
+          switch (event.getKeyCode()) {
+            case KeyEvent.VK_SPACE -> paused = !paused;
+            case KeyEvent.VK_RIGHT -> seek(current.getFrame() + 1);
+            case KeyEvent.VK_LEFT -> seek(current.getFrame() - 1);
+            case KeyEvent.VK_UP -> speed = Math.min(MAXIMUM_SPEED, 2 * speed);
+            case KeyEvent.VK_DOWN -> speed = Math.max(1, speed / 2);
+            case KeyEvent.VK_R -> forward = !forward;
+            case KeyEvent.VK_HOME -> seek(reader.getFirstFrame());
+            case KeyEvent.VK_END -> seek(reader.getLastFrame());
+            default -> {
+              var digit = event.getKeyChar() - '0';
+              if (digit >= 0 && digit <= 9) {
+                var length = reader.getLastFrame() - reader.getFirstFrame();
+                seek(reader.getFirstFrame() + length * digit / 10);
+              }
+            }
+          }
+          updateTitle(frame);
+          canvas.update();
+        }
+      });
+      updateTitle(frame);
+
+      var timer = new Timer(1000 / framesPerSecond, event -> {
+        if (!paused) {
+          seek(current.getFrame() + (forward ? speed : -speed));
+          updateTitle(frame);
+          canvas.update();
+        }
+      });
+      timer.start();
+    });
+  }
+
+  private void seek(int frame) {
+    var clamped = Math.max(reader.getFirstFrame(), Math.min(reader.getLastFrame(), frame));
+    if (clamped != current.getFrame()) {
+      current = readFrame(clamped);
+    }
+  }
+
+  private TrajectoryFrame readFrame(int frame) {
+    try {
+      return reader.frame(frame);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void updateTitle(JFrame frame) {
+    frame.setTitle(String.format("Frame %d/%d  x%d%s%s", current.getFrame(), reader.getLastFrame(), speed,
+        forward ? "" : " reverse", paused ? " paused" : ""));
+  }
+
+  private void paint(Canvas canvas) {
+    var frame = current;
+    for (int i = 0; i < frame.size(); i++) {
+      canvas.drawCell(frame.getRow(i), frame.getColumn(i));
+    }
+  }
+
+  /**
+   * Replays a trajectory file.
+   *
+   * @param args path of trajectory file.
+   * @throws IOException if trajectory file cannot be read.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("usage: TrajectoryReplay <trajectory file>");
+      System.exit(1);
+    }
+    var reader = new TrajectoryReader(Path.of(args[0]));
+    new TrajectoryReplay(reader, 10, 20).run();
+  }
+}
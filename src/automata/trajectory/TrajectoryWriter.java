@@ -0,0 +1,238 @@
+package automata.trajectory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import static automata.trajectory.TrajectoryFormat.*;
+import static automata.trajectory.TrajectoryRecorder.*;
+
+/**
+ * Background task draining events produced by a {@link TrajectoryRecorder} from a ring buffer, encoding them and
+ * writing them as chunks to a file.
+ *
+ * @author Pepe Gallardo
+ */
+class TrajectoryWriter implements Runnable {
+  private static final int OUTPUT_BUFFER_BYTES = 1 << 20;
+  private static final int RELEASE_EVERY = 4096;
+
+  private final IntRingBuffer ring;
+  private final FileChannel channel;
+  private final ByteBuffer output;
+  private ByteBuffer payload;
+
+  // sequence number of next value to read from ring
+  private long sequence;
+  private long lastReleased;
+
+  // events for delta chunk being currently built
+  private long[] entered = new long[64];
+  private int[] enteredRows = new int[64], enteredColumns = new int[64];
+  private int numberOfEntered;
+  private long[] moved = new long[1024];
+  private int numberOfMoved;
+  private int[] exited = new int[256];
+  private int numberOfExited;
+
+  private volatile Throwable failure;
+
+  TrajectoryWriter(IntRingBuffer ring, FileChannel channel) {
+    this.ring = ring;
+    this.channel = channel;
+    this.output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_BYTES);
+    this.payload = ByteBuffer.allocate(64 * 1024);
+  }
+
+  Throwable getFailure() {
+    return failure;
+  }
+
+  @Override
+  public void run() {
+    try {
+      var running = true;
+      while (running) {
+        var tag = next();
+        switch (tag) {
+          case TAG_KEYFRAME -> writeKeyframe();
+          case TAG_ENTER -> readEntered();
+          case TAG_MOVE -> readMoved();
+          case TAG_EXIT -> readExited();
+          case TAG_END_STEP -> writeDelta(next());
+          case TAG_CLOSE -> running = false;
+          default -> throw new IllegalStateException("TrajectoryWriter: unknown event " + tag);
+        }
+      }
+      flush();
+    } catch (Throwable throwable) {
+      failure = throwable;
+    } finally {
+      ring.close();
+      ring.release(sequence);
+    }
+  }
+
+  private int next() {
+    if (ring.available(sequence) == 0) {
+      ring.release(sequence);
+      lastReleased = sequence;
+      int spins = 0;
+      while (ring.available(sequence) == 0) {
+        if (++spins < 100) {
+          Thread.onSpinWait();
+        } else {
+          LockSupport.parkNanos(100_000);
+        }
+      }
+    }
+    var value = ring.get(sequence++);
+    if (sequence - lastReleased >= RELEASE_EVERY) {
+      ring.release(sequence);
+      lastReleased = sequence;
+    }
+    return value;
+  }
+
+  private void writeKeyframe() throws IOException {
+    var frame = next();
+    var size = next();
+    var keys = new long[size];
+    var rows = new int[size];
+    var columns = new int[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = ((long) next() << 32) | i;
+      rows[i] = next();
+      columns[i] = next();
+    }
+    Arrays.sort(keys);
+
+    preparePayload(5 + 15L * size);
+    writeVarint(payload, size);
+    var previousIdentifier = 0;
+    for (var key : keys) {
+      var identifier = (int) (key >>> 32);
+      var index = (int) key;
+      writeVarint(payload, identifier - previousIdentifier);
+      writeVarint(payload, rows[index]);
+      writeVarint(payload, columns[index]);
+      previousIdentifier = identifier;
+    }
+    writeChunk(KEYFRAME, frame);
+  }
+
+  private void readEntered() {
+    if (numberOfEntered == entered.length) {
+      entered = Arrays.copyOf(entered, 2 * entered.length);
+      enteredRows = Arrays.copyOf(enteredRows, entered.length);
+      enteredColumns = Arrays.copyOf(enteredColumns, entered.length);
+    }
+    entered[numberOfEntered] = ((long) next() << 32) | numberOfEntered;
+    enteredRows[numberOfEntered] = next();
+    enteredColumns[numberOfEntered] = next();
+    numberOfEntered++;
+  }
+
+  private void readMoved() {
+    if (numberOfMoved == moved.length) {
+      moved = Arrays.copyOf(moved, 2 * moved.length);
+    }
+    var identifier = next();
+    var displacement = next();
+    moved[numberOfMoved++] = ((long) identifier << 32) | (displacement & 0xFFFFFFFFL);
+  }
+
+  private void readExited() {
+    if (numberOfExited == exited.length) {
+      exited = Arrays.copyOf(exited, 2 * exited.length);
+    }
+    exited[numberOfExited++] = next();
+  }
+
+  private void writeDelta(int frame) throws IOException {
+    Arrays.sort(entered, 0, numberOfEntered);
+    Arrays.sort(moved, 0, numberOfMoved);
+    Arrays.sort(exited, 0, numberOfExited);
+
+    preparePayload(15 + 15L * numberOfEntered + 16L * numberOfMoved + 5L * numberOfExited);
+
+    writeVarint(payload, numberOfEntered);
+    var previousIdentifier = 0;
+    for (int i = 0; i < numberOfEntered; i++) {
+      var identifier = (int) (entered[i] >>> 32);
+      var index = (int) entered[i];
+      writeVarint(payload, identifier - previousIdentifier);
+      writeVarint(payload, enteredRows[index]);
+      writeVarint(payload, enteredColumns[index]);
+      previousIdentifier = identifier;
+    }
+
+    writeVarint(payload, numberOfMoved);
+    previousIdentifier = 0;
+    for (int i = 0; i < numberOfMoved; i++) {
+      var identifier = (int) (moved[i] >>> 32);
+      var displacement = (int) moved[i];
+      int rowDelta = displacement >> 16;
+      int columnDelta = (short) displacement;
+      writeVarint(payload, identifier - previousIdentifier);
+      if (Math.abs(rowDelta) <= 1 && Math.abs(columnDelta) <= 1) {
+        payload.put((byte) unitDisplacementCode(rowDelta, columnDelta));
+      } else {
+        payload.put((byte) LARGE_DISPLACEMENT);
+        writeVarint(payload, zigzag(rowDelta));
+        writeVarint(payload, zigzag(columnDelta));
+      }
+      previousIdentifier = identifier;
+    }
+
+    writeVarint(payload, numberOfExited);
+    previousIdentifier = 0;
+    for (int i = 0; i < numberOfExited; i++) {
+      writeVarint(payload, exited[i] - previousIdentifier);
+      previousIdentifier = exited[i];
+    }
+    writeChunk(DELTA, frame);
+
+    numberOfEntered = 0;
+    numberOfMoved = 0;
+    numberOfExited = 0;
+  }
+
+  private void preparePayload(long maximumBytes) {
+    if (maximumBytes > payload.capacity()) {
+      payload = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE - 8, 2 * maximumBytes));
+    }
+    payload.clear();
+  }
+
+  private void writeChunk(byte kind, int frame) throws IOException {
+    payload.flip();
+    if (output.remaining() < CHUNK_HEADER_BYTES) {
+      flush();
+    }
+    output.put(kind);
+    output.putInt(frame);
+    output.putInt(payload.remaining());
+    if (payload.remaining() > output.remaining()) {
+      flush();
+      if (payload.remaining() > output.capacity()) {
+        // too large to be buffered
+        while (payload.hasRemaining()) {
+          channel.write(payload);
+        }
+        return;
+      }
+    }
+    output.put(payload);
+  }
+
+  private void flush() throws IOException {
+    output.flip();
+    while (output.hasRemaining()) {
+      channel.write(output);
+    }
+    output.clear();
+  }
+}
@@ -0,0 +1,200 @@
+package geometry._2d;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A spatial index for rectangles within a bounded region. Region is split into square buckets and each rectangle is
+ * stored in every bucket it overlaps, so that checking intersection with a new rectangle only visits rectangles in
+ * nearby buckets rather than all of them.
+ *
+ * @author Pepe Gallardo
+ */
+public class RectangleGridIndex {
+  private final Rectangle region;
+  private final int bucketSize;
+  private final int bucketRows, bucketColumns;
+  private final List<Rectangle>[] buckets;
+  private int size;
+
+  /**
+   * Creates an empty index.
+   *
+   * @param region     region where indexed rectangles lie. Parts of rectangles outside this region are ignored.
+   * @param bucketSize side of each square bucket. Should be comparable to size of indexed rectangles.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public RectangleGridIndex(Rectangle region, int bucketSize) {
+    if (bucketSize <= 0) {
+      throw new IllegalArgumentException("RectangleGridIndex: bucketSize must be larger than 0");
+    }
+    this.region = region;
+    this.bucketSize = bucketSize;
+    this.bucketRows = Math.max(1, (region.height() + bucketSize - 1) / bucketSize);
+    this.bucketColumns = Math.max(1, (region.width() + bucketSize - 1) / bucketSize);
+    this.buckets = new List[bucketRows * bucketColumns];
+    this.size = 0;
+  }
+
+  private int bucketRow(int row) {
+    return Math.max(0, Math.min(bucketRows - 1, (row - region.bottom()) / bucketSize));
+  }
+
+  private int bucketColumn(int column) {
+    return Math.max(0, Math.min(bucketColumns - 1, (column - region.left()) / bucketSize));
+  }
+
+  /**
+   * Adds a rectangle to index.
+   *
+   * @param rectangle rectangle to add.
+   */
+  public void add(Rectangle rectangle) {
+    if (!rectangle.intersects(region)) {
+      return;
+    }
+    for (int i = bucketRow(rectangle.bottom()); i <= bucketRow(rectangle.top()); i++) {
+      for (int j = bucketColumn(rectangle.left()); j <= bucketColumn(rectangle.right()); j++) {
+        var index = i * bucketColumns + j;
+        if (buckets[index] == null) {
+          buckets[index] = new ArrayList<>(4);
+        }
+        buckets[index].add(rectangle);
+      }
+    }
+    size++;
+  }
+
+  /**
+   * Number of rectangles in index.
+   *
+   * @return number of rectangles in index.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether a rectangle intersects any rectangle in index.
+   *
+   * @param rectangle rectangle to check.
+   * @return {@code true} if rectangle intersects some rectangle in index.
+   */
+  public boolean intersectsAny(Rectangle rectangle) {
+    if (!rectangle.intersects(region)) {
+      return false;
+    }
+    for (int i = bucketRow(rectangle.bottom()); i <= bucketRow(rectangle.top()); i++) {
+      for (int j = bucketColumn(rectangle.left()); j <= bucketColumn(rectangle.right()); j++) {
+        var bucket = buckets[i * bucketColumns + j];
+        if (bucket != null) {
+          for (var element : bucket) {
+            if (element.intersects(rectangle)) {
+              return true;
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds rectangle in index closest to a cell, according to Manhattan distance. Buckets are visited in rings of
+   * increasing distance around cell, so only rectangles near cell are checked.
+   *
+   * @param row    vertical coordinate of cell.
+   * @param column horizontal coordinate of cell.
+   * @return a rectangle closest to cell or {@code null} if index is empty.
+   */
+  public Rectangle nearest(int row, int column) {
+    if (size == 0) {
+      return null;
+    }
+    var centreRow = bucketRow(row);
+    var centreColumn = bucketColumn(column);
+    // distance bound for rings only holds for cells within region
+    var inside = region.intersects(row, column);
+    var rings = Math.max(Math.max(centreRow, bucketRows - 1 - centreRow),
+        Math.max(centreColumn, bucketColumns - 1 - centreColumn));
+
+    var nearest = new Nearest(row, column);
+    for (int ring = 0; ring <= rings; ring++) {
+      // cells in buckets of this ring are at a distance larger than (ring - 1) * bucketSize
+      if (inside && nearest.rectangle != null && nearest.distance <= (long) (ring - 1) * bucketSize) {
+        break;
+      }
+      for (int i = Math.max(0, centreRow - ring); i <= Math.min(bucketRows - 1, centreRow + ring); i++) {
+        if (Math.abs(i - centreRow) == ring) {
+          // bottom or top side of ring
+          for (int j = Math.max(0, centreColumn - ring); j <= Math.min(bucketColumns - 1, centreColumn + ring); j++) {
+            nearest.check(buckets[i * bucketColumns + j]);
+          }
+        } else {
+          // left and right sides of ring
+          if (centreColumn - ring >= 0) {
+            nearest.check(buckets[i * bucketColumns + centreColumn - ring]);
+          }
+          if (centreColumn + ring < bucketColumns) {
+            nearest.check(buckets[i * bucketColumns + centreColumn + ring]);
+          }
+        }
+      }
+    }
+    return nearest.rectangle;
+  }
+
+  /**
+   * Closest rectangle to a cell found so far.
+   */
+  private static final class Nearest {
+    private final int row, column;
+    private Rectangle rectangle;
+    private int distance;
+
+    private Nearest(int row, int column) {
+      this.row = row;
+      this.column = column;
+      this.rectangle = null;
+      this.distance = Integer.MAX_VALUE;
+    }
+
+    private void check(List<Rectangle> bucket) {
+      if (bucket != null) {
+        for (var element : bucket) {
+          var elementDistance = element.manhattanDistance(row, column);
+          if (elementDistance < distance) {
+            distance = elementDistance;
+            rectangle = element;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Visits all rectangles in index intersecting a given one. A rectangle may be visited more than once if it spans
+   * several buckets.
+   *
+   * @param rectangle rectangle to check.
+   * @param action    action performed on each intersecting rectangle.
+   */
+  public void forEachIntersecting(Rectangle rectangle, Consumer<Rectangle> action) {
+    if (!rectangle.intersects(region)) {
+      return;
+    }
+    for (int i = bucketRow(rectangle.bottom()); i <= bucketRow(rectangle.top()); i++) {
+      for (int j = bucketColumn(rectangle.left()); j <= bucketColumn(rectangle.right()); j++) {
+        var bucket = buckets[i * bucketColumns + j];
+        if (bucket != null) {
+          for (var element : bucket) {
+            if (element.intersects(rectangle)) {
+              action.accept(element);
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -3,26 +3,70 @@ package gui;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * A drawing class using double buffering.
+ * <p>
+ * A canvas can optionally be layered. In that case, a static layer is rasterized only once and cached, and each
+ * frame only marks those cells that should display a cell sprite by calling {@link #drawCell}. Only cells whose
+ * state changed since previous frame are redrawn, by copying pixels from cached static layer or sprite.
  *
  * @author Pepe Gallardo
  */
 public abstract class Canvas extends JLabel {
+  /**
+   * Cells with sides up to this number of pixels are drawn as solid squares.
+   */
+  private static final int TINY_CELL_PIXELS = 2;
+
   private final int height, width;
+  private final int rows, columns, pixelsPerCell;
   private final Color backgroundColor;
   private final BufferedImage offScreenBufferedImage, onScreenBufferedImage;
   private final Graphics2D offScreenGraphics2D, onScreenGraphics2D;
   private final ImageIcon imageIcon;
+  private Graphics2D graphics2D;
+
+  // only used by layered canvases
+  private final Consumer<Canvas> staticPaint;
+  private final Consumer<Canvas> cellPaint;
+  private BufferedImage staticBufferedImage;
+  private int[] staticPixels, onScreenPixels, spritePixels;
+  private long[] previousCells, currentCells;
+  private int[] previousCellsList, currentCellsList;
+  private int numberOfPreviousCells, numberOfCurrentCells;
 
   public Canvas(int rows, int columns, int pixelsPerCell, Color backgroundColor) {
+    this(rows, columns, pixelsPerCell, backgroundColor, null, null);
+  }
+
+  /**
+   * Creates a layered canvas.
+   *
+   * @param rows            number of rows of cells.
+   * @param columns         number of columns of cells.
+   * @param pixelsPerCell   size in pixels of side of each cell.
+   * @param backgroundColor background color of canvas.
+   * @param staticPaint     paints static layer. Only called once, or after calling {@link #invalidateStaticLayer}.
+   *                        If {@code null} canvas is not layered.
+   * @param cellPaint       paints sprite for cells marked with {@link #drawCell} on cell located at row 0 and column
+   *                        0.
+   */
+  public Canvas(int rows, int columns, int pixelsPerCell, Color backgroundColor, Consumer<Canvas> staticPaint,
+                Consumer<Canvas> cellPaint) {
     super();
 
+    this.rows = rows;
+    this.columns = columns;
+    this.pixelsPerCell = pixelsPerCell;
     this.height = rows * pixelsPerCell;
     this.width = columns * pixelsPerCell;
     this.backgroundColor = backgroundColor;
+    this.staticPaint = staticPaint;
+    this.cellPaint = cellPaint;
 
     setPreferredSize(new Dimension(width, height));
 
@@ -30,37 +74,209 @@ public abstract class Canvas extends JLabel {
     this.onScreenBufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
     this.offScreenGraphics2D = offScreenBufferedImage.createGraphics();
     this.onScreenGraphics2D = onScreenBufferedImage.createGraphics();
+    prepare(offScreenGraphics2D, height);
+    this.graphics2D = offScreenGraphics2D;
 
+    this.imageIcon = new ImageIcon(onScreenBufferedImage);
+    setIcon(imageIcon);
+  }
+
+  private void prepare(Graphics2D graphics2D, int height) {
     RenderingHints hints = new RenderingHints(null);
     hints.put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
     hints.put(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-    offScreenGraphics2D.addRenderingHints(hints);
-    offScreenGraphics2D.setStroke(new BasicStroke(1.5f / pixelsPerCell));
+    graphics2D.addRenderingHints(hints);
+    graphics2D.setStroke(new BasicStroke(1.5f / pixelsPerCell));
 
     // flip Y axis and scale properly
-    offScreenGraphics2D.translate(0, getHeight());
-    offScreenGraphics2D.scale(pixelsPerCell, -pixelsPerCell);
-
-    this.imageIcon = new ImageIcon(onScreenBufferedImage);
-    setIcon(imageIcon);
+    graphics2D.translate(0, height);
+    graphics2D.scale(pixelsPerCell, -pixelsPerCell);
   }
 
   public Graphics2D graphics2D() {
-    return offScreenGraphics2D;
+    return graphics2D;
   }
 
   public abstract void paint(Canvas canvas);
 
+  /**
+   * Checks whether this is a layered canvas.
+   *
+   * @return {@code true} if this is a layered canvas.
+   */
+  public boolean isLayered() {
+    return staticPaint != null;
+  }
+
+  /**
+   * Marks a cell to be drawn with cell sprite in current frame. Should only be called from {@link #paint} in a
+   * layered canvas.
+   *
+   * @param row    row of cell.
+   * @param column column of cell.
+   */
+  public void drawCell(int row, int column) {
+    assert row >= 0 && row < rows : "drawCell: invalid row";
+    assert column >= 0 && column < columns : "drawCell: invalid column";
+    var cell = row * columns + column;
+    var mask = 1L << cell;
+    if ((currentCells[cell >>> 6] & mask) == 0) {
+      currentCells[cell >>> 6] |= mask;
+      if (numberOfCurrentCells == currentCellsList.length) {
+        currentCellsList = Arrays.copyOf(currentCellsList, 2 * numberOfCurrentCells);
+      }
+      currentCellsList[numberOfCurrentCells++] = cell;
+    }
+  }
+
+  /**
+   * Forces static layer to be painted again in next frame.
+   */
+  public void invalidateStaticLayer() {
+    staticBufferedImage = null;
+  }
+
   protected void paintComponent(Graphics graphics) {
+    renderFrame();
     super.paintComponent(graphics);
+  }
+
+  /**
+   * Renders a new frame offscreen without displaying it, so that it can be used with no display available.
+   *
+   * @return image with rendered frame. It is overwritten when next frame is rendered.
+   */
+  public BufferedImage render() {
+    renderFrame();
+    return onScreenBufferedImage;
+  }
 
-    // Clear canvas
-    offScreenGraphics2D.setColor(backgroundColor);
-    offScreenGraphics2D.fillRect(0, 0, width, height);
+  private void renderFrame() {
+    if (isLayered()) {
+      paintLayers();
+    } else {
+      // Clear canvas
+      offScreenGraphics2D.setColor(backgroundColor);
+      offScreenGraphics2D.fillRect(0, 0, width, height);
 
-    // Draw on canvas
+      // Draw on canvas
+      paint(this);
+      onScreenGraphics2D.drawImage(offScreenBufferedImage, 0, 0, null);
+    }
+  }
+
+  private void paintLayers() {
+    if (staticBufferedImage == null) {
+      rasterizeStaticLayer();
+    }
+
+    numberOfCurrentCells = 0;
     paint(this);
-    onScreenGraphics2D.drawImage(offScreenBufferedImage, 0, 0, null);
+
+    // draw cells that were not drawn in previous frame
+    for (int i = 0; i < numberOfCurrentCells; i++) {
+      var cell = currentCellsList[i];
+      if ((previousCells[cell >>> 6] & (1L << cell)) == 0) {
+        copyCell(cell, true);
+      }
+    }
+    // restore static layer for cells that were drawn in previous frame but not in this one
+    for (int i = 0; i < numberOfPreviousCells; i++) {
+      var cell = previousCellsList[i];
+      if ((currentCells[cell >>> 6] & (1L << cell)) == 0) {
+        copyCell(cell, false);
+      }
+      previousCells[cell >>> 6] = 0;
+    }
+
+    // current frame becomes previous one. Previous cells are all clear now
+    var temp = previousCells;
+    previousCells = currentCells;
+    currentCells = temp;
+    var tempList = previousCellsList;
+    previousCellsList = currentCellsList;
+    currentCellsList = tempList;
+    numberOfPreviousCells = numberOfCurrentCells;
+  }
+
+  private void rasterizeStaticLayer() {
+    staticBufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    var staticGraphics2D = staticBufferedImage.createGraphics();
+    staticGraphics2D.setColor(backgroundColor);
+    staticGraphics2D.fillRect(0, 0, width, height);
+    prepare(staticGraphics2D, height);
+    graphics2D = staticGraphics2D;
+    staticPaint.accept(this);
+
+    // sprite for cells is rendered in a single cell image
+    var spriteBufferedImage = new BufferedImage(pixelsPerCell, pixelsPerCell, BufferedImage.TYPE_INT_ARGB);
+    var spriteGraphics2D = spriteBufferedImage.createGraphics();
+    prepare(spriteGraphics2D, pixelsPerCell);
+    graphics2D = spriteGraphics2D;
+    cellPaint.accept(this);
+    graphics2D = offScreenGraphics2D;
+    staticGraphics2D.dispose();
+    spriteGraphics2D.dispose();
+
+    staticPixels = pixels(staticBufferedImage);
+    spritePixels = pixels(spriteBufferedImage);
+    onScreenPixels = pixels(onScreenBufferedImage);
+    if (pixelsPerCell <= TINY_CELL_PIXELS) {
+      // sprite is too small to be antialiased: use its center color as a solid fill
+      Arrays.fill(spritePixels, spritePixels[spritePixels.length / 2] | 0xFF000000);
+    }
+    System.arraycopy(staticPixels, 0, onScreenPixels, 0, staticPixels.length);
+
+    var words = (rows * columns + Long.SIZE - 1) / Long.SIZE;
+    previousCells = new long[words];
+    currentCells = new long[words];
+    previousCellsList = new int[1024];
+    currentCellsList = new int[1024];
+    numberOfPreviousCells = 0;
+  }
+
+  private static int[] pixels(BufferedImage bufferedImage) {
+    return ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+  }
+
+  /**
+   * Copies pixels of a cell either from sprite composed over static layer or from static layer.
+   */
+  private void copyCell(int cell, boolean sprite) {
+    var row = cell / columns;
+    var column = cell % columns;
+    // Y axis is flipped
+    var top = height - (row + 1) * pixelsPerCell;
+    var left = column * pixelsPerCell;
+    for (int y = 0; y < pixelsPerCell; y++) {
+      var offset = (top + y) * width + left;
+      if (!sprite) {
+        System.arraycopy(staticPixels, offset, onScreenPixels, offset, pixelsPerCell);
+      } else if (pixelsPerCell <= TINY_CELL_PIXELS) {
+        System.arraycopy(spritePixels, y * pixelsPerCell, onScreenPixels, offset, pixelsPerCell);
+      } else {
+        for (int x = 0; x < pixelsPerCell; x++) {
+          onScreenPixels[offset + x] = over(spritePixels[y * pixelsPerCell + x], staticPixels[offset + x]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Composes an ARGB pixel over an opaque one.
+   */
+  private static int over(int source, int destination) {
+    var alpha = source >>> 24;
+    if (alpha == 0xFF) {
+      return source;
+    } else if (alpha == 0) {
+      return destination;
+    }
+    var inverse = 0xFF - alpha;
+    var red = (((source >> 16) & 0xFF) * alpha + ((destination >> 16) & 0xFF) * inverse) / 0xFF;
+    var green = (((source >> 8) & 0xFF) * alpha + ((destination >> 8) & 0xFF) * inverse) / 0xFF;
+    var blue = ((source & 0xFF) * alpha + (destination & 0xFF) * inverse) / 0xFF;
+    return 0xFF000000 | (red << 16) | (green << 8) | blue;
   }
 
   public void update() {
@@ -86,6 +302,9 @@ public abstract class Canvas extends JLabel {
     Color color = Color.white;
     Consumer<Canvas> paint = canvas -> {
     };
+    Consumer<Canvas> staticPaint = null;
+    Consumer<Canvas> cellPaint = canvas -> {
+    };
 
     public Builder() {
     }
@@ -115,8 +334,22 @@ public abstract class Canvas extends JLabel {
       return this;
     }
 
+    /**
+     * Makes canvas layered.
+     *
+     * @param staticPaint paints static layer, which is cached.
+     * @param cellPaint   paints sprite for cells marked with {@link Canvas#drawCell} on cell located at row 0 and
+     *                    column 0.
+     * @return this builder.
+     */
+    public Builder layers(Consumer<Canvas> staticPaint, Consumer<Canvas> cellPaint) {
+      this.staticPaint = staticPaint;
+      this.cellPaint = cellPaint;
+      return this;
+    }
+
     public Canvas build() {
-      return new Canvas(rows, columns, pixelsPerCell, color) {
+      return new Canvas(rows, columns, pixelsPerCell, color, staticPaint, cellPaint) {
         @Override
         public void paint(Canvas canvas) {
           paint.accept(canvas);
@@ -124,4 +357,4 @@ public abstract class Canvas extends JLabel {
       };
     }
   }
-}
\ No newline at end of file
+}
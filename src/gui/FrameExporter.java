@@ -0,0 +1,340 @@
+package gui;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Exports frames rendered offscreen to files, so that animations can be produced with no display available.
+ * <p>
+ * Frames are copied into a bounded pool of images and encoded by background threads, so that the thread rendering
+ * frames only waits if all images in pool are still pending to be encoded. Frames can be written as a numbered
+ * sequence of PNG files, which are encoded in parallel, or as an animated GIF file, which is encoded sequentially.
+ *
+ * @author Pepe Gallardo
+ */
+public class FrameExporter implements AutoCloseable {
+  /**
+   * Available output formats.
+   */
+  public enum Format {
+    /**
+     * A sequence of PNG files named {@code frame-<number>.png} in a directory.
+     */
+    PNG,
+    /**
+     * A single animated GIF file.
+     */
+    GIF
+  }
+
+  private final Path path;
+  private final Format format;
+  private final int stride;
+  private final int pixelsPerCell;
+  private final int millisPerFrame;
+  private final int poolSize;
+
+  private final ExecutorService encoders;
+  private final BlockingQueue<BufferedImage> freeImages;
+  private final AtomicReference<IOException> failure;
+  private int createdImages;
+  private int numberOfFrames;
+
+  // only used for GIF format and only accessed from encoding thread
+  private ImageOutputStream gifStream;
+  private ImageWriter gifWriter;
+
+  private FrameExporter(Path path, Format format, int stride, int pixelsPerCell, int millisPerFrame, int threads,
+                        int poolSize) throws IOException {
+    this.path = path;
+    this.format = format;
+    this.stride = stride;
+    this.pixelsPerCell = pixelsPerCell;
+    this.millisPerFrame = millisPerFrame;
+    this.poolSize = poolSize;
+
+    if (format == Format.PNG) {
+      Files.createDirectories(path);
+    } else {
+      threads = 1; // frames in a GIF file must be written in order
+      gifWriter = ImageIO.getImageWritersByFormatName("gif").next();
+      Files.deleteIfExists(path);
+      gifStream = ImageIO.createImageOutputStream(path.toFile());
+      gifWriter.setOutput(gifStream);
+      gifWriter.prepareWriteSequence(null);
+    }
+    this.encoders = Executors.newFixedThreadPool(threads, runnable -> {
+      var thread = new Thread(runnable, "FrameEncoder");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.freeImages = new ArrayBlockingQueue<>(poolSize);
+    this.failure = new AtomicReference<>();
+    this.createdImages = 0;
+    this.numberOfFrames = 0;
+  }
+
+  /**
+   * Number of discrete time steps between consecutive exported frames.
+   *
+   * @return number of discrete time steps between consecutive exported frames.
+   */
+  public int getStride() {
+    return stride;
+  }
+
+  /**
+   * Size in pixels of side of each cell in exported frames.
+   *
+   * @return size in pixels of side of each cell in exported frames.
+   */
+  public int getPixelsPerCell() {
+    return pixelsPerCell;
+  }
+
+  /**
+   * Number of frames exported so far.
+   *
+   * @return number of frames exported so far.
+   */
+  public int getNumberOfFrames() {
+    return numberOfFrames;
+  }
+
+  /**
+   * Exports a frame. Image is copied, so it can be reused as soon as this method returns. Waits if all images in
+   * pool are pending to be encoded. Should always be called from the same thread.
+   *
+   * @param image image with frame to export.
+   * @throws IOException if a previous frame could not be written.
+   */
+  public void export(BufferedImage image) throws IOException {
+    throwIfFailed();
+    var copy = freeImage(image.getWidth(), image.getHeight());
+    var graphics = copy.createGraphics();
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+
+    var frame = numberOfFrames++;
+    encoders.execute(() -> {
+      try {
+        if (failure.get() == null) {
+          encode(copy, frame);
+        }
+      } catch (IOException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        freeImages.add(copy);
+      }
+    });
+  }
+
+  private BufferedImage freeImage(int width, int height) {
+    var image = freeImages.poll();
+    if (image == null) {
+      if (createdImages < poolSize) {
+        createdImages++;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+      } else {
+        // backpressure: wait for an encoder to release an image
+        try {
+          image = freeImages.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("export: interrupted while waiting for encoders");
+        }
+      }
+    }
+    return image;
+  }
+
+  private void encode(BufferedImage image, int frame) throws IOException {
+    if (format == Format.PNG) {
+      var file = path.resolve(String.format("frame-%06d.png", frame));
+      if (!ImageIO.write(image, "png", file.toFile())) {
+        throw new IOException("encode: no PNG writer available");
+      }
+    } else {
+      gifWriter.writeToSequence(new IIOImage(image, null, gifMetadata(image, frame == 0)), null);
+    }
+  }
+
+  private IIOMetadata gifMetadata(BufferedImage image, boolean first) throws IOException {
+    var metadata = gifWriter.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), null);
+    var formatName = metadata.getNativeMetadataFormatName();
+    var root = (IIOMetadataNode) metadata.getAsTree(formatName);
+
+    var graphicControl = child(root, "GraphicControlExtension");
+    graphicControl.setAttribute("disposalMethod", "none");
+    graphicControl.setAttribute("userInputFlag", "FALSE");
+    graphicControl.setAttribute("transparentColorFlag", "FALSE");
+    graphicControl.setAttribute("delayTime", Integer.toString(Math.max(1, millisPerFrame / 10)));
+    graphicControl.setAttribute("transparentColorIndex", "0");
+
+    if (first) {
+      // loop animation forever
+      var applicationExtension = new IIOMetadataNode("ApplicationExtension");
+      applicationExtension.setAttribute("applicationID", "NETSCAPE");
+      applicationExtension.setAttribute("authenticationCode", "2.0");
+      applicationExtension.setUserObject(new byte[]{0x1, 0, 0});
+      child(root, "ApplicationExtensions").appendChild(applicationExtension);
+    }
+    metadata.setFromTree(formatName, root);
+    return metadata;
+  }
+
+  private static IIOMetadataNode child(IIOMetadataNode root, String name) {
+    for (int i = 0; i < root.getLength(); i++) {
+      if (root.item(i).getNodeName().equalsIgnoreCase(name)) {
+        return (IIOMetadataNode) root.item(i);
+      }
+    }
+    var node = new IIOMetadataNode(name);
+    root.appendChild(node);
+    return node;
+  }
+
+  private void throwIfFailed() throws IOException {
+    var exception = failure.get();
+    if (exception != null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * Waits for all pending frames to be encoded and closes output.
+   *
+   * @throws IOException if some frame could not be written.
+   */
+  @Override
+  public void close() throws IOException {
+    encoders.shutdown();
+    try {
+      encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (format == Format.GIF) {
+      try {
+        gifWriter.endWriteSequence();
+      } finally {
+        gifWriter.dispose();
+        gifStream.close();
+      }
+    }
+    throwIfFailed();
+  }
+
+  /**
+   * Class for building a frame exporter by providing its parameters.
+   */
+  public static final class Builder {
+    private Path path;
+    private Format format = Format.PNG;
+    private int stride = 1;
+    private int pixelsPerCell = 10;
+    private int millisPerFrame = 50;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private int poolSize = -1;
+
+    public Builder() {
+    }
+
+    /**
+     * Sets output of exporter.
+     *
+     * @param path directory where PNG files are written, or file where animated GIF is written.
+     * @return this builder.
+     */
+    public Builder path(Path path) {
+      this.path = path;
+      return this;
+    }
+
+    public Builder format(Format format) {
+      this.format = format;
+      return this;
+    }
+
+    /**
+     * Sets number of discrete time steps between consecutive exported frames.
+     *
+     * @param stride number of discrete time steps between consecutive exported frames.
+     * @return this builder.
+     */
+    public Builder stride(int stride) {
+      this.stride = stride;
+      return this;
+    }
+
+    public Builder pixelsPerCell(int pixelsPerCell) {
+      this.pixelsPerCell = pixelsPerCell;
+      return this;
+    }
+
+    /**
+     * Sets delay between frames in animated GIF. GIF files store delays in hundredths of a second.
+     *
+     * @param millisPerFrame milliseconds each frame is displayed.
+     * @return this builder.
+     */
+    public Builder millisPerFrame(int millisPerFrame) {
+      this.millisPerFrame = millisPerFrame;
+      return this;
+    }
+
+    /**
+     * Sets number of threads encoding PNG files in parallel.
+     *
+     * @param threads number of threads encoding PNG files.
+     * @return this builder.
+     */
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * Sets maximum number of frames pending to be encoded. Defaults to twice the number of encoding threads.
+     *
+     * @param poolSize maximum number of frames pending to be encoded.
+     * @return this builder.
+     */
+    public Builder poolSize(int poolSize) {
+      this.poolSize = poolSize;
+      return this;
+    }
+
+    public FrameExporter build() throws IOException {
+      if (path == null) {
+        throw new IllegalArgumentException("build: path must be provided");
+      }
+      if (stride <= 0) {
+        throw new IllegalArgumentException("build: stride must be larger than 0");
+      }
+      if (pixelsPerCell <= 0) {
+        throw new IllegalArgumentException("build: pixelsPerCell must be larger than 0");
+      }
+      if (threads <= 0) {
+        throw new IllegalArgumentException("build: threads must be larger than 0");
+      }
+      var size = poolSize > 0 ? poolSize : 2 * (format == Format.GIF ? 1 : threads);
+      return new FrameExporter(path, format, stride, pixelsPerCell, millisPerFrame, threads, size);
+    }
+  }
+}
@@ -2,6 +2,9 @@ package statistics;
 
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
 
 /**
  * Different descriptive statistics.
@@ -116,6 +119,8 @@ public class Descriptive {
 
   private static class Selection {
     private final double[] data;
+    // set by partition
+    private int nextLeft;
 
     Selection(double[] data) {
       this.data = Arrays.copyOf(data, data.length);
@@ -134,6 +139,54 @@ public class Descriptive {
       data[j] = temp;
     }
 
+    /**
+     * Partitions data[left..right] around median of three pivot. Pivot is left at its final position, which is
+     * returned, and {@code nextLeft} is set to first position of elements after those equal to pivot.
+     */
+    private int partition(int left, int right) {
+      var leftPlus1 = left + 1;
+      var mid = (left + right) / 2;
+
+      // Set median of left, mid, and right elements as pivot.
+      // Force data(left) ≤ data(leftPlus1) and data(right) ≥ data(leftPlus1)
+      swap(mid, leftPlus1);
+      if (data[left] > data[right]) {
+        swap(left, right);
+      }
+
+      if (data[leftPlus1] > data[right]) {
+        swap(leftPlus1, right);
+      }
+
+      if (data[left] > data[leftPlus1]) {
+        swap(left, leftPlus1);
+      }
+
+      var i = leftPlus1;
+      var j = right;
+      var pivot = data[leftPlus1];
+
+      var partitioned = false;
+      do {
+        do {
+          i += 1;
+        } while (pivot > data[i]);
+        do {
+          j -= 1;
+        } while (data[j] > pivot);
+        if (i <= j) {
+          swap(i, j);
+        } else {
+          partitioned = true;
+        }
+      } while (!partitioned);
+
+      data[leftPlus1] = data[j];
+      data[j] = pivot;
+      nextLeft = i;
+      return j;
+    }
+
     double select(int k) {
       var length = data.length;
       var left = 0;
@@ -151,55 +204,58 @@ public class Descriptive {
           }
           found = true;
         } else {
-          var mid = (left + right) / 2;
-
-          // Set median of left, mid, and right elements as pivot.
-          // Force data(left) ≤ data(leftPlus1) and data(right) ≥ data(leftPlus1)
-          swap(mid, leftPlus1);
-          if (data[left] > data[right]) {
-            swap(left, right);
-          }
-
-          if (data[leftPlus1] > data[right]) {
-            swap(leftPlus1, right);
-          }
-
-          if (data[left] > data[leftPlus1]) {
-            swap(left, leftPlus1);
-          }
-
-          var i = leftPlus1;
-          var j = right;
-          var pivot = data[leftPlus1];
-
-          var partitioned = false;
-          do {
-            do {
-              i += 1;
-            } while (pivot > data[i]);
-            do {
-              j -= 1;
-            } while (data[j] > pivot);
-            if (i <= j) {
-              swap(i, j);
-            } else {
-              partitioned = true;
-            }
-          } while (!partitioned);
-
-          data[leftPlus1] = data[j];
-          data[j] = pivot;
-
+          var j = partition(left, right);
           if (j >= k) {
             right = j - 1;
           }
           if (j <= k) {
-            left = i;
+            left = nextLeft;
           }
         }
       }
       return data[k];
     }
+
+    /**
+     * Places every k-th smallest element in its sorted position, for all ks, by partitioning only those parts of data
+     * containing some k.
+     *
+     * @param ks positions to select, sorted in ascending order.
+     */
+    void selectAll(int[] ks) {
+      selectAll(0, data.length - 1, ks, 0, ks.length);
+    }
+
+    private void selectAll(int left, int right, int[] ks, int from, int to) {
+      while (from < to) {
+        var leftPlus1 = left + 1;
+        if (right <= leftPlus1) {
+          // 1 or 2 elements
+          if (right == leftPlus1 && data[left] > data[right]) {
+            // 2 elements
+            swap(left, right);
+          }
+          return;
+        }
+        var j = partition(left, right);
+        var i = nextLeft;
+        var middle = from;
+        while (middle < to && ks[middle] < j) {
+          middle++;
+        }
+        selectAll(left, j - 1, ks, from, middle);
+        // positions between j and i - 1 hold pivot
+        while (middle < to && ks[middle] < i) {
+          middle++;
+        }
+        from = middle;
+        left = i;
+      }
+    }
+
+    double get(int k) {
+      return data[k];
+    }
   }
 
   private static double linearInterpolation(double[] data, double percentRank) {
@@ -237,6 +293,20 @@ public class Descriptive {
     return linearInterpolation(data, 50);
   }
 
+  /**
+   * Computes several percentiles with a single selection pass over one copy of data.
+   *
+   * @param data         data to compute percentiles for.
+   * @param percentRanks ranks of percentiles, each one in [0,100].
+   * @return percentiles in same order as their ranks.
+   */
+  public static double[] percentiles(double[] data, double... percentRanks) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("percentiles: data cannot be empty");
+    }
+    return linearInterpolation(new Selection(data), data.length, percentRanks);
+  }
+
   public static int sum(int[] data) {
     int sum = 0;
     for (var element : data) {
@@ -352,6 +422,346 @@ public class Descriptive {
     }
     return linearInterpolation(data, 50);
   }
+
+  /**
+   * Computes several percentiles with a single selection pass over one copy of data.
+   *
+   * @param data         data to compute percentiles for.
+   * @param percentRanks ranks of percentiles, each one in [0,100].
+   * @return percentiles in same order as their ranks.
+   */
+  public static double[] percentiles(int[] data, double... percentRanks) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("percentiles: data cannot be empty");
+    }
+    return linearInterpolation(new Selection(data), data.length, percentRanks);
+  }
+
+  /**
+   * Positions of order statistics needed for interpolating each percentile rank.
+   */
+  private static int[] ranks(int length, double[] percentRanks) {
+    var ks = new int[2 * percentRanks.length];
+    var size = 0;
+    for (var percentRank : percentRanks) {
+      if (percentRank < 0.0 || percentRank > 100.0) {
+        throw new IllegalArgumentException("percentiles: percentRank must be in [0,100]");
+      }
+      var rank = percentRank * (length - 1) / 100;
+      var intPart = (int) rank;
+      ks[size++] = intPart;
+      if (intPart + 1 < length) {
+        ks[size++] = intPart + 1;
+      }
+    }
+    return Arrays.stream(ks, 0, size).sorted().distinct().toArray();
+  }
+
+  /**
+   * Interpolates percentiles given a function returning k-th smallest element of data.
+   */
+  private static double[] interpolateAll(IntToDoubleFunction orderStatistic, int length, double[] percentRanks) {
+    var percentiles = new double[percentRanks.length];
+    for (int i = 0; i < percentRanks.length; i++) {
+      var rank = percentRanks[i] * (length - 1) / 100;
+      var intPart = (int) rank;
+      var fractionalPart = rank - intPart;
+      var dataIntPart = orderStatistic.applyAsDouble(intPart);
+      if (fractionalPart == 0) {
+        percentiles[i] = dataIntPart;
+      } else {
+        var dataIntPartNext = orderStatistic.applyAsDouble(intPart + 1);
+        percentiles[i] = dataIntPart + fractionalPart * (dataIntPartNext - dataIntPart);
+      }
+    }
+    return percentiles;
+  }
+
+  private static double[] linearInterpolation(Selection selection, int length, double[] percentRanks) {
+    selection.selectAll(ranks(length, percentRanks));
+    return interpolateAll(selection::get, length, percentRanks);
+  }
+
+  /**
+   * Arrays with fewer elements than this are processed sequentially by parallel methods.
+   */
+  public static final int PARALLEL_THRESHOLD = 1 << 16;
+  /**
+   * Minimum parallelism for which sorting in parallel is faster than sequential selection of percentiles.
+   */
+  private static final int SORTING_PARALLELISM = 8;
+  /**
+   * Number of elements processed sequentially by each fork-join task.
+   */
+  private static final int LEAF_SIZE = 1 << 13;
+
+  /**
+   * Fork-join task splitting a range of data in halves until ranges are small enough to be processed sequentially.
+   */
+  private static abstract class RangeTask<T> extends RecursiveTask<T> {
+    final int from, to;
+
+    RangeTask(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    abstract T leaf();
+
+    abstract RangeTask<T> subtask(int from, int to);
+
+    abstract T combine(T left, T right);
+
+    @Override
+    protected T compute() {
+      if (to - from <= LEAF_SIZE) {
+        return leaf();
+      }
+      var mid = (from + to) >>> 1;
+      var left = subtask(from, mid);
+      left.fork();
+      var right = subtask(mid, to).compute();
+      return combine(left.join(), right);
+    }
+
+    /**
+     * Processes whole range sequentially if it is small or in parallel otherwise.
+     */
+    T run() {
+      return to - from < PARALLEL_THRESHOLD ? leaf() : ForkJoinPool.commonPool().invoke(this);
+    }
+  }
+
+  private static final class DoubleSumTask extends RangeTask<Double> {
+    private final double[] data;
+
+    DoubleSumTask(double[] data, int from, int to) {
+      super(from, to);
+      this.data = data;
+    }
+
+    @Override
+    Double leaf() {
+      double sum = 0.0;
+      for (int i = from; i < to; i++) {
+        sum += data[i];
+      }
+      return sum;
+    }
+
+    @Override
+    RangeTask<Double> subtask(int from, int to) {
+      return new DoubleSumTask(data, from, to);
+    }
+
+    @Override
+    Double combine(Double left, Double right) {
+      return left + right;
+    }
+  }
+
+  private static final class IntSumTask extends RangeTask<Long> {
+    private final int[] data;
+
+    IntSumTask(int[] data, int from, int to) {
+      super(from, to);
+      this.data = data;
+    }
+
+    @Override
+    Long leaf() {
+      long sum = 0;
+      for (int i = from; i < to; i++) {
+        sum += data[i];
+      }
+      return sum;
+    }
+
+    @Override
+    RangeTask<Long> subtask(int from, int to) {
+      return new IntSumTask(data, from, to);
+    }
+
+    @Override
+    Long combine(Long left, Long right) {
+      return left + right;
+    }
+  }
+
+  /**
+   * Count, mean and sum of squared deviations from mean for a range of data, which can be combined for adjacent
+   * ranges using Chan's formula.
+   */
+  private record Moments(long count, double mean, double sumSquaredDeviations) {
+  }
+
+  /**
+   * Computes moments for a range of either a {@code double[]} or an {@code int[]}.
+   */
+  private static final class MomentsTask extends RangeTask<Moments> {
+    private final double[] doubles;
+    private final int[] ints;
+
+    MomentsTask(double[] doubles, int[] ints, int from, int to) {
+      super(from, to);
+      this.doubles = doubles;
+      this.ints = ints;
+    }
+
+    private double get(int i) {
+      return doubles != null ? doubles[i] : ints[i];
+    }
+
+    @Override
+    Moments leaf() {
+      double sum = 0.0;
+      for (int i = from; i < to; i++) {
+        sum += get(i);
+      }
+      var mean = sum / (to - from);
+      double sumSquaredDeviations = 0.0;
+      for (int i = from; i < to; i++) {
+        var deviation = get(i) - mean;
+        sumSquaredDeviations += deviation * deviation;
+      }
+      return new Moments(to - from, mean, sumSquaredDeviations);
+    }
+
+    @Override
+    RangeTask<Moments> subtask(int from, int to) {
+      return new MomentsTask(doubles, ints, from, to);
+    }
+
+    @Override
+    Moments combine(Moments left, Moments right) {
+      var total = left.count + right.count;
+      var delta = right.mean - left.mean;
+      return new Moments(total
+          , left.mean + delta * right.count / total
+          , left.sumSquaredDeviations + right.sumSquaredDeviations
+          + delta * delta * ((double) left.count * right.count / total));
+    }
+  }
+
+  /**
+   * Sum of data, computed in parallel for large arrays.
+   *
+   * @param data data to sum.
+   * @return sum of data.
+   */
+  public static double parallelSum(double[] data) {
+    return new DoubleSumTask(data, 0, data.length).run();
+  }
+
+  /**
+   * Sum of data, computed in parallel for large arrays. Sum is a {@code long} so that it does not overflow.
+   *
+   * @param data data to sum.
+   * @return sum of data.
+   */
+  public static long parallelSum(int[] data) {
+    return new IntSumTask(data, 0, data.length).run();
+  }
+
+  public static double parallelMean(double[] data) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelMean: data cannot be empty");
+    }
+    return parallelSum(data) / data.length;
+  }
+
+  public static double parallelMean(int[] data) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelMean: data cannot be empty");
+    }
+    return (double) parallelSum(data) / data.length;
+  }
+
+  /**
+   * Sample variance of data, computed in parallel for large arrays. Partial results are combined using Chan's
+   * formula, which is numerically more stable than accumulating sums of squares.
+   *
+   * @param data data to compute variance for.
+   * @return sample variance of data.
+   */
+  public static double parallelVariance(double[] data) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelVariance: data cannot be empty");
+    }
+    return new MomentsTask(data, null, 0, data.length).run().sumSquaredDeviations / (data.length - 1);
+  }
+
+  /**
+   * Sample variance of data, computed in parallel for large arrays. Partial results are combined using Chan's
+   * formula, which is numerically more stable than accumulating sums of squares.
+   *
+   * @param data data to compute variance for.
+   * @return sample variance of data.
+   */
+  public static double parallelVariance(int[] data) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelVariance: data cannot be empty");
+    }
+    return new MomentsTask(null, data, 0, data.length).run().sumSquaredDeviations / (data.length - 1);
+  }
+
+  /**
+   * Computes several percentiles, sorting a copy of data in parallel for large arrays. As sorting does more work than
+   * selection, selection is used instead unless enough processors are available.
+   *
+   * @param data         data to compute percentiles for.
+   * @param percentRanks ranks of percentiles, each one in [0,100].
+   * @return percentiles in same order as their ranks.
+   */
+  public static double[] parallelPercentiles(double[] data, double... percentRanks) {
+    if (data.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < SORTING_PARALLELISM) {
+      return percentiles(data, percentRanks);
+    }
+    ranks(data.length, percentRanks); // validates ranks
+    var sorted = Arrays.copyOf(data, data.length);
+    Arrays.parallelSort(sorted);
+    return interpolateAll(k -> sorted[k], sorted.length, percentRanks);
+  }
+
+  /**
+   * Computes several percentiles, sorting a copy of data in parallel for large arrays. As sorting does more work than
+   * selection, selection is used instead unless enough processors are available.
+   *
+   * @param data         data to compute percentiles for.
+   * @param percentRanks ranks of percentiles, each one in [0,100].
+   * @return percentiles in same order as their ranks.
+   */
+  public static double[] parallelPercentiles(int[] data, double... percentRanks) {
+    if (data.length < PARALLEL_THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < SORTING_PARALLELISM) {
+      return percentiles(data, percentRanks);
+    }
+    ranks(data.length, percentRanks); // validates ranks
+    var sorted = Arrays.copyOf(data, data.length);
+    Arrays.parallelSort(sorted);
+    return interpolateAll(k -> sorted[k], sorted.length, percentRanks);
+  }
+
+  public static double parallelPercentile(double[] data, double percentRank) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelPercentile: data cannot be empty");
+    }
+    return parallelPercentiles(data, percentRank)[0];
+  }
+
+  public static double parallelPercentile(int[] data, double percentRank) {
+    if (data.length == 0) {
+      throw new IllegalArgumentException("parallelPercentile: data cannot be empty");
+    }
+    return parallelPercentiles(data, percentRank)[0];
+  }
+
+  public static double parallelMedian(double[] data) {
+    return parallelPercentile(data, 50);
+  }
+
+  public static double parallelMedian(int[] data) {
+    return parallelPercentile(data, 50);
+  }
 }
 
 
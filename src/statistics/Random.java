@@ -4,10 +4,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.function.Function;
 import java.util.random.RandomGenerator;
-import java.util.random.RandomGeneratorFactory;
 
 /**
  * Class providing a global random generator by using Singleton Design Pattern.
+ * <p>
+ * Underlying generator is confined to threads: a thread uses same generator as thread that created it until it sets
+ * a seed or a state, so that a simulation running in its own thread continues sequence of thread that set it up,
+ * whereas simulations running concurrently in different threads can be seeded independently.
  *
  * @author Pepe Gallardo.
  */
@@ -17,9 +20,12 @@ public class Random implements RandomGenerator {
    */
   public final static Random random = new Random();
 
-  private final static RandomGeneratorFactory<RandomGenerator> factory =
-      RandomGeneratorFactory.of("Xoshiro256PlusPlus");
-  private static RandomGenerator generator = factory.create();
+  private static final InheritableThreadLocal<Xoshiro256PlusPlus> generator = new InheritableThreadLocal<>() {
+    @Override
+    protected Xoshiro256PlusPlus initialValue() {
+      return new Xoshiro256PlusPlus();
+    }
+  };
 
   /**
    * Any class can access the global random generator using this method.
@@ -30,23 +36,41 @@ public class Random implements RandomGenerator {
 
   @Override
   public long nextLong() {
-    return generator.nextLong();
+    return generator.get().nextLong();
   }
 
   /**
-   * Initializes the random generator with an arbitrary seed.
+   * Initializes the random generator for current thread with an arbitrary seed.
    */
   public void setSeed() {
-    generator = factory.create();
+    generator.set(new Xoshiro256PlusPlus());
   }
 
   /**
-   * Initializes the random generator with provided seed.
+   * Initializes the random generator for current thread with provided seed.
    *
    * @param seed seed for initializing random generator.
    */
   public void setSeed(long seed) {
-    generator = factory.create(seed);
+    generator.set(new Xoshiro256PlusPlus(seed));
+  }
+
+  /**
+   * Current state of the random generator. Can be used to continue the same sequence of random numbers later on.
+   *
+   * @return current state of the random generator.
+   */
+  public long[] getState() {
+    return generator.get().getState();
+  }
+
+  /**
+   * Sets state of the random generator.
+   *
+   * @param state state of random generator as returned by {@link #getState}.
+   */
+  public void setState(long[] state) {
+    generator.set(new Xoshiro256PlusPlus(state));
   }
 
   /**
@@ -0,0 +1,128 @@
+package statistics;
+
+/**
+ * Mean, variance, minimum and maximum of a stream of values computed in a single pass and constant memory, using
+ * Welford's algorithm. Statistics for different streams can be merged.
+ *
+ * @author Pepe Gallardo
+ */
+public class RunningStatistics {
+  private long count;
+  private double mean;
+  private double sumSquaredDeviations;
+  private double minimum;
+  private double maximum;
+
+  /**
+   * Creates statistics for an empty stream.
+   */
+  public RunningStatistics() {
+    this.count = 0;
+    this.mean = 0;
+    this.sumSquaredDeviations = 0;
+    this.minimum = Double.POSITIVE_INFINITY;
+    this.maximum = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Creates a copy of some statistics.
+   *
+   * @param that statistics to copy.
+   */
+  public RunningStatistics(RunningStatistics that) {
+    this.count = that.count;
+    this.mean = that.mean;
+    this.sumSquaredDeviations = that.sumSquaredDeviations;
+    this.minimum = that.minimum;
+    this.maximum = that.maximum;
+  }
+
+  /**
+   * Adds a value to stream.
+   *
+   * @param value value to add.
+   */
+  public void add(double value) {
+    count++;
+    var delta = value - mean;
+    mean += delta / count;
+    sumSquaredDeviations += delta * (value - mean);
+    if (value < minimum) {
+      minimum = value;
+    }
+    if (value > maximum) {
+      maximum = value;
+    }
+  }
+
+  /**
+   * Merges statistics for another stream into these ones, as if all values in that stream had been added to this one.
+   *
+   * @param that statistics to merge.
+   */
+  public void merge(RunningStatistics that) {
+    if (that.count == 0) {
+      return;
+    }
+    var total = count + that.count;
+    var delta = that.mean - mean;
+    mean += delta * that.count / total;
+    sumSquaredDeviations += that.sumSquaredDeviations + delta * delta * ((double) count * that.count / total);
+    count = total;
+    minimum = Math.min(minimum, that.minimum);
+    maximum = Math.max(maximum, that.maximum);
+  }
+
+  /**
+   * Number of values in stream.
+   *
+   * @return number of values in stream.
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public double getMean() {
+    if (count == 0) {
+      throw new IllegalStateException("getMean: no values have been added");
+    }
+    return mean;
+  }
+
+  /**
+   * Sample variance of values in stream.
+   *
+   * @return sample variance of values in stream or 0 if there is only one value.
+   */
+  public double getVariance() {
+    if (count == 0) {
+      throw new IllegalStateException("getVariance: no values have been added");
+    }
+    return count == 1 ? 0 : sumSquaredDeviations / (count - 1);
+  }
+
+  public double getStandardDeviation() {
+    return Math.sqrt(getVariance());
+  }
+
+  public double getVariancePopulation() {
+    if (count == 0) {
+      throw new IllegalStateException("getVariancePopulation: no values have been added");
+    }
+    return sumSquaredDeviations / count;
+  }
+
+  public double getMinimum() {
+    return minimum;
+  }
+
+  public double getMaximum() {
+    return maximum;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RunningStatistics[count=%d, mean=%s, variance=%s, minimum=%s, maximum=%s]", count,
+        count == 0 ? Double.NaN : mean, count == 0 ? Double.NaN : getVariance(), minimum, maximum);
+  }
+}
@@ -0,0 +1,276 @@
+package statistics;
+
+import java.util.Arrays;
+
+/**
+ * A t-digest: a sketch for estimating percentiles of a stream of values in a single pass and bounded memory. Values
+ * are summarized as centroids (a mean and a weight) that are kept small near both tails of distribution, so extreme
+ * percentiles are estimated more accurately than central ones. Digests for different streams can be merged.
+ * <p>
+ * While no centroids have been merged, percentiles are exactly those computed by {@link Descriptive#percentile}.
+ * Based on merging t-digest by Ted Dunning and Otmar Ertl.
+ *
+ * @author Pepe Gallardo
+ */
+public class TDigest {
+  /**
+   * Default compression. Estimates are exact for streams of up to a few hundred values.
+   */
+  public static final double DEFAULT_COMPRESSION = 200;
+
+  private final double compression;
+  // centroids sorted by mean
+  private double[] means, weights;
+  private int numberOfCentroids;
+  // values added since last compression, not sorted
+  private final double[] bufferMeans, bufferWeights;
+  private int bufferSize;
+  private double totalWeight;
+  private double minimum, maximum;
+
+  /**
+   * Creates an empty digest.
+   *
+   * @param compression larger values keep more centroids and give more accurate estimates.
+   */
+  public TDigest(double compression) {
+    if (compression < 10) {
+      throw new IllegalArgumentException("TDigest: compression must be at least 10");
+    }
+    this.compression = compression;
+    var capacity = (int) Math.ceil(2 * compression) + 10;
+    this.means = new double[capacity];
+    this.weights = new double[capacity];
+    this.numberOfCentroids = 0;
+    this.bufferMeans = new double[5 * capacity];
+    this.bufferWeights = new double[5 * capacity];
+    this.bufferSize = 0;
+    this.totalWeight = 0;
+    this.minimum = Double.POSITIVE_INFINITY;
+    this.maximum = Double.NEGATIVE_INFINITY;
+  }
+
+  /**
+   * Creates an empty digest with default compression.
+   */
+  public TDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * Creates a copy of a digest.
+   *
+   * @param that digest to copy.
+   */
+  public TDigest(TDigest that) {
+    this(that.compression);
+    merge(that);
+  }
+
+  /**
+   * Adds a value to stream.
+   *
+   * @param value value to add.
+   */
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  private void add(double mean, double weight) {
+    if (Double.isNaN(mean)) {
+      throw new IllegalArgumentException("add: value cannot be NaN");
+    }
+    if (bufferSize == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[bufferSize] = mean;
+    bufferWeights[bufferSize] = weight;
+    bufferSize++;
+    totalWeight += weight;
+    if (mean < minimum) {
+      minimum = mean;
+    }
+    if (mean > maximum) {
+      maximum = mean;
+    }
+  }
+
+  /**
+   * Merges another digest into this one, as if all values summarized by that digest had been added to this one.
+   *
+   * @param that digest to merge.
+   */
+  public void merge(TDigest that) {
+    that.compress();
+    for (int i = 0; i < that.numberOfCentroids; i++) {
+      add(that.means[i], that.weights[i]);
+    }
+    // keep exact extremes of merged stream
+    minimum = Math.min(minimum, that.minimum);
+    maximum = Math.max(maximum, that.maximum);
+  }
+
+  /**
+   * Merges buffered values into centroids.
+   */
+  private void compress() {
+    if (bufferSize == 0) {
+      return;
+    }
+    var size = numberOfCentroids + bufferSize;
+    var allMeans = Arrays.copyOf(means, size);
+    var allWeights = Arrays.copyOf(weights, size);
+    System.arraycopy(bufferMeans, 0, allMeans, numberOfCentroids, bufferSize);
+    System.arraycopy(bufferWeights, 0, allWeights, numberOfCentroids, bufferSize);
+    sort(allMeans, allWeights, 0, size - 1);
+    bufferSize = 0;
+
+    // merge neighbour centroids as long as resulting weight is within size bound for its quantiles
+    var current = 0;
+    var weightSoFar = 0.0;
+    for (int i = 1; i < size; i++) {
+      var proposed = allWeights[current] + allWeights[i];
+      var q0 = weightSoFar / totalWeight;
+      var q2 = (weightSoFar + proposed) / totalWeight;
+      var bound = 4 * totalWeight * Math.min(q0 * (1 - q0), q2 * (1 - q2)) / compression;
+      if (proposed <= bound) {
+        allMeans[current] += (allMeans[i] - allMeans[current]) * allWeights[i] / proposed;
+        allWeights[current] = proposed;
+      } else {
+        weightSoFar += allWeights[current];
+        current++;
+        allMeans[current] = allMeans[i];
+        allWeights[current] = allWeights[i];
+      }
+    }
+    numberOfCentroids = current + 1;
+    if (numberOfCentroids > means.length) {
+      means = new double[numberOfCentroids];
+      weights = new double[numberOfCentroids];
+    }
+    System.arraycopy(allMeans, 0, means, 0, numberOfCentroids);
+    System.arraycopy(allWeights, 0, weights, 0, numberOfCentroids);
+  }
+
+  /**
+   * Sorts centroids by mean.
+   */
+  private static void sort(double[] means, double[] weights, int left, int right) {
+    while (right - left > 16) {
+      var pivot = means[(left + right) >>> 1];
+      var i = left;
+      var j = right;
+      while (i <= j) {
+        while (means[i] < pivot) {
+          i++;
+        }
+        while (means[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(means, weights, i++, j--);
+        }
+      }
+      // recurse on smaller part to bound stack depth
+      if (j - left < right - i) {
+        sort(means, weights, left, j);
+        left = i;
+      } else {
+        sort(means, weights, i, right);
+        right = j;
+      }
+    }
+    for (int i = left + 1; i <= right; i++) {
+      for (int j = i; j > left && means[j - 1] > means[j]; j--) {
+        swap(means, weights, j - 1, j);
+      }
+    }
+  }
+
+  private static void swap(double[] means, double[] weights, int i, int j) {
+    var mean = means[i];
+    means[i] = means[j];
+    means[j] = mean;
+    var weight = weights[i];
+    weights[i] = weights[j];
+    weights[j] = weight;
+  }
+
+  /**
+   * Number of values summarized by this digest.
+   *
+   * @return number of values summarized by this digest.
+   */
+  public long getCount() {
+    return Math.round(totalWeight);
+  }
+
+  public double getMinimum() {
+    return minimum;
+  }
+
+  public double getMaximum() {
+    return maximum;
+  }
+
+  /**
+   * Number of centroids currently used by this digest.
+   *
+   * @return number of centroids currently used by this digest.
+   */
+  public int getNumberOfCentroids() {
+    compress();
+    return numberOfCentroids;
+  }
+
+  /**
+   * Estimates a percentile of values summarized by this digest.
+   *
+   * @param percentRank rank of percentile, in [0,100].
+   * @return estimated percentile.
+   */
+  public double percentile(double percentRank) {
+    if (totalWeight == 0) {
+      throw new IllegalStateException("percentile: no values have been added");
+    }
+    if (percentRank < 0.0 || percentRank > 100.0) {
+      throw new IllegalArgumentException("percentile: percentRank must be in [0,100]");
+    }
+    compress();
+    if (numberOfCentroids == 1) {
+      return means[0];
+    }
+    // centre of i-th value lies at i + 0.5, as in linear interpolation between order statistics
+    var index = percentRank * (totalWeight - 1) / 100 + 0.5;
+
+    var firstHalf = weights[0] / 2;
+    if (index <= firstHalf) {
+      return firstHalf <= 0.5 ? means[0] : interpolate(index, 0.5, minimum, firstHalf, means[0]);
+    }
+    var weightSoFar = firstHalf;
+    for (int i = 0; i < numberOfCentroids - 1; i++) {
+      var next = weightSoFar + (weights[i] + weights[i + 1]) / 2;
+      if (index <= next) {
+        return interpolate(index, weightSoFar, means[i], next, means[i + 1]);
+      }
+      weightSoFar = next;
+    }
+    var last = numberOfCentroids - 1;
+    var lastHalf = weights[last] / 2;
+    return lastHalf <= 0.5
+        ? means[last]
+        : interpolate(index, weightSoFar, means[last], totalWeight - 0.5, maximum);
+  }
+
+  public double median() {
+    return percentile(50);
+  }
+
+  private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+    if (x1 <= x0) {
+      return y0;
+    }
+    var value = y0 + (x - x0) / (x1 - x0) * (y1 - y0);
+    return Math.min(Math.max(value, Math.min(y0, y1)), Math.max(y0, y1));
+  }
+}
@@ -0,0 +1,170 @@
+package statistics;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Samples indices without replacement with probability proportional to their weights. Weights are stored in a
+ * Fenwick tree, so both sampling an index and removing it take logarithmic time.
+ * <p>
+ * Removing an index subtracts its weight from sums in tree, so rounding errors build up and may even cancel weights of
+ * remaining indices when these are much smaller than removed ones. Sums are therefore recomputed from remaining
+ * weights once they become small compared to removed weight, and an index is chosen by scanning remaining weights if
+ * sampling from tree keeps failing.
+ *
+ * @author Pepe Gallardo
+ */
+public class WeightedSampler {
+  private final double[] weights;
+  // tree[i] holds sum of weights in (i - lowbit(i), i], using 1-based indices
+  private final double[] tree;
+  private final int highestPowerOfTwo;
+  private int size;
+  // sum of weights removed since sums in tree were last computed
+  private double removedWeight;
+
+  // sums are recomputed when remaining weight falls below this fraction of weight removed since they were computed
+  private static final double REBUILD_FRACTION = 1e-6;
+  // number of indices sampled from tree before resorting to a linear scan
+  private static final int MAX_ATTEMPTS = 4;
+
+  /**
+   * Creates a sampler.
+   *
+   * @param weights non-negative weight of each index. Indices with zero weight are never sampled.
+   */
+  public WeightedSampler(double[] weights) {
+    var length = weights.length;
+    this.weights = new double[length];
+    this.tree = new double[length + 1];
+    this.size = 0;
+    for (int i = 0; i < length; i++) {
+      var weight = weights[i];
+      if (!(weight >= 0) || Double.isInfinite(weight)) {
+        throw new IllegalArgumentException("WeightedSampler: weights must be finite and non-negative");
+      }
+      this.weights[i] = weight;
+      if (weight > 0) {
+        size++;
+      }
+    }
+    rebuild();
+    this.highestPowerOfTwo = length == 0 ? 0 : Integer.highestOneBit(length);
+  }
+
+  /**
+   * Number of indices with positive weight that have not been sampled yet.
+   *
+   * @return number of indices that can still be sampled.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Samples an index with probability proportional to its weight and removes it, so that it is not sampled again.
+   *
+   * @param random random generator used for sampling.
+   * @return sampled index.
+   */
+  public int removeRandom(RandomGenerator random) {
+    if (size == 0) {
+      throw new IllegalStateException("removeRandom: no indices left");
+    }
+    var total = totalWeight();
+    if (!(total > removedWeight * REBUILD_FRACTION)) {
+      // sums in tree may be dominated by rounding errors
+      rebuild();
+      total = totalWeight();
+    }
+    for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+      var index = find(random.nextDouble() * total);
+      // rounding errors may rarely lead to an index that has already been removed
+      if (index < weights.length && weights[index] > 0) {
+        remove(index);
+        return index;
+      }
+    }
+    // sums in tree are too inaccurate, so they are recomputed for next draws and this one scans weights
+    rebuild();
+    var index = scan(random.nextDouble());
+    remove(index);
+    return index;
+  }
+
+  /**
+   * Sum of weights of indices that have not been sampled yet.
+   *
+   * @return sum of weights of indices that have not been sampled yet.
+   */
+  public double totalWeight() {
+    var sum = 0.0;
+    for (int i = weights.length; i > 0; i -= i & -i) {
+      sum += tree[i];
+    }
+    return sum;
+  }
+
+  /**
+   * Finds smallest index whose prefix sum of weights exceeds a value.
+   */
+  private int find(double value) {
+    var position = 0;
+    for (int step = highestPowerOfTwo; step > 0; step >>= 1) {
+      var next = position + step;
+      if (next < tree.length && tree[next] <= value) {
+        position = next;
+        value -= tree[next];
+      }
+    }
+    // position is number of leading indices whose sum is at most value
+    return position;
+  }
+
+  /**
+   * Chooses an index by scanning remaining weights, without using sums in tree.
+   */
+  private int scan(double fraction) {
+    var total = 0.0;
+    for (var weight : weights) {
+      total += weight;
+    }
+    var value = fraction * total;
+    var last = -1;
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] > 0) {
+        last = i;
+        value -= weights[i];
+        if (value < 0) {
+          return i;
+        }
+      }
+    }
+    // rounding errors may leave some value after last remaining index
+    return last;
+  }
+
+  /**
+   * Computes sums in tree from remaining weights, in linear time.
+   */
+  private void rebuild() {
+    var length = weights.length;
+    System.arraycopy(weights, 0, tree, 1, length);
+    for (int i = 1; i <= length; i++) {
+      var parent = i + (i & -i);
+      if (parent <= length) {
+        tree[parent] += tree[i];
+      }
+    }
+    removedWeight = 0;
+  }
+
+  private void remove(int index) {
+    var weight = weights[index];
+    weights[index] = 0;
+    size--;
+    removedWeight += weight;
+    for (int i = index + 1; i < tree.length; i += i & -i) {
+      tree[i] -= weight;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package statistics;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Xoshiro256++ random generator. Produces the same sequences as the JDK implementation of this algorithm for the same
+ * seed, but its state can be saved and restored.
+ *
+ * @author Pepe Gallardo
+ */
+public class Xoshiro256PlusPlus implements RandomGenerator {
+  private static final long GOLDEN_RATIO_64 = 0x9e3779b97f4a7c15L;
+  private static final long SILVER_RATIO_64 = 0x6A09E667F3BCC909L;
+
+  private long x0, x1, x2, x3;
+
+  /**
+   * Creates a generator initialized with provided seed.
+   *
+   * @param seed seed for initializing generator.
+   */
+  public Xoshiro256PlusPlus(long seed) {
+    seed ^= SILVER_RATIO_64;
+    this.x0 = mixStafford13(seed);
+    this.x1 = mixStafford13(seed += GOLDEN_RATIO_64);
+    this.x2 = mixStafford13(seed += GOLDEN_RATIO_64);
+    this.x3 = mixStafford13(seed + GOLDEN_RATIO_64);
+  }
+
+  /**
+   * Creates a generator initialized with an arbitrary seed.
+   */
+  public Xoshiro256PlusPlus() {
+    this(mixStafford13(System.nanoTime()) ^ System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a generator with provided state.
+   *
+   * @param state state of generator as returned by {@link #getState}.
+   */
+  public Xoshiro256PlusPlus(long[] state) {
+    setState(state);
+  }
+
+  private static long mixStafford13(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  @Override
+  public long nextLong() {
+    final long result = Long.rotateLeft(x0 + x3, 23) + x0;
+    long t = x1 << 17;
+    x2 ^= x0;
+    x3 ^= x1;
+    x1 ^= x2;
+    x0 ^= x3;
+    x2 ^= t;
+    x3 = Long.rotateLeft(x3, 45);
+    return result;
+  }
+
+  /**
+   * Current state of this generator.
+   *
+   * @return a new array with current state of this generator.
+   */
+  public long[] getState() {
+    return new long[]{x0, x1, x2, x3};
+  }
+
+  /**
+   * Sets state of this generator.
+   *
+   * @param state state of generator as returned by {@link #getState}.
+   */
+  public void setState(long[] state) {
+    if (state.length != 4) {
+      throw new IllegalArgumentException("setState: state must consist of 4 longs");
+    }
+    if ((state[0] | state[1] | state[2] | state[3]) == 0) {
+      throw new IllegalArgumentException("setState: state cannot be all zeros");
+    }
+    this.x0 = state[0];
+    this.x1 = state[1];
+    this.x2 = state[2];
+    this.x3 = state[3];
+  }
+}
@@ -0,0 +1,57 @@
+package automata;
+
+import automata.floorField.ManhattanStaticFloorField;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.Scenario;
+import geometry._2d.Rectangle;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static statistics.Random.random;
+
+/**
+ * Tests for {@link CellularAutomaton}.
+ *
+ * @author Pepe Gallardo
+ */
+class CellularAutomatonTest {
+
+  @Test
+  void densityWithWideRangeOfValuesFillsEveryPositiveCell() {
+    var rows = 20;
+    var columns = 20;
+    var scenario = new Scenario.Builder()
+        .rows(rows)
+        .columns(columns)
+        .floorField(ManhattanStaticFloorField::of)
+        .build();
+    scenario.setExit(new Rectangle(0, 0, 1, 2));
+    var parameters = new CellularAutomatonParameters.Builder()
+        .scenario(scenario)
+        .secondsTimeLimit(60)
+        .neighbourhood(MooreNeighbourhood::of)
+        .pedestrianVelocity(1.3)
+        .build();
+    // gaussian density centered on scenario, whose values span hundreds of orders of magnitude
+    var density = new double[rows][columns];
+    var positive = 0;
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        var x = (i * columns + j - rows * columns / 2) / 10.0;
+        density[i][j] = Math.exp(-x * x / 2);
+        if (density[i][j] > 0 && !scenario.isBlocked(i, j)) {
+          positive++;
+        }
+      }
+    }
+    var cells = positive;
+    random.setSeed(1);
+    var automaton = new CellularAutomaton(parameters);
+    assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> automaton.addPedestriansWithDensity(density, cells, new PedestrianParameters.Builder().build()));
+    assertEquals(cells, automaton.getNumberOfPedestriansInScenario());
+  }
+}
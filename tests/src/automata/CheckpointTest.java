@@ -0,0 +1,152 @@
+package automata;
+
+import automata.floorField.DijkstraStaticFloorFieldWithMooreNeighbourhood;
+import automata.floorField.StaticFloorField;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.Scenario;
+import geometry._2d.Rectangle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static statistics.Random.random;
+
+/**
+ * Tests for {@link Checkpoint}.
+ *
+ * @author Pepe Gallardo
+ */
+class CheckpointTest {
+  @TempDir
+  Path directory;
+
+  private static CellularAutomatonParameters parameters() {
+    var scenario = new Scenario.Builder()
+        .rows(30)
+        .columns(40)
+        .cellDimension(0.4)
+        .floorField(DijkstraStaticFloorFieldWithMooreNeighbourhood::of)
+        .build();
+    scenario.setExit(new Rectangle(0, 18, 1, 4));
+    scenario.setBlock(new Rectangle(12, 5, 2, 30));
+    return new CellularAutomatonParameters.Builder()
+        .scenario(scenario)
+        .secondsTimeLimit(600)
+        .neighbourhood(MooreNeighbourhood::of)
+        .pedestrianVelocity(1.3)
+        .build();
+  }
+
+  @Test
+  void restoredAutomatonContinuesInflow() {
+    var parameters = parameters();
+    // a fractional rate, so that a fraction of a pedestrian is pending when checkpoint is taken
+    var source = new InflowSource.Builder()
+        .region(new Rectangle(25, 0, 5, 40))
+        .rate(0, 1.7)
+        .rate(20, 3.3)
+        .until(60)
+        .build();
+    random.setSeed(3);
+    var original = new CellularAutomaton(parameters);
+    parameters.scenario().getStaticFloorField().initialize();
+    original.addPedestriansUniformly(50, new PedestrianParameters.Builder().build());
+    original.addInflowSource(source);
+    for (int i = 0; i < 37; i++) {
+      original.timeStep();
+    }
+    var checkpoint = Checkpoint.of(original, false);
+    original.run();
+
+    // same checkpoint can be restored many times, all of them sharing same source
+    for (int fork = 0; fork < 2; fork++) {
+      var restored = checkpoint.restore(parameters);
+      assertEquals(1, restored.getInflowSources().size());
+      var restoredSource = restored.getInflowSources().get(0);
+      restored.run();
+      assertEquals(original.computeStatistics(), restored.computeStatistics());
+      assertEquals(original.getTimeSteps(), restored.getTimeSteps());
+      assertEquals(original.getInflowInjected(source), restored.getInflowInjected(restoredSource));
+      assertEquals(original.getInflowWaiting(source), restored.getInflowWaiting(restoredSource));
+    }
+  }
+
+  @Test
+  void inlineFloorFieldDoesNotOverwriteMappedOne() throws IOException {
+    var parameters = parameters();
+    var floorField = (StaticFloorField) parameters.scenario().getStaticFloorField();
+    floorField.initialize();
+    var path = directory.resolve("field.bin");
+    floorField.write(path);
+    // mapped grid is read-only
+    floorField.initialize(path);
+
+    random.setSeed(4);
+    var original = new CellularAutomaton(parameters);
+    original.addPedestriansUniformly(80, new PedestrianParameters.Builder().build());
+    for (int i = 0; i < 10; i++) {
+      original.timeStep();
+    }
+    var checkpoint = Checkpoint.of(original, true);
+    original.run();
+
+    var restored = assertDoesNotThrow(() -> checkpoint.restore(parameters));
+    restored.run();
+    assertEquals(original.computeStatistics(), restored.computeStatistics());
+
+    // a scenario whose floor field has not been initialized adopts inline one
+    var other = parameters();
+    var otherFloorField = other.scenario().getStaticFloorField();
+    assertFalse(otherFloorField.isInitialized());
+    checkpoint.restore(other);
+    assertTrue(otherFloorField.isInitialized());
+    for (int i = 0; i < floorField.getRows(); i++) {
+      for (int j = 0; j < floorField.getColumns(); j++) {
+        assertEquals(floorField.getField(i, j), otherFloorField.getField(i, j));
+      }
+    }
+  }
+
+  @Test
+  void restoredAutomatonTerminatesAtSameTimeStep() throws IOException {
+    var scenario = new Scenario.Builder()
+        .rows(30)
+        .columns(40)
+        .cellDimension(0.4)
+        .floorField(DijkstraStaticFloorFieldWithMooreNeighbourhood::of)
+        .build();
+    scenario.setExit(new Rectangle(0, 18, 1, 4));
+    // a closed room in top right corner, whose pedestrians can never exit
+    scenario.setBlock(new Rectangle(20, 25, 1, 15));
+    scenario.setBlock(new Rectangle(20, 25, 10, 1));
+    var parameters = new CellularAutomatonParameters.Builder()
+        .scenario(scenario)
+        .secondsTimeLimit(600)
+        .neighbourhood(MooreNeighbourhood::of)
+        .pedestrianVelocity(1.3)
+        .terminationCriteria(new TerminationCriteria.Builder().exitProgressTimeSteps(40).unreachable(false).build())
+        .build();
+    var pedestrianParameters = new PedestrianParameters.Builder().build();
+
+    random.setSeed(5);
+    var original = new CellularAutomaton(parameters);
+    original.addPedestriansUniformly(new Rectangle(0, 0, 20, 40), 40, pedestrianParameters);
+    original.addPedestriansUniformly(new Rectangle(21, 26, 9, 14), 10, pedestrianParameters);
+    original.setCheckpoints(directory, 5);
+    original.run();
+    assertEquals(TerminationReason.NO_EXIT_PROGRESS, original.getTerminationReason());
+
+    // last checkpoint is taken while no pedestrian has exited for some time steps
+    var last = (original.getTimeSteps() - 1) / 5 * 5;
+    var path = directory.resolve(String.format("checkpoint-%010d.bin", last));
+    var restored = Checkpoint.restore(path, parameters);
+    restored.run();
+    assertEquals(TerminationReason.NO_EXIT_PROGRESS, restored.getTerminationReason());
+    assertEquals(original.getTimeSteps(), restored.getTimeSteps());
+    assertEquals(original.computeStatistics(), restored.computeStatistics());
+  }
+}
@@ -0,0 +1,80 @@
+package automata;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link ExitRecords}.
+ *
+ * @author Pepe Gallardo
+ */
+class ExitRecordsTest {
+  // more than one chunk of spill file
+  private static final int RECORDS = 100_000;
+
+  @TempDir
+  Path directory;
+
+  private static ExitRecords records(int size) {
+    var records = new ExitRecords();
+    for (int i = 0; i < size; i++) {
+      records.add(i, i % 7, i % 11, i % 3, i % 13, i / 5);
+    }
+    return records;
+  }
+
+  private static void assertRecords(ExitRecords records, int size) {
+    assertEquals(size, records.size());
+    for (int i = 0; i < size; i++) {
+      assertEquals(i, records.getIdentifier(i));
+      assertEquals(i % 7, records.getRow(i));
+      assertEquals(i % 11, records.getColumn(i));
+      assertEquals(i % 3, records.getExit(i));
+      assertEquals(i % 13, records.getNumberOfSteps(i));
+      assertEquals(i / 5, records.getExitTimeSteps(i));
+    }
+  }
+
+  @Test
+  void spilledRecordsAreKept() throws IOException {
+    try (var records = records(RECORDS)) {
+      records.spill(directory.resolve("exits.bin"));
+      assertTrue(records.isSpilled());
+      records.add(RECORDS, RECORDS % 7, RECORDS % 11, RECORDS % 3, RECORDS % 13, RECORDS / 5);
+      assertRecords(records, RECORDS + 1);
+    }
+  }
+
+  @Test
+  void failedOpenKeepsRecordsOnHeap() throws IOException {
+    try (var records = records(RECORDS)) {
+      // a directory cannot be opened as spill file
+      assertThrows(IOException.class, () -> records.spill(directory));
+      assertFalse(records.isSpilled());
+      assertRecords(records, RECORDS);
+    }
+  }
+
+  @Test
+  void failedWriteKeepsRecordsOnHeap() throws IOException {
+    // a device that can be opened but where writing always fails, as on a full file system
+    var full = Path.of("/dev/full");
+    assumeTrue(Files.isWritable(full), "no /dev/full on this platform");
+    try (var records = records(RECORDS)) {
+      assertThrows(IOException.class, () -> records.spill(full));
+      assertFalse(records.isSpilled());
+      assertRecords(records, RECORDS);
+      // records can still be spilled somewhere else
+      records.spill(directory.resolve("exits.bin"));
+      assertTrue(records.isSpilled());
+      assertRecords(records, RECORDS);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package automata.grid;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link HeapBooleanGrid}.
+ *
+ * @author Pepe Gallardo
+ */
+class HeapBooleanGridTest {
+
+  @Test
+  void behavesAsBooleanMatrix() {
+    // rows do not start at word boundaries
+    var rows = 37;
+    var columns = 53;
+    var grid = new HeapBooleanGrid(rows, columns);
+    var expected = new boolean[rows][columns];
+    var random = new Random(7);
+    for (int n = 0; n < 20_000; n++) {
+      var row = random.nextInt(rows);
+      var column = random.nextInt(columns);
+      var value = random.nextBoolean();
+      grid.set(row, column, value);
+      expected[row][column] = value;
+    }
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        assertEquals(expected[i][j], grid.get(i, j), "row " + i + ", column " + j);
+      }
+    }
+    grid.clear();
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        assertFalse(grid.get(i, j));
+      }
+    }
+  }
+}
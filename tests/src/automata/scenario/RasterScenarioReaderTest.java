@@ -0,0 +1,61 @@
+package automata.scenario;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link RasterScenarioReader}.
+ *
+ * @author Pepe Gallardo
+ */
+class RasterScenarioReaderTest {
+  private static final int ROWS = 6, COLUMNS = 8;
+
+  @TempDir
+  Path directory;
+
+  /**
+   * A floor plan on a transparent background, with a wall along its bottom row and an exit on its top row.
+   */
+  private Path floorPlan() throws IOException {
+    var image = new BufferedImage(COLUMNS, ROWS, BufferedImage.TYPE_INT_ARGB);
+    for (int x = 0; x < COLUMNS; x++) {
+      image.setRGB(x, ROWS - 1, Color.BLACK.getRGB());
+    }
+    image.setRGB(2, 0, Color.GREEN.getRGB());
+    image.setRGB(3, 0, Color.GREEN.getRGB());
+    // a white pixel that is only partially transparent is still free space
+    image.setRGB(5, 2, 0x80FFFFFF);
+    var path = directory.resolve("plan.png");
+    assertTrue(ImageIO.write(image, "png", path.toFile()));
+    return path;
+  }
+
+  @Test
+  void transparentPixelsAreFreeSpace() throws IOException {
+    var scenario = new RasterScenarioReader.Builder().build().read(floorPlan());
+    assertEquals(ROWS, scenario.getRows());
+    assertEquals(COLUMNS, scenario.getColumns());
+    for (int row = 0; row < ROWS; row++) {
+      for (int column = 0; column < COLUMNS; column++) {
+        // top of image is last row of scenario
+        assertEquals(row == 0, scenario.isBlocked(row, column), "row " + row + ", column " + column);
+        assertEquals(row == ROWS - 1 && (column == 2 || column == 3), scenario.isExit(row, column),
+            "row " + row + ", column " + column);
+      }
+    }
+    var blocks = 0;
+    for (var ignored : scenario.blocks()) {
+      blocks++;
+    }
+    assertEquals(1, blocks);
+  }
+}
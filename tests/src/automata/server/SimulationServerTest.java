@@ -0,0 +1,119 @@
+package automata.server;
+
+import automata.floorField.FloorField;
+import automata.floorField.ManhattanStaticFloorField;
+import automata.scenario.Scenario;
+import geometry._2d.Location;
+import geometry._2d.Rectangle;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link SimulationServer}.
+ *
+ * @author Pepe Gallardo
+ */
+class SimulationServerTest {
+
+  /**
+   * A scenario whose floor field fails as soon as a pedestrian looks for a cell to move to, so that its simulation
+   * fails during first time step.
+   */
+  private static Scenario failingScenario() {
+    var scenario = new Scenario.Builder()
+        .rows(20)
+        .columns(20)
+        .floorField(s -> new FloorField() {
+          private final FloorField field = ManhattanStaticFloorField.of(s);
+
+          public int getRows() {
+            return field.getRows();
+          }
+
+          public int getColumns() {
+            return field.getColumns();
+          }
+
+          public void initialize() {
+            field.initialize();
+          }
+
+          public boolean isInitialized() {
+            return field.isInitialized();
+          }
+
+          public double getField(int row, int column) {
+            return field.getField(row, column);
+          }
+
+          public double getField(Location location) {
+            throw new IllegalStateException("boom");
+          }
+        })
+        .build();
+    scenario.setExit(new Rectangle(0, 10, 1, 2));
+    return scenario;
+  }
+
+  private static String[] serve(SimulationServer server, String jobs) throws IOException {
+    var output = new ByteArrayOutputStream();
+    server.serve(new ByteArrayInputStream(jobs.getBytes(StandardCharsets.UTF_8)), output);
+    return output.toString(StandardCharsets.UTF_8).split("\n");
+  }
+
+  @Test
+  void reportsResultsInOrderOfJobs() throws IOException {
+    try (var server = new SimulationServer.Builder().threads(2).build()) {
+      var lines = serve(server, """
+          id=1 scenario=supermarket seed=1 pedestrians=50
+          # comment
+          id=2 scenario=supermarket seed=2 pedestrians=50
+          """);
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].startsWith("id=1 status=ok "), lines[0]);
+      assertTrue(lines[1].startsWith("id=2 status=ok "), lines[1]);
+      assertTrue(lines[0].contains("numberOfEvacuees=50"), lines[0]);
+    }
+  }
+
+  @Test
+  void reportsJobsThatCannotBeParsed() throws IOException {
+    try (var server = new SimulationServer.Builder().threads(1).build()) {
+      var lines = serve(server, "id=3 scenario=supermarket foo=1\n");
+      assertEquals("id=3 status=error message=parse: unknown key foo", lines[0]);
+    }
+  }
+
+  @Test
+  void reportsScenariosThatCannotBeBuilt() throws IOException {
+    try (var server = new SimulationServer.Builder().threads(1).build()) {
+      var lines = serve(server, "id=4 scenario=random:seed\nid=5 scenario=nowhere\n");
+      assertEquals(2, lines.length);
+      assertEquals("id=4 status=error message=load: invalid seed for random scenario: seed", lines[0]);
+      assertEquals("id=5 status=error message=load: unknown scenario nowhere", lines[1]);
+    }
+  }
+
+  @Test
+  void reportsSimulationsThatFail() throws IOException {
+    try (var server = new SimulationServer.Builder().threads(1).build()) {
+      server.getScenarioCache().put("failing", failingScenario());
+      var lines = serve(server, """
+          id=6 scenario=failing seed=1 pedestrians=10
+          id=7 scenario=supermarket seed=1 pedestrians=10
+          """);
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].startsWith("id=6 status=error message="), lines[0]);
+      assertTrue(lines[0].contains("boom"), lines[0]);
+      assertFalse(lines[0].contains("meanSteps"), lines[0]);
+      // a failed simulation does not prevent following ones from running
+      assertTrue(lines[1].startsWith("id=7 status=ok "), lines[1]);
+    }
+  }
+}
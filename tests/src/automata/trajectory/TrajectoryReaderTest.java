@@ -0,0 +1,131 @@
+package automata.trajectory;
+
+import automata.CellularAutomaton;
+import automata.CellularAutomatonParameters;
+import automata.neighbourhood.MooreNeighbourhood;
+import automata.pedestrian.PedestrianParameters;
+import automata.scenario.examples.Supermarket;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static statistics.Random.random;
+
+/**
+ * Tests for {@link TrajectoryReader}.
+ *
+ * @author Pepe Gallardo
+ */
+class TrajectoryReaderTest {
+  private static final int KEYFRAME_INTERVAL = 20;
+
+  @TempDir
+  static Path directory;
+  private static Path recording;
+
+  @BeforeAll
+  static void record() throws IOException {
+    random.setSeed(1);
+    var scenario = Supermarket.supermarket();
+    var parameters = new CellularAutomatonParameters.Builder()
+        .scenario(scenario)
+        .secondsTimeLimit(60)
+        .neighbourhood(MooreNeighbourhood::of)
+        .pedestrianVelocity(1.3)
+        .build();
+    var automaton = new CellularAutomaton(parameters);
+    automaton.addPedestriansUniformly(100, new PedestrianParameters.Builder().build());
+    recording = directory.resolve("recording.bin");
+    try (var recorder = new TrajectoryRecorder(recording, scenario, KEYFRAME_INTERVAL, 1 << 16)) {
+      automaton.setTrajectoryRecorder(recorder);
+      automaton.run();
+    }
+  }
+
+  /**
+   * Offsets of chunks in a trajectory file, followed by size of file.
+   */
+  private static long[] chunkOffsets(byte[] bytes) {
+    var buffer = ByteBuffer.wrap(bytes);
+    TrajectoryFormat.Header.read(buffer);
+    var offsets = new long[0];
+    while (buffer.remaining() >= TrajectoryFormat.CHUNK_HEADER_BYTES) {
+      offsets = Arrays.copyOf(offsets, offsets.length + 1);
+      offsets[offsets.length - 1] = buffer.position();
+      buffer.get();
+      buffer.getInt();
+      var length = buffer.getInt();
+      buffer.position(buffer.position() + length);
+    }
+    offsets = Arrays.copyOf(offsets, offsets.length + 1);
+    offsets[offsets.length - 1] = bytes.length;
+    return offsets;
+  }
+
+  private static byte kind(byte[] bytes, long offset) {
+    return bytes[(int) offset];
+  }
+
+  private static int frame(byte[] bytes, long offset) {
+    return ByteBuffer.wrap(bytes, (int) offset + 1, 4).getInt();
+  }
+
+  @Test
+  void missingDeltaIsReported() throws IOException {
+    var bytes = Files.readAllBytes(recording);
+    var offsets = chunkOffsets(bytes);
+    // removes delta chunk of a frame right after a keyframe, well within initial size of index
+    var gapFrame = KEYFRAME_INTERVAL + 1;
+    var output = new ByteArrayOutputStream();
+    output.write(bytes, 0, (int) offsets[0]);
+    var removed = false;
+    for (int i = 0; i + 1 < offsets.length; i++) {
+      var offset = offsets[i];
+      if (kind(bytes, offset) == TrajectoryFormat.DELTA && frame(bytes, offset) == gapFrame) {
+        removed = true;
+      } else {
+        output.write(bytes, (int) offset, (int) (offsets[i + 1] - offset));
+      }
+    }
+    assertTrue(removed, "recording has no delta for frame " + gapFrame);
+    var gapped = directory.resolve("gapped.bin");
+    Files.write(gapped, output.toByteArray());
+
+    try (var reader = new TrajectoryReader(gapped); var complete = new TrajectoryReader(recording)) {
+      assertEquals(complete.frame(gapFrame - 1).size(), reader.frame(gapFrame - 1).size());
+      var exception = assertThrows(IOException.class, () -> reader.frame(gapFrame));
+      assertTrue(exception.getMessage().contains("missing delta for frame " + gapFrame), exception.getMessage());
+      // next keyframe is reachable again
+      assertEquals(complete.frame(2 * KEYFRAME_INTERVAL).size(), reader.frame(2 * KEYFRAME_INTERVAL).size());
+    }
+  }
+
+  @Test
+  void truncatedLastChunkIsIgnored() throws IOException {
+    var bytes = Files.readAllBytes(recording);
+    var offsets = chunkOffsets(bytes);
+    var lastChunk = offsets[offsets.length - 2];
+    var truncated = directory.resolve("truncated.bin");
+    Files.write(truncated, Arrays.copyOf(bytes, (int) lastChunk + TrajectoryFormat.CHUNK_HEADER_BYTES + 1));
+
+    try (var reader = new TrajectoryReader(truncated); var complete = new TrajectoryReader(recording)) {
+      assertEquals(complete.getLastFrame() - 1, reader.getLastFrame());
+      var frame = reader.frame(reader.getLastFrame());
+      var expected = complete.frame(reader.getLastFrame());
+      assertEquals(expected.size(), frame.size());
+      for (int i = 0; i < frame.size(); i++) {
+        assertEquals(expected.getIdentifier(i), frame.getIdentifier(i));
+        assertEquals(expected.getRow(i), frame.getRow(i));
+        assertEquals(expected.getColumn(i), frame.getColumn(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package statistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WeightedSampler}.
+ *
+ * @author Pepe Gallardo
+ */
+class WeightedSamplerTest {
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  // samples every index with positive weight and checks each one is sampled exactly once
+  private static void sampleAll(double[] weights, long seed) {
+    var sampler = new WeightedSampler(weights);
+    var random = new Random(seed);
+    var sampled = new boolean[weights.length];
+    var positive = 0;
+    for (var weight : weights) {
+      if (weight > 0) {
+        positive++;
+      }
+    }
+    assertEquals(positive, sampler.size());
+    for (int i = 0; i < positive; i++) {
+      var index = sampler.removeRandom(random);
+      assertTrue(weights[index] > 0, "index " + index + " has no weight");
+      assertFalse(sampled[index], "index " + index + " sampled twice");
+      sampled[index] = true;
+    }
+    assertEquals(0, sampler.size());
+    assertThrows(IllegalStateException.class, () -> sampler.removeRandom(random));
+  }
+
+  @Test
+  void weightLostToRoundingIsStillSampled() {
+    assertTimeoutPreemptively(TIMEOUT, () -> sampleAll(new double[]{1e17, 1}, 1));
+  }
+
+  @Test
+  void everyCellOfGaussianDensityIsSampled() {
+    var weights = new double[400];
+    for (int i = 0; i < weights.length; i++) {
+      var x = (i - weights.length / 2) / 10.0;
+      weights[i] = Math.exp(-x * x / 2);
+    }
+    for (long seed = 0; seed < 20; seed++) {
+      var s = seed;
+      assertTimeoutPreemptively(TIMEOUT, () -> sampleAll(weights, s));
+    }
+  }
+
+  @Test
+  void weightsSpanningWholeRangeOfDoublesAreSampled() {
+    var weights = new double[600];
+    for (int i = 0; i < weights.length; i++) {
+      // zero, subnormal and huge weights, in shuffled order
+      weights[(i * 7) % weights.length] = i % 5 == 0 ? 0 : Math.scalb(1.0, i - 1074);
+    }
+    assertTimeoutPreemptively(TIMEOUT, () -> sampleAll(weights, 3));
+  }
+
+  @Test
+  void frequenciesAreProportionalToWeights() {
+    var weights = new double[]{1, 0, 3};
+    var random = new Random(5);
+    var first = new int[3];
+    var trials = 40_000;
+    for (int i = 0; i < trials; i++) {
+      first[new WeightedSampler(weights).removeRandom(random)]++;
+    }
+    assertEquals(0, first[1]);
+    assertEquals(0.25, (double) first[0] / trials, 0.01);
+  }
+}